@@ -0,0 +1,155 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes how single-id lookups of a Query API describe action are merged into one request, e.g. DescribeSecurityGroups
+ * with GroupId.N or DescribeLoadBalancers with LoadBalancerNames.member.N. Used by AWSConnection.lookup().
+ * <p>
+ * Lookups are merged only with lookups that use the same descriptor instance, so a descriptor should be shared, e.g. as
+ * a static constant.
+ *
+ * @param <T>
+ *            The decoded response type.
+ * @param <I>
+ *            The item type.
+ */
+public abstract class AWSBatchDescriptor<T, I>
+{
+    /** The default time in milliseconds that a lookup waits for other lookups to merge with. */
+    public static final int DEFAULT_WINDOW_MILLIS = 10;
+
+    private final String _action;
+    private final String _idPrefix;
+    private final Class<T> _responseClass;
+    private final int _maxBatchSize;
+    private final Map<String, String> _parameters = new LinkedHashMap<String, String>();
+    private int _windowMillis = DEFAULT_WINDOW_MILLIS;
+
+    /**
+     * Creates a descriptor.
+     *
+     * @param action
+     *            The describe action, e.g. "DescribeSecurityGroups".
+     * @param idPrefix
+     *            The prefix of the numbered id parameters, e.g. "GroupId." for GroupId.1, GroupId.2, ... or
+     *            "Filters.member.1.Values.member." for the values of a filter.
+     * @param responseClass
+     *            The decoded response type.
+     * @param maxBatchSize
+     *            The maximum number of ids per request, as limited by the action. Values less than 1 are treated as 1.
+     */
+    public AWSBatchDescriptor(String action, String idPrefix, Class<T> responseClass, int maxBatchSize)
+    {
+        _action = action;
+        _idPrefix = idPrefix;
+        _responseClass = responseClass;
+        _maxBatchSize = Math.max(maxBatchSize, 1);
+    }
+
+    /** Returns the describe action. */
+    public String getAction()
+    {
+        return _action;
+    }
+
+    /** Returns the prefix of the numbered id parameters. */
+    public String getIdPrefix()
+    {
+        return _idPrefix;
+    }
+
+    /** Returns the decoded response type. */
+    public Class<T> getResponseClass()
+    {
+        return _responseClass;
+    }
+
+    /** Returns the maximum number of ids per request. */
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /** Returns the time in milliseconds that a lookup waits for other lookups to merge with. */
+    public int getWindowMillis()
+    {
+        return _windowMillis;
+    }
+
+    /**
+     * Sets the time that a lookup waits for other lookups to merge with. A batch is sent when the first lookup has
+     * waited this long or the batch is full, whichever comes first.
+     *
+     * @param windowMillis
+     *            The window in milliseconds. Zero disables merging, so each lookup is sent on its own.
+     */
+    public void setWindowMillis(int windowMillis)
+    {
+        _windowMillis = Math.max(windowMillis, 0);
+    }
+
+    /** Returns the parameters sent with every request, other than Action, Version and the ids. */
+    public Map<String, String> getParameters()
+    {
+        return Collections.unmodifiableMap(_parameters);
+    }
+
+    /**
+     * Adds a parameter sent with every request, e.g. the name of the filter whose values are the ids.
+     *
+     * @param name
+     *            The parameter name, e.g. "Filters.member.1.Name".
+     * @param value
+     *            The parameter value, e.g. "db-instance-id".
+     */
+    public void setParameter(String name, String value)
+    {
+        _parameters.put(name, value);
+    }
+
+    /**
+     * Returns true if an AWS error code reports an unknown or malformed id, in which case a failed batch is sent again
+     * one id at a time so that only the lookups of the offending ids fail. By default this is true for codes ending in
+     * ".NotFound" or ".Malformed", e.g. InvalidGroup.NotFound or InvalidGroupId.Malformed, and for LoadBalancerNotFound
+     * and DBInstanceNotFound. Override it for actions that report bad ids with other codes.
+     *
+     * @param code
+     *            The error code, e.g. "InvalidGroup.NotFound".
+     * @return True if the error is caused by an id.
+     */
+    public boolean isIdError(String code)
+    {
+        if (code == null) {
+            return false;
+        }
+        return code.endsWith(".NotFound") || code.endsWith(".Malformed") || code.equals("LoadBalancerNotFound")
+                || code.equals("DBInstanceNotFound");
+    }
+
+    /**
+     * Returns the items of a response.
+     *
+     * @param response
+     *            The decoded response.
+     * @return The items, possibly empty. Never null.
+     */
+    public abstract List<I> getItems(T response);
+
+    /**
+     * Returns the id of an item, which is matched to the ids of the lookups.
+     *
+     * @param item
+     *            An item of a response.
+     * @return The id, e.g. the group id of a security group.
+     */
+    public abstract String getId(I item);
+}
@@ -0,0 +1,72 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.Serializable;
+
+/**
+ * A point-in-time snapshot of the statistics for an AWS connection response cache.
+ */
+public class AWSCacheStatistics implements Serializable
+{
+    private static final long serialVersionUID = 20161019;
+
+    private final long _hits;
+    private final long _misses;
+    private final long _evictions;
+    private final int _size;
+
+    /**
+     * Creates a cache statistics snapshot.
+     *
+     * @param hits
+     *            The number of requests served from the cache.
+     * @param misses
+     *            The number of cacheable requests that were sent to AWS.
+     * @param evictions
+     *            The number of entries removed to honor the cache size bound.
+     * @param size
+     *            The current number of cache entries.
+     */
+    public AWSCacheStatistics(long hits, long misses, long evictions, int size)
+    {
+        _hits = hits;
+        _misses = misses;
+        _evictions = evictions;
+        _size = size;
+    }
+
+    /** Returns the number of requests served from the cache. */
+    public long getHits()
+    {
+        return _hits;
+    }
+
+    /** Returns the number of cacheable requests that were sent to AWS. */
+    public long getMisses()
+    {
+        return _misses;
+    }
+
+    /** Returns the number of entries removed to honor the cache size bound. */
+    public long getEvictions()
+    {
+        return _evictions;
+    }
+
+    /** Returns the current number of cache entries. */
+    public int getSize()
+    {
+        return _size;
+    }
+
+    /** Returns a string representation suitable for logging. */
+    @Override
+    public String toString()
+    {
+        return "hits=" + _hits + ", misses=" + _misses + ", evictions=" + _evictions + ", size=" + _size;
+    }
+}
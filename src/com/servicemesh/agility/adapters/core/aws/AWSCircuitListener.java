@@ -0,0 +1,26 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+/**
+ * Receives notification when the circuit breaker for an AWS host and service changes state, e.g. so that an adapter can
+ * shed work while AWS is unavailable. Notifications are delivered on the thread that caused the change and must not
+ * block.
+ */
+public interface AWSCircuitListener
+{
+    /**
+     * Invoked when a circuit breaker changes state.
+     *
+     * @param name
+     *            Identifies the circuit breaker as host name and service name, e.g. "ec2.us-east-1.amazonaws.com/ec2".
+     * @param previous
+     *            The previous state.
+     * @param current
+     *            The new state.
+     */
+    public void stateChanged(String name, AWSCircuitState previous, AWSCircuitState current);
+}
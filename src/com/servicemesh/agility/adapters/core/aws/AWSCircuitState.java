@@ -0,0 +1,21 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+/**
+ * The state of the circuit breaker for an AWS host and service.
+ */
+public enum AWSCircuitState
+{
+    /** Requests are sent normally. */
+    CLOSED,
+
+    /** Requests fail immediately without being sent. */
+    OPEN,
+
+    /** A single probe request is sent to determine whether the circuit can close. */
+    HALF_OPEN
+}
@@ -5,7 +5,12 @@
 
 package com.servicemesh.agility.adapters.core.aws;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.servicemesh.agility.api.AssetProperty;
 import com.servicemesh.agility.api.Credential;
@@ -22,9 +27,81 @@ public class AWSConfig
 
     public static final String SOCKET_TIMEOUT = "AgilityManager.aws.SocketTimeoutMillis";
 
+    public static final String COALESCE_ACTIONS = "AgilityManager.aws.CoalesceActions";
+
+    public static final String CACHE_ACTIONS = "AgilityManager.aws.CacheActions";
+
+    public static final String CACHE_TTL = "AgilityManager.aws.CacheTtlMillis";
+
+    public static final String CACHE_MAX_ENTRIES = "AgilityManager.aws.CacheMaxEntries";
+
+    public static final String VALIDATOR_CACHE_MAX_BYTES = "AgilityManager.aws.ValidatorCacheMaxBytes";
+
+    public static final String PAGINATOR_BUFFER_PAGES = "AgilityManager.aws.PaginatorBufferPages";
+
+    public static final String QUERY_POST_THRESHOLD = "AgilityManager.aws.QueryPostThresholdBytes";
+
+    public static final String HEDGE_ACTIONS = "AgilityManager.aws.HedgeActions";
+
+    public static final String HEDGE_PERCENTILE = "AgilityManager.aws.HedgePercentile";
+
+    public static final String HEDGE_MIN_DELAY = "AgilityManager.aws.HedgeMinDelayMillis";
+
+    public static final String HEDGE_BUDGET = "AgilityManager.aws.HedgeBudgetPercent";
+
+    public static final String CIRCUIT_FAILURE_THRESHOLD = "AgilityManager.aws.CircuitFailureThreshold";
+
+    public static final String CIRCUIT_ERROR_RATE = "AgilityManager.aws.CircuitErrorRatePercent";
+
+    public static final String CIRCUIT_WINDOW = "AgilityManager.aws.CircuitWindowSize";
+
+    public static final String CIRCUIT_OPEN = "AgilityManager.aws.CircuitOpenMillis";
+
+    public static final String SLOW_REQUEST_THRESHOLD = "AgilityManager.aws.SlowRequestThresholdMillis";
+
+    public static final String SLOW_REQUEST_CANCEL = "AgilityManager.aws.SlowRequestCancelMillis";
+
+    public static final String S3_PART_SIZE = "AgilityManager.aws.S3PartSizeBytes";
+
+    public static final String S3_UPLOAD_CONCURRENCY = "AgilityManager.aws.S3UploadConcurrency";
+
+    public static final String S3_PART_RETRIES = "AgilityManager.aws.S3PartRetries";
+
+    public static final String S3_DOWNLOAD_CONCURRENCY = "AgilityManager.aws.S3DownloadConcurrency";
+
+    public static final String S3_DELETE_CONCURRENCY = "AgilityManager.aws.S3DeleteConcurrency";
+
+    public static final String S3_LIST_CONCURRENCY = "AgilityManager.aws.S3ListConcurrency";
+
+    public static final String REGION_CONCURRENCY = "AgilityManager.aws.RegionConcurrency";
+
+    public static final String REGION_REQUEST_CONCURRENCY = "AgilityManager.aws.RegionRequestConcurrency";
+
     public static final int REQUEST_RETRIES_DEFAULT = 2;
     public static final int CONNECTION_TIMEOUT_DEFAULT_SECS = 240;
     public static final int SOCKET_TIMEOUT_DEFAULT_SECS = 20;
+    public static final int CACHE_TTL_DEFAULT_MILLIS = 5000;
+    public static final int CACHE_MAX_ENTRIES_DEFAULT = 500;
+    public static final int VALIDATOR_CACHE_MAX_BYTES_DEFAULT = 0;
+    public static final int PAGINATOR_BUFFER_PAGES_DEFAULT = 2;
+    public static final int QUERY_POST_THRESHOLD_DEFAULT_BYTES = 4096;
+    public static final int HEDGE_PERCENTILE_DEFAULT = 95;
+    public static final int HEDGE_MIN_DELAY_DEFAULT_MILLIS = 50;
+    public static final int HEDGE_BUDGET_DEFAULT_PERCENT = 5;
+    public static final int CIRCUIT_FAILURE_THRESHOLD_DEFAULT = 0;
+    public static final int CIRCUIT_ERROR_RATE_DEFAULT_PERCENT = 50;
+    public static final int CIRCUIT_WINDOW_DEFAULT = 20;
+    public static final int CIRCUIT_OPEN_DEFAULT_MILLIS = 30000;
+    public static final int SLOW_REQUEST_THRESHOLD_DEFAULT_MILLIS = 0;
+    public static final int SLOW_REQUEST_CANCEL_DEFAULT_MILLIS = 0;
+    public static final int S3_PART_SIZE_DEFAULT_BYTES = 8 * 1024 * 1024;
+    public static final int S3_UPLOAD_CONCURRENCY_DEFAULT = 4;
+    public static final int S3_PART_RETRIES_DEFAULT = 3;
+    public static final int S3_DOWNLOAD_CONCURRENCY_DEFAULT = 4;
+    public static final int S3_DELETE_CONCURRENCY_DEFAULT = 4;
+    public static final int S3_LIST_CONCURRENCY_DEFAULT = 8;
+    public static final int REGION_CONCURRENCY_DEFAULT = 16;
+    public static final int REGION_REQUEST_CONCURRENCY_DEFAULT = 2;
 
     public static final String AWS_ACCESS_KEY = "access-key";
     public static final String AWS_SECRET_KEY = "secret-key";
@@ -65,6 +142,377 @@ public class AWSConfig
         return getPropertyAsInteger(AWSConfig.SOCKET_TIMEOUT, settings, AWSConfig.SOCKET_TIMEOUT_DEFAULT_SECS * 1000);
     }
 
+    /**
+     * Returns the AWS actions for which identical in-flight GET requests share a single HTTP request.
+     *
+     * @param settings
+     *            Configuration data - if empty or null no actions are coalesced.
+     * @return The comma-separated COALESCE_ACTIONS value as a set of action names.
+     */
+    public static Set<String> getCoalesceActions(List<Property> settings)
+    {
+        return getPropertyAsSet(AWSConfig.COALESCE_ACTIONS, settings);
+    }
+
+    /**
+     * Returns the AWS actions whose successful responses are cached, along with their time-to-live. Each comma-separated
+     * CACHE_ACTIONS item is an action name optionally followed by ":" and a time-to-live in milliseconds, e.g.
+     * "DescribeSecurityGroups:2000,DescribeDBInstances". Actions without a time-to-live use the CACHE_TTL value.
+     *
+     * @param settings
+     *            Configuration data - if empty or null no actions are cached.
+     * @return The time-to-live in milliseconds for each cached action.
+     */
+    public static Map<String, Long> getCacheActions(List<Property> settings)
+    {
+        long defaultTtl = getPropertyAsInteger(AWSConfig.CACHE_TTL, settings, AWSConfig.CACHE_TTL_DEFAULT_MILLIS);
+        Map<String, Long> ttls = new LinkedHashMap<String, Long>();
+        for (String item : getPropertyAsSet(AWSConfig.CACHE_ACTIONS, settings)) {
+            int i = item.indexOf(':');
+            if (i < 0) {
+                ttls.put(item, defaultTtl);
+            }
+            else {
+                ttls.put(item.substring(0, i).trim(), Long.parseLong(item.substring(i + 1).trim()));
+            }
+        }
+        return ttls;
+    }
+
+    /**
+     * Returns the maximum number of responses held by a connection's response cache.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The cache max entries value.
+     */
+    public static int getCacheMaxEntries(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.CACHE_MAX_ENTRIES, settings, AWSConfig.CACHE_MAX_ENTRIES_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum total content size in bytes of the GET responses a connection keeps for revalidation via
+     * their ETag or Last-Modified validators.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The validator cache max bytes value, zero if the validator cache is disabled.
+     */
+    public static int getValidatorCacheMaxBytes(List<Property> settings)
+    {
+        int maxBytes = getPropertyAsInteger(AWSConfig.VALIDATOR_CACHE_MAX_BYTES, settings,
+                AWSConfig.VALIDATOR_CACHE_MAX_BYTES_DEFAULT);
+        return Math.max(maxBytes, 0);
+    }
+
+    /**
+     * Returns the query string length above which the parameters of a Query API request are sent as a form-encoded
+     * POST body rather than in the URL.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The query post threshold value, zero if parameters are always sent in the URL.
+     */
+    public static int getQueryPostThreshold(List<Property> settings)
+    {
+        int threshold = getPropertyAsInteger(AWSConfig.QUERY_POST_THRESHOLD, settings,
+                AWSConfig.QUERY_POST_THRESHOLD_DEFAULT_BYTES);
+        return Math.max(threshold, 0);
+    }
+
+    /**
+     * Returns the maximum number of pages a paginator requests ahead of its consumer, including an outstanding request.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The paginator buffer pages value, zero if pages are only requested when the consumer asks for them.
+     */
+    public static int getPaginatorBufferPages(List<Property> settings)
+    {
+        int pages = getPropertyAsInteger(AWSConfig.PAGINATOR_BUFFER_PAGES, settings,
+                AWSConfig.PAGINATOR_BUFFER_PAGES_DEFAULT);
+        return Math.max(pages, 0);
+    }
+
+    /**
+     * Returns the AWS actions for which a slow GET request is hedged by a second, identical request.
+     *
+     * @param settings
+     *            Configuration data - if empty or null no actions are hedged.
+     * @return The comma-separated HEDGE_ACTIONS value as a set of action names.
+     */
+    public static Set<String> getHedgeActions(List<Property> settings)
+    {
+        return getPropertyAsSet(AWSConfig.HEDGE_ACTIONS, settings);
+    }
+
+    /**
+     * Returns the percentile of an action's recent latency after which a hedged request is sent.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The hedge percentile value, between 1 and 99.
+     */
+    public static int getHedgePercentile(List<Property> settings)
+    {
+        int percentile = getPropertyAsInteger(AWSConfig.HEDGE_PERCENTILE, settings, AWSConfig.HEDGE_PERCENTILE_DEFAULT);
+        return Math.min(Math.max(percentile, 1), 99);
+    }
+
+    /**
+     * Returns the minimum time in milliseconds to wait for a response before sending a hedged request.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The hedge min delay value.
+     */
+    public static int getHedgeMinDelay(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.HEDGE_MIN_DELAY, settings, AWSConfig.HEDGE_MIN_DELAY_DEFAULT_MILLIS);
+    }
+
+    /**
+     * Returns the maximum number of hedged requests as a percentage of the requests for hedged actions.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The hedge budget value, between 0 and 100.
+     */
+    public static int getHedgeBudget(List<Property> settings)
+    {
+        int budget = getPropertyAsInteger(AWSConfig.HEDGE_BUDGET, settings, AWSConfig.HEDGE_BUDGET_DEFAULT_PERCENT);
+        return Math.min(Math.max(budget, 0), 100);
+    }
+
+    /**
+     * Returns the number of consecutive transport failures that open the circuit breaker for an AWS host and service.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The circuit failure threshold value. A value of 0 or less disables the circuit breaker.
+     */
+    public static int getCircuitFailureThreshold(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.CIRCUIT_FAILURE_THRESHOLD, settings,
+                AWSConfig.CIRCUIT_FAILURE_THRESHOLD_DEFAULT);
+    }
+
+    /**
+     * Returns the percentage of transport failures and 5xx responses within the circuit window that opens the circuit
+     * breaker for an AWS host and service.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The circuit error rate value, between 1 and 100.
+     */
+    public static int getCircuitErrorRate(List<Property> settings)
+    {
+        int rate = getPropertyAsInteger(AWSConfig.CIRCUIT_ERROR_RATE, settings, AWSConfig.CIRCUIT_ERROR_RATE_DEFAULT_PERCENT);
+        return Math.min(Math.max(rate, 1), 100);
+    }
+
+    /**
+     * Returns the number of most recent requests over which the circuit error rate is computed.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The circuit window size value, at least 1.
+     */
+    public static int getCircuitWindow(List<Property> settings)
+    {
+        return Math.max(getPropertyAsInteger(AWSConfig.CIRCUIT_WINDOW, settings, AWSConfig.CIRCUIT_WINDOW_DEFAULT), 1);
+    }
+
+    /**
+     * Returns the time in milliseconds that an open circuit breaker fails requests before sending a probe request.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The circuit open value.
+     */
+    public static int getCircuitOpen(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.CIRCUIT_OPEN, settings, AWSConfig.CIRCUIT_OPEN_DEFAULT_MILLIS);
+    }
+
+    /**
+     * Returns the time in milliseconds after which an outstanding request is reported as slow.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The slow request threshold value. A value of 0 or less, the default, disables reporting.
+     */
+    public static int getSlowRequestThreshold(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.SLOW_REQUEST_THRESHOLD, settings,
+                AWSConfig.SLOW_REQUEST_THRESHOLD_DEFAULT_MILLIS);
+    }
+
+    /**
+     * Returns the time in milliseconds after which an outstanding request is cancelled by the slow request watchdog.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The slow request cancel value. A value of 0 or less never cancels requests.
+     */
+    public static int getSlowRequestCancel(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.SLOW_REQUEST_CANCEL, settings, AWSConfig.SLOW_REQUEST_CANCEL_DEFAULT_MILLIS);
+    }
+
+    /**
+     * Returns the size in bytes of the parts of an S3 multipart upload and of the ranges of a parallel S3 download.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The part size value. S3 requires all parts but the last to be at least 5 MB.
+     */
+    public static int getS3PartSize(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_PART_SIZE, settings, AWSConfig.S3_PART_SIZE_DEFAULT_BYTES);
+    }
+
+    /**
+     * Returns the maximum number of parts of an S3 multipart upload that are uploaded at once.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The upload concurrency value.
+     */
+    public static int getS3UploadConcurrency(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_UPLOAD_CONCURRENCY, settings, AWSConfig.S3_UPLOAD_CONCURRENCY_DEFAULT);
+    }
+
+    /**
+     * Returns the number of times a failed part of an S3 multipart upload, or a failed range of a parallel S3 download,
+     * is retried before the transfer fails.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The part retries value.
+     */
+    public static int getS3PartRetries(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_PART_RETRIES, settings, AWSConfig.S3_PART_RETRIES_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of ranges of a parallel S3 download that are downloaded at once.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The download concurrency value.
+     */
+    public static int getS3DownloadConcurrency(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_DOWNLOAD_CONCURRENCY, settings,
+                AWSConfig.S3_DOWNLOAD_CONCURRENCY_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of DeleteObjects requests of an S3 batch delete that are sent at once.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The delete concurrency value.
+     */
+    public static int getS3DeleteConcurrency(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_DELETE_CONCURRENCY, settings, AWSConfig.S3_DELETE_CONCURRENCY_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of prefixes of an S3 bucket listing that are listed at once.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The list concurrency value.
+     */
+    public static int getS3ListConcurrency(List<Property> settings)
+    {
+        return getPropertyAsInteger(AWSConfig.S3_LIST_CONCURRENCY, settings, AWSConfig.S3_LIST_CONCURRENCY_DEFAULT);
+    }
+
+    /**
+     * Returns the maximum number of requests of a multi-region executor that are outstanding at once across all
+     * regions. Values less than 1 are treated as 1.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The region concurrency value.
+     */
+    public static int getRegionConcurrency(List<Property> settings)
+    {
+        return Math.max(getPropertyAsInteger(AWSConfig.REGION_CONCURRENCY, settings,
+                AWSConfig.REGION_CONCURRENCY_DEFAULT), 1);
+    }
+
+    /**
+     * Returns the maximum number of requests of a multi-region executor that are outstanding at once in one region.
+     * Values less than 1 are treated as 1.
+     *
+     * @param settings
+     *            Configuration data - if empty or null a default value is returned.
+     * @return The per-region concurrency value.
+     */
+    public static int getRegionRequestConcurrency(List<Property> settings)
+    {
+        return Math.max(getPropertyAsInteger(AWSConfig.REGION_REQUEST_CONCURRENCY, settings,
+                AWSConfig.REGION_REQUEST_CONCURRENCY_DEFAULT), 1);
+    }
+
+    /**
+     * Returns the requested property as a string value.
+     *
+     * @param name
+     *            The name of the requested property.
+     * @param properties
+     *            Configuration data. Optional, may be empty or null.
+     * @param defaultValue
+     *            The default value to return if property is not found in properties parameter.
+     * @return The string value of the property.
+     */
+    public static String getPropertyAsString(String name, List<Property> properties, String defaultValue)
+    {
+        String value = defaultValue;
+        if (properties != null) {
+            for (Property property : properties) {
+                if (property.getName().equals(name)) {
+                    value = property.getValue();
+                    break;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the requested property as a set of values.
+     *
+     * @param name
+     *            The name of the requested property.
+     * @param properties
+     *            Configuration data. Optional, may be empty or null.
+     * @return The comma-separated values of the property, or an empty set if the property is not found.
+     */
+    public static Set<String> getPropertyAsSet(String name, List<Property> properties)
+    {
+        String value = getPropertyAsString(name, properties, null);
+        if ((value == null) || value.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> values = new LinkedHashSet<String>();
+        for (String item : value.split(",")) {
+            item = item.trim();
+            if (!item.isEmpty()) {
+                values.add(item);
+            }
+        }
+        return values;
+    }
+
     /**
      * Returns the requested property as an integer value.
      *
@@ -5,6 +5,7 @@
 
 package com.servicemesh.agility.adapters.core.aws;
 
+import java.nio.channels.FileChannel;
 import java.util.Map;
 
 import com.servicemesh.core.async.Promise;
@@ -22,6 +23,102 @@ public interface AWSConnection
      */
     public AWSEndpoint getEndpoint();
 
+    /**
+     * Returns the number of requests that were satisfied by an identical request already in flight.
+     *
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#COALESCE_ACTIONS
+     */
+    public long getCoalescedRequestCount();
+
+    /**
+     * Returns the statistics for the response cache of this connection.
+     *
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#CACHE_ACTIONS
+     */
+    public AWSCacheStatistics getCacheStatistics();
+
+    /**
+     * Returns the statistics for the validator cache of this connection. Hits are requests answered with 304 Not
+     * Modified and served from the cache.
+     *
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#VALIDATOR_CACHE_MAX_BYTES
+     */
+    public AWSCacheStatistics getValidatorCacheStatistics();
+
+    /**
+     * Returns the hedged request statistics for this connection.
+     *
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#HEDGE_ACTIONS
+     */
+    public AWSHedgeStatistics getHedgeStatistics();
+
+    /**
+     * Returns the state of the circuit breaker shared by connections to this connection's host and service.
+     *
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#CIRCUIT_FAILURE_THRESHOLD
+     */
+    public AWSCircuitState getCircuitState();
+
+    /**
+     * Registers a listener for state changes of the circuit breaker shared by connections to this connection's host and
+     * service. Does nothing if the circuit breaker is disabled.
+     *
+     * @param listener
+     *            The listener to be notified.
+     */
+    public void addCircuitListener(AWSCircuitListener listener);
+
+    /**
+     * Removes a listener registered by addCircuitListener().
+     *
+     * @param listener
+     *            The listener to be removed.
+     */
+    public void removeCircuitListener(AWSCircuitListener listener);
+
+    /**
+     * Registers a listener for requests of this connection that are outstanding for longer than the
+     * AWSConfig.SLOW_REQUEST_THRESHOLD or are cancelled after AWSConfig.SLOW_REQUEST_CANCEL. Does nothing if both are
+     * disabled, as they are by default.
+     *
+     * @param listener
+     *            The listener to be notified.
+     */
+    public void addSlowRequestListener(AWSSlowRequestListener listener);
+
+    /**
+     * Removes a listener registered by addSlowRequestListener().
+     *
+     * @param listener
+     *            The listener to be removed.
+     */
+    public void removeSlowRequestListener(AWSSlowRequestListener listener);
+
+    /**
+     * Registers an interceptor for the requests of this connection. It is invoked after any interceptors registered via
+     * AWSConnectionFactory.addInterceptor().
+     *
+     * @param interceptor
+     *            The interceptor to be added.
+     */
+    public void addInterceptor(AWSRequestInterceptor interceptor);
+
+    /**
+     * Removes an interceptor registered by addInterceptor().
+     *
+     * @param interceptor
+     *            The interceptor to be removed.
+     */
+    public void removeInterceptor(AWSRequestInterceptor interceptor);
+
+    /**
+     * Sends subsequent requests via a transport instead of the HTTP client, e.g. to replay recorded responses.
+     *
+     * @param transport
+     *            The transport, or null to send requests via the HTTP client.
+     */
+    public void setTransport(AWSTransport transport);
+
     /**
      * Initializes query parameters.
      *
@@ -77,11 +174,127 @@ public interface AWSConnection
      * @param params
      *            Query parameters. Optional, may be null.
      * @param resource
-     *            Request element. If type is String it is directly used while any other type is encoded. Optional, may be null.
+     *            Request element. If type is String, byte[], ByteBuffer or AWSFileRegion it is directly used while any
+     *            other type is encoded. ByteBuffer and AWSFileRegion content is hashed and streamed in place, without a
+     *            copy to the heap. Optional, may be null.
      * @param responseClass
      *            The class of resource to be retrieved.
      * @return A Promise for the retrieved resource.
      */
     public <T> Promise<T> execute(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
             Object resource, final Class<T> responseClass);
+
+    /**
+     * Performs an AWS action via a HTTP GET method, subject to request options.
+     *
+     * @param params
+     *            Query parameters
+     * @param options
+     *            Request options, e.g. a deadline. Optional, may be null.
+     * @param responseClass
+     *            The class of resource to be retrieved.
+     * @return A Promise for the retrieved resource. Cancelling the Promise cancels the HTTP request.
+     */
+    public <T> Promise<T> execute(QueryParams params, AWSRequestOptions options, final Class<T> responseClass);
+
+    /**
+     * Performs an AWS action via the specified HTTP method, subject to request options.
+     *
+     * @param method
+     *            HTTP method
+     * @param requestURI
+     *            The URI specific to retrieving a resource. Optional, may be null.
+     * @param headers
+     *            HTTP headers. Optional, may be null.
+     * @param params
+     *            Query parameters. Optional, may be null.
+     * @param resource
+     *            Request element. If type is String, byte[], ByteBuffer or AWSFileRegion it is directly used while any
+     *            other type is encoded. ByteBuffer and AWSFileRegion content is hashed and streamed in place, without a
+     *            copy to the heap. Optional, may be null.
+     * @param options
+     *            Request options, e.g. a deadline. Optional, may be null.
+     * @param responseClass
+     *            The class of resource to be retrieved.
+     * @return A Promise for the retrieved resource. Cancelling the Promise cancels the HTTP request.
+     */
+    public <T> Promise<T> execute(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
+            Object resource, AWSRequestOptions options, final Class<T> responseClass);
+
+    /**
+     * Creates a paginator over the items of a paginated Query API action, e.g. DescribeDBParameters with its Marker or
+     * DescribeInstances with its NextToken. Each page is requested via execute() as a GET, so that the response cache,
+     * coalescing and hedging apply.
+     *
+     * @param params
+     *            Query parameters for the first page as returned by initQueryParams(), e.g. including MaxRecords.
+     * @param tokenParam
+     *            The name of the query parameter that requests the next page, e.g. "Marker" or "NextToken".
+     * @param responseClass
+     *            The class of the decoded page.
+     * @param extractor
+     *            Extracts the items and the next token from a page.
+     * @return A paginator. No request is sent until its first page is requested.
+     * @see com.servicemesh.agility.adapters.core.aws.AWSConfig#PAGINATOR_BUFFER_PAGES
+     */
+    public <T, I> AWSPaginator<I> paginate(QueryParams params, String tokenParam, Class<T> responseClass,
+            AWSPageExtractor<T, I> extractor);
+
+    /**
+     * Looks up one item of a describe action by id. Lookups that use the same descriptor are merged into one multi-id
+     * request when they are submitted within the descriptor's window, up to its maximum batch size, and the response is
+     * split back to each lookup by id. Each request is sent via execute(), so that caching and hedging apply.
+     *
+     * @param descriptor
+     *            Describes the action, its id parameters and how to find the items of a response.
+     * @param id
+     *            The id, e.g. a security group id.
+     * @return A Promise for the item, or for null if the response does not contain it. The Promise fails if the id is
+     *         unknown to AWS, e.g. with InvalidGroup.NotFound, without failing the other lookups of its batch.
+     */
+    public <T, I> Promise<I> lookup(AWSBatchDescriptor<T, I> descriptor, String id);
+
+    /**
+     * Performs an AWS request via the specified HTTP method and provides the response body as a stream, e.g. to
+     * download a large S3 object. The body is received as it is read, so memory use does not depend on its size. The
+     * response is not decoded, cached or coalesced and request interceptors are not given its content. The request is
+     * not retried on failure, whatever the AWSConfig.REQUEST_RETRIES setting.
+     *
+     * @param method
+     *            HTTP method
+     * @param requestURI
+     *            The URI specific to retrieving a resource. Optional, may be null.
+     * @param headers
+     *            HTTP headers, e.g. Range. Optional, may be null.
+     * @param params
+     *            Query parameters. Optional, may be null.
+     * @param resource
+     *            Request element, as for execute(). Optional, may be null.
+     * @return A Promise for the response, completed when its status and headers are received. The caller must close
+     *         the response. Cancelling the Promise cancels the HTTP request.
+     */
+    public Promise<AWSStreamingResponse> executeStream(HttpMethod method, String requestURI, Map<String, String> headers,
+            QueryParams params, Object resource);
+
+    /**
+     * Performs an AWS request via the specified HTTP method and writes the response body to a file as it is received.
+     * As for executeStream(), the request is not retried on failure.
+     *
+     * @param method
+     *            HTTP method
+     * @param requestURI
+     *            The URI specific to retrieving a resource. Optional, may be null.
+     * @param headers
+     *            HTTP headers, e.g. Range. Optional, may be null.
+     * @param params
+     *            Query parameters. Optional, may be null.
+     * @param target
+     *            The file, written via positional writes that do not change its position.
+     * @param position
+     *            The offset in the file at which the body is written.
+     * @return A Promise for the number of bytes written. The Promise fails with the decoded AWS error if the response
+     *         status is not 2xx, in which case nothing is written.
+     */
+    public Promise<Long> executeToChannel(HttpMethod method, String requestURI, Map<String, String> headers,
+            QueryParams params, FileChannel target, long position);
 }
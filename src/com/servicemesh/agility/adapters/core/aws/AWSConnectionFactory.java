@@ -6,6 +6,7 @@
 package com.servicemesh.agility.adapters.core.aws;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.servicemesh.agility.adapters.core.aws.impl.AWSConnectionImpl;
 import com.servicemesh.agility.adapters.core.aws.security.group.resources.IpRangeItemType;
@@ -23,6 +24,8 @@ public class AWSConnectionFactory
     private static final String EC2_DEFAULT_REGION = "us-east-1";
     private static final String EC2_VERSION = "2013-10-15";
 
+    private final List<AWSRequestInterceptor> _interceptors = new CopyOnWriteArrayList<AWSRequestInterceptor>();
+
     private AWSConnectionFactory()
     {
     }
@@ -40,6 +43,30 @@ public class AWSConnectionFactory
         return Holder._instance;
     }
 
+    /**
+     * Registers an interceptor for the requests of all connections provided by this factory, including connections
+     * provided before the interceptor was registered. Global interceptors are invoked before a connection's own
+     * interceptors.
+     *
+     * @param interceptor
+     *            The interceptor to be added.
+     */
+    public void addInterceptor(AWSRequestInterceptor interceptor)
+    {
+        _interceptors.add(interceptor);
+    }
+
+    /**
+     * Removes an interceptor registered by addInterceptor().
+     *
+     * @param interceptor
+     *            The interceptor to be removed.
+     */
+    public void removeInterceptor(AWSRequestInterceptor interceptor)
+    {
+        _interceptors.remove(interceptor);
+    }
+
     /**
      * Gets an AWS connection.
      *
@@ -57,7 +84,7 @@ public class AWSConnectionFactory
     public AWSConnection getConnection(List<Property> settings, Credential credential, Proxy proxy, AWSEndpoint endpoint)
             throws Exception
     {
-        return new AWSConnectionImpl(settings, credential, proxy, endpoint);
+        return new AWSConnectionImpl(settings, credential, proxy, endpoint, _interceptors);
     }
 
     /**
@@ -86,6 +113,6 @@ public class AWSConnectionFactory
         else { // region should be contained within the address
             endpoint = endpointFactory.getEndpoint(AmazonURI, EC2_VERSION, IpRangeItemType.class);
         }
-        return new AWSConnectionImpl(settings, credential, proxy, endpoint);
+        return new AWSConnectionImpl(settings, credential, proxy, endpoint, _interceptors);
     }
 }
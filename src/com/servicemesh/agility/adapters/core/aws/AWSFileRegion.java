@@ -0,0 +1,84 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A region of a file used as request content, e.g. an S3 object or one part of a multipart upload. The region is hashed
+ * from mapped memory and streamed from the file's channel, so its content is never copied to the heap. The file must
+ * not change while a request is outstanding.
+ */
+public class AWSFileRegion
+{
+    private final File _file;
+    private final long _position;
+    private final long _length;
+
+    /**
+     * Creates a region covering an entire file.
+     *
+     * @param file
+     *            The file.
+     */
+    public AWSFileRegion(File file)
+    {
+        this(file, 0, file.length());
+    }
+
+    /**
+     * Creates a region of a file.
+     *
+     * @param file
+     *            The file.
+     * @param position
+     *            The offset of the region in the file.
+     * @param length
+     *            The number of bytes in the region.
+     */
+    public AWSFileRegion(File file, long position, long length)
+    {
+        if (file == null) {
+            throw new IllegalArgumentException("file is required");
+        }
+        if ((position < 0) || (length < 0)) {
+            throw new IllegalArgumentException("position and length must not be negative");
+        }
+        _file = file;
+        _position = position;
+        _length = length;
+    }
+
+    public File getFile()
+    {
+        return _file;
+    }
+
+    public long getPosition()
+    {
+        return _position;
+    }
+
+    public long getLength()
+    {
+        return _length;
+    }
+
+    /** Opens a read-only channel to the file. Each request opens its own channel, so a region may be sent concurrently. */
+    public FileChannel openChannel() throws IOException
+    {
+        return FileChannel.open(_file.toPath(), StandardOpenOption.READ);
+    }
+
+    @Override
+    public String toString()
+    {
+        return _file.getPath() + "[" + _position + "+" + _length + "]";
+    }
+}
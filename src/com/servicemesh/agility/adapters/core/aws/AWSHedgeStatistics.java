@@ -0,0 +1,68 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.Serializable;
+
+/**
+ * A point-in-time snapshot of the hedged request statistics for an AWS connection.
+ */
+public class AWSHedgeStatistics implements Serializable
+{
+    private static final long serialVersionUID = 20161019;
+
+    private final long _requests;
+    private final long _hedges;
+    private final long _wins;
+
+    /**
+     * Creates a hedge statistics snapshot.
+     *
+     * @param requests
+     *            The number of requests for hedged actions.
+     * @param hedges
+     *            The number of hedged requests sent.
+     * @param wins
+     *            The number of hedged requests that completed before the original request.
+     */
+    public AWSHedgeStatistics(long requests, long hedges, long wins)
+    {
+        _requests = requests;
+        _hedges = hedges;
+        _wins = wins;
+    }
+
+    /** Returns the number of requests for hedged actions. */
+    public long getRequests()
+    {
+        return _requests;
+    }
+
+    /** Returns the number of hedged requests sent. */
+    public long getHedges()
+    {
+        return _hedges;
+    }
+
+    /** Returns the number of hedged requests that completed before the original request. */
+    public long getWins()
+    {
+        return _wins;
+    }
+
+    /** Returns the fraction of hedged requests that completed before the original request, or 0 if none were sent. */
+    public double getWinRate()
+    {
+        return (_hedges == 0) ? 0.0 : (double) _wins / _hedges;
+    }
+
+    /** Returns a string representation suitable for logging. */
+    @Override
+    public String toString()
+    {
+        return "requests=" + _requests + ", hedges=" + _hedges + ", wins=" + _wins;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.List;
+
+/**
+ * Extracts the items and the pagination token from a decoded page of a paginated AWS Query API action, e.g. the
+ * parameters and Marker of a DescribeDBParametersResponse. Used by AWSConnection.paginate().
+ *
+ * @param <T>
+ *            The decoded response type.
+ * @param <I>
+ *            The item type.
+ */
+public interface AWSPageExtractor<T, I>
+{
+    /**
+     * Returns the token that requests the next page, e.g. a Marker or NextToken value.
+     *
+     * @param page
+     *            The decoded response.
+     * @return The token, or null or empty if this is the last page.
+     */
+    public String getNextToken(T page);
+
+    /**
+     * Returns the items of a page.
+     *
+     * @param page
+     *            The decoded response.
+     * @return The items, possibly empty. Never null.
+     */
+    public List<I> getItems(T page);
+}
@@ -0,0 +1,46 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.List;
+
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+
+/**
+ * An asynchronous stream of the items of a paginated AWS Query API action, created by AWSConnection.paginate(). The
+ * next page is requested as soon as the token of the previous page is known, so that AWS requests overlap with the
+ * consumer's processing. At most AWSConfig.PAGINATOR_BUFFER_PAGES pages are requested ahead of the consumer.
+ *
+ * @param <I>
+ *            The item type.
+ */
+public interface AWSPaginator<I>
+{
+    /**
+     * Returns the items of the next page. Pages are returned in order, also if next() is called again before a
+     * previous Promise completes.
+     *
+     * @return A Promise for the items of the next page, or for null once all pages have been returned or the paginator
+     *         is closed. The Promise fails if a page request fails, as do those of any later calls.
+     */
+    public Promise<List<I>> next();
+
+    /**
+     * Passes each item of the remaining pages to a consumer, in order. The consumer is invoked on HTTP client threads
+     * and may process a page while the next page is requested.
+     *
+     * @param consumer
+     *            Receives the items. An exception thrown by the consumer closes the paginator and fails the Promise.
+     * @return A Promise for the number of items consumed. Cancelling the Promise closes the paginator.
+     */
+    public Promise<Long> forEach(Callback<I> consumer);
+
+    /**
+     * Stops requesting pages and cancels an outstanding page request. Pages not yet returned are discarded.
+     */
+    public void close();
+}
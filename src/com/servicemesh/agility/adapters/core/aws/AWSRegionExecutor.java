@@ -0,0 +1,387 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.impl.QueryStringUtil;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.agility.api.Credential;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+import com.servicemesh.io.proxy.Proxy;
+
+/**
+ * Runs a Query API action in several regions at once, e.g. to inventory an account. The endpoint and connection of
+ * each service, version and region are created on first use and reused by later requests, so their caches, circuit
+ * breakers and latency statistics stay per region.
+ * <p>
+ * Requests of all fan-outs of an executor share two bounds: AWSConfig.getRegionConcurrency() requests are outstanding
+ * at once across all regions and AWSConfig.getRegionRequestConcurrency() in any one region. Requests that exceed a
+ * bound are queued in the order they were submitted. A region that fails does not affect the other regions, so a
+ * fan-out takes as long as its slowest region.
+ */
+public class AWSRegionExecutor
+{
+    private static final Logger _logger = Logger.getLogger(AWSRegionExecutor.class);
+
+    /** The host name format of the public AWS endpoints; {0} is the service name and {1} the region name. */
+    public static final String DEFAULT_HOST_FORMAT = "{0}.{1}.amazonaws.com";
+
+    private final List<Property> _settings;
+    private final Credential _credential;
+    private final Proxy _proxy;
+    private final String _uriScheme;
+    private final String _hostFormat;
+    private final int _concurrency;
+    private final int _regionConcurrency;
+    private final ConcurrentMap<String, AWSConnection> _connections = new ConcurrentHashMap<String, AWSConnection>();
+    private final Deque<RegionRequest> _queued = new ArrayDeque<RegionRequest>();
+    private final Map<String, Integer> _regionActive = new HashMap<String, Integer>();
+    private int _active;
+
+    /**
+     * Creates an executor for the public AWS endpoints.
+     *
+     * @param settings
+     *            The configuration settings of the executor and its connections. Optional, may be empty or null.
+     * @param credential
+     *            Must be a credential that contains a public and private key.
+     * @param proxy
+     *            The proxy to be utilized. Optional, may be null.
+     */
+    public AWSRegionExecutor(List<Property> settings, Credential credential, Proxy proxy)
+    {
+        this(settings, credential, proxy, "https", DEFAULT_HOST_FORMAT);
+    }
+
+    /**
+     * Creates an executor.
+     *
+     * @param settings
+     *            The configuration settings of the executor and its connections. Optional, may be empty or null.
+     * @param credential
+     *            Must be a credential that contains a public and private key.
+     * @param proxy
+     *            The proxy to be utilized. Optional, may be null.
+     * @param uriScheme
+     *            The URI scheme of the endpoints, e.g. "https".
+     * @param hostFormat
+     *            A java.text.MessageFormat pattern for the host name of an endpoint, where {0} is the service name
+     *            and {1} the region name, e.g. DEFAULT_HOST_FORMAT.
+     */
+    public AWSRegionExecutor(List<Property> settings, Credential credential, Proxy proxy, String uriScheme,
+            String hostFormat)
+    {
+        _settings = settings;
+        _credential = credential;
+        _proxy = proxy;
+        _uriScheme = uriScheme;
+        _hostFormat = hostFormat;
+        _concurrency = AWSConfig.getRegionConcurrency(settings);
+        _regionConcurrency = AWSConfig.getRegionRequestConcurrency(settings);
+    }
+
+    /**
+     * Gets the connection of a service in a region, creating it on first use.
+     *
+     * @param serviceName
+     *            The AWS service name, e.g. "ec2".
+     * @param version
+     *            The API version, e.g. "2013-10-15".
+     * @param region
+     *            The AWS region name, e.g. "us-east-1".
+     * @param contextClass
+     *            One of the JAXB classes for the AWS API. Used to initialize the default context for the endpoint.
+     * @return The connection shared by all requests for the service, version and region.
+     */
+    public <C> AWSConnection getConnection(String serviceName, String version, String region, Class<C> contextClass)
+            throws Exception
+    {
+        String key = serviceName + "|" + version + "|" + region;
+        AWSConnection connection = _connections.get(key);
+        if (connection == null) {
+            String hostName = MessageFormat.format(_hostFormat, serviceName, region);
+            AWSEndpoint endpoint = AWSEndpointFactory.getInstance().getEndpoint(_uriScheme, hostName, serviceName,
+                    region, version, 0, contextClass);
+            connection = AWSConnectionFactory.getInstance().getConnection(_settings, _credential, _proxy, endpoint);
+            AWSConnection existing = _connections.putIfAbsent(key, connection);
+            if (existing != null) {
+                connection = existing;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Runs a Query API action in each of a set of regions.
+     *
+     * @param serviceName
+     *            The AWS service name, e.g. "ec2".
+     * @param version
+     *            The API version, e.g. "2013-10-15".
+     * @param action
+     *            The action, e.g. "DescribeVpcs".
+     * @param params
+     *            The parameters of the action other than Action and Version. Optional, may be null.
+     * @param regions
+     *            The region names. Duplicates are ignored.
+     * @param responseClass
+     *            The decoded response type.
+     * @param consumer
+     *            Receives the result of each region as soon as it arrives, from several threads at once. Optional, may
+     *            be null.
+     * @return A Promise for the results in the order of the regions. Failed regions are reported as results, so the
+     *         Promise only fails if the consumer throws an exception. Cancelling it cancels the outstanding requests.
+     */
+    public <T> Promise<List<AWSRegionResult<T>>> execute(String serviceName, String version, String action,
+            QueryParams params, Collection<String> regions, Class<T> responseClass,
+            Callback<AWSRegionResult<T>> consumer)
+    {
+        FanOut<T> fanOut = new FanOut<T>(action, params, regions, responseClass, consumer);
+        fanOut.start(serviceName, version);
+        return fanOut._result;
+    }
+
+    // Sends queued requests while the global and per-region bounds allow
+    private void dispatch()
+    {
+        while (true) {
+            RegionRequest next = null;
+            synchronized (this) {
+                if (_active >= _concurrency) {
+                    return;
+                }
+                for (Iterator<RegionRequest> it = _queued.iterator(); it.hasNext();) {
+                    RegionRequest request = it.next();
+                    Integer active = _regionActive.get(request._region);
+                    int count = (active != null) ? active : 0;
+                    if (count < _regionConcurrency) {
+                        it.remove();
+                        _regionActive.put(request._region, count + 1);
+                        _active++;
+                        next = request;
+                        break;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            next._fanOut.send(next);
+        }
+    }
+
+    private void release(String region)
+    {
+        synchronized (this) {
+            _active--;
+            int count = _regionActive.get(region) - 1;
+            if (count == 0) {
+                _regionActive.remove(region);
+            }
+            else {
+                _regionActive.put(region, count);
+            }
+        }
+        dispatch();
+    }
+
+    // A request of a fan-out for one region
+    private class RegionRequest
+    {
+        private final FanOut<?> _fanOut;
+        private final int _index;
+        private final String _region;
+        private final AWSConnection _connection;
+
+        private RegionRequest(FanOut<?> fanOut, int index, String region, AWSConnection connection)
+        {
+            _fanOut = fanOut;
+            _index = index;
+            _region = region;
+            _connection = connection;
+        }
+    }
+
+    // The state of a fan-out. Requests complete on HTTP client threads, so the bookkeeping is synchronized.
+    private class FanOut<T>
+    {
+        private final String _action;
+        private final Map<String, String> _parameters;
+        private final List<String> _regions;
+        private final Class<T> _responseClass;
+        private final Callback<AWSRegionResult<T>> _consumer;
+        private final List<AWSRegionResult<T>> _results;
+        private final CompletablePromise<List<AWSRegionResult<T>>> _result = PromiseFactory.create();
+        private final Set<Promise<T>> _outstanding =
+                Collections.newSetFromMap(new ConcurrentHashMap<Promise<T>, Boolean>());
+        private int _completed;
+        private boolean _finished;
+
+        private FanOut(String action, QueryParams params, Collection<String> regions, Class<T> responseClass,
+                Callback<AWSRegionResult<T>> consumer)
+        {
+            _action = action;
+            // The parameters are copied since signing adds to a QueryParams
+            _parameters = (params != null) ? QueryStringUtil.getParameters(params.asQueryString())
+                    : Collections.<String, String> emptyMap();
+            _regions = new ArrayList<String>(new LinkedHashSet<String>(regions));
+            _responseClass = responseClass;
+            _consumer = consumer;
+            _results = new ArrayList<AWSRegionResult<T>>(Collections.<AWSRegionResult<T>> nCopies(_regions.size(),
+                    null));
+        }
+
+        private void start(String serviceName, String version)
+        {
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    stop();
+                }
+            });
+            if (_regions.isEmpty()) {
+                _result.complete(Collections.<AWSRegionResult<T>> emptyList());
+                return;
+            }
+            for (int i = 0; i < _regions.size(); i++) {
+                String region = _regions.get(i);
+                AWSConnection connection;
+                try {
+                    connection = getConnection(serviceName, version, region, _responseClass);
+                }
+                catch (Exception e) {
+                    regionDone(i, null, e);
+                    continue;
+                }
+                synchronized (AWSRegionExecutor.this) {
+                    _queued.add(new RegionRequest(this, i, region, connection));
+                }
+            }
+            dispatch();
+        }
+
+        private void send(final RegionRequest request)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    release(request._region);
+                    return;
+                }
+            }
+            QueryParams params = request._connection.initQueryParams(_action);
+            for (Map.Entry<String, String> param : _parameters.entrySet()) {
+                params.add(new QueryParam(param.getKey(), param.getValue()));
+            }
+            final Promise<T> promise = request._connection.execute(params, _responseClass);
+            _outstanding.add(promise);
+            promise.onComplete(new Callback<T>() {
+                @Override
+                public void invoke(T response)
+                {
+                    _outstanding.remove(promise);
+                    release(request._region);
+                    regionDone(request._index, response, null);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _outstanding.remove(promise);
+                    release(request._region);
+                    regionDone(request._index, null, t);
+                }
+            });
+            promise.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    _outstanding.remove(promise);
+                    release(request._region);
+                }
+            });
+        }
+
+        private void regionDone(int index, T response, Throwable failure)
+        {
+            String region = _regions.get(index);
+            if (failure != null) {
+                String message = (failure.getMessage() != null) ? failure.getMessage() : failure.toString();
+                _logger.warn(Resources.getString("regionRequestFailed", _action, region, message));
+            }
+            AWSRegionResult<T> result = new AWSRegionResult<T>(region, response, failure);
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _results.set(index, result);
+            }
+            if (_consumer != null) {
+                try {
+                    _consumer.invoke(result);
+                }
+                catch (Throwable t) {
+                    stop();
+                    _result.failure(t);
+                    return;
+                }
+            }
+            boolean complete;
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                complete = (++_completed == _regions.size());
+                _finished = complete;
+            }
+            if (complete) {
+                _result.complete(_results);
+            }
+        }
+
+        // Drops the queued requests and cancels the outstanding ones
+        private void stop()
+        {
+            synchronized (this) {
+                _finished = true;
+            }
+            synchronized (AWSRegionExecutor.this) {
+                for (Iterator<RegionRequest> it = _queued.iterator(); it.hasNext();) {
+                    if (it.next()._fanOut == this) {
+                        it.remove();
+                    }
+                }
+            }
+            for (Promise<T> promise : _outstanding) {
+                PromiseUtil.cancel(promise);
+            }
+        }
+    }
+}
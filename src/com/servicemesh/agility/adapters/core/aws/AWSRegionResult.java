@@ -0,0 +1,63 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+/**
+ * The outcome of one region of a multi-region request.
+ */
+public class AWSRegionResult<T>
+{
+    private final String _region;
+    private final T _response;
+    private final Throwable _failure;
+
+    /**
+     * Creates a result.
+     *
+     * @param region
+     *            The region name, e.g. "us-east-1".
+     * @param response
+     *            The decoded response, or null if the request failed.
+     * @param failure
+     *            The reason the request failed, or null if it succeeded.
+     */
+    public AWSRegionResult(String region, T response, Throwable failure)
+    {
+        _region = region;
+        _response = response;
+        _failure = failure;
+    }
+
+    /** Returns the region name. */
+    public String getRegion()
+    {
+        return _region;
+    }
+
+    /** Returns true if the request of the region succeeded. */
+    public boolean isSucceeded()
+    {
+        return _failure == null;
+    }
+
+    /** Returns the decoded response, or null if the request failed. */
+    public T getResponse()
+    {
+        return _response;
+    }
+
+    /** Returns the reason the request failed, e.g. an AWSErrorException, or null. */
+    public Throwable getFailure()
+    {
+        return _failure;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isSucceeded() ? (_region + ": succeeded") : (_region + ": " + _failure);
+    }
+}
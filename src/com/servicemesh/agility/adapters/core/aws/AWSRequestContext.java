@@ -0,0 +1,166 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Describes a single AWS request to the interceptors of a connection. Interceptors may keep their own per-request state
+ * as attributes.
+ */
+public class AWSRequestContext
+{
+    private final AWSEndpoint _endpoint;
+    private final HttpMethod _method;
+    private final String _action;
+    private final String _requestURI;
+    private final QueryParams _params;
+    private final Object _resource;
+    private Map<String, String> _headers;
+    private boolean _headersCopied;
+    private volatile HttpMethod _signedMethod;
+    private volatile URI _signedURI;
+    private volatile Map<String, String> _signedHeaders;
+    private final Map<String, Object> _attributes = new ConcurrentHashMap<String, Object>();
+
+    /**
+     * Creates a request context.
+     *
+     * @param endpoint
+     *            The endpoint of the connection.
+     * @param method
+     *            HTTP method
+     * @param action
+     *            The AWS action. Optional, may be null.
+     * @param requestURI
+     *            The URI specific to retrieving a resource. Optional, may be null.
+     * @param headers
+     *            HTTP headers. Optional, may be null.
+     * @param params
+     *            Query parameters. Optional, may be null.
+     * @param resource
+     *            Request element. Optional, may be null.
+     */
+    public AWSRequestContext(AWSEndpoint endpoint, HttpMethod method, String action, String requestURI,
+            Map<String, String> headers, QueryParams params, Object resource)
+    {
+        _endpoint = endpoint;
+        _method = method;
+        _action = action;
+        _requestURI = requestURI;
+        _headers = headers;
+        _params = params;
+        _resource = resource;
+    }
+
+    public AWSEndpoint getEndpoint()
+    {
+        return _endpoint;
+    }
+
+    public HttpMethod getMethod()
+    {
+        return _method;
+    }
+
+    public String getRequestURI()
+    {
+        return _requestURI;
+    }
+
+    /** Returns the HTTP headers, including those set by interceptors, or null if there are none. */
+    public Map<String, String> getHeaders()
+    {
+        return _headers;
+    }
+
+    /**
+     * Sets a HTTP header before the request is signed. The caller's headers are copied on the first call, so they are
+     * never modified.
+     */
+    public void setHeader(String name, String value)
+    {
+        if (!_headersCopied) {
+            Map<String, String> headers = new HashMap<String, String>();
+            if (_headers != null) {
+                headers.putAll(_headers);
+            }
+            _headers = headers;
+            _headersCopied = true;
+        }
+        _headers.put(name, value);
+    }
+
+    /** Returns the query parameters, or null if there are none. The parameters may be modified before signing. */
+    public QueryParams getParams()
+    {
+        return _params;
+    }
+
+    public Object getResource()
+    {
+        return _resource;
+    }
+
+    /** Returns the AWS action of the request, or null if it has none. */
+    public String getAction()
+    {
+        return _action;
+    }
+
+    /**
+     * Returns the method the request is sent with, or null if the request has not been signed. This differs from
+     * {@link #getMethod()} when a Query request is sent as a form POST.
+     */
+    public HttpMethod getSignedMethod()
+    {
+        return _signedMethod;
+    }
+
+    /** Returns the signed URI, or null if the request has not been signed. */
+    public URI getSignedURI()
+    {
+        return _signedURI;
+    }
+
+    /**
+     * Returns the signed HTTP headers, including the Authorization header, or null if the request has not been signed.
+     * Headers added after signing are sent but are not signed.
+     */
+    public Map<String, String> getSignedHeaders()
+    {
+        return _signedHeaders;
+    }
+
+    /** Sets the signed request, invoked by the connection after signing. */
+    public void setSigned(HttpMethod method, URI uri, Map<String, String> headers)
+    {
+        _signedMethod = method;
+        _signedURI = uri;
+        _signedHeaders = headers;
+    }
+
+    public Object getAttribute(String name)
+    {
+        return _attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value)
+    {
+        if (value == null) {
+            _attributes.remove(name);
+        }
+        else {
+            _attributes.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Adds cross-cutting behavior, e.g. metrics, rate limiting or request rewriting, to the requests of an AWS connection.
+ * Interceptors registered via AWSConnectionFactory.addInterceptor() are invoked first, followed by those registered via
+ * AWSConnection.addInterceptor(), each in registration order. An exception thrown by any hook other than onError()
+ * fails the request. Extend AWSRequestInterceptorAdapter to implement only some of the hooks.
+ */
+public interface AWSRequestInterceptor
+{
+    /**
+     * Invoked for every request before it is signed, and before the response cache and request coalescing are consulted.
+     * The request headers and query parameters may be modified.
+     */
+    public void beforeSign(AWSRequestContext context);
+
+    /**
+     * Invoked after a request is signed. The signed URI and headers are available; headers that are not signed may still
+     * be added. Not invoked for a request satisfied by a cached or in-flight response.
+     */
+    public void afterSign(AWSRequestContext context);
+
+    /**
+     * Invoked each time a signed request is handed to the HTTP client, e.g. twice for a hedged request. Throwing an
+     * exception fails that attempt without sending it.
+     */
+    public void beforeSend(AWSRequestContext context);
+
+    /** Invoked when the HTTP response for a request is available, before it is decoded. */
+    public void onResponseBytes(AWSRequestContext context, IHttpResponse response);
+
+    /**
+     * Invoked after a response is decoded.
+     *
+     * @param result
+     *            The decoded object, or the HTTP response if the caller requested an IHttpResponse.
+     */
+    public void afterDecode(AWSRequestContext context, Object result);
+
+    /** Invoked when a request fails. Exceptions thrown by this hook are logged and ignored. */
+    public void onError(AWSRequestContext context, Throwable error);
+}
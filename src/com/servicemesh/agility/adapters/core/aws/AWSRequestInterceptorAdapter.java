@@ -0,0 +1,44 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * An AWSRequestInterceptor whose hooks do nothing, for interceptors that only implement some of the hooks.
+ */
+public class AWSRequestInterceptorAdapter implements AWSRequestInterceptor
+{
+    @Override
+    public void beforeSign(AWSRequestContext context)
+    {
+    }
+
+    @Override
+    public void afterSign(AWSRequestContext context)
+    {
+    }
+
+    @Override
+    public void beforeSend(AWSRequestContext context)
+    {
+    }
+
+    @Override
+    public void onResponseBytes(AWSRequestContext context, IHttpResponse response)
+    {
+    }
+
+    @Override
+    public void afterDecode(AWSRequestContext context, Object result)
+    {
+    }
+
+    @Override
+    public void onError(AWSRequestContext context, Throwable error)
+    {
+    }
+}
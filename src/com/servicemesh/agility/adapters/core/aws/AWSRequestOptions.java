@@ -0,0 +1,69 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+/**
+ * Options that apply to a single AWS request.
+ */
+public class AWSRequestOptions
+{
+    private long _deadline;
+
+    /**
+     * Creates request options with no deadline.
+     */
+    public AWSRequestOptions()
+    {
+    }
+
+    /**
+     * Creates request options with a deadline relative to the current time.
+     *
+     * @param timeoutMillis
+     *            The time in milliseconds, from now, in which the request must complete.
+     */
+    public static AWSRequestOptions withTimeout(long timeoutMillis)
+    {
+        AWSRequestOptions options = new AWSRequestOptions();
+        options.setDeadline(System.currentTimeMillis() + timeoutMillis);
+        return options;
+    }
+
+    /**
+     * Returns the time, in milliseconds since the epoch, by which the request must complete, or 0 if there is no deadline.
+     */
+    public long getDeadline()
+    {
+        return _deadline;
+    }
+
+    /**
+     * Sets the time by which the request must complete. The deadline covers sending, hedging, retries and decoding the
+     * response. When it expires the request is cancelled and its promise fails.
+     *
+     * @param deadline
+     *            The time in milliseconds since the epoch, or 0 for no deadline.
+     */
+    public void setDeadline(long deadline)
+    {
+        _deadline = deadline;
+    }
+
+    /** Returns true if a deadline is set. */
+    public boolean hasDeadline()
+    {
+        return _deadline > 0;
+    }
+
+    /** Returns the milliseconds remaining before the deadline, 0 if it has expired, or -1 if there is no deadline. */
+    public long getRemainingMillis()
+    {
+        if (!hasDeadline()) {
+            return -1;
+        }
+        return Math.max(_deadline - System.currentTimeMillis(), 0);
+    }
+}
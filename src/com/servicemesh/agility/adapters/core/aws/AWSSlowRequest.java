@@ -0,0 +1,165 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.Serializable;
+
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestSummary;
+import com.servicemesh.agility.adapters.core.aws.metrics.RequestPhase;
+
+/**
+ * A point-in-time snapshot of a slow request, delivered to AWSSlowRequestListener instances.
+ */
+public class AWSSlowRequest implements Serializable
+{
+    private static final long serialVersionUID = 20161019;
+
+    private final String _service;
+    private final String _host;
+    private final String _method;
+    private final String _action;
+    private final String _path;
+    private final long _startTime;
+    private final long _elapsedMillis;
+    private final RequestPhase _phase;
+    private final long[] _micros;
+    private final int _attempts;
+    private final long _bytesOut;
+    private final boolean _cancelled;
+
+    /**
+     * Creates a slow request snapshot.
+     *
+     * @param service
+     *            The AWS service name, e.g. "ec2".
+     * @param host
+     *            The host name of the endpoint.
+     * @param method
+     *            The HTTP method name.
+     * @param action
+     *            The AWS action. Optional, may be null.
+     * @param path
+     *            The request URI relative to the endpoint address. Optional, may be null.
+     * @param startTime
+     *            The time the request was submitted, in milliseconds since the epoch.
+     * @param elapsedMillis
+     *            The time the request has been outstanding.
+     * @param phase
+     *            The phase the request is in.
+     * @param micros
+     *            The latency of each RequestPhase so far in microseconds, indexed by ordinal, or
+     *            AWSRequestSummary.NOT_MEASURED.
+     * @param attempts
+     *            The number of times the request was handed to the HTTP client.
+     * @param bytesOut
+     *            The number of request bytes sent.
+     * @param cancelled
+     *            True if the request was cancelled.
+     */
+    public AWSSlowRequest(String service, String host, String method, String action, String path, long startTime,
+            long elapsedMillis, RequestPhase phase, long[] micros, int attempts, long bytesOut, boolean cancelled)
+    {
+        _service = service;
+        _host = host;
+        _method = method;
+        _action = action;
+        _path = path;
+        _startTime = startTime;
+        _elapsedMillis = elapsedMillis;
+        _phase = phase;
+        _micros = micros;
+        _attempts = attempts;
+        _bytesOut = bytesOut;
+        _cancelled = cancelled;
+    }
+
+    public String getService()
+    {
+        return _service;
+    }
+
+    public String getHost()
+    {
+        return _host;
+    }
+
+    public String getMethod()
+    {
+        return _method;
+    }
+
+    public String getAction()
+    {
+        return _action;
+    }
+
+    public String getPath()
+    {
+        return _path;
+    }
+
+    public long getStartTime()
+    {
+        return _startTime;
+    }
+
+    public long getElapsedMillis()
+    {
+        return _elapsedMillis;
+    }
+
+    /** Returns the phase the request is in: QUEUEING, HTTP or DECODING. */
+    public RequestPhase getPhase()
+    {
+        return _phase;
+    }
+
+    /** Returns the latency of a phase so far in microseconds, or AWSRequestSummary.NOT_MEASURED. */
+    public long getMicros(RequestPhase phase)
+    {
+        return _micros[phase.ordinal()];
+    }
+
+    public int getAttempts()
+    {
+        return _attempts;
+    }
+
+    public long getBytesOut()
+    {
+        return _bytesOut;
+    }
+
+    /** Returns true if the request was cancelled by the watchdog. */
+    public boolean isCancelled()
+    {
+        return _cancelled;
+    }
+
+    /** Returns a one line summary suitable for logging. */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(_method).append(" ").append(_service).append("/").append((_action != null) ? _action : "-");
+        sb.append(" host=").append(_host);
+        if (_path != null) {
+            sb.append(" path=").append(_path);
+        }
+        sb.append(" elapsed=").append(_elapsedMillis).append("ms phase=").append(_phase);
+        for (RequestPhase phase : RequestPhase.values()) {
+            long micros = getMicros(phase);
+            if (micros != AWSRequestSummary.NOT_MEASURED) {
+                sb.append(" ").append(phase.name().toLowerCase()).append("=").append(micros).append("us");
+            }
+        }
+        sb.append(" attempts=").append(_attempts).append(" bytesOut=").append(_bytesOut);
+        if (_cancelled) {
+            sb.append(" cancelled");
+        }
+        return sb.toString();
+    }
+}
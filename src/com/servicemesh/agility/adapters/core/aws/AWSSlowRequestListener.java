@@ -0,0 +1,22 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+/**
+ * Receives notification when a request of an AWS connection has been outstanding for longer than the
+ * AWSConfig.SLOW_REQUEST_THRESHOLD, and again if it is cancelled after AWSConfig.SLOW_REQUEST_CANCEL. Notifications are
+ * delivered on the shared AWS scheduler thread and must not block.
+ */
+public interface AWSSlowRequestListener
+{
+    /**
+     * Invoked when a request is found to be slow or is cancelled.
+     *
+     * @param request
+     *            The state of the request when it was found.
+     */
+    public void slowRequest(AWSSlowRequest request);
+}
@@ -0,0 +1,186 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+/**
+ * A response whose status and headers are available before its body, which is read on demand from the connection.
+ * Since the body is only received as fast as it is read, memory use does not depend on its size. The response must be
+ * closed, which releases the HTTP connection.
+ */
+public class AWSStreamingResponse implements Closeable
+{
+    private static final Logger _logger = Logger.getLogger(AWSStreamingResponse.class);
+
+    /** The size of the buffer used by transferTo(). */
+    public static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final IHttpResponse _response;
+    private final long _contentLength;
+    private final InputStream _body;
+    private ReadableByteChannel _channel;
+
+    /**
+     * Creates a streaming response.
+     *
+     * @param response
+     *            The status and headers of the response. Its content is ignored.
+     * @param contentLength
+     *            The length of the body, or -1 if it is not known.
+     * @param body
+     *            The body of the response.
+     */
+    public AWSStreamingResponse(IHttpResponse response, long contentLength, InputStream body)
+    {
+        _response = response;
+        _contentLength = contentLength;
+        _body = body;
+    }
+
+    /**
+     * Creates a streaming response from a buffered response, e.g. one received via an HTTP client that does not stream.
+     *
+     * @param response
+     *            The buffered response.
+     */
+    public AWSStreamingResponse(IHttpResponse response)
+    {
+        this(response, getLength(response), new ByteArrayInputStream(getContent(response)));
+    }
+
+    public int getStatusCode()
+    {
+        return _response.getStatusCode();
+    }
+
+    public List<IHttpHeader> getHeaders()
+    {
+        return _response.getHeaders();
+    }
+
+    /** Returns the value of the first header with a name, ignoring case, or null if there is none. */
+    public String getHeader(String name)
+    {
+        for (IHttpHeader header : _response.getHeaders()) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /** Returns the length of the body, or -1 if it is not known. */
+    public long getContentLength()
+    {
+        return _contentLength;
+    }
+
+    /** Returns the body as a stream. Each read blocks until data is received. */
+    public InputStream getInputStream()
+    {
+        return _body;
+    }
+
+    /** Returns the body as a channel. Each read blocks until data is received. */
+    public synchronized ReadableByteChannel getChannel()
+    {
+        if (_channel == null) {
+            _channel = Channels.newChannel(_body);
+        }
+        return _channel;
+    }
+
+    /**
+     * Writes the rest of the body to a file via positional writes, which do not change the channel's position. The file
+     * is extended if needed.
+     *
+     * @param target
+     *            The file.
+     * @param position
+     *            The offset in the file at which the body is written.
+     * @return The number of bytes written.
+     */
+    public long transferTo(FileChannel target, long position) throws IOException
+    {
+        ReadableByteChannel source = getChannel();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        long written = 0;
+        while (source.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += target.write(buffer, position + written);
+            }
+            buffer.clear();
+        }
+        if ((_contentLength >= 0) && (written != _contentLength)) {
+            throw new AWSAdapterException(Resources.getString("responseTruncated", written, _contentLength));
+        }
+        return written;
+    }
+
+    /**
+     * Reads the rest of the body into a buffered response, e.g. to decode an error. Only suitable for small bodies.
+     */
+    public IHttpResponse readFully() throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = _body.read(buffer)) > 0) {
+            content.write(buffer, 0, count);
+        }
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(_response.getStatus());
+        for (IHttpHeader header : _response.getHeaders()) {
+            response.setHeader(header);
+        }
+        response.setContent(content.toByteArray());
+        return response;
+    }
+
+    /** Closes the body. A body that has not been read to its end is discarded along with its HTTP connection. */
+    @Override
+    public void close()
+    {
+        try {
+            _body.close();
+        }
+        catch (IOException e) {
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Unable to close response body: " + e);
+            }
+        }
+    }
+
+    private static byte[] getContent(IHttpResponse response)
+    {
+        byte[] content = response.getContentAsByteArray();
+        return (content != null) ? content : new byte[0];
+    }
+
+    private static long getLength(IHttpResponse response)
+    {
+        return getContent(response).length;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.net.URI;
+import java.util.Map;
+
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Sends signed requests in place of the HTTP client of a connection, e.g. to replay recorded responses. Set via
+ * AWSConnection.setTransport(). Hedging, the circuit breaker, metrics and interceptors apply as they do to the HTTP
+ * client.
+ */
+public interface AWSTransport
+{
+    /**
+     * Sends a signed request.
+     *
+     * @param method
+     *            HTTP method
+     * @param uri
+     *            The request URI, including the query string.
+     * @param headers
+     *            The signed request headers, including Authorization.
+     * @param content
+     *            The request content as a String, byte[], ByteBuffer or AWSFileRegion, or null if there is none. A
+     *            ByteBuffer's position must not be changed, since a hedged request sends it again.
+     * @return The HTTP response.
+     */
+    public Promise<IHttpResponse> send(HttpMethod method, URI uri, Map<String, String> headers, Object content);
+}
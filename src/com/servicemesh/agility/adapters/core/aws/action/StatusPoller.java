@@ -12,6 +12,7 @@ import org.apache.log4j.Logger;
 
 import com.servicemesh.agility.adapters.core.aws.AWSConnection;
 import com.servicemesh.agility.adapters.core.aws.util.AWSUtil;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
 import com.servicemesh.core.async.CompletablePromise;
 import com.servicemesh.core.async.Promise;
 import com.servicemesh.core.messaging.Request;
@@ -203,6 +204,7 @@ public abstract class StatusPoller<T extends Response> implements TimerHandler,
             status = Status.FAILURE;
             msg = "The timer call has exceeded the maximum number of retries.";
             getLogger().error(msg);
+            PromiseUtil.cancel(promise); // release a request still in flight
             response.setStatus(status);
             response.setMessage(msg);
             responsePromise.complete(response);
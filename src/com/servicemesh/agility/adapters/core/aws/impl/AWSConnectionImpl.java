@@ -5,16 +5,25 @@
 
 package com.servicemesh.agility.adapters.core.aws.impl;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -22,16 +31,35 @@ import javax.crypto.spec.SecretKeySpec;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.log4j.Logger;
 
+import com.servicemesh.agility.adapters.core.aws.AWSBatchDescriptor;
+import com.servicemesh.agility.adapters.core.aws.AWSCacheStatistics;
+import com.servicemesh.agility.adapters.core.aws.AWSCircuitListener;
+import com.servicemesh.agility.adapters.core.aws.AWSCircuitState;
 import com.servicemesh.agility.adapters.core.aws.AWSConfig;
 import com.servicemesh.agility.adapters.core.aws.AWSConnection;
 import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSHedgeStatistics;
+import com.servicemesh.agility.adapters.core.aws.AWSPageExtractor;
+import com.servicemesh.agility.adapters.core.aws.AWSPaginator;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestContext;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestInterceptor;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestOptions;
+import com.servicemesh.agility.adapters.core.aws.AWSSlowRequestListener;
+import com.servicemesh.agility.adapters.core.aws.AWSStreamingResponse;
+import com.servicemesh.agility.adapters.core.aws.AWSTransport;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSMetrics;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestHistory;
 import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
 import com.servicemesh.agility.adapters.core.aws.util.AWSUtil;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
 import com.servicemesh.agility.adapters.core.aws.util.Resources;
 import com.servicemesh.agility.api.Credential;
 import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
 import com.servicemesh.core.async.Function;
 import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
 import com.servicemesh.io.http.HttpClientFactory;
 import com.servicemesh.io.http.HttpMethod;
 import com.servicemesh.io.http.IHttpClient;
@@ -60,10 +88,24 @@ public class AWSConnectionImpl implements AWSConnection
     private static final String SIGNING_ALGORITHM = "AWS4-HMAC-SHA256";
     private static final String DIGEST_ALGORITHM = "SHA-256";
     private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded; charset=utf-8";
 
     private IHttpClient _httpClient;
     private AWSEndpoint _endpoint;
     private Credential _cred;
+    private RequestCoalescer _coalescer;
+    private ResponseCache _cache;
+    private ValidatorCache _validatorCache;
+    private int _paginatorBufferPages;
+    private int _queryPostThreshold;
+    private final ConcurrentMap<AWSBatchDescriptor<?, ?>, BatchCoalescer<?, ?>> _batchers =
+            new ConcurrentHashMap<AWSBatchDescriptor<?, ?>, BatchCoalescer<?, ?>>();
+    private RequestHedger _hedger;
+    private CircuitBreaker _breaker;
+    private InterceptorChain _interceptors;
+    private RequestWatchdog.Policy _watchdogPolicy;
+    private volatile AWSTransport _transport;
+    private StreamingTransport _streamingTransport;
 
     /**
      * Creates an AWS connection.
@@ -79,10 +121,32 @@ public class AWSConnectionImpl implements AWSConnection
      */
     public AWSConnectionImpl(List<Property> settings, Credential cred, Proxy proxy, AWSEndpoint endpoint) throws Exception
     {
-        init(cred, settings, proxy, endpoint);
+        init(cred, settings, proxy, endpoint, null);
     }
 
-    private void init(Credential cred, List<Property> settings, Proxy proxy, AWSEndpoint endpoint) throws Exception
+    /**
+     * Creates an AWS connection.
+     *
+     * @param settings
+     *            The configuration settings for the connection. Optional, may be empty or null.
+     * @param cred
+     *            Must be a credential that contains a public and private key.
+     * @param proxy
+     *            The proxy to be utilized. Optional, may be null.
+     * @param endpoint
+     *            Provides data specific to an AWS service.
+     * @param globalInterceptors
+     *            Interceptors shared by all connections, invoked before the connection's own interceptors. Changes to
+     *            this list apply to the connection. Optional, may be null.
+     */
+    public AWSConnectionImpl(List<Property> settings, Credential cred, Proxy proxy, AWSEndpoint endpoint,
+            List<AWSRequestInterceptor> globalInterceptors) throws Exception
+    {
+        init(cred, settings, proxy, endpoint, globalInterceptors);
+    }
+
+    private void init(Credential cred, List<Property> settings, Proxy proxy, AWSEndpoint endpoint,
+            List<AWSRequestInterceptor> globalInterceptors) throws Exception
     {
         if ((cred == null) || (!AWSUtil.isValued(cred.getPublicKey())) || (!AWSUtil.isValued(cred.getPrivateKey()))) {
             throw new AWSAdapterException(Resources.getString("missingCredential"));
@@ -102,6 +166,30 @@ public class AWSConnectionImpl implements AWSConnection
             cb.setProxy(proxy);
         }
         _httpClient = HttpClientFactory.getInstance().getClient(cb.build());
+        if (proxy == null) {
+            // Proxied requests are left to the HTTP client, with streamed content copied to an array
+            _streamingTransport =
+                    new StreamingTransport(AWSConfig.getConnectionTimeout(settings), AWSConfig.getSocketTimeout(settings));
+        }
+        _coalescer = new RequestCoalescer(AWSConfig.getCoalesceActions(settings));
+        _cache = new ResponseCache(AWSConfig.getCacheActions(settings), AWSConfig.getCacheMaxEntries(settings));
+        _validatorCache = new ValidatorCache(AWSConfig.getValidatorCacheMaxBytes(settings));
+        _paginatorBufferPages = AWSConfig.getPaginatorBufferPages(settings);
+        _queryPostThreshold = AWSConfig.getQueryPostThreshold(settings);
+        _hedger = new RequestHedger(AWSConfig.getHedgeActions(settings), AWSConfig.getHedgePercentile(settings),
+                AWSConfig.getHedgeMinDelay(settings), AWSConfig.getHedgeBudget(settings), AWSScheduler.getInstance());
+        _interceptors = new InterceptorChain(globalInterceptors);
+        int failureThreshold = AWSConfig.getCircuitFailureThreshold(settings);
+        if (failureThreshold > 0) {
+            _breaker = CircuitBreaker.getInstance(endpoint.getHostName() + "/" + endpoint.getServiceName(), failureThreshold,
+                    AWSConfig.getCircuitErrorRate(settings), AWSConfig.getCircuitWindow(settings),
+                    AWSConfig.getCircuitOpen(settings));
+        }
+        int slowThreshold = Math.max(AWSConfig.getSlowRequestThreshold(settings), 0);
+        int slowCancel = Math.max(AWSConfig.getSlowRequestCancel(settings), 0);
+        if ((slowThreshold > 0) || (slowCancel > 0)) {
+            _watchdogPolicy = new RequestWatchdog.Policy(endpoint, slowThreshold, slowCancel);
+        }
     }
 
     @Override
@@ -110,6 +198,86 @@ public class AWSConnectionImpl implements AWSConnection
         return _endpoint;
     }
 
+    @Override
+    public long getCoalescedRequestCount()
+    {
+        return _coalescer.getHitCount();
+    }
+
+    @Override
+    public AWSCacheStatistics getCacheStatistics()
+    {
+        return _cache.getStatistics();
+    }
+
+    @Override
+    public AWSCacheStatistics getValidatorCacheStatistics()
+    {
+        return _validatorCache.getStatistics();
+    }
+
+    @Override
+    public AWSHedgeStatistics getHedgeStatistics()
+    {
+        return _hedger.getStatistics();
+    }
+
+    @Override
+    public AWSCircuitState getCircuitState()
+    {
+        return (_breaker != null) ? _breaker.getState() : AWSCircuitState.CLOSED;
+    }
+
+    @Override
+    public void addCircuitListener(AWSCircuitListener listener)
+    {
+        if (_breaker != null) {
+            _breaker.addListener(listener);
+        }
+    }
+
+    @Override
+    public void removeCircuitListener(AWSCircuitListener listener)
+    {
+        if (_breaker != null) {
+            _breaker.removeListener(listener);
+        }
+    }
+
+    @Override
+    public void addSlowRequestListener(AWSSlowRequestListener listener)
+    {
+        if (_watchdogPolicy != null) {
+            _watchdogPolicy.addListener(listener);
+        }
+    }
+
+    @Override
+    public void removeSlowRequestListener(AWSSlowRequestListener listener)
+    {
+        if (_watchdogPolicy != null) {
+            _watchdogPolicy.removeListener(listener);
+        }
+    }
+
+    @Override
+    public void addInterceptor(AWSRequestInterceptor interceptor)
+    {
+        _interceptors.add(interceptor);
+    }
+
+    @Override
+    public void removeInterceptor(AWSRequestInterceptor interceptor)
+    {
+        _interceptors.remove(interceptor);
+    }
+
+    @Override
+    public void setTransport(AWSTransport transport)
+    {
+        _transport = transport;
+    }
+
     //-------------------------------------------------------------------------
     // QueryParams
     //-------------------------------------------------------------------------
@@ -157,6 +325,8 @@ public class AWSConnectionImpl implements AWSConnection
                 contentHash = getHash((String)content);
             else if (content instanceof byte[])
                 contentHash = getHashFromBytes((byte[])content);
+            else
+                contentHash = getHashFromStream(content);
 
             signedHeadersMap.put("x-amz-content-sha256", contentHash);
         }
@@ -256,7 +426,7 @@ public class AWSConnectionImpl implements AWSConnection
     {
         if (value == null)
             value = "";
-        return getHashFromBytes(value.getBytes());
+        return getHashFromBytes(value.getBytes(AWSEndpoint.CHAR_SET));
     }
 
     private String getHashFromBytes(byte[] data) throws Exception
@@ -271,6 +441,20 @@ public class AWSConnectionImpl implements AWSConnection
         }
     }
 
+    // Hashes ByteBuffer or AWSFileRegion content in place
+    private String getHashFromStream(Object content) throws Exception
+    {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (Exception e) {
+            throw new AWSAdapterException(Resources.getString("failedGetHashFromBytes", e));
+        }
+        RequestBody.digest(md, content);
+        return Hex.encodeHexString(md.digest());
+    }
+
     private byte[] getHmacSHA(String data, byte[] key) throws Exception
     {
         try {
@@ -305,99 +489,791 @@ public class AWSConnectionImpl implements AWSConnection
     @Override
     public <T> Promise<T> execute(QueryParams params, final Class<T> responseClass)
     {
-        return doExecute(HttpMethod.GET, null, null, params, null, responseClass);
+        return doExecute(HttpMethod.GET, null, null, params, null, null, responseClass);
     }
 
     @Override
     public <T> Promise<T> execute(HttpMethod method, QueryParams params, final Class<T> responseClass)
     {
-        return doExecute(method, null, null, params, null, responseClass);
+        return doExecute(method, null, null, params, null, null, responseClass);
     }
 
     @Override
     public Promise<IHttpResponse> execute(HttpMethod method, QueryParams params)
     {
-        return doExecute(method, null, null, params, null, IHttpResponse.class);
+        return doExecute(method, null, null, params, null, null, IHttpResponse.class);
     }
 
     @Override
     public <T> Promise<T> execute(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
             Object resource, final Class<T> responseClass)
     {
-        return doExecute(method, requestURI, headers, params, resource, responseClass);
+        return doExecute(method, requestURI, headers, params, resource, null, responseClass);
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> Promise<T> doExecute(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
-            Object resource, final Class<T> responseClass)
+    @Override
+    public <T> Promise<T> execute(QueryParams params, AWSRequestOptions options, final Class<T> responseClass)
+    {
+        return doExecute(HttpMethod.GET, null, null, params, null, options, responseClass);
+    }
+
+    @Override
+    public <T> Promise<T> execute(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
+            Object resource, AWSRequestOptions options, final Class<T> responseClass)
+    {
+        return doExecute(method, requestURI, headers, params, resource, options, responseClass);
+    }
+
+    @Override
+    public <T, I> AWSPaginator<I> paginate(QueryParams params, String tokenParam, Class<T> responseClass,
+            AWSPageExtractor<T, I> extractor)
+    {
+        return new Paginator<T, I>(this, params, tokenParam, responseClass, extractor, _paginatorBufferPages);
+    }
+
+    @Override
+    public <T, I> Promise<I> lookup(AWSBatchDescriptor<T, I> descriptor, String id)
     {
-        URI uri = null;
+        @SuppressWarnings("unchecked")
+        BatchCoalescer<T, I> batcher = (BatchCoalescer<T, I>) _batchers.get(descriptor);
+        if (batcher == null) {
+            batcher = new BatchCoalescer<T, I>(this, descriptor, AWSScheduler.getInstance());
+            @SuppressWarnings("unchecked")
+            BatchCoalescer<T, I> existing = (BatchCoalescer<T, I>) _batchers.putIfAbsent(descriptor, batcher);
+            if (existing != null) {
+                batcher = existing;
+            }
+        }
+        return batcher.submit(id);
+    }
+
+    @Override
+    public Promise<AWSStreamingResponse> executeStream(HttpMethod method, String requestURI, Map<String, String> headers,
+            QueryParams params, Object resource)
+    {
+        AWSRequestContext context = null;
+        if (!_interceptors.isEmpty()) {
+            context = createContext(method, requestURI, headers, params, resource);
+            try {
+                _interceptors.beforeSign(context);
+            }
+            catch (Exception e) {
+                _interceptors.onError(context, e);
+                return Promise.pure(e);
+            }
+            headers = context.getHeaders();
+        }
+        Promise<AWSStreamingResponse> result;
+        PreparedRequest prepared = null;
         try {
-            if (_logger.isTraceEnabled()) {
-                StringBuilder trc = new StringBuilder();
-                trc.append(method.getName()).append(" ").append(_endpoint.getHostName()).append(" ");
-
-                if (requestURI != null)
-                    trc.append(requestURI).append(" ");
-
-                trc.append(_endpoint.getVersion());
-                _logger.trace(trc.toString());
-            }
-            boolean isContentEncoded = false;
-            Object content = resource;
-            if (content != null) {
-                if ((! (content instanceof java.lang.String)) &&
-                    (! (content instanceof byte[]))) {
-                    content = _endpoint.encode(resource);
-                    isContentEncoded = true;
+            prepared = prepare(method, requestURI, headers, params, resource, null, context);
+            result = open(prepared);
+        }
+        catch (Exception e) {
+            result = sendFailure(method, (prepared != null) ? prepared.getURI() : null, e);
+        }
+        if (context != null) {
+            final AWSRequestContext ctx = context;
+            result.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _interceptors.onError(ctx, t);
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    public Promise<Long> executeToChannel(HttpMethod method, String requestURI, Map<String, String> headers,
+            QueryParams params, final FileChannel target, final long position)
+    {
+        return executeStream(method, requestURI, headers, params, null).map(new Function<AWSStreamingResponse, Long>() {
+            @Override
+            public Long invoke(AWSStreamingResponse response)
+            {
+                try {
+                    int status = response.getStatusCode();
+                    if ((status < 200) || (status >= 300)) {
+                        // The endpoint reports the status and AWS error of a response it can't decode
+                        _endpoint.decode(response.readFully(), Void.class);
+                    }
+                    return response.transferTo(target, position);
+                }
+                catch (IOException e) {
+                    throw new AWSAdapterException(Resources.getString("transferFailed", e.toString()), e);
+                }
+                finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    private AWSRequestContext createContext(HttpMethod method, String requestURI, Map<String, String> headers,
+            QueryParams params, Object resource)
+    {
+        String action = (params != null) ? QueryStringUtil.getValue(params.asQueryString(), "Action") : null;
+        return new AWSRequestContext(_endpoint, method, action, requestURI, headers, params, resource);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Promise<T> doExecute(final HttpMethod method, final String requestURI, Map<String, String> headers,
+            final QueryParams params, Object resource, AWSRequestOptions options, final Class<T> responseClass)
+    {
+        Promise<IHttpResponse> promise;
+        AWSRequestContext context = null;
+        if (!_interceptors.isEmpty()) {
+            context = createContext(method, requestURI, headers, params, resource);
+            try {
+                _interceptors.beforeSign(context);
+            }
+            catch (Exception e) {
+                _interceptors.onError(context, e);
+                return Promise.pure(e);
+            }
+            headers = context.getHeaders();
+        }
+        // The query string is taken before signing so that it only reflects the caller's query parameters
+        final String queryString = (params != null) ? params.asQueryString() : null;
+        String action = QueryStringUtil.getValue(queryString, "Action");
+        long deadline = (options != null) ? options.getDeadline() : 0;
+        if ((deadline > 0) && (System.currentTimeMillis() >= deadline)) {
+            AWSAdapterException expired =
+                    new AWSAdapterException(Resources.getString("deadlineExpired", method.getName(), action));
+            if (context != null) {
+                _interceptors.onError(context, expired);
+            }
+            return Promise.pure(expired);
+        }
+        String readKey = getReadKey(method, requestURI, headers, queryString, resource);
+        // The watchdog reports the phases of a slow request, so it needs a timer even when metrics are disabled
+        final RequestTimer timer = (AWSMetrics.getInstance().isEnabled() || AWSRequestHistory.getInstance().isEnabled()
+                || (_watchdogPolicy != null)) ? new RequestTimer() : null;
+
+        if (_cache.isMutating(action)) {
+            // Query API actions are typically sent via GET, so mutations are identified by action name
+            promise = invalidateCache(queryString, send(method, requestURI, headers, params, resource, timer, context));
+        }
+        else if ((readKey != null) && _cache.isCached(action)) {
+            IHttpResponse cached = _cache.get(readKey);
+            if (cached != null) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug(method.getName() + " " + readKey + " (cached)");
+                }
+                promise = Promise.pure(cached);
+            }
+            else {
+                promise = cacheResponse(readKey, action, queryString, sendRead(readKey, action, method, requestURI, params, deadline, timer, context));
+            }
+        }
+        else if ((readKey != null) && (action == null) && _validatorCache.isEnabled()) {
+            // REST resources such as S3 objects and CloudFront distributions carry validators, Query API responses do not
+            promise = sendConditional(readKey, method, requestURI, params, timer, context);
+        }
+        else if (readKey != null) {
+            promise = sendRead(readKey, action, method, requestURI, params, deadline, timer, context);
+        }
+        else {
+            promise = send(method, requestURI, headers, params, resource, timer, context);
+        }
+
+        Promise<T> result;
+        boolean isRaw = responseClass.getCanonicalName().equals(IHttpResponse.class.getCanonicalName());
+        if (isRaw && (timer == null) && (context == null)) {
+            result = (Promise<T>) promise;
+        }
+        else {
+            // Each caller decodes its own copy, including callers sharing a coalesced or cached response
+            result = promise.map(new Decoder<T>(responseClass, isRaw, timer, context));
+        }
+        if (options != null) {
+            // The result may be mapped from the request, so cancelling it is passed on to the request explicitly
+            result = applyDeadline(result, promise, deadline, method, action);
+        }
+        if (timer != null) {
+            recordMetrics(result, timer, (action != null) ? action : method.getName());
+        }
+        if (_watchdogPolicy != null) {
+            RequestWatchdog.getInstance().track(result, promise, timer, _watchdogPolicy, method, action, requestURI);
+        }
+        if (context != null) {
+            final AWSRequestContext ctx = context;
+            result.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _interceptors.onError(ctx, t);
+                }
+            });
+        }
+        return result;
+    }
+
+    // Decodes a response on behalf of a single caller
+    private class Decoder<T> implements Function<IHttpResponse, T>
+    {
+        private final Class<T> _responseClass;
+        private final boolean _isRaw;
+        private final RequestTimer _timer;
+        private final AWSRequestContext _context;
+
+        private Decoder(Class<T> responseClass, boolean isRaw, RequestTimer timer, AWSRequestContext context)
+        {
+            _responseClass = responseClass;
+            _isRaw = isRaw;
+            _timer = timer;
+            _context = context;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T invoke(IHttpResponse response)
+        {
+            if (_context != null) {
+                _interceptors.onResponseBytes(_context, response);
+            }
+            T result;
+            if (_isRaw) {
+                result = (T) response;
+            }
+            else if (_timer == null) {
+                result = _endpoint.decode(response, _responseClass);
+            }
+            else {
+                long start = RequestTimer.now();
+                _timer.setStatus(response);
+                try {
+                    result = _endpoint.decode(response, _responseClass);
+                }
+                finally {
+                    _timer.decoded(start);
+                }
+            }
+            if (_context != null) {
+                _interceptors.afterDecode(_context, result);
+            }
+            return result;
+        }
+    }
+
+    private <T> void recordMetrics(Promise<T> result, final RequestTimer timer, final String action)
+    {
+        result.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T arg)
+            {
+                if (arg instanceof IHttpResponse) {
+                    timer.setStatus((IHttpResponse) arg);
                 }
+                finish(timer, action);
+            }
+        });
+        result.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                finish(timer, action);
             }
+        });
+    }
 
-            Map<String, String> allHeaders =
-                completeQueryParams(headers, params, method, requestURI,
-                                    content);
-            uri = getURI(requestURI, params);
-            IHttpRequest request = HttpClientFactory.getInstance().createRequest(method, uri);
+    private void finish(RequestTimer timer, String action)
+    {
+        AWSMetrics metrics = AWSMetrics.getInstance();
+        AWSRequestHistory history = AWSRequestHistory.getInstance();
+        timer.finish(metrics.isEnabled() ? metrics : null, history.isEnabled() ? history : null,
+                _endpoint.getServiceName(), _endpoint.getHostName(), action);
+    }
 
-            if (content != null) {
-                if (content instanceof java.lang.String) {
-                    request.setContent((String) content);
+    // Cancels the HTTP request when the result is cancelled, and fails the result and cancels the HTTP request when the
+    // deadline, if any, expires.
+    private <T> Promise<T> applyDeadline(Promise<T> result, final Promise<IHttpResponse> request, long deadline,
+            final HttpMethod method, final String action)
+    {
+        if (result.isCompleted() || result.isFailed()) {
+            return result;
+        }
+        final CompletablePromise<T> bounded = PromiseFactory.create();
+        final AtomicBoolean done = new AtomicBoolean();
+        final Future<?> timer = (deadline <= 0) ? null : AWSScheduler.getInstance().schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                if (done.compareAndSet(false, true)) {
+                    String err = Resources.getString("deadlineExpired", method.getName(), action);
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug(err);
+                    }
+                    PromiseUtil.cancel(request);
+                    bounded.failure(new AWSAdapterException(err));
                 }
-                else if (content instanceof byte[]) {
-                    request.setContent((byte[]) content);
+            }
+        }, Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+
+        result.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T arg)
+            {
+                if (done.compareAndSet(false, true)) {
+                    cancelTimer(timer);
+                    bounded.complete(arg);
+                }
+            }
+        });
+        result.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                if (done.compareAndSet(false, true)) {
+                    cancelTimer(timer);
+                    bounded.failure(t);
+                }
+            }
+        });
+        result.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                if (done.compareAndSet(false, true)) {
+                    cancelTimer(timer);
+                    bounded.failure(new AWSAdapterException(Resources.getString("promiseCancelled")));
                 }
-                if (isContentEncoded) {
-                    addContentTypeHeader(request);
+            }
+        });
+        bounded.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                if (done.compareAndSet(false, true)) {
+                    cancelTimer(timer);
+                    PromiseUtil.cancel(request);
+                }
+            }
+        });
+        return bounded;
+    }
+
+    private static void cancelTimer(Future<?> timer)
+    {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    // Sends a read-only request, sharing an identical in-flight request if the action is coalesced and hedging a slow
+    // request if the action is hedged
+    private Promise<IHttpResponse> sendRead(String readKey, String action, HttpMethod method, String requestURI,
+            QueryParams params, long deadline, RequestTimer timer, AWSRequestContext context)
+    {
+        ReadSender sender = new ReadSender(action, method, requestURI, params, deadline, timer, context);
+        if (!_coalescer.isCoalesced(action)) {
+            return sender.call();
+        }
+        return _coalescer.submit(readKey, sender);
+    }
+
+    private class ReadSender implements Callable<Promise<IHttpResponse>>
+    {
+        private final String _action;
+        private final HttpMethod _method;
+        private final String _requestURI;
+        private final QueryParams _params;
+        private final long _deadline;
+        private final RequestTimer _timer;
+        private final AWSRequestContext _context;
+
+        private ReadSender(String action, HttpMethod method, String requestURI, QueryParams params, long deadline,
+                RequestTimer timer, AWSRequestContext context)
+        {
+            _action = action;
+            _method = method;
+            _requestURI = requestURI;
+            _params = params;
+            _deadline = deadline;
+            _timer = timer;
+            _context = context;
+        }
+
+        @Override
+        public Promise<IHttpResponse> call()
+        {
+            if (!_hedger.isHedged(_action)) {
+                return send(_method, _requestURI, null, _params, null, _timer, _context);
+            }
+
+            // A hedged request is signed once and the same signed request is dispatched again
+            final PreparedRequest prepared;
+            try {
+                prepared = prepare(_method, _requestURI, null, _params, null, _timer, _context);
+            }
+            catch (Exception e) {
+                return sendFailure(_method, null, e);
+            }
+            return _hedger.submit(_action, _deadline, new Callable<Promise<IHttpResponse>>() {
+                @Override
+                public Promise<IHttpResponse> call()
+                {
+                    try {
+                        return dispatch(prepared);
+                    }
+                    catch (Exception e) {
+                        return sendFailure(_method, prepared.getURI(), e);
+                    }
                 }
+            });
+        }
+    }
+
+    private Promise<IHttpResponse> cacheResponse(final String readKey, final String action, final String queryString,
+            Promise<IHttpResponse> promise)
+    {
+        final long generation = _cache.getGeneration();
+        promise.onComplete(new Callback<IHttpResponse>() {
+            @Override
+            public void invoke(IHttpResponse response)
+            {
+                _cache.put(readKey, action, QueryStringUtil.getParameters(queryString), response, generation);
             }
+        });
+        return promise;
+    }
 
-            for (Map.Entry<String, String> entry : allHeaders.entrySet()) {
-                addHeader(request, entry.getKey(), entry.getValue());
+    // Sends a read-only request with the validators of a previous response, reusing that response if it is unchanged
+    private Promise<IHttpResponse> sendConditional(final String readKey, HttpMethod method, String requestURI,
+            QueryParams params, RequestTimer timer, AWSRequestContext context)
+    {
+        final ValidatorCache.Entry entry = _validatorCache.get(readKey);
+        Map<String, String> headers = (entry != null) ? entry.getConditionalHeaders() : null;
+        return send(method, requestURI, headers, params, null, timer, context).map(
+                new Function<IHttpResponse, IHttpResponse>() {
+                    @Override
+                    public IHttpResponse invoke(IHttpResponse response)
+                    {
+                        IHttpResponse current = _validatorCache.update(readKey, entry, response);
+                        if ((current != response) && _logger.isDebugEnabled()) {
+                            _logger.debug("GET " + readKey + " (not modified)");
+                        }
+                        return current;
+                    }
+                });
+    }
+
+    // Invalidates affected cache entries both when a mutating request is sent and when it completes, so that a read
+    // completing in between is not retained.
+    private Promise<IHttpResponse> invalidateCache(String queryString, Promise<IHttpResponse> promise)
+    {
+        final Map<String, String> parameters = QueryStringUtil.getParameters(queryString);
+        _cache.invalidate(parameters);
+        promise.onComplete(new Callback<IHttpResponse>() {
+            @Override
+            public void invoke(IHttpResponse response)
+            {
+                _cache.invalidate(parameters);
             }
+        });
+        return promise;
+    }
+
+    private Promise<IHttpResponse> send(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
+            Object resource, RequestTimer timer, AWSRequestContext context)
+    {
+        PreparedRequest prepared = null;
+        try {
+            prepared = prepare(method, requestURI, headers, params, resource, timer, context);
+            return dispatch(prepared);
+        }
+        catch (Exception e) {
+            return sendFailure(method, (prepared != null) ? prepared.getURI() : null, e);
+        }
+    }
 
+    private <T> Promise<T> sendFailure(HttpMethod method, URI uri, Exception e)
+    {
+        String err = Resources.getString("executeException", method.getName(), uri, e.toString());
+        _logger.error(err, e);
+        return Promise.pure(new Exception(err));
+    }
+
+    // Encodes and signs a request
+    private PreparedRequest prepare(HttpMethod method, String requestURI, Map<String, String> headers, QueryParams params,
+            Object resource, RequestTimer timer, AWSRequestContext context) throws Exception
+    {
+        String form = getFormContent(method, params, resource);
+        if (form != null) {
+            // The parameters exceed the threshold, so they are sent as a POST body, which the content hash signs
+            method = HttpMethod.POST;
+            params = new QueryParams();
+            resource = form;
+            Map<String, String> formHeaders = new HashMap<String, String>();
+            if (headers != null) {
+                formHeaders.putAll(headers);
+            }
+            formHeaders.put("Content-Type", FORM_CONTENT_TYPE);
+            headers = formHeaders;
+        }
+        if (_logger.isTraceEnabled()) {
+            StringBuilder trc = new StringBuilder();
+            trc.append(method.getName()).append(" ").append(_endpoint.getHostName()).append(" ");
+
+            if (requestURI != null)
+                trc.append(requestURI).append(" ");
+
+            trc.append(_endpoint.getVersion());
+            _logger.trace(trc.toString());
+        }
+        boolean isContentEncoded = false;
+        Object content = resource;
+        if (content != null) {
+            if (!RequestBody.isRaw(content)) {
+                long start = RequestTimer.now();
+                content = _endpoint.encode(resource);
+                isContentEncoded = true;
+                if (timer != null) {
+                    timer.encoded(start);
+                }
+            }
+        }
+
+        long start = RequestTimer.now();
+        Map<String, String> allHeaders =
+            completeQueryParams(headers, params, method, requestURI,
+                                content);
+        if (timer != null) {
+            timer.signed(start);
+        }
+        URI uri = getURI(requestURI, params);
+        if (context != null) {
+            context.setSigned(method, uri, allHeaders);
+            _interceptors.afterSign(context);
+        }
+        return new PreparedRequest(method, uri, allHeaders, content, isContentEncoded, timer, context);
+    }
+
+    // Sends a prepared request. A prepared request may be sent more than once.
+    private Promise<IHttpResponse> dispatch(PreparedRequest prepared) throws Exception
+    {
+        final RequestTimer timer = prepared.getTimer();
+        AWSRequestContext context = prepared.getContext();
+        if ((_breaker == null) && (timer == null) && (context == null)) {
+            return transmit(prepared);
+        }
+        CircuitBreaker.Permit permit = null;
+        if (_breaker != null) {
+            permit = _breaker.allowRequest();
+            if (permit == null) {
+                // Fail fast without logging an error for every request while AWS is unavailable
+                String err = Resources.getString("circuitOpen", _breaker.getName());
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug(err + ": " + prepared.getMethod().getName() + " " + prepared.getURI());
+                }
+                return Promise.pure(new AWSAdapterException(err));
+            }
+        }
+
+        Promise<IHttpResponse> promise;
+        try {
+            if (context != null) {
+                _interceptors.beforeSend(context);
+            }
+            if (timer != null) {
+                timer.dispatched(prepared.getSize());
+            }
+            promise = transmit(prepared);
+        }
+        catch (Exception e) {
+            if (_breaker != null) {
+                _breaker.onCancel(permit);
+            }
+            throw e;
+        }
+        if (timer != null) {
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    timer.responded(response);
+                }
+            });
+        }
+        if (_breaker != null) {
+            monitorCircuit(promise, permit);
+        }
+        return promise;
+    }
+
+    private Promise<IHttpResponse> transmit(PreparedRequest prepared) throws Exception
+    {
+        AWSTransport transport = _transport;
+        if ((transport == null) && RequestBody.isStreamed(prepared.getContent())) {
+            transport = _streamingTransport;
+        }
+        if (transport != null) {
             if (_logger.isDebugEnabled()) {
-                _logger.debug(method.getName() + " " + uri);
+                _logger.debug(prepared.getMethod().getName() + " " + prepared.getURI());
             }
-            Promise<IHttpResponse> promise = _httpClient.promise(request);
+            return transport.send(prepared.getMethod(), prepared.getURI(), prepared.getHeaders(), prepared.getContent());
+        }
+        return _httpClient.promise(createRequest(prepared));
+    }
 
-            if (responseClass.getCanonicalName().equals(IHttpResponse.class.getCanonicalName())) {
-                return (Promise<T>) promise;
+    // Sends a prepared request whose response body is read by the caller
+    private Promise<AWSStreamingResponse> open(PreparedRequest prepared) throws Exception
+    {
+        CircuitBreaker.Permit permit = null;
+        if (_breaker != null) {
+            permit = _breaker.allowRequest();
+            if (permit == null) {
+                return Promise.pure(new AWSAdapterException(Resources.getString("circuitOpen", _breaker.getName())));
+            }
+        }
+        Promise<AWSStreamingResponse> promise;
+        try {
+            if (prepared.getContext() != null) {
+                _interceptors.beforeSend(prepared.getContext());
+            }
+            AWSTransport transport = _transport;
+            if ((transport == null) && (_streamingTransport != null)) {
+                if (_logger.isDebugEnabled()) {
+                    _logger.debug(prepared.getMethod().getName() + " " + prepared.getURI() + " (streamed)");
+                }
+                promise = _streamingTransport.open(prepared.getMethod(), prepared.getURI(),
+                        getStreamingHeaders(prepared), prepared.getContent());
             }
             else {
-                return promise.map(new Function<IHttpResponse, T>() {
+                // A custom transport or proxied HTTP client buffers the response
+                promise = transmit(prepared).map(new Function<IHttpResponse, AWSStreamingResponse>() {
                     @Override
-                    public T invoke(IHttpResponse response)
+                    public AWSStreamingResponse invoke(IHttpResponse response)
                     {
-                        return _endpoint.decode(response, responseClass);
+                        return new AWSStreamingResponse(response);
                     }
                 });
             }
         }
         catch (Exception e) {
-            String err = Resources.getString("executeException", method.getName(), uri, e.toString());
-            _logger.error(err, e);
-            return Promise.pure(new Exception(err));
+            if (_breaker != null) {
+                _breaker.onCancel(permit);
+            }
+            throw e;
+        }
+        if (_breaker != null) {
+            monitorCircuit(promise, permit);
+        }
+        return promise;
+    }
+
+    // Reports the outcome of a request to the circuit breaker
+    private <T> void monitorCircuit(Promise<T> promise, final CircuitBreaker.Permit permit)
+    {
+        promise.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T response)
+            {
+                int status = (response instanceof AWSStreamingResponse) ? ((AWSStreamingResponse) response).getStatusCode()
+                        : ((IHttpResponse) response).getStatusCode();
+                if (status >= 500) {
+                    _breaker.onFailure(permit, false);
+                }
+                else {
+                    _breaker.onSuccess(permit);
+                }
+            }
+        });
+        promise.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                _breaker.onFailure(permit, true);
+            }
+        });
+        promise.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                _breaker.onCancel(permit);
+            }
+        });
+    }
+
+    // Adds the endpoint's content type for encoded content, as createRequest() does, unless the caller supplied one
+    private Map<String, String> getStreamingHeaders(PreparedRequest prepared)
+    {
+        Map<String, String> headers = prepared.getHeaders();
+        if (!prepared.isContentEncoded() || (_endpoint.getContentType() == null)) {
+            return headers;
+        }
+        for (String name : headers.keySet()) {
+            if (name.equalsIgnoreCase("Content-Type")) {
+                return headers;
+            }
+        }
+        Map<String, String> streamingHeaders = new HashMap<String, String>(headers);
+        streamingHeaders.put("Content-Type", _endpoint.getContentType());
+        return streamingHeaders;
+    }
+
+    private IHttpRequest createRequest(PreparedRequest prepared) throws Exception
+    {
+        IHttpRequest request = HttpClientFactory.getInstance().createRequest(prepared.getMethod(), prepared.getURI());
+        Object content = prepared.getContent();
+
+        if (content != null) {
+            if (content instanceof java.lang.String) {
+                request.setContent((String) content);
+            }
+            else if (content instanceof byte[]) {
+                request.setContent((byte[]) content);
+            }
+            else if (RequestBody.isStreamed(content)) {
+                request.setContent(RequestBody.toByteArray(content));
+            }
+            if (prepared.isContentEncoded()) {
+                addContentTypeHeader(request);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : prepared.getHeaders().entrySet()) {
+            addHeader(request, entry.getKey(), entry.getValue());
+        }
+
+        if (_logger.isDebugEnabled()) {
+            _logger.debug(prepared.getMethod().getName() + " " + prepared.getURI());
+        }
+        return request;
+    }
+
+    // Returns the form-encoded parameters of a Query API request whose query string exceeds the POST threshold, or null
+    private String getFormContent(HttpMethod method, QueryParams params, Object resource)
+    {
+        if ((_queryPostThreshold == 0) || (params == null) || (resource != null)
+                || ((method != HttpMethod.GET) && (method != HttpMethod.POST))) {
+            return null;
+        }
+        String queryString = params.asQueryString();
+        // REST APIs such as S3 use query parameters for sub-resources, which must stay in the URL
+        if ((queryString.length() <= (_queryPostThreshold + 1))
+                || (QueryStringUtil.getValue(queryString, "Action") == null)) {
+            return null;
+        }
+        return queryString.substring(1);
+    }
+
+    // Returns the key identifying a read-only request, or null if the request may modify a resource or carries
+    // caller-specific headers or content.
+    private String getReadKey(HttpMethod method, String requestURI, Map<String, String> headers, String queryString,
+            Object resource)
+    {
+        if ((method != HttpMethod.GET) || (queryString == null) || (resource != null)
+                || ((headers != null) && (!headers.isEmpty()))) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(_endpoint.getAddress());
+        if (requestURI != null) {
+            key.append(requestURI);
         }
+        return key.append(queryString).toString();
     }
 
     //-------------------------------------------------------------------------
@@ -0,0 +1,50 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the timer shared by all AWS connections for delayed work such as hedged requests. Scheduled tasks must be
+ * short and non-blocking.
+ */
+public class AWSScheduler
+{
+    private static class Holder
+    {
+        private static final ScheduledExecutorService INSTANCE = create();
+    }
+
+    private AWSScheduler()
+    {
+    }
+
+    /** Returns the shared scheduler. Its single thread is a daemon thread so that it never prevents shutdown. */
+    public static ScheduledExecutorService getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    private static ScheduledExecutorService create()
+    {
+        final AtomicInteger count = new AtomicInteger();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "AWSScheduler-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // Most hedge timers are cancelled because the original request completes first
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSBatchDescriptor;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.util.AWSError;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Merges single-id lookups of a describe action into multi-id requests, as described by an AWSBatchDescriptor. A batch
+ * is sent when its first lookup has waited for the descriptor's window or it reaches the maximum batch size, and the
+ * response is split back to the lookups by id.
+ * <p>
+ * AWS fails a whole describe request if one of its ids does not exist or is malformed, e.g. with InvalidGroup.NotFound,
+ * so a batch that fails with such an error is sent again one id at a time. Only the lookups of the offending ids then
+ * fail. Other failures, e.g. throttling, fail all lookups of the batch.
+ */
+public class BatchCoalescer<T, I>
+{
+    private static final Logger _logger = Logger.getLogger(BatchCoalescer.class);
+
+    private final AWSConnection _connection;
+    private final AWSBatchDescriptor<T, I> _descriptor;
+    private final ScheduledExecutorService _scheduler;
+    private final AtomicLong _lookups = new AtomicLong();
+    private final AtomicLong _requests = new AtomicLong();
+    private Map<String, List<CompletablePromise<I>>> _pending = new LinkedHashMap<String, List<CompletablePromise<I>>>();
+    private Future<?> _timer;
+
+    /**
+     * Creates a batch coalescer.
+     *
+     * @param connection
+     *            The connection that sends the requests.
+     * @param descriptor
+     *            Describes the action.
+     * @param scheduler
+     *            Runs the timer that sends a batch when its window has passed.
+     */
+    public BatchCoalescer(AWSConnection connection, AWSBatchDescriptor<T, I> descriptor,
+            ScheduledExecutorService scheduler)
+    {
+        _connection = connection;
+        _descriptor = descriptor;
+        _scheduler = scheduler;
+    }
+
+    /**
+     * Looks up an item by id.
+     *
+     * @param id
+     *            The id.
+     * @return A Promise for the item, or for null if the response of its batch does not contain the id.
+     */
+    public Promise<I> submit(String id)
+    {
+        _lookups.incrementAndGet();
+        CompletablePromise<I> promise = PromiseFactory.create();
+        Map<String, List<CompletablePromise<I>>> batch = null;
+        synchronized (this) {
+            List<CompletablePromise<I>> waiters = _pending.get(id);
+            if (waiters == null) {
+                waiters = new ArrayList<CompletablePromise<I>>(1);
+                _pending.put(id, waiters);
+            }
+            waiters.add(promise);
+            if ((_pending.size() >= _descriptor.getMaxBatchSize()) || (_descriptor.getWindowMillis() == 0)) {
+                batch = take();
+            }
+            else if (_timer == null) {
+                _timer = _scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        flush();
+                    }
+                }, _descriptor.getWindowMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return promise;
+    }
+
+    /** Returns the number of lookups submitted. */
+    public long getLookupCount()
+    {
+        return _lookups.get();
+    }
+
+    /** Returns the number of requests sent for the lookups. */
+    public long getRequestCount()
+    {
+        return _requests.get();
+    }
+
+    // Sends the pending lookups once the window has passed
+    private void flush()
+    {
+        Map<String, List<CompletablePromise<I>>> batch;
+        synchronized (this) {
+            _timer = null;
+            if (_pending.isEmpty()) {
+                return;
+            }
+            batch = take();
+        }
+        send(batch);
+    }
+
+    // Called with the lock held
+    private Map<String, List<CompletablePromise<I>>> take()
+    {
+        Map<String, List<CompletablePromise<I>>> batch = _pending;
+        _pending = new LinkedHashMap<String, List<CompletablePromise<I>>>();
+        if (_timer != null) {
+            _timer.cancel(false);
+            _timer = null;
+        }
+        return batch;
+    }
+
+    private void send(final Map<String, List<CompletablePromise<I>>> batch)
+    {
+        _requests.incrementAndGet();
+        QueryParams params = _connection.initQueryParams(_descriptor.getAction());
+        for (Map.Entry<String, String> param : _descriptor.getParameters().entrySet()) {
+            params.add(new QueryParam(param.getKey(), param.getValue()));
+        }
+        int n = 0;
+        for (String id : batch.keySet()) {
+            params.add(new QueryParam(_descriptor.getIdPrefix() + (++n), id));
+        }
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("send: " + _descriptor.getAction() + ", ids=" + batch.keySet());
+        }
+        Promise<T> promise = _connection.execute(params, _descriptor.getResponseClass());
+        promise.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T response)
+            {
+                received(batch, response);
+            }
+        });
+        promise.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                failed(batch, t);
+            }
+        });
+    }
+
+    private void received(Map<String, List<CompletablePromise<I>>> batch, T response)
+    {
+        Map<String, I> items = new HashMap<String, I>();
+        try {
+            for (I item : _descriptor.getItems(response)) {
+                items.put(_descriptor.getId(item), item);
+            }
+        }
+        catch (Throwable t) {
+            for (List<CompletablePromise<I>> waiters : batch.values()) {
+                fail(waiters, t);
+            }
+            return;
+        }
+        for (Map.Entry<String, List<CompletablePromise<I>>> entry : batch.entrySet()) {
+            I item = items.get(entry.getKey());
+            for (CompletablePromise<I> waiter : entry.getValue()) {
+                if (!waiter.isCancelled()) {
+                    waiter.complete(item);
+                }
+            }
+        }
+    }
+
+    private void failed(Map<String, List<CompletablePromise<I>>> batch, Throwable t)
+    {
+        if ((batch.size() > 1) && isIdError(t)) {
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Resending " + _descriptor.getAction() + " one id at a time after " + t.getMessage());
+            }
+            for (Map.Entry<String, List<CompletablePromise<I>>> entry : batch.entrySet()) {
+                Map<String, List<CompletablePromise<I>>> single =
+                        new LinkedHashMap<String, List<CompletablePromise<I>>>();
+                single.put(entry.getKey(), entry.getValue());
+                send(single);
+            }
+            return;
+        }
+        for (List<CompletablePromise<I>> waiters : batch.values()) {
+            fail(waiters, t);
+        }
+    }
+
+    // True for the errors of an unknown or malformed id, as recognised by the descriptor
+    private boolean isIdError(Throwable t)
+    {
+        if (!(t instanceof AWSErrorException)) {
+            return false;
+        }
+        for (AWSError error : ((AWSErrorException) t).getErrors()) {
+            if (_descriptor.isIdError(error.getCode())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fail(List<CompletablePromise<I>> waiters, Throwable t)
+    {
+        for (CompletablePromise<I> waiter : waiters) {
+            if (!waiter.isCancelled()) {
+                waiter.failure(t);
+            }
+        }
+    }
+}
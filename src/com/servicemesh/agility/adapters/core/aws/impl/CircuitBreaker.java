@@ -0,0 +1,284 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSCircuitListener;
+import com.servicemesh.agility.adapters.core.aws.AWSCircuitState;
+
+/**
+ * Fails requests to an AWS host and service immediately while it is unavailable. The circuit opens after a number of
+ * consecutive transport failures or when the rate of transport failures and 5xx responses over a window of recent
+ * requests exceeds a threshold. Once open for a period, a single probe request is allowed; its outcome closes or
+ * re-opens the circuit.
+ * <p>
+ * Each allowed request holds a Permit with which its outcome is reported. Outcomes of requests allowed before the last
+ * change of state are ignored, so a late response to a request sent before the circuit opened cannot close it, and
+ * while half-open only the probe's outcome applies.
+ */
+public class CircuitBreaker
+{
+    private static final Logger _logger = Logger.getLogger(CircuitBreaker.class);
+
+    private static final ConcurrentMap<String, CircuitBreaker> _instances = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    private final String _name;
+    private final int _failureThreshold;
+    private final int _errorRate;
+    private final long _openMillis;
+    private final boolean[] _window;
+    private final List<AWSCircuitListener> _listeners = new CopyOnWriteArrayList<AWSCircuitListener>();
+
+    private AWSCircuitState _state = AWSCircuitState.CLOSED;
+    private int _consecutiveFailures;
+    private int _windowIndex;
+    private int _windowCount;
+    private int _windowErrors;
+    private long _openedAt;
+    private Permit _closedPermit = new Permit();
+    private Permit _probe;
+
+    /** Identifies an allowed request when its outcome is reported. */
+    public static final class Permit
+    {
+        private Permit()
+        {
+        }
+    }
+
+    /**
+     * Creates a circuit breaker.
+     *
+     * @param name
+     *            Identifies the circuit breaker, e.g. the host name and service name.
+     * @param failureThreshold
+     *            The number of consecutive transport failures that opens the circuit.
+     * @param errorRate
+     *            The percentage of transport failures and 5xx responses within the window that opens the circuit.
+     * @param window
+     *            The number of most recent requests over which the error rate is computed.
+     * @param openMillis
+     *            The time in milliseconds that an open circuit fails requests before allowing a probe request.
+     */
+    public CircuitBreaker(String name, int failureThreshold, int errorRate, int window, long openMillis)
+    {
+        _name = name;
+        _failureThreshold = failureThreshold;
+        _errorRate = errorRate;
+        _openMillis = openMillis;
+        _window = new boolean[window];
+    }
+
+    /**
+     * Returns the circuit breaker shared by all connections to an AWS host and service, creating it if necessary. The
+     * settings of the connection that creates the circuit breaker apply to all connections sharing it.
+     */
+    public static CircuitBreaker getInstance(String name, int failureThreshold, int errorRate, int window, long openMillis)
+    {
+        CircuitBreaker breaker = _instances.get(name);
+        if (breaker == null) {
+            CircuitBreaker created = new CircuitBreaker(name, failureThreshold, errorRate, window, openMillis);
+            breaker = _instances.putIfAbsent(name, created);
+            if (breaker == null) {
+                breaker = created;
+            }
+        }
+        return breaker;
+    }
+
+    /** Discards all shared circuit breakers, e.g. between unit tests. */
+    public static void clearInstances()
+    {
+        _instances.clear();
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    public synchronized AWSCircuitState getState()
+    {
+        return _state;
+    }
+
+    public void addListener(AWSCircuitListener listener)
+    {
+        _listeners.add(listener);
+    }
+
+    public void removeListener(AWSCircuitListener listener)
+    {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Returns a permit if a request may be sent. The caller must then report the outcome of the request via
+     * onSuccess(), onFailure() or onCancel() with the permit.
+     *
+     * @return The permit, or null if the request must fail immediately.
+     */
+    public Permit allowRequest()
+    {
+        AWSCircuitState previous;
+        Permit probe;
+        synchronized (this) {
+            previous = _state;
+            switch (_state) {
+            case CLOSED:
+                return _closedPermit;
+            case OPEN:
+                if (System.currentTimeMillis() - _openedAt < _openMillis) {
+                    return null;
+                }
+                _state = AWSCircuitState.HALF_OPEN;
+                _probe = new Permit();
+                probe = _probe;
+                break;
+            default:
+                if (_probe != null) {
+                    return null;
+                }
+                _probe = new Permit();
+                return _probe;
+            }
+        }
+        notifyListeners(previous, AWSCircuitState.HALF_OPEN);
+        return probe;
+    }
+
+    /**
+     * Reports a request that received a response other than a 5xx response.
+     *
+     * @param permit
+     *            The permit returned by allowRequest() for the request.
+     */
+    public void onSuccess(Permit permit)
+    {
+        AWSCircuitState previous;
+        synchronized (this) {
+            previous = _state;
+            if ((_state == AWSCircuitState.CLOSED) && (permit == _closedPermit)) {
+                _consecutiveFailures = 0;
+                record(false);
+                return;
+            }
+            if ((_state != AWSCircuitState.HALF_OPEN) || (permit != _probe)) {
+                return;
+            }
+            close();
+        }
+        notifyListeners(previous, AWSCircuitState.CLOSED);
+    }
+
+    /**
+     * Reports a request that failed.
+     *
+     * @param permit
+     *            The permit returned by allowRequest() for the request.
+     * @param isTransportFailure
+     *            True if no response was received, false for a 5xx response.
+     */
+    public void onFailure(Permit permit, boolean isTransportFailure)
+    {
+        AWSCircuitState previous;
+        synchronized (this) {
+            previous = _state;
+            if (_state == AWSCircuitState.CLOSED) {
+                if (permit != _closedPermit) {
+                    return;
+                }
+                _consecutiveFailures = isTransportFailure ? _consecutiveFailures + 1 : 0;
+                record(true);
+                boolean tripped = (_consecutiveFailures >= _failureThreshold)
+                        || ((_windowCount == _window.length) && (_windowErrors * 100 >= _errorRate * _window.length));
+                if (!tripped) {
+                    return;
+                }
+            }
+            else if ((_state == AWSCircuitState.OPEN) || (permit != _probe)) {
+                return;
+            }
+            open();
+        }
+        notifyListeners(previous, AWSCircuitState.OPEN);
+    }
+
+    /**
+     * Reports a request that was cancelled before its outcome was known. A cancelled probe allows another probe.
+     *
+     * @param permit
+     *            The permit returned by allowRequest() for the request.
+     */
+    public synchronized void onCancel(Permit permit)
+    {
+        if ((_state == AWSCircuitState.HALF_OPEN) && (permit == _probe)) {
+            _probe = null;
+        }
+    }
+
+    // Must be called while synchronized
+    private void record(boolean isError)
+    {
+        if (_windowCount == _window.length) {
+            if (_window[_windowIndex]) {
+                _windowErrors--;
+            }
+        }
+        else {
+            _windowCount++;
+        }
+        _window[_windowIndex] = isError;
+        if (isError) {
+            _windowErrors++;
+        }
+        _windowIndex = (_windowIndex + 1) % _window.length;
+    }
+
+    // Must be called while synchronized
+    private void open()
+    {
+        _state = AWSCircuitState.OPEN;
+        _openedAt = System.currentTimeMillis();
+        _closedPermit = new Permit();
+        _probe = null;
+    }
+
+    // Must be called while synchronized
+    private void close()
+    {
+        _state = AWSCircuitState.CLOSED;
+        _probe = null;
+        _consecutiveFailures = 0;
+        _windowIndex = 0;
+        _windowCount = 0;
+        _windowErrors = 0;
+    }
+
+    private void notifyListeners(AWSCircuitState previous, AWSCircuitState current)
+    {
+        if (current == AWSCircuitState.OPEN) {
+            _logger.warn("Circuit breaker for " + _name + " is open");
+        }
+        else if (_logger.isInfoEnabled()) {
+            _logger.info("Circuit breaker for " + _name + " is " + current);
+        }
+        for (AWSCircuitListener listener : _listeners) {
+            try {
+                listener.stateChanged(_name, previous, current);
+            }
+            catch (Exception e) {
+                _logger.error("Circuit listener failed: " + e, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSRequestContext;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestInterceptor;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Invokes the global interceptors followed by the connection's own interceptors, each in registration order.
+ */
+public class InterceptorChain
+{
+    private static final Logger _logger = Logger.getLogger(InterceptorChain.class);
+
+    private final List<AWSRequestInterceptor> _global;
+    private final List<AWSRequestInterceptor> _local = new CopyOnWriteArrayList<AWSRequestInterceptor>();
+
+    /**
+     * Creates an interceptor chain.
+     *
+     * @param global
+     *            The interceptors shared by all connections. Changes to this list apply to the chain. Optional, may be
+     *            null.
+     */
+    public InterceptorChain(List<AWSRequestInterceptor> global)
+    {
+        _global = global;
+    }
+
+    public void add(AWSRequestInterceptor interceptor)
+    {
+        _local.add(interceptor);
+    }
+
+    public void remove(AWSRequestInterceptor interceptor)
+    {
+        _local.remove(interceptor);
+    }
+
+    /** Returns true if there are no interceptors, in which case no request context is needed. */
+    public boolean isEmpty()
+    {
+        return _local.isEmpty() && ((_global == null) || _global.isEmpty());
+    }
+
+    public void beforeSign(AWSRequestContext context)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                interceptor.beforeSign(context);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            interceptor.beforeSign(context);
+        }
+    }
+
+    public void afterSign(AWSRequestContext context)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                interceptor.afterSign(context);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            interceptor.afterSign(context);
+        }
+    }
+
+    public void beforeSend(AWSRequestContext context)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                interceptor.beforeSend(context);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            interceptor.beforeSend(context);
+        }
+    }
+
+    public void onResponseBytes(AWSRequestContext context, IHttpResponse response)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                interceptor.onResponseBytes(context, response);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            interceptor.onResponseBytes(context, response);
+        }
+    }
+
+    public void afterDecode(AWSRequestContext context, Object result)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                interceptor.afterDecode(context, result);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            interceptor.afterDecode(context, result);
+        }
+    }
+
+    public void onError(AWSRequestContext context, Throwable error)
+    {
+        if (_global != null) {
+            for (AWSRequestInterceptor interceptor : _global) {
+                onError(interceptor, context, error);
+            }
+        }
+        for (AWSRequestInterceptor interceptor : _local) {
+            onError(interceptor, context, error);
+        }
+    }
+
+    private void onError(AWSRequestInterceptor interceptor, AWSRequestContext context, Throwable error)
+    {
+        try {
+            interceptor.onError(context, error);
+        }
+        catch (Exception e) {
+            _logger.error("Interceptor " + interceptor.getClass().getName() + " failed: " + e, e);
+        }
+    }
+}
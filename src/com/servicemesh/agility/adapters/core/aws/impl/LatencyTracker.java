@@ -0,0 +1,65 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Retains a fixed number of the most recent latency samples for an action and computes percentiles over them.
+ */
+public class LatencyTracker
+{
+    private final AtomicLongArray _samples;
+    private final AtomicLong _count = new AtomicLong();
+
+    /**
+     * Creates a latency tracker.
+     *
+     * @param capacity
+     *            The number of recent samples retained.
+     */
+    public LatencyTracker(int capacity)
+    {
+        _samples = new AtomicLongArray(capacity);
+    }
+
+    /** Records a latency sample, replacing the oldest sample once the tracker is full. */
+    public void record(long latencyMillis)
+    {
+        long n = _count.getAndIncrement();
+        _samples.set((int) (n % _samples.length()), latencyMillis);
+    }
+
+    /** Returns the number of samples currently retained. */
+    public int size()
+    {
+        return (int) Math.min(_count.get(), _samples.length());
+    }
+
+    /**
+     * Returns a percentile of the retained samples.
+     *
+     * @param percentile
+     *            The percentile, between 1 and 99.
+     * @return The latency in milliseconds, or -1 if there are no samples.
+     */
+    public long getPercentile(int percentile)
+    {
+        int size = size();
+        if (size == 0) {
+            return -1;
+        }
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = _samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(size * percentile / 100.0) - 1;
+        return sorted[Math.min(Math.max(index, 0), size - 1)];
+    }
+}
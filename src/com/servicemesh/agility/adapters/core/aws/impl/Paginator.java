@@ -0,0 +1,291 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSPageExtractor;
+import com.servicemesh.agility.adapters.core.aws.AWSPaginator;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Requests the pages of a paginated Query API action one after another, prefetching up to a bounded number of pages
+ * ahead of the consumer. Requests complete on HTTP client threads, so the state is synchronized; consumers are invoked
+ * outside the lock.
+ */
+public class Paginator<T, I> implements AWSPaginator<I>
+{
+    private static final Logger _logger = Logger.getLogger(Paginator.class);
+
+    private final AWSConnection _connection;
+    private final Map<String, String> _parameters;
+    private final String _tokenParam;
+    private final Class<T> _responseClass;
+    private final AWSPageExtractor<T, I> _extractor;
+    private final int _maxPages;
+    private final Deque<List<I>> _pages = new ArrayDeque<List<I>>();
+    private final Deque<CompletablePromise<List<I>>> _waiters = new ArrayDeque<CompletablePromise<List<I>>>();
+    private String _nextToken;
+    private boolean _fetching;
+    private Promise<T> _request;
+    private boolean _exhausted;
+    private boolean _closed;
+    private Throwable _failure;
+    private int _pageCount;
+
+    /**
+     * Creates a paginator. No request is sent until the first page is requested.
+     *
+     * @param connection
+     *            The connection that sends the page requests.
+     * @param params
+     *            The query parameters of the first page. A value for the token parameter is the token of the first
+     *            page.
+     * @param tokenParam
+     *            The name of the query parameter that requests a page, e.g. "Marker" or "NextToken".
+     * @param responseClass
+     *            The decoded response type.
+     * @param extractor
+     *            Extracts the items and token of a page.
+     * @param maxPages
+     *            The maximum number of pages requested but not yet returned by next(), including an outstanding
+     *            request. Zero requests a page only when next() is waiting for it.
+     */
+    public Paginator(AWSConnection connection, QueryParams params, String tokenParam, Class<T> responseClass,
+            AWSPageExtractor<T, I> extractor, int maxPages)
+    {
+        _connection = connection;
+        // The parameters are copied since signing adds to a QueryParams
+        _parameters = QueryStringUtil.getParameters(params.asQueryString());
+        _tokenParam = tokenParam;
+        _responseClass = responseClass;
+        _extractor = extractor;
+        _maxPages = Math.max(maxPages, 0);
+        _nextToken = _parameters.remove(tokenParam);
+    }
+
+    @Override
+    public Promise<List<I>> next()
+    {
+        CompletablePromise<List<I>> waiter = PromiseFactory.create();
+        synchronized (this) {
+            _waiters.add(waiter);
+        }
+        fetch();
+        deliver();
+        return waiter;
+    }
+
+    @Override
+    public Promise<Long> forEach(Callback<I> consumer)
+    {
+        final CompletablePromise<Long> result = PromiseFactory.create();
+        result.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                close();
+            }
+        });
+        consume(consumer, result, 0);
+        return result;
+    }
+
+    @Override
+    public void close()
+    {
+        Promise<T> request;
+        Deque<CompletablePromise<List<I>>> waiters;
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            _pages.clear();
+            request = _request;
+            waiters = new ArrayDeque<CompletablePromise<List<I>>>(_waiters);
+            _waiters.clear();
+        }
+        if (request != null) {
+            PromiseUtil.cancel(request);
+        }
+        for (CompletablePromise<List<I>> waiter : waiters) {
+            waiter.complete(null);
+        }
+    }
+
+    private void consume(final Callback<I> consumer, final CompletablePromise<Long> result, final long consumed)
+    {
+        Promise<List<I>> page = next();
+        page.onComplete(new Callback<List<I>>() {
+            @Override
+            public void invoke(List<I> items)
+            {
+                if (items == null) {
+                    result.complete(consumed);
+                    return;
+                }
+                try {
+                    for (I item : items) {
+                        consumer.invoke(item);
+                    }
+                }
+                catch (Throwable t) {
+                    close();
+                    result.failure(t);
+                    return;
+                }
+                consume(consumer, result, consumed + items.size());
+            }
+        });
+        page.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                result.failure(t);
+            }
+        });
+    }
+
+    // Requests the next page if there is room for it
+    private void fetch()
+    {
+        String token;
+        synchronized (this) {
+            boolean awaited = _waiters.size() > _pages.size();
+            if (_closed || _exhausted || _fetching || (!awaited && ((_pages.size() + 1) > _maxPages))) {
+                return;
+            }
+            _fetching = true;
+            token = _nextToken;
+            _pageCount++;
+        }
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("fetch: page=" + _pageCount + ", " + _tokenParam + "=" + token);
+        }
+        Promise<T> request = _connection.execute(createParams(token), _responseClass);
+        boolean closed;
+        synchronized (this) {
+            closed = _closed;
+            if (!closed) {
+                _request = request;
+            }
+        }
+        if (closed) {
+            PromiseUtil.cancel(request);
+            return;
+        }
+        request.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T response)
+            {
+                pageReceived(response);
+            }
+        });
+        request.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                pageFailed(t);
+            }
+        });
+    }
+
+    private void pageReceived(T response)
+    {
+        String token;
+        List<I> items;
+        try {
+            token = _extractor.getNextToken(response);
+            items = _extractor.getItems(response);
+        }
+        catch (Throwable t) {
+            pageFailed(t);
+            return;
+        }
+        synchronized (this) {
+            _fetching = false;
+            _request = null;
+            if (_closed) {
+                return;
+            }
+            _nextToken = token;
+            _exhausted = (token == null) || token.isEmpty();
+            _pages.add(items);
+        }
+        // The next page is requested before this one is handed to the consumer
+        fetch();
+        deliver();
+    }
+
+    private void pageFailed(Throwable t)
+    {
+        synchronized (this) {
+            _fetching = false;
+            _request = null;
+            if (_closed) {
+                return;
+            }
+            _exhausted = true;
+            _failure = t;
+        }
+        deliver();
+    }
+
+    // Completes waiting next() calls in order with buffered pages, the failure or the end of the stream
+    private void deliver()
+    {
+        while (true) {
+            CompletablePromise<List<I>> waiter;
+            List<I> items = null;
+            Throwable failure = null;
+            synchronized (this) {
+                if (_waiters.isEmpty()) {
+                    return;
+                }
+                if (!_pages.isEmpty()) {
+                    items = _pages.poll();
+                }
+                else if (!_exhausted && !_closed) {
+                    return;
+                }
+                else if (!_closed) {
+                    failure = _failure;
+                }
+                waiter = _waiters.poll();
+            }
+            // Refill the buffer before the consumer processes the page
+            fetch();
+            if (failure != null) {
+                waiter.failure(failure);
+            }
+            else {
+                waiter.complete(items);
+            }
+        }
+    }
+
+    private QueryParams createParams(String token)
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>(_parameters);
+        if (token != null) {
+            parameters.put(_tokenParam, token);
+        }
+        return QueryStringUtil.getQueryParams(parameters);
+    }
+}
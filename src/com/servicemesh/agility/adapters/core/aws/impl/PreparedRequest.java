@@ -0,0 +1,99 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.net.URI;
+import java.util.Map;
+
+import com.servicemesh.agility.adapters.core.aws.AWSRequestContext;
+import com.servicemesh.io.http.HttpMethod;
+
+/**
+ * A signed AWS request that may be dispatched more than once, e.g. when it is hedged.
+ */
+public class PreparedRequest
+{
+    private final HttpMethod _method;
+    private final URI _uri;
+    private final Map<String, String> _headers;
+    private final Object _content;
+    private final boolean _isContentEncoded;
+    private final RequestTimer _timer;
+    private final AWSRequestContext _context;
+
+    /**
+     * Creates a prepared request.
+     *
+     * @param method
+     *            The HTTP method.
+     * @param uri
+     *            The request URI, including the signed query string.
+     * @param headers
+     *            The request headers, including the signing headers.
+     * @param content
+     *            The request content as a String, byte array, ByteBuffer or AWSFileRegion. Optional, may be null.
+     * @param isContentEncoded
+     *            True if the content was encoded by the endpoint and requires a Content-Type header.
+     * @param timer
+     *            Captures the request's timings. Optional, may be null.
+     * @param context
+     *            The context passed to the connection's interceptors. Optional, may be null.
+     */
+    public PreparedRequest(HttpMethod method, URI uri, Map<String, String> headers, Object content,
+            boolean isContentEncoded, RequestTimer timer, AWSRequestContext context)
+    {
+        _method = method;
+        _uri = uri;
+        _headers = headers;
+        _content = content;
+        _isContentEncoded = isContentEncoded;
+        _timer = timer;
+        _context = context;
+    }
+
+    public HttpMethod getMethod()
+    {
+        return _method;
+    }
+
+    public URI getURI()
+    {
+        return _uri;
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return _headers;
+    }
+
+    public Object getContent()
+    {
+        return _content;
+    }
+
+    public boolean isContentEncoded()
+    {
+        return _isContentEncoded;
+    }
+
+    public RequestTimer getTimer()
+    {
+        return _timer;
+    }
+
+    public AWSRequestContext getContext()
+    {
+        return _context;
+    }
+
+    /** Returns the number of bytes in the query string and content. */
+    public long getSize()
+    {
+        String query = _uri.getRawQuery();
+        long size = (query != null) ? query.length() : 0;
+        return size + RequestBody.getLength(_content);
+    }
+}
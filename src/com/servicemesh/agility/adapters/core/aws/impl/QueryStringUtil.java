@@ -0,0 +1,103 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Parses query strings produced by QueryParams.asQueryString().
+ */
+public class QueryStringUtil
+{
+    /**
+     * Returns the decoded value of a query string parameter.
+     *
+     * @param queryString
+     *            A query string, with or without the leading '?'.
+     * @param name
+     *            The parameter name.
+     * @return The parameter value, or null if the parameter is not present.
+     */
+    public static String getValue(String queryString, String name)
+    {
+        if (queryString == null) {
+            return null;
+        }
+        String prefix = name + "=";
+        int start = 0;
+        while ((start = queryString.indexOf(prefix, start)) >= 0) {
+            if ((start == 0) || (queryString.charAt(start - 1) == '?') || (queryString.charAt(start - 1) == '&')) {
+                int valueStart = start + prefix.length();
+                int end = queryString.indexOf('&', valueStart);
+                return decode((end < 0) ? queryString.substring(valueStart) : queryString.substring(valueStart, end));
+            }
+            start += prefix.length();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the decoded parameters of a query string.
+     *
+     * @param queryString
+     *            A query string, with or without the leading '?'.
+     * @return The parameter names and values in query string order.
+     */
+    public static Map<String, String> getParameters(String queryString)
+    {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        if (queryString != null) {
+            String qs = queryString.startsWith("?") ? queryString.substring(1) : queryString;
+            for (String pair : qs.split("&")) {
+                if (!pair.isEmpty()) {
+                    int eq = pair.indexOf('=');
+                    if (eq < 0) {
+                        parameters.put(decode(pair), "");
+                    }
+                    else {
+                        parameters.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+                    }
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns new query parameters for parsed parameters, e.g. to send a request again. Requests can't share a
+     * QueryParams since signing adds to it.
+     *
+     * @param parameters
+     *            Decoded parameter names and values, as returned by getParameters().
+     * @return Case sensitive query parameters, sorted by name as required by AWS signature version 4.
+     */
+    public static QueryParams getQueryParams(Map<String, String> parameters)
+    {
+        QueryParams params = new QueryParams();
+        params.setCaseSensitive(true);
+        params.setMaintainOrder(false);
+        for (Map.Entry<String, String> param : parameters.entrySet()) {
+            params.add(new QueryParam(param.getKey(), param.getValue()));
+        }
+        return params;
+    }
+
+    private static String decode(String value)
+    {
+        try {
+            return URLDecoder.decode(value, AWSEndpoint.CHAR_SET);
+        }
+        catch (Exception e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSFileRegion;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+
+/**
+ * Hashes, measures and writes request content that is used without being encoded: a String, byte array, ByteBuffer
+ * or AWSFileRegion. ByteBuffer and AWSFileRegion content is streamed: it is read in place, via a duplicate of the
+ * buffer or a read-only mapping of the file, and never copied to a heap array except for an HTTP client that requires
+ * one.
+ */
+public class RequestBody
+{
+    /** The largest part of a file region that is mapped at once when it is hashed. */
+    public static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private RequestBody()
+    {
+    }
+
+    /** Returns true if the content is sent as is rather than being encoded by the endpoint. */
+    public static boolean isRaw(Object content)
+    {
+        return (content instanceof String) || (content instanceof byte[]) || isStreamed(content);
+    }
+
+    /** Returns true if the content is a ByteBuffer or AWSFileRegion. */
+    public static boolean isStreamed(Object content)
+    {
+        return (content instanceof ByteBuffer) || (content instanceof AWSFileRegion);
+    }
+
+    /** Returns the number of bytes in raw content, a String as UTF-8, or 0 if there is none. */
+    public static long getLength(Object content)
+    {
+        if (content instanceof String) {
+            return getEncodedLength((String) content);
+        }
+        if (content instanceof byte[]) {
+            return ((byte[]) content).length;
+        }
+        if (content instanceof ByteBuffer) {
+            return ((ByteBuffer) content).remaining();
+        }
+        if (content instanceof AWSFileRegion) {
+            return ((AWSFileRegion) content).getLength();
+        }
+        return 0;
+    }
+
+    /**
+     * Adds streamed content to a digest. A buffer's position is not changed and a file region is mapped in windows of
+     * at most MAP_WINDOW bytes.
+     */
+    public static void digest(MessageDigest md, Object content) throws Exception
+    {
+        if (content instanceof ByteBuffer) {
+            md.update(((ByteBuffer) content).duplicate());
+        }
+        else if (content instanceof AWSFileRegion) {
+            AWSFileRegion region = (AWSFileRegion) content;
+            FileChannel channel = openChannel(region);
+            try {
+                long end = region.getPosition() + region.getLength();
+                for (long position = region.getPosition(); position < end; position += MAP_WINDOW) {
+                    MappedByteBuffer mapped =
+                            channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, end - position));
+                    md.update(mapped);
+                }
+            }
+            finally {
+                channel.close();
+            }
+        }
+    }
+
+    /** Writes raw content, a String as UTF-8, without changing a buffer's position. */
+    public static void write(Object content, OutputStream out) throws Exception
+    {
+        if (content instanceof String) {
+            out.write(((String) content).getBytes(AWSEndpoint.CHAR_SET));
+            return;
+        }
+        if (content instanceof byte[]) {
+            out.write((byte[]) content);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        if (content instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) content).duplicate();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+        }
+        else if (content instanceof AWSFileRegion) {
+            AWSFileRegion region = (AWSFileRegion) content;
+            FileChannel channel = openChannel(region);
+            try {
+                long end = region.getPosition() + region.getLength();
+                long position = region.getPosition();
+                while (position < end) {
+                    position += channel.transferTo(position, end - position, target);
+                }
+            }
+            finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Returns streamed content as a byte array, for an HTTP client that only accepts arrays. The backing array of a
+     * heap buffer that covers all of it is returned without a copy.
+     */
+    public static byte[] toByteArray(Object content) throws Exception
+    {
+        if (content instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) content;
+            if (buffer.hasArray() && (buffer.arrayOffset() == 0) && (buffer.position() == 0)
+                    && (buffer.remaining() == buffer.array().length)) {
+                return buffer.array();
+            }
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            return data;
+        }
+        AWSFileRegion region = (AWSFileRegion) content;
+        if (region.getLength() > Integer.MAX_VALUE) {
+            throw new AWSAdapterException(Resources.getString("regionTooLarge", region.toString()));
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) region.getLength());
+        FileChannel channel = openChannel(region);
+        try {
+            while (data.hasRemaining()) {
+                if (channel.read(data, region.getPosition() + data.position()) < 0) {
+                    throw new AWSAdapterException(Resources.getString("regionBeyondFile", region.toString()));
+                }
+            }
+        }
+        finally {
+            channel.close();
+        }
+        return data.array();
+    }
+
+    // Returns the number of bytes in the UTF-8 encoding of a string without encoding it
+    private static long getEncodedLength(String s)
+    {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            }
+            else if (c < 0x800) {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && (i + 1 < s.length())
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else {
+                // A lone surrogate is encoded as '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    // Opens a region's file, failing if the region extends beyond it
+    private static FileChannel openChannel(AWSFileRegion region) throws Exception
+    {
+        FileChannel channel;
+        try {
+            channel = region.openChannel();
+        }
+        catch (IOException e) {
+            throw new AWSAdapterException(Resources.getString("regionOpenFailed", region.toString(), e.getMessage()));
+        }
+        if (region.getPosition() + region.getLength() > channel.size()) {
+            channel.close();
+            throw new AWSAdapterException(Resources.getString("regionBeyondFile", region.toString()));
+        }
+        return channel;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Shares a single in-flight HTTP request among callers that issue an identical read-only request.
+ */
+public class RequestCoalescer
+{
+    private static final Logger _logger = Logger.getLogger(RequestCoalescer.class);
+
+    private final Set<String> _actions;
+    private final ConcurrentMap<String, Promise<IHttpResponse>> _inFlight =
+            new ConcurrentHashMap<String, Promise<IHttpResponse>>();
+    private final AtomicLong _hits = new AtomicLong();
+
+    /**
+     * Creates a request coalescer.
+     *
+     * @param actions
+     *            The AWS actions eligible for coalescing.
+     */
+    public RequestCoalescer(Set<String> actions)
+    {
+        _actions = actions;
+    }
+
+    /** Returns true if requests for the action may be coalesced. */
+    public boolean isCoalesced(String action)
+    {
+        return (action != null) && _actions.contains(action);
+    }
+
+    /**
+     * Returns the response for a request, sending it only if an identical request is not already in flight.
+     *
+     * @param key
+     *            Identifies the request, e.g. the request URI and canonical query string.
+     * @param sender
+     *            Sends the request when no identical request is in flight.
+     * @return A promise for the response. Each caller receives its own promise so that cancelling it does not affect
+     *         other callers.
+     */
+    public Promise<IHttpResponse> submit(final String key, Callable<Promise<IHttpResponse>> sender)
+    {
+        final CompletablePromise<IHttpResponse> shared = PromiseFactory.create();
+        Promise<IHttpResponse> existing = _inFlight.putIfAbsent(key, shared);
+        if (existing != null) {
+            _hits.incrementAndGet();
+            if (_logger.isTraceEnabled()) {
+                _logger.trace("Coalesced: " + key);
+            }
+            return PromiseUtil.attach(existing);
+        }
+
+        shared.onComplete(new Callback<IHttpResponse>() {
+            @Override
+            public void invoke(IHttpResponse arg)
+            {
+                _inFlight.remove(key, shared);
+            }
+        });
+        shared.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable arg)
+            {
+                _inFlight.remove(key, shared);
+            }
+        });
+        try {
+            PromiseUtil.forward(sender.call(), shared);
+        }
+        catch (Exception e) {
+            shared.failure(e);
+        }
+        return PromiseUtil.attach(shared);
+    }
+
+    /** Returns the number of requests that were satisfied by an in-flight request. */
+    public long getHitCount()
+    {
+        return _hits.get();
+    }
+
+    /** Returns the number of distinct requests currently in flight. */
+    public int getInFlightCount()
+    {
+        return _inFlight.size();
+    }
+}
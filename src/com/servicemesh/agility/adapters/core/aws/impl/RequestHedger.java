@@ -0,0 +1,315 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSHedgeStatistics;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Reduces the tail latency of idempotent requests by sending a second, identical request when no response has arrived
+ * within a percentile of the action's recent latency. The first response wins and the other request is cancelled.
+ */
+public class RequestHedger
+{
+    private static final Logger _logger = Logger.getLogger(RequestHedger.class);
+
+    /** The number of recent latency samples retained per action. */
+    public static final int SAMPLE_CAPACITY = 256;
+
+    /** The number of latency samples required before an action is hedged. */
+    public static final int MIN_SAMPLES = 20;
+
+    // Bounds the hedges that may be sent in a burst after a quiet period
+    private static final double MAX_TOKENS = 10.0;
+
+    private final Set<String> _actions;
+    private final int _percentile;
+    private final long _minDelay;
+    private final double _tokensPerRequest;
+    private final ScheduledExecutorService _scheduler;
+    private final ConcurrentMap<String, LatencyTracker> _latencies = new ConcurrentHashMap<String, LatencyTracker>();
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _hedges = new AtomicLong();
+    private final AtomicLong _wins = new AtomicLong();
+    private double _tokens;
+
+    /**
+     * Creates a request hedger.
+     *
+     * @param actions
+     *            The AWS actions eligible for hedging.
+     * @param percentile
+     *            The percentile of recent latency after which a hedged request is sent.
+     * @param minDelay
+     *            The minimum time in milliseconds to wait before sending a hedged request.
+     * @param budgetPercent
+     *            The maximum number of hedged requests as a percentage of requests for hedged actions.
+     * @param scheduler
+     *            Schedules the hedged requests.
+     */
+    public RequestHedger(Set<String> actions, int percentile, long minDelay, int budgetPercent,
+            ScheduledExecutorService scheduler)
+    {
+        _actions = actions;
+        _percentile = percentile;
+        _minDelay = minDelay;
+        _tokensPerRequest = budgetPercent / 100.0;
+        _scheduler = scheduler;
+    }
+
+    /** Returns true if requests for the action may be hedged. */
+    public boolean isHedged(String action)
+    {
+        return (action != null) && _actions.contains(action);
+    }
+
+    /**
+     * Sends a request, sending it again if no response arrives within the action's hedge delay.
+     *
+     * @param action
+     *            The AWS action of the request.
+     * @param sender
+     *            Sends the request. Invoked at most twice and must send an identical, idempotent request each time.
+     * @return A promise for the first response. Fails only if every request sent fails.
+     */
+    public Promise<IHttpResponse> submit(String action, Callable<Promise<IHttpResponse>> sender)
+    {
+        return submit(action, 0, sender);
+    }
+
+    /**
+     * Sends a request, sending it again if no response arrives within the action's hedge delay and before a deadline.
+     *
+     * @param action
+     *            The AWS action of the request.
+     * @param deadline
+     *            The time in milliseconds since the epoch after which no hedged request is sent, or 0 for no deadline.
+     * @param sender
+     *            Sends the request. Invoked at most twice and must send an identical, idempotent request each time.
+     * @return A promise for the first response. Fails only if every request sent fails.
+     */
+    public Promise<IHttpResponse> submit(String action, long deadline, Callable<Promise<IHttpResponse>> sender)
+    {
+        _requests.incrementAndGet();
+        earnToken();
+        LatencyTracker tracker = _latencies.get(action);
+        if (tracker == null) {
+            LatencyTracker created = new LatencyTracker(SAMPLE_CAPACITY);
+            tracker = _latencies.putIfAbsent(action, created);
+            if (tracker == null) {
+                tracker = created;
+            }
+        }
+
+        final Hedge hedge = new Hedge(action, tracker, sender);
+        hedge.send(false);
+        long delay = getDelay(tracker);
+        // A hedge that cannot be sent before the deadline would only add load
+        if ((delay >= 0) && ((deadline <= 0) || (System.currentTimeMillis() + delay < deadline))) {
+            hedge.schedule(delay);
+        }
+        return hedge._result;
+    }
+
+    /** Returns a snapshot of the hedging statistics. */
+    public AWSHedgeStatistics getStatistics()
+    {
+        return new AWSHedgeStatistics(_requests.get(), _hedges.get(), _wins.get());
+    }
+
+    /**
+     * Returns the time in milliseconds to wait for a response before hedging a request for the action, or -1 if there
+     * are not enough latency samples for the action.
+     */
+    public long getDelay(String action)
+    {
+        LatencyTracker tracker = _latencies.get(action);
+        return (tracker != null) ? getDelay(tracker) : -1;
+    }
+
+    private long getDelay(LatencyTracker tracker)
+    {
+        if (tracker.size() < MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(_minDelay, tracker.getPercentile(_percentile));
+    }
+
+    private synchronized void earnToken()
+    {
+        _tokens = Math.min(MAX_TOKENS, _tokens + _tokensPerRequest);
+    }
+
+    private synchronized boolean acquireToken()
+    {
+        if (_tokens < 1.0) {
+            return false;
+        }
+        _tokens -= 1.0;
+        return true;
+    }
+
+    // The state of a single hedged request
+    private class Hedge
+    {
+        private final String _action;
+        private final LatencyTracker _tracker;
+        private final Callable<Promise<IHttpResponse>> _sender;
+        private final CompletablePromise<IHttpResponse> _result = PromiseFactory.create();
+        private final AtomicBoolean _done = new AtomicBoolean();
+        private final AtomicInteger _outstanding = new AtomicInteger(1);
+        private final long _start = System.currentTimeMillis();
+        private volatile Promise<IHttpResponse> _original;
+        private volatile Promise<IHttpResponse> _hedged;
+        private volatile Future<?> _timer;
+
+        private Hedge(String action, LatencyTracker tracker, Callable<Promise<IHttpResponse>> sender)
+        {
+            _action = action;
+            _tracker = tracker;
+            _sender = sender;
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    if (_done.compareAndSet(false, true)) {
+                        finish();
+                    }
+                }
+            });
+        }
+
+        private void schedule(long delay)
+        {
+            if (_done.get()) {
+                return;
+            }
+            _timer = _scheduler.schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    sendHedge();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+            if (_done.get()) {
+                _timer.cancel(false);
+            }
+        }
+
+        private void sendHedge()
+        {
+            // Only hedge while the original request is still outstanding
+            int n;
+            do {
+                n = _outstanding.get();
+                if ((n == 0) || _done.get()) {
+                    return;
+                }
+            }
+            while (!_outstanding.compareAndSet(n, n + 1));
+
+            if (!acquireToken()) {
+                _outstanding.decrementAndGet();
+                return;
+            }
+            _hedges.incrementAndGet();
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Hedging " + _action + " after " + (System.currentTimeMillis() - _start) + " ms");
+            }
+            send(true);
+        }
+
+        private void send(final boolean isHedge)
+        {
+            Promise<IHttpResponse> promise;
+            try {
+                promise = _sender.call();
+            }
+            catch (Exception e) {
+                promise = Promise.pure(e);
+            }
+            if (isHedge) {
+                _hedged = promise;
+            }
+            else {
+                _original = promise;
+            }
+            if (_done.get()) {
+                // finish() may have run before the promise was published, so it could not cancel it
+                PromiseUtil.cancel(promise);
+                return;
+            }
+
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    if (_done.compareAndSet(false, true)) {
+                        _tracker.record(System.currentTimeMillis() - _start);
+                        if (isHedge) {
+                            _wins.incrementAndGet();
+                        }
+                        finish();
+                        _result.complete(response);
+                    }
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    failed(t);
+                }
+            });
+            promise.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    failed(new AWSAdapterException(Resources.getString("promiseCancelled")));
+                }
+            });
+        }
+
+        // Fails the result once no request remains outstanding
+        private void failed(Throwable t)
+        {
+            if ((_outstanding.decrementAndGet() == 0) && _done.compareAndSet(false, true)) {
+                finish();
+                _result.failure(t);
+            }
+        }
+
+        private void finish()
+        {
+            Future<?> timer = _timer;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            PromiseUtil.cancel(_original);
+            PromiseUtil.cancel(_hedged);
+        }
+    }
+}
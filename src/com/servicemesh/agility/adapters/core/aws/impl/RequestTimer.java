@@ -0,0 +1,223 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.List;
+
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSMetrics;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestHistory;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestMetrics;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestSummary;
+import com.servicemesh.agility.adapters.core.aws.metrics.RequestPhase;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Captures the phase timings and byte counts of a single AWS request and records them when the request finishes.
+ */
+public class RequestTimer
+{
+    // The response headers that carry the AWS request id, e.g. x-amz-request-id for S3
+    private static final String[] REQUEST_ID_HEADERS = { "x-amzn-RequestId", "x-amz-request-id" };
+
+    private final long _start = System.nanoTime();
+    private long _signing = -1;
+    private long _encoding = -1;
+    private long _decoding = -1;
+    private volatile long _dispatchedAt;
+    private volatile long _respondedAt;
+    private volatile long _bytesOut;
+    private volatile long _bytesIn;
+    private volatile int _status = AWSRequestMetrics.NO_RESPONSE;
+    private volatile String _requestId;
+    private int _attempts;
+
+    /** Returns the current time for use as the start of a phase. */
+    public static long now()
+    {
+        return System.nanoTime();
+    }
+
+    public void signed(long startNanos)
+    {
+        _signing = System.nanoTime() - startNanos;
+    }
+
+    public void encoded(long startNanos)
+    {
+        _encoding = System.nanoTime() - startNanos;
+    }
+
+    public void decoded(long startNanos)
+    {
+        _decoding = System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Notes that the request was handed to the HTTP client. A request may be dispatched more than once, e.g. when hedged;
+     * the HTTP phase starts with the first dispatch while the bytes of every dispatch are counted.
+     */
+    public synchronized void dispatched(long bytesOut)
+    {
+        if (_dispatchedAt == 0) {
+            _dispatchedAt = System.nanoTime();
+        }
+        _attempts++;
+        _bytesOut += bytesOut;
+    }
+
+    /** Notes that a HTTP response was received. Only the first response is counted. */
+    public void responded(IHttpResponse response)
+    {
+        if (_respondedAt == 0) {
+            _respondedAt = System.nanoTime();
+            readHeaders(response);
+            _status = response.getStatusCode();
+        }
+    }
+
+    /** Notes the status of the response delivered to the caller, e.g. a cached or coalesced response. */
+    public void setStatus(IHttpResponse response)
+    {
+        if (response != null) {
+            _status = response.getStatusCode();
+        }
+    }
+
+    /**
+     * Records the captured timings.
+     *
+     * @param metrics
+     *            Receives the timings. Optional, may be null.
+     * @param history
+     *            Receives a summary of the request. Optional, may be null.
+     * @param service
+     *            The AWS service name.
+     * @param host
+     *            The host name of the endpoint.
+     * @param action
+     *            The AWS action, or the HTTP method name for requests without an action.
+     */
+    public void finish(AWSMetrics metrics, AWSRequestHistory history, String service, String host, String action)
+    {
+        long[] micros = getMicros(System.nanoTime(), false);
+
+        if (metrics != null) {
+            AWSRequestMetrics request = metrics.getRequestMetrics(service, action, _status);
+            for (RequestPhase phase : RequestPhase.values()) {
+                if (micros[phase.ordinal()] != AWSRequestSummary.NOT_MEASURED) {
+                    request.record(phase, micros[phase.ordinal()]);
+                }
+            }
+            request.recordBytes(_bytesOut, _bytesIn);
+        }
+        if (history != null) {
+            history.record(new AWSRequestSummary(System.currentTimeMillis(), service, host, action, _status, _requestId,
+                    micros, getAttempts(), _bytesOut, _bytesIn));
+        }
+    }
+
+    /** Returns the number of times the request was handed to the HTTP client. */
+    public synchronized int getAttempts()
+    {
+        return _attempts;
+    }
+
+    public long getBytesOut()
+    {
+        return _bytesOut;
+    }
+
+    /**
+     * Returns the phase an unfinished request is in: QUEUEING until it is handed to the HTTP client, which includes
+     * signing and encoding, then HTTP until a response is received, then DECODING.
+     */
+    public RequestPhase getPhase()
+    {
+        if (_dispatchedAt == 0) {
+            return RequestPhase.QUEUEING;
+        }
+        return (_respondedAt == 0) ? RequestPhase.HTTP : RequestPhase.DECODING;
+    }
+
+    /**
+     * Returns the latency of each RequestPhase of an unfinished request in microseconds, indexed by ordinal, or
+     * AWSRequestSummary.NOT_MEASURED. The phase the request is in is measured until now.
+     */
+    public long[] getElapsedMicros()
+    {
+        return getMicros(System.nanoTime(), true);
+    }
+
+    private long[] getMicros(long now, boolean inProgress)
+    {
+        long[] micros = new long[RequestPhase.values().length];
+        micros[RequestPhase.TOTAL.ordinal()] = toMicros(now - _start);
+        micros[RequestPhase.SIGNING.ordinal()] = toMicros(_signing);
+        micros[RequestPhase.ENCODING.ordinal()] = toMicros(_encoding);
+        micros[RequestPhase.QUEUEING.ordinal()] = AWSRequestSummary.NOT_MEASURED;
+        micros[RequestPhase.HTTP.ordinal()] = AWSRequestSummary.NOT_MEASURED;
+        micros[RequestPhase.DECODING.ordinal()] = toMicros(_decoding);
+        long dispatchedAt = _dispatchedAt;
+        long respondedAt = _respondedAt;
+        long preparing = Math.max(_signing, 0) + Math.max(_encoding, 0);
+        if (dispatchedAt != 0) {
+            micros[RequestPhase.QUEUEING.ordinal()] = toMicros((dispatchedAt - _start) - preparing);
+            if (respondedAt != 0) {
+                micros[RequestPhase.HTTP.ordinal()] = toMicros(respondedAt - dispatchedAt);
+            }
+            else if (inProgress) {
+                micros[RequestPhase.HTTP.ordinal()] = toMicros(now - dispatchedAt);
+            }
+        }
+        else if (inProgress) {
+            micros[RequestPhase.QUEUEING.ordinal()] = toMicros((now - _start) - preparing);
+        }
+        if (inProgress && (respondedAt != 0) && (_decoding < 0)) {
+            micros[RequestPhase.DECODING.ordinal()] = toMicros(now - respondedAt);
+        }
+        return micros;
+    }
+
+    // A negative duration is a phase that was not measured
+    private static long toMicros(long nanos)
+    {
+        return (nanos < 0) ? AWSRequestSummary.NOT_MEASURED : nanos / 1000;
+    }
+
+    // Reads the content length and request id in a single pass over the headers
+    private void readHeaders(IHttpResponse response)
+    {
+        long contentLength = -1;
+        List<IHttpHeader> headers = response.getHeaders();
+        if (headers != null) {
+            for (IHttpHeader header : headers) {
+                String name = header.getName();
+                if ((contentLength < 0) && "Content-Length".equalsIgnoreCase(name)) {
+                    try {
+                        contentLength = Long.parseLong(header.getValue().trim());
+                    }
+                    catch (Exception e) {
+                        contentLength = -1;
+                    }
+                }
+                else if (_requestId == null) {
+                    for (String requestIdHeader : REQUEST_ID_HEADERS) {
+                        if (requestIdHeader.equalsIgnoreCase(name)) {
+                            _requestId = header.getValue();
+                        }
+                    }
+                }
+            }
+        }
+        if (contentLength < 0) {
+            // Chunked responses have no Content-Length, so count the bytes of the body
+            byte[] content = response.getContentAsByteArray();
+            contentLength = (content != null) ? content.length : 0;
+        }
+        _bytesIn = contentLength;
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSSlowRequest;
+import com.servicemesh.agility.adapters.core.aws.AWSSlowRequestListener;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Tracks the outstanding requests of all AWS connections and periodically reports those outstanding for longer than
+ * their connection's threshold, optionally cancelling them. Tracking adds a request to a lock-free queue and completion
+ * sets a flag on it; completed requests are only removed from the queue by the periodic scan, so neither submitting nor
+ * completing a request takes a lock.
+ */
+public class RequestWatchdog
+{
+    private static final Logger _logger = Logger.getLogger(RequestWatchdog.class);
+
+    /** The interval at which the shared watchdog scans the outstanding requests. */
+    public static final long SCAN_INTERVAL_MILLIS = 1000;
+
+    private static class Holder
+    {
+        private static final RequestWatchdog INSTANCE = new RequestWatchdog(AWSScheduler.getInstance(), SCAN_INTERVAL_MILLIS);
+    }
+
+    private final ConcurrentLinkedQueue<Entry> _outstanding = new ConcurrentLinkedQueue<Entry>();
+    private final ScheduledExecutorService _scheduler;
+    private final long _intervalMillis;
+    private final AtomicBoolean _scheduled = new AtomicBoolean();
+    private final AtomicLong _slow = new AtomicLong();
+    private final AtomicLong _cancelled = new AtomicLong();
+
+    /**
+     * Creates a watchdog.
+     *
+     * @param scheduler
+     *            Runs the periodic scan, which starts when the first request is tracked. Optional, may be null, in which
+     *            case requests are only scanned via scan().
+     * @param intervalMillis
+     *            The interval between scans.
+     */
+    public RequestWatchdog(ScheduledExecutorService scheduler, long intervalMillis)
+    {
+        _scheduler = scheduler;
+        _intervalMillis = intervalMillis;
+    }
+
+    /** Returns the watchdog shared by all AWS connections. */
+    public static RequestWatchdog getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Tracks a request until its result completes, fails or is cancelled.
+     *
+     * @param result
+     *            The promise returned to the caller.
+     * @param request
+     *            The promise of the HTTP response, cancelled along with the result. Optional, may be null.
+     * @param timer
+     *            The request's phase timings.
+     * @param policy
+     *            The thresholds and listeners of the request's connection.
+     * @param method
+     *            The HTTP method.
+     * @param action
+     *            The AWS action. Optional, may be null.
+     * @param path
+     *            The request URI relative to the endpoint address. Optional, may be null.
+     */
+    public <T> void track(Promise<T> result, Promise<IHttpResponse> request, RequestTimer timer, Policy policy,
+            HttpMethod method, String action, String path)
+    {
+        if (result.isCompleted() || result.isFailed() || result.isCancelled()) {
+            return;
+        }
+        final Entry entry = new Entry(result, request, timer, policy, method, action, path);
+        result.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T arg)
+            {
+                entry._done = true;
+            }
+        });
+        result.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                entry._done = true;
+            }
+        });
+        result.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                entry._done = true;
+            }
+        });
+        _outstanding.offer(entry);
+        if ((_scheduler != null) && _scheduled.compareAndSet(false, true)) {
+            _scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run()
+                {
+                    scan();
+                }
+            }, _intervalMillis, _intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Removes completed requests and reports or cancels those that have exceeded their thresholds. A request is reported
+     * as slow once, and again when it is cancelled.
+     */
+    public synchronized void scan()
+    {
+        long now = System.nanoTime();
+        Iterator<Entry> it = _outstanding.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry._done) {
+                it.remove();
+                continue;
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - entry._start);
+            Policy policy = entry._policy;
+            if ((policy._cancelMillis > 0) && (elapsedMillis >= policy._cancelMillis)) {
+                it.remove();
+                PromiseUtil.cancel(entry._request);
+                PromiseUtil.cancel(entry._result);
+                _cancelled.incrementAndGet();
+                report(entry, elapsedMillis, true);
+            }
+            else if (!entry._reported && (policy._thresholdMillis > 0) && (elapsedMillis >= policy._thresholdMillis)) {
+                entry._reported = true;
+                _slow.incrementAndGet();
+                report(entry, elapsedMillis, false);
+            }
+        }
+    }
+
+    /** Returns the number of requests that are outstanding. */
+    public int getOutstandingCount()
+    {
+        int count = 0;
+        for (Entry entry : _outstanding) {
+            if (!entry._done) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Returns the number of requests reported as slow. */
+    public long getSlowCount()
+    {
+        return _slow.get();
+    }
+
+    /** Returns the number of requests cancelled. */
+    public long getCancelledCount()
+    {
+        return _cancelled.get();
+    }
+
+    private void report(Entry entry, long elapsedMillis, boolean cancelled)
+    {
+        Policy policy = entry._policy;
+        RequestTimer timer = entry._timer;
+        AWSSlowRequest slow = new AWSSlowRequest(policy._endpoint.getServiceName(), policy._endpoint.getHostName(),
+                entry._method.getName(), entry._action, entry._path, entry._startTime, elapsedMillis, timer.getPhase(),
+                timer.getElapsedMicros(), timer.getAttempts(), timer.getBytesOut(), cancelled);
+        _logger.warn(Resources.getString(cancelled ? "slowRequestCancelled" : "slowRequest", slow.toString()));
+        for (AWSSlowRequestListener listener : policy._listeners) {
+            try {
+                listener.slowRequest(slow);
+            }
+            catch (Exception e) {
+                _logger.error("Slow request listener failed: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * The slow request thresholds and listeners of a connection.
+     */
+    public static class Policy
+    {
+        private final AWSEndpoint _endpoint;
+        private final long _thresholdMillis;
+        private final long _cancelMillis;
+        private final List<AWSSlowRequestListener> _listeners = new CopyOnWriteArrayList<AWSSlowRequestListener>();
+
+        /**
+         * Creates a policy.
+         *
+         * @param endpoint
+         *            The endpoint of the connection.
+         * @param thresholdMillis
+         *            The time after which a request is reported as slow, or 0 to never report it before it is cancelled.
+         * @param cancelMillis
+         *            The time after which a request is cancelled, or 0 to never cancel it.
+         */
+        public Policy(AWSEndpoint endpoint, long thresholdMillis, long cancelMillis)
+        {
+            _endpoint = endpoint;
+            _thresholdMillis = thresholdMillis;
+            _cancelMillis = cancelMillis;
+        }
+
+        public void addListener(AWSSlowRequestListener listener)
+        {
+            _listeners.add(listener);
+        }
+
+        public void removeListener(AWSSlowRequestListener listener)
+        {
+            _listeners.remove(listener);
+        }
+    }
+
+    private static class Entry
+    {
+        private final Promise<?> _result;
+        private final Promise<IHttpResponse> _request;
+        private final RequestTimer _timer;
+        private final Policy _policy;
+        private final HttpMethod _method;
+        private final String _action;
+        private final String _path;
+        private final long _start = System.nanoTime();
+        private final long _startTime = System.currentTimeMillis();
+        private volatile boolean _done;
+        // Only accessed by the scan
+        private boolean _reported;
+
+        private Entry(Promise<?> result, Promise<IHttpResponse> request, RequestTimer timer, Policy policy,
+                HttpMethod method, String action, String path)
+        {
+            _result = result;
+            _request = request;
+            _timer = timer;
+            _policy = policy;
+            _method = method;
+            _action = action;
+            _path = path;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSCacheStatistics;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * A size-bounded, least-recently-used cache of successful responses for read-only AWS actions. Entries expire after a
+ * per-action time-to-live and are invalidated when a mutating action references one of the values in their request.
+ */
+public class ResponseCache
+{
+    private static final Logger _logger = Logger.getLogger(ResponseCache.class);
+
+    private static final String[] READ_ACTION_PREFIXES = { "Describe", "List", "Get" };
+    private static final String[] RESOURCE_ID_SUFFIXES = { "Id", "Ids", "Identifier", "Name", "Names" };
+
+    private static class Entry
+    {
+        private final IHttpResponse response;
+        private final long expires;
+        private final Set<String> values;
+
+        private Entry(IHttpResponse response, long expires, Set<String> values)
+        {
+            this.response = response;
+            this.expires = expires;
+            this.values = values;
+        }
+    }
+
+    private final Map<String, Long> _ttls;
+    private final int _maxEntries;
+    private final LinkedHashMap<String, Entry> _entries;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+    private long _generation;
+
+    /**
+     * Creates a response cache.
+     *
+     * @param ttls
+     *            The time-to-live in milliseconds for each cacheable AWS action.
+     * @param maxEntries
+     *            The maximum number of cached responses.
+     */
+    public ResponseCache(Map<String, Long> ttls, final int maxEntries)
+    {
+        _ttls = ttls;
+        _maxEntries = maxEntries;
+        _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 20161019;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() > _maxEntries) {
+                    _evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** Returns true if responses for the action may be cached. */
+    public boolean isCached(String action)
+    {
+        return (action != null) && _ttls.containsKey(action);
+    }
+
+    /** Returns true if the action may modify AWS resources and therefore invalidates cache entries. */
+    public boolean isMutating(String action)
+    {
+        if ((action == null) || _ttls.isEmpty()) {
+            return false;
+        }
+        for (String prefix : READ_ACTION_PREFIXES) {
+            if (action.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current invalidation generation. A response is only stored if no invalidation occurred since its
+     * request was sent.
+     */
+    public synchronized long getGeneration()
+    {
+        return _generation;
+    }
+
+    /**
+     * Returns an unexpired cached response.
+     *
+     * @param key
+     *            Identifies the request.
+     * @return The cached response or null.
+     */
+    public synchronized IHttpResponse get(String key)
+    {
+        Entry entry = _entries.get(key);
+        if ((entry != null) && (entry.expires <= System.currentTimeMillis())) {
+            _entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return entry.response;
+    }
+
+    /**
+     * Caches a successful response.
+     *
+     * @param key
+     *            Identifies the request.
+     * @param action
+     *            The AWS action of the request.
+     * @param parameters
+     *            The request parameters, used for invalidation.
+     * @param response
+     *            The response. Only 2xx responses are cached.
+     * @param generation
+     *            The generation when the request was sent.
+     */
+    public synchronized void put(String key, String action, Map<String, String> parameters, IHttpResponse response,
+            long generation)
+    {
+        Long ttl = _ttls.get(action);
+        int status = response.getStatusCode();
+        if ((ttl == null) || (status < 200) || (status >= 300) || (generation != _generation)) {
+            return;
+        }
+        Set<String> values = new HashSet<String>();
+        for (Map.Entry<String, String> param : parameters.entrySet()) {
+            if (!param.getKey().equals("Action") && !param.getKey().equals("Version")) {
+                values.add(param.getValue());
+            }
+        }
+        _entries.put(key, new Entry(response, System.currentTimeMillis() + ttl, values));
+    }
+
+    /**
+     * Removes entries that may be affected by a mutating action. Entries that reference one of the resource identifiers
+     * of the mutating request are removed, as are entries for unfiltered requests. If the mutating request has no
+     * resource identifiers all entries are removed.
+     *
+     * @param parameters
+     *            The parameters of the mutating request.
+     */
+    public synchronized void invalidate(Map<String, String> parameters)
+    {
+        _generation++;
+        Set<String> ids = getResourceIds(parameters);
+        Iterator<Entry> iter = _entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (ids.isEmpty() || entry.values.isEmpty() || !Collections.disjoint(ids, entry.values)) {
+                iter.remove();
+            }
+        }
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("invalidate: ids=" + ids + ", remaining=" + _entries.size());
+        }
+    }
+
+    /** Returns the cache statistics. */
+    public synchronized AWSCacheStatistics getStatistics()
+    {
+        return new AWSCacheStatistics(_hits, _misses, _evictions, _entries.size());
+    }
+
+    // Resource identifiers are the values of parameters such as "GroupId", "GroupId.1", "DBInstanceIdentifier" or
+    // "LoadBalancerNames.member.1"
+    private Set<String> getResourceIds(Map<String, String> parameters)
+    {
+        Set<String> ids = new HashSet<String>();
+        for (Map.Entry<String, String> param : parameters.entrySet()) {
+            String name = param.getKey();
+            if (name.equals("Action") || name.equals("Version") || name.startsWith("X-Amz-")) {
+                continue;
+            }
+            String[] parts = name.split("\\.");
+            String baseName = parts[0];
+            if ((parts.length == 1) || isIndexed(parts)) {
+                for (String suffix : RESOURCE_ID_SUFFIXES) {
+                    if (baseName.endsWith(suffix)) {
+                        ids.add(param.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private boolean isIndexed(String[] parts)
+    {
+        for (int i = 1; i < parts.length; i++) {
+            if (!parts[i].equals("member") && !parts[i].matches("\\d+")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSStreamingResponse;
+import com.servicemesh.agility.adapters.core.aws.AWSTransport;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpClientFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+/**
+ * Sends requests with ByteBuffer or AWSFileRegion content, which the HTTP client only accepts as a byte array, and
+ * receives responses whose body is streamed rather than buffered. The content is written to the connection with a fixed
+ * length, directly from the buffer or the file's channel, and a String as UTF-8. Requests block a thread of a shared
+ * pool of at most MAX_THREADS threads while they are outstanding; further requests wait for a thread in submission
+ * order.
+ * <p>
+ * Requests are sent with HttpURLConnection rather than the HTTP client, so they are not retried according to
+ * AWSConfig.REQUEST_RETRIES. A failed request fails its promise and callers retry where that is safe, as
+ * S3MultipartUploader does for its parts.
+ */
+public class StreamingTransport implements AWSTransport
+{
+    private static final Logger _logger = Logger.getLogger(StreamingTransport.class);
+
+    /** The content type sent when the caller does not supply one. */
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /** The maximum number of requests sent at once by all streaming transports. */
+    public static final int MAX_THREADS = 64;
+
+    // Idle threads are released after this time
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static class Holder
+    {
+        private static final ExecutorService EXECUTOR = createExecutor();
+    }
+
+    private final int _connectionTimeout;
+    private final int _socketTimeout;
+
+    /**
+     * Creates a streaming transport.
+     *
+     * @param connectionTimeout
+     *            The connection timeout in milliseconds, or 0 for none.
+     * @param socketTimeout
+     *            The socket read timeout in milliseconds, or 0 for none.
+     */
+    public StreamingTransport(int connectionTimeout, int socketTimeout)
+    {
+        _connectionTimeout = Math.max(connectionTimeout, 0);
+        _socketTimeout = Math.max(socketTimeout, 0);
+    }
+
+    /**
+     * Returns the shared pool that sends streamed requests. Work that may block, such as sending a request whose file
+     * content is hashed first, is handed to it from the AWSScheduler, whose tasks must not block.
+     */
+    public static Executor getExecutor()
+    {
+        return Holder.EXECUTOR;
+    }
+
+    @Override
+    public Promise<IHttpResponse> send(HttpMethod method, URI uri, Map<String, String> headers, Object content)
+    {
+        return submit(method, uri, headers, content, true);
+    }
+
+    /**
+     * Sends a signed request and completes when the response status and headers are received. The caller must close
+     * the response.
+     *
+     * @param method
+     *            HTTP method
+     * @param uri
+     *            The request URI, including the query string.
+     * @param headers
+     *            The signed request headers, including Authorization.
+     * @param content
+     *            The request content, or null if there is none.
+     * @return The response, with its body unread.
+     */
+    public Promise<AWSStreamingResponse> open(HttpMethod method, URI uri, Map<String, String> headers, Object content)
+    {
+        return submit(method, uri, headers, content, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Promise<T> submit(final HttpMethod method, final URI uri, final Map<String, String> headers,
+            final Object content, final boolean buffered)
+    {
+        final CompletablePromise<T> promise = PromiseFactory.create();
+        final HttpURLConnection connection;
+        try {
+            connection = (HttpURLConnection) uri.toURL().openConnection();
+        }
+        catch (Exception e) {
+            return Promise.pure(e);
+        }
+        promise.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                connection.disconnect();
+            }
+        });
+        Holder.EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run()
+            {
+                // Cancelled while waiting for a thread
+                if (promise.isCancelled()) {
+                    return;
+                }
+                try {
+                    AWSStreamingResponse response = send(connection, method, headers, content);
+                    Object result = response;
+                    if (buffered) {
+                        try {
+                            result = response.readFully();
+                        }
+                        finally {
+                            response.close();
+                        }
+                    }
+                    if (!promise.isCancelled()) {
+                        promise.complete((T) result);
+                    }
+                    else if (!buffered) {
+                        response.close();
+                    }
+                }
+                catch (Throwable t) {
+                    if (!promise.isCancelled()) {
+                        promise.failure(t);
+                    }
+                }
+            }
+        });
+        return promise;
+    }
+
+    private AWSStreamingResponse send(HttpURLConnection connection, HttpMethod method, Map<String, String> headers,
+            Object content) throws Exception
+    {
+        connection.setRequestMethod(method.getName());
+        connection.setConnectTimeout(_connectionTimeout);
+        connection.setReadTimeout(_socketTimeout);
+        boolean hasContentType = false;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            String name = header.getKey();
+            // Derived from the URI and the content
+            if (name.equalsIgnoreCase("host") || name.equalsIgnoreCase("content-length")) {
+                continue;
+            }
+            hasContentType |= name.equalsIgnoreCase("content-type");
+            connection.setRequestProperty(name, header.getValue());
+        }
+        long length = RequestBody.getLength(content);
+        if (length > 0) {
+            if (!hasContentType) {
+                connection.setRequestProperty("Content-Type", DEFAULT_CONTENT_TYPE);
+            }
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+            OutputStream out = connection.getOutputStream();
+            try {
+                RequestBody.write(content, out);
+            }
+            finally {
+                out.close();
+            }
+        }
+
+        int status = connection.getResponseCode();
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, status, connection.getResponseMessage()));
+        for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+            if (field.getKey() != null) {
+                for (String value : field.getValue()) {
+                    response.setHeader(HttpClientFactory.getInstance().createHeader(field.getKey(), value));
+                }
+            }
+        }
+        InputStream in = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+        if (in == null) {
+            in = new ByteArrayInputStream(new byte[0]);
+        }
+        if (_logger.isDebugEnabled()) {
+            _logger.debug(method.getName() + " " + connection.getURL() + " streamed " + length + " bytes: " + status);
+        }
+        long contentLength = (method == HttpMethod.HEAD) ? 0 : connection.getContentLengthLong();
+        return new AWSStreamingResponse(response, contentLength, in);
+    }
+
+    private static ExecutorService createExecutor()
+    {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "AWSStreamingTransport-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
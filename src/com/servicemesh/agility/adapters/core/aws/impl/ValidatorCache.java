@@ -0,0 +1,186 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSCacheStatistics;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * A least-recently-used cache of responses that carry an ETag or Last-Modified validator, bounded by the total size of
+ * their content. A cached response is revalidated by sending its validators with the next identical request, and is
+ * reused if AWS answers 304 Not Modified.
+ */
+public class ValidatorCache
+{
+    private static final Logger _logger = Logger.getLogger(ValidatorCache.class);
+
+    /** The status code of a response to a conditional request whose resource is unchanged. */
+    public static final int NOT_MODIFIED = 304;
+
+    /** A cached response and its validators. */
+    public static class Entry
+    {
+        private final IHttpResponse response;
+        private final String etag;
+        private final String lastModified;
+        private final long size;
+
+        private Entry(IHttpResponse response, String etag, String lastModified, long size)
+        {
+            this.response = response;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        /** Returns the cached response. */
+        public IHttpResponse getResponse()
+        {
+            return response;
+        }
+
+        /** Returns the headers that make a request conditional on the cached response being stale. */
+        public Map<String, String> getConditionalHeaders()
+        {
+            Map<String, String> headers = new HashMap<String, String>();
+            if (etag != null) {
+                headers.put("If-None-Match", etag);
+            }
+            else {
+                headers.put("If-Modified-Since", lastModified);
+            }
+            return headers;
+        }
+    }
+
+    private final long _maxBytes;
+    private final LinkedHashMap<String, Entry> _entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long _bytes;
+    private long _hits;
+    private long _misses;
+    private long _evictions;
+
+    /**
+     * Creates a validator cache.
+     *
+     * @param maxBytes
+     *            The maximum total content size of the cached responses. Zero disables the cache.
+     */
+    public ValidatorCache(long maxBytes)
+    {
+        _maxBytes = maxBytes;
+    }
+
+    /** Returns true if responses may be cached. */
+    public boolean isEnabled()
+    {
+        return _maxBytes > 0;
+    }
+
+    /**
+     * Returns the cached response for a request.
+     *
+     * @param key
+     *            Identifies the request.
+     * @return The entry or null.
+     */
+    public synchronized Entry get(String key)
+    {
+        return _entries.get(key);
+    }
+
+    /**
+     * Handles the response to a request sent with the validators of an entry, if any.
+     *
+     * @param key
+     *            Identifies the request.
+     * @param entry
+     *            The entry whose validators were sent, or null.
+     * @param response
+     *            The response.
+     * @return The cached response if AWS reported that it is still current, otherwise the given response.
+     */
+    public synchronized IHttpResponse update(String key, Entry entry, IHttpResponse response)
+    {
+        int status = response.getStatusCode();
+        if ((status == NOT_MODIFIED) && (entry != null)) {
+            _hits++;
+            // The entry may have been evicted while the request was in flight
+            if (!_entries.containsKey(key)) {
+                add(key, entry);
+            }
+            return entry.response;
+        }
+        _misses++;
+        remove(key);
+        if ((status >= 200) && (status < 300)) {
+            String etag = getHeader(response, "ETag");
+            String lastModified = getHeader(response, "Last-Modified");
+            byte[] content = response.getContentAsByteArray();
+            long size = (content != null) ? content.length : 0;
+            if (((etag != null) || (lastModified != null)) && (size <= _maxBytes)) {
+                add(key, new Entry(response, etag, lastModified, size));
+            }
+        }
+        return response;
+    }
+
+    /** Returns the cache statistics. */
+    public synchronized AWSCacheStatistics getStatistics()
+    {
+        return new AWSCacheStatistics(_hits, _misses, _evictions, _entries.size());
+    }
+
+    /** Returns the total content size of the cached responses. */
+    public synchronized long getSize()
+    {
+        return _bytes;
+    }
+
+    private void add(String key, Entry entry)
+    {
+        _entries.put(key, entry);
+        _bytes += entry.size;
+        Iterator<Entry> iter = _entries.values().iterator();
+        while ((_bytes > _maxBytes) && iter.hasNext()) {
+            Entry eldest = iter.next();
+            iter.remove();
+            _bytes -= eldest.size;
+            _evictions++;
+        }
+        if (_logger.isTraceEnabled()) {
+            _logger.trace("add: key=" + key + ", entries=" + _entries.size() + ", bytes=" + _bytes);
+        }
+    }
+
+    private void remove(String key)
+    {
+        Entry entry = _entries.remove(key);
+        if (entry != null) {
+            _bytes -= entry.size;
+        }
+    }
+
+    private static String getHeader(IHttpResponse response, String name)
+    {
+        if (response.getHeaders() != null) {
+            for (IHttpHeader header : response.getHeaders()) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
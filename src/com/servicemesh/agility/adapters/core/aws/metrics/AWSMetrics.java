@@ -0,0 +1,171 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Collects latency and byte count metrics for the requests of all AWS connections. Metrics are kept per service, action
+ * and HTTP status and may be pulled via getAllRequestMetrics() or read via JMX. Recording is disabled until enabled via
+ * setEnabled() or JMX.
+ */
+public class AWSMetrics implements AWSMetricsMXBean
+{
+    private static final Logger _logger = Logger.getLogger(AWSMetrics.class);
+
+    public static final String OBJECT_NAME = "com.servicemesh.agility.adapters.core.aws:type=AWSMetrics";
+
+    private static class Holder
+    {
+        private static final AWSMetrics INSTANCE = create();
+    }
+
+    private final ConcurrentMap<String, AWSRequestMetrics> _metrics = new ConcurrentHashMap<String, AWSRequestMetrics>();
+    private volatile boolean _enabled;
+
+    /**
+     * Creates a metrics collector that is not registered with JMX. Connections record to the shared instance returned by
+     * getInstance().
+     */
+    public AWSMetrics()
+    {
+    }
+
+    /** Returns the metrics collector shared by all AWS connections, registering it with JMX on first use. */
+    public static AWSMetrics getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    private static AWSMetrics create()
+    {
+        AWSMetrics metrics = new AWSMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(metrics, name);
+            }
+        }
+        catch (Exception e) {
+            _logger.warn("Unable to register " + OBJECT_NAME + ": " + e);
+        }
+        return metrics;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /** Enables or disables recording. Disabled recording costs a single volatile read per request. */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    /**
+     * Returns the metrics for a service, action and status, creating them if necessary.
+     *
+     * @param service
+     *            The AWS service name, e.g. "ec2".
+     * @param action
+     *            The AWS action, or the HTTP method name for requests without an action.
+     * @param status
+     *            The HTTP status code, or AWSRequestMetrics.NO_RESPONSE.
+     */
+    public AWSRequestMetrics getRequestMetrics(String service, String action, int status)
+    {
+        String key = AWSRequestMetrics.getKey(service, action, status);
+        AWSRequestMetrics metrics = _metrics.get(key);
+        if (metrics == null) {
+            AWSRequestMetrics created = new AWSRequestMetrics(service, action, status);
+            metrics = _metrics.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /** Returns the metrics for a key of the form service/action/status, or null if none were recorded. */
+    public AWSRequestMetrics getRequestMetrics(String key)
+    {
+        return _metrics.get(key);
+    }
+
+    /** Returns the metrics for all recorded service, action and status combinations. */
+    public Collection<AWSRequestMetrics> getAllRequestMetrics()
+    {
+        return new ArrayList<AWSRequestMetrics>(_metrics.values());
+    }
+
+    @Override
+    public String[] getKeys()
+    {
+        return _metrics.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getSummary()
+    {
+        List<String> summary = new ArrayList<String>();
+        for (AWSRequestMetrics metrics : _metrics.values()) {
+            summary.add(metrics.toString());
+        }
+        return summary.toArray(new String[summary.size()]);
+    }
+
+    @Override
+    public long getCount(String key)
+    {
+        AWSRequestMetrics metrics = _metrics.get(key);
+        return (metrics != null) ? metrics.getCount() : 0;
+    }
+
+    @Override
+    public long getBytesIn(String key)
+    {
+        AWSRequestMetrics metrics = _metrics.get(key);
+        return (metrics != null) ? metrics.getBytesIn() : 0;
+    }
+
+    @Override
+    public long getBytesOut(String key)
+    {
+        AWSRequestMetrics metrics = _metrics.get(key);
+        return (metrics != null) ? metrics.getBytesOut() : 0;
+    }
+
+    @Override
+    public double getLatencyMillis(String key, String phase, double percentile)
+    {
+        AWSRequestMetrics metrics = _metrics.get(key);
+        if (metrics == null) {
+            return 0.0;
+        }
+        LatencyHistogram histogram = metrics.getHistogram(RequestPhase.valueOf(phase.toUpperCase()));
+        return (histogram != null) ? histogram.getValueAtPercentile(percentile) / 1000.0 : 0.0;
+    }
+
+    @Override
+    public void reset()
+    {
+        _metrics.clear();
+    }
+}
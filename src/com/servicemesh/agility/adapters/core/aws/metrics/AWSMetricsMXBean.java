@@ -0,0 +1,48 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+/**
+ * The JMX management interface for AWS request metrics, registered as
+ * "com.servicemesh.agility.adapters.core.aws:type=AWSMetrics". Metrics are identified by keys of the form
+ * service/action/status, e.g. "ec2/DescribeInstances/200".
+ */
+public interface AWSMetricsMXBean
+{
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    /** Returns the keys of all recorded metrics. */
+    public String[] getKeys();
+
+    /** Returns a one line summary for each recorded key. */
+    public String[] getSummary();
+
+    /** Returns the number of requests recorded for a key. */
+    public long getCount(String key);
+
+    /** Returns the number of response bytes received for a key. */
+    public long getBytesIn(String key);
+
+    /** Returns the number of request bytes sent for a key. */
+    public long getBytesOut(String key);
+
+    /**
+     * Returns the latency in milliseconds at a percentile for a key and phase.
+     *
+     * @param key
+     *            The metrics key.
+     * @param phase
+     *            The name of a RequestPhase, e.g. "HTTP".
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     */
+    public double getLatencyMillis(String key, String phase, double percentile);
+
+    /** Discards all recorded metrics. */
+    public void reset();
+}
@@ -0,0 +1,156 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps summaries of the most recent requests of all AWS connections in a fixed-size ring, for diagnosing a slow or
+ * failing system without TRACE logging. Recording is lock-free and does no string formatting: a writer claims the next
+ * sequence number and stores its summary in the corresponding slot, overwriting the oldest one. Summaries may be read
+ * via getRecent() or dumped via JMX.
+ */
+public class AWSRequestHistory implements AWSRequestHistoryMXBean
+{
+    private static final Logger _logger = Logger.getLogger(AWSRequestHistory.class);
+
+    public static final String OBJECT_NAME = "com.servicemesh.agility.adapters.core.aws:type=AWSRequestHistory";
+
+    /** The capacity of the shared instance. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static class Holder
+    {
+        private static final AWSRequestHistory INSTANCE = create();
+    }
+
+    private final AtomicReferenceArray<AWSRequestSummary> _slots;
+    private final int _mask;
+    private final AtomicLong _next = new AtomicLong();
+    private volatile long _resetAt;
+    private volatile boolean _enabled = true;
+
+    /**
+     * Creates a history that is not registered with JMX. Connections record to the shared instance returned by
+     * getInstance().
+     *
+     * @param capacity
+     *            The maximum number of requests kept, rounded up to a power of two.
+     */
+    public AWSRequestHistory(int capacity)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        _slots = new AtomicReferenceArray<AWSRequestSummary>(size);
+        _mask = size - 1;
+    }
+
+    /** Returns the history shared by all AWS connections, registering it with JMX on first use. */
+    public static AWSRequestHistory getInstance()
+    {
+        return Holder.INSTANCE;
+    }
+
+    private static AWSRequestHistory create()
+    {
+        AWSRequestHistory history = new AWSRequestHistory(DEFAULT_CAPACITY);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(history, name);
+            }
+        }
+        catch (Exception e) {
+            _logger.warn("Unable to register " + OBJECT_NAME + ": " + e);
+        }
+        return history;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    /** Enables or disables recording. Disabled recording costs a single volatile read per request. */
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return _slots.length();
+    }
+
+    @Override
+    public long getRecordedCount()
+    {
+        return _next.get() - _resetAt;
+    }
+
+    /**
+     * Records a finished request, replacing the oldest one if the history is full.
+     */
+    public void record(AWSRequestSummary summary)
+    {
+        long sequence = _next.getAndIncrement();
+        summary._sequence = sequence;
+        _slots.lazySet((int) (sequence & _mask), summary);
+    }
+
+    /**
+     * Returns the kept requests, oldest first. A request that is being recorded concurrently may be omitted.
+     */
+    public List<AWSRequestSummary> getRecent()
+    {
+        long end = _next.get();
+        long start = Math.max(_resetAt, end - _slots.length());
+        List<AWSRequestSummary> recent = new ArrayList<AWSRequestSummary>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            AWSRequestSummary summary = _slots.get((int) (sequence & _mask));
+            // A slot holds an older summary until its writer stores, or a newer one once the ring has wrapped
+            if ((summary != null) && (summary._sequence == sequence)) {
+                recent.add(summary);
+            }
+        }
+        return recent;
+    }
+
+    @Override
+    public String[] dump()
+    {
+        List<AWSRequestSummary> recent = getRecent();
+        String[] lines = new String[recent.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = recent.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public void reset()
+    {
+        _resetAt = _next.get();
+    }
+}
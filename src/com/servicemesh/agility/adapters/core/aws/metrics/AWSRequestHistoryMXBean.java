@@ -0,0 +1,29 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+/**
+ * The JMX management interface for the history of recent AWS requests, registered as
+ * "com.servicemesh.agility.adapters.core.aws:type=AWSRequestHistory".
+ */
+public interface AWSRequestHistoryMXBean
+{
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    /** Returns the maximum number of requests kept. */
+    public int getCapacity();
+
+    /** Returns the number of requests recorded since creation or the last reset, including those no longer kept. */
+    public long getRecordedCount();
+
+    /** Returns a one line summary of each kept request, oldest first. */
+    public String[] dump();
+
+    /** Discards all kept requests. */
+    public void reset();
+}
@@ -0,0 +1,146 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The metrics for the requests of an AWS service and action that completed with the same HTTP status.
+ */
+public class AWSRequestMetrics
+{
+    /** The status recorded for requests that failed without a HTTP response. */
+    public static final int NO_RESPONSE = 0;
+
+    private final String _service;
+    private final String _action;
+    private final int _status;
+    private final AtomicReferenceArray<LatencyHistogram> _phases =
+            new AtomicReferenceArray<LatencyHistogram>(RequestPhase.values().length);
+    private final AtomicLong _bytesIn = new AtomicLong();
+    private final AtomicLong _bytesOut = new AtomicLong();
+
+    /**
+     * Creates request metrics.
+     *
+     * @param service
+     *            The AWS service name, e.g. "ec2".
+     * @param action
+     *            The AWS action, or the HTTP method name for requests without an action.
+     * @param status
+     *            The HTTP status code, or NO_RESPONSE.
+     */
+    public AWSRequestMetrics(String service, String action, int status)
+    {
+        _service = service;
+        _action = action;
+        _status = status;
+    }
+
+    /** Returns a key of the form service/action/status that identifies these metrics. */
+    public static String getKey(String service, String action, int status)
+    {
+        return service + "/" + action + "/" + status;
+    }
+
+    public String getKey()
+    {
+        return getKey(_service, _action, _status);
+    }
+
+    public String getService()
+    {
+        return _service;
+    }
+
+    public String getAction()
+    {
+        return _action;
+    }
+
+    public int getStatus()
+    {
+        return _status;
+    }
+
+    /** Returns the number of requests recorded. */
+    public long getCount()
+    {
+        LatencyHistogram total = _phases.get(RequestPhase.TOTAL.ordinal());
+        return (total != null) ? total.getCount() : 0;
+    }
+
+    /** Returns the number of response bytes received. */
+    public long getBytesIn()
+    {
+        return _bytesIn.get();
+    }
+
+    /** Returns the number of request bytes sent, i.e. the query string and content. */
+    public long getBytesOut()
+    {
+        return _bytesOut.get();
+    }
+
+    /**
+     * Returns the latency histogram for a phase.
+     *
+     * @return The histogram, or null if no latency has been recorded for the phase.
+     */
+    public LatencyHistogram getHistogram(RequestPhase phase)
+    {
+        return _phases.get(phase.ordinal());
+    }
+
+    /**
+     * Records the latency of a phase.
+     *
+     * @param phase
+     *            The request phase.
+     * @param micros
+     *            The latency in microseconds.
+     */
+    public void record(RequestPhase phase, long micros)
+    {
+        LatencyHistogram histogram = _phases.get(phase.ordinal());
+        if (histogram == null) {
+            // Histograms are only allocated for the phases a request actually passes through
+            _phases.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+            histogram = _phases.get(phase.ordinal());
+        }
+        histogram.record(micros);
+    }
+
+    /** Records the bytes sent and received by a request. */
+    public void recordBytes(long bytesOut, long bytesIn)
+    {
+        if (bytesOut > 0) {
+            _bytesOut.addAndGet(bytesOut);
+        }
+        if (bytesIn > 0) {
+            _bytesIn.addAndGet(bytesIn);
+        }
+    }
+
+    /** Returns a one line summary suitable for logging. */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(getKey());
+        sb.append(": count=").append(getCount());
+        for (RequestPhase phase : RequestPhase.values()) {
+            LatencyHistogram histogram = getHistogram(phase);
+            if (histogram != null) {
+                sb.append(", ").append(phase.name().toLowerCase()).append("(p50/p99/max us)=")
+                        .append(histogram.getValueAtPercentile(50)).append("/")
+                        .append(histogram.getValueAtPercentile(99)).append("/").append(histogram.getMax());
+            }
+        }
+        sb.append(", bytesOut=").append(getBytesOut()).append(", bytesIn=").append(getBytesIn());
+        return sb.toString();
+    }
+}
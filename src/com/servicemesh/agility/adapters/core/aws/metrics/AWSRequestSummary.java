@@ -0,0 +1,147 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * A compact summary of a finished AWS request, kept by AWSRequestHistory. Summaries hold references to strings the
+ * request already has and are only formatted when they are read.
+ */
+public class AWSRequestSummary
+{
+    /** The value returned by getMicros() for a phase that was not measured. */
+    public static final long NOT_MEASURED = -1;
+
+    private final long _timestamp;
+    private final String _service;
+    private final String _host;
+    private final String _action;
+    private final int _status;
+    private final String _requestId;
+    private final long[] _micros;
+    private final int _attempts;
+    private final long _bytesOut;
+    private final long _bytesIn;
+
+    // Assigned by AWSRequestHistory before the summary is published
+    long _sequence = -1;
+
+    /**
+     * Creates a request summary.
+     *
+     * @param timestamp
+     *            The time the request finished, in milliseconds since the epoch.
+     * @param service
+     *            The AWS service name, e.g. "ec2".
+     * @param host
+     *            The host name of the endpoint.
+     * @param action
+     *            The AWS action, or the HTTP method name for requests without an action.
+     * @param status
+     *            The HTTP status code, or AWSRequestMetrics.NO_RESPONSE.
+     * @param requestId
+     *            The AWS request id from the response headers. Optional, may be null.
+     * @param micros
+     *            The latency of each RequestPhase in microseconds, indexed by ordinal, or NOT_MEASURED.
+     * @param attempts
+     *            The number of times the request was handed to the HTTP client, e.g. more than one for a hedged request.
+     * @param bytesOut
+     *            The number of request bytes sent.
+     * @param bytesIn
+     *            The number of response bytes received.
+     */
+    public AWSRequestSummary(long timestamp, String service, String host, String action, int status, String requestId,
+            long[] micros, int attempts, long bytesOut, long bytesIn)
+    {
+        _timestamp = timestamp;
+        _service = service;
+        _host = host;
+        _action = action;
+        _status = status;
+        _requestId = requestId;
+        _micros = micros;
+        _attempts = attempts;
+        _bytesOut = bytesOut;
+        _bytesIn = bytesIn;
+    }
+
+    public long getTimestamp()
+    {
+        return _timestamp;
+    }
+
+    public String getService()
+    {
+        return _service;
+    }
+
+    public String getHost()
+    {
+        return _host;
+    }
+
+    public String getAction()
+    {
+        return _action;
+    }
+
+    public int getStatus()
+    {
+        return _status;
+    }
+
+    public String getRequestId()
+    {
+        return _requestId;
+    }
+
+    /** Returns the latency of a phase in microseconds, or NOT_MEASURED. */
+    public long getMicros(RequestPhase phase)
+    {
+        return _micros[phase.ordinal()];
+    }
+
+    public int getAttempts()
+    {
+        return _attempts;
+    }
+
+    public long getBytesOut()
+    {
+        return _bytesOut;
+    }
+
+    public long getBytesIn()
+    {
+        return _bytesIn;
+    }
+
+    /** Returns a one line summary suitable for logging. */
+    @Override
+    public String toString()
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        StringBuilder sb = new StringBuilder(fmt.format(new Date(_timestamp)));
+        sb.append(" ").append(_service).append("/").append(_action).append("/").append(_status);
+        sb.append(" host=").append(_host);
+        if (_requestId != null) {
+            sb.append(" requestId=").append(_requestId);
+        }
+        for (RequestPhase phase : RequestPhase.values()) {
+            long micros = getMicros(phase);
+            if (micros != NOT_MEASURED) {
+                sb.append(" ").append(phase.name().toLowerCase()).append("=").append(micros).append("us");
+            }
+        }
+        sb.append(" attempts=").append(_attempts);
+        sb.append(" bytesOut=").append(_bytesOut).append(" bytesIn=").append(_bytesIn);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latency values in microseconds. Values are counted in log-linear buckets: each power of two
+ * is divided into 16 linear sub-buckets, so a reported value is within about 6% of the recorded value. Recording is a
+ * few atomic increments and never allocates.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Values are tracked up to 2^40 microseconds, about 12 days; larger values are counted as the maximum. */
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray _counts = new AtomicLongArray((MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _total = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param micros
+     *            The latency in microseconds. Negative values are recorded as 0.
+     */
+    public void record(long micros)
+    {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        _counts.incrementAndGet(getIndex(value));
+        _count.incrementAndGet();
+        _total.addAndGet(value);
+        long max = _max.get();
+        while ((value > max) && (!_max.compareAndSet(max, value))) {
+            max = _max.get();
+        }
+    }
+
+    /** Returns the number of recorded values. */
+    public long getCount()
+    {
+        return _count.get();
+    }
+
+    /** Returns the largest recorded value in microseconds. */
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    /** Returns the mean of the recorded values in microseconds, or 0 if there are none. */
+    public double getMean()
+    {
+        long count = _count.get();
+        return (count == 0) ? 0.0 : (double) _total.get() / count;
+    }
+
+    /**
+     * Returns the value at a percentile of the recorded values, as the highest value equivalent to the bucket containing
+     * the percentile.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The value in microseconds, or 0 if there are no recorded values.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = 0;
+        int length = _counts.length();
+        long[] counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * Math.min(Math.max(percentile, 0.0), 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(getHighestValue(i), _max.get());
+            }
+        }
+        return _max.get();
+    }
+
+    /** Clears all recorded values. Values recorded concurrently with a reset may be partially retained. */
+    public void reset()
+    {
+        for (int i = 0; i < _counts.length(); i++) {
+            _counts.set(i, 0);
+        }
+        _count.set(0);
+        _total.set(0);
+        _max.set(0);
+    }
+
+    private static int getIndex(long value)
+    {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return ((shift + 1) * SUB_BUCKET_COUNT) + subBucket;
+    }
+
+    private static long getHighestValue(int index)
+    {
+        int bucket = index / SUB_BUCKET_COUNT;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        int shift = bucket - 1;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+}
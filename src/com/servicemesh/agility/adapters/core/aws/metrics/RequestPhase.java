@@ -0,0 +1,30 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+/**
+ * The phases of an AWS request for which latency is recorded.
+ */
+public enum RequestPhase
+{
+    /** From the call to AWSConnection.execute() until the response is decoded or the request fails. */
+    TOTAL,
+
+    /** Computing the AWS Signature Version 4. */
+    SIGNING,
+
+    /** Encoding a request object as content. */
+    ENCODING,
+
+    /** Waiting within the connection before the request is handed to the HTTP client, excluding signing and encoding. */
+    QUEUEING,
+
+    /** From handing the request to the HTTP client until the response is received, including HTTP client retries. */
+    HTTP,
+
+    /** Decoding the response into the requested class. */
+    DECODING
+}
@@ -0,0 +1,69 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.reactive;
+
+import java.util.List;
+
+import org.reactivestreams.Publisher;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSPageExtractor;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Creates Reactive Streams publishers over an AWS connection. AWS requests are sent only as subscribers signal demand,
+ * so a slow subscriber paces the requests rather than buffering their results, and cancelling a subscription cancels
+ * its outstanding requests. Subscribers are signalled on HTTP client threads or on the thread that calls request().
+ */
+public class AWSPublishers
+{
+    /**
+     * Returns a publisher of the items of a paginated Query API action, e.g. DescribeDBParameters with its Marker. Each
+     * subscription pages through the action on its own; the next page is requested once the subscriber has requested
+     * more items than the previous pages returned.
+     *
+     * @param connection
+     *            The connection that sends the page requests.
+     * @param params
+     *            Query parameters for the first page as returned by AWSConnection.initQueryParams(). They are read
+     *            when a subscriber subscribes and must not be passed to execute() as well, since signing adds to them.
+     * @param tokenParam
+     *            The name of the query parameter that requests the next page, e.g. "Marker" or "NextToken".
+     * @param responseClass
+     *            The class of the decoded page.
+     * @param extractor
+     *            Extracts the items and the next token from a page.
+     * @return The publisher.
+     */
+    public static <T, I> Publisher<I> paginate(AWSConnection connection, QueryParams params, String tokenParam,
+            Class<T> responseClass, AWSPageExtractor<T, I> extractor)
+    {
+        return new PagePublisher<T, I>(connection, params, tokenParam, responseClass, extractor);
+    }
+
+    /**
+     * Returns a publisher of the decoded responses of a list of Query API requests, e.g. a bulk of
+     * DescribeSecurityGroups or CreateTags requests, in the order of the requests. Each subscription sends the
+     * requests, up to the given number concurrently and no more than the subscriber has requested. A failed request
+     * fails the subscription.
+     *
+     * @param connection
+     *            The connection that sends the requests via execute().
+     * @param requests
+     *            Query parameters for each request as returned by AWSConnection.initQueryParams(). They are copied
+     *            when the publisher is created.
+     * @param responseClass
+     *            The class of the decoded responses.
+     * @param concurrency
+     *            The maximum number of outstanding requests of a subscription.
+     * @return The publisher.
+     */
+    public static <T> Publisher<T> execute(AWSConnection connection, List<QueryParams> requests,
+            Class<T> responseClass, int concurrency)
+    {
+        return new RequestPublisher<T>(connection, requests, responseClass, concurrency);
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.reactive;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+import org.apache.log4j.Logger;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+
+/**
+ * A subscription that buffers received items and signals them as the subscriber requests them. Subclasses are asked
+ * for more items only while the subscriber's outstanding demand exceeds the buffered items, so AWS requests follow
+ * demand. Items arrive on HTTP client threads; signals are serialized by a drain loop so that the subscriber is never
+ * called concurrently or reentrantly from request().
+ */
+abstract class DemandSubscription<T> implements Subscription
+{
+    private static final Logger _logger = Logger.getLogger(DemandSubscription.class);
+
+    private final Subscriber<? super T> _subscriber;
+    private final Deque<T> _items = new ArrayDeque<T>();
+    private long _demand;
+    private boolean _draining;
+    private boolean _missed;
+    private boolean _done;
+    private Throwable _failure;
+    private boolean _cancelled;
+
+    protected DemandSubscription(Subscriber<? super T> subscriber)
+    {
+        _subscriber = subscriber;
+    }
+
+    /** Signals onSubscribe to the subscriber. */
+    void start()
+    {
+        _subscriber.onSubscribe(this);
+    }
+
+    @Override
+    public void request(long n)
+    {
+        if (n <= 0) {
+            // Reactive Streams rule 3.9
+            fail(new IllegalArgumentException(Resources.getString("invalidDemand", n)));
+            return;
+        }
+        synchronized (this) {
+            _demand = ((_demand + n) < 0) ? Long.MAX_VALUE : (_demand + n);
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel()
+    {
+        synchronized (this) {
+            if (_cancelled) {
+                return;
+            }
+            _cancelled = true;
+            _items.clear();
+        }
+        cancelled();
+    }
+
+    /**
+     * Requests more items. Called from the drain loop, never concurrently, while the subscriber's demand exceeds the
+     * buffered items. Does nothing if the items are already being requested.
+     *
+     * @param shortfall
+     *            The number of items requested by the subscriber but not yet received.
+     */
+    protected abstract void fetch(long shortfall);
+
+    /** Stops requesting items, e.g. cancels outstanding requests. */
+    protected abstract void cancelled();
+
+    /** Returns true if the subscription has been cancelled or has terminated. */
+    protected synchronized boolean isCancelled()
+    {
+        return _cancelled;
+    }
+
+    /** Buffers received items and signals them as far as demand allows. */
+    protected void emit(Collection<? extends T> items)
+    {
+        offer(items);
+        drain();
+    }
+
+    /** Buffers received items without signalling them, e.g. while holding the lock that orders them. */
+    protected synchronized void offer(Collection<? extends T> items)
+    {
+        if (!_cancelled) {
+            _items.addAll(items);
+        }
+    }
+
+    /** Signals onComplete once the buffered items have been signalled. */
+    protected void complete()
+    {
+        synchronized (this) {
+            _done = true;
+        }
+        drain();
+    }
+
+    /** Signals onError, discarding any buffered items, and stops requesting items. */
+    protected void fail(Throwable t)
+    {
+        synchronized (this) {
+            if (_done) {
+                return;
+            }
+            _done = true;
+            _failure = t;
+            _items.clear();
+        }
+        cancelled();
+        drain();
+    }
+
+    /** Signals buffered items as far as demand allows, the terminal signal, or asks for more items. */
+    protected void drain()
+    {
+        synchronized (this) {
+            if (_draining) {
+                _missed = true;
+                return;
+            }
+            _draining = true;
+        }
+        while (true) {
+            T item = null;
+            boolean terminated = false;
+            Throwable failure = null;
+            long shortfall = 0;
+            synchronized (this) {
+                _missed = false;
+                if (_cancelled) {
+                    _draining = false;
+                    return;
+                }
+                if ((_demand > 0) && !_items.isEmpty()) {
+                    item = _items.poll();
+                    _demand--;
+                }
+                else if (_items.isEmpty() && _done) {
+                    // Terminal signals cancel the subscription (rule 1.6), leaving the loop draining for good
+                    _cancelled = true;
+                    terminated = true;
+                    failure = _failure;
+                }
+                else if (!_done) {
+                    shortfall = _demand - _items.size();
+                }
+            }
+            try {
+                if (item != null) {
+                    _subscriber.onNext(item);
+                    continue;
+                }
+                if (terminated) {
+                    if (failure != null) {
+                        _subscriber.onError(failure);
+                    }
+                    else {
+                        _subscriber.onComplete();
+                    }
+                    return;
+                }
+            }
+            catch (Throwable t) {
+                // A subscriber must not throw (rule 2.13); the subscription is considered cancelled
+                _logger.error(Resources.getString("subscriberFailed", t.toString()), t);
+                cancel();
+                return;
+            }
+            if (shortfall > 0) {
+                fetch(shortfall);
+            }
+            synchronized (this) {
+                if (!_missed) {
+                    _draining = false;
+                    return;
+                }
+            }
+        }
+    }
+}
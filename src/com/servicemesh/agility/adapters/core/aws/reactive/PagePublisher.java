@@ -0,0 +1,104 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.reactive;
+
+import java.util.List;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSPageExtractor;
+import com.servicemesh.agility.adapters.core.aws.impl.Paginator;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Publishes the items of a paginated Query API action. Each subscriber gets its own paginator, which requests a page
+ * only when the subscriber's demand exceeds the items already received.
+ */
+class PagePublisher<T, I> implements Publisher<I>
+{
+    private final AWSConnection _connection;
+    private final QueryParams _params;
+    private final String _tokenParam;
+    private final Class<T> _responseClass;
+    private final AWSPageExtractor<T, I> _extractor;
+
+    PagePublisher(AWSConnection connection, QueryParams params, String tokenParam, Class<T> responseClass,
+            AWSPageExtractor<T, I> extractor)
+    {
+        _connection = connection;
+        _params = params;
+        _tokenParam = tokenParam;
+        _responseClass = responseClass;
+        _extractor = extractor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super I> subscriber)
+    {
+        if (subscriber == null) {
+            // Reactive Streams rule 1.9
+            throw new NullPointerException("subscriber");
+        }
+        new PageSubscription(subscriber).start();
+    }
+
+    private class PageSubscription extends DemandSubscription<I>
+    {
+        // Pages are not prefetched; demand decides when the next page is requested
+        private final Paginator<T, I> _paginator =
+                new Paginator<T, I>(_connection, _params, _tokenParam, _responseClass, _extractor, 0);
+        private boolean _fetching;
+
+        private PageSubscription(Subscriber<? super I> subscriber)
+        {
+            super(subscriber);
+        }
+
+        @Override
+        protected void fetch(long shortfall)
+        {
+            synchronized (this) {
+                if (_fetching) {
+                    return;
+                }
+                _fetching = true;
+            }
+            Promise<List<I>> page = _paginator.next();
+            page.onComplete(new Callback<List<I>>() {
+                @Override
+                public void invoke(List<I> items)
+                {
+                    synchronized (PageSubscription.this) {
+                        _fetching = false;
+                    }
+                    if (items == null) {
+                        complete();
+                    }
+                    else {
+                        emit(items);
+                    }
+                }
+            });
+            page.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    fail(t);
+                }
+            });
+        }
+
+        @Override
+        protected void cancelled()
+        {
+            _paginator.close();
+        }
+    }
+}
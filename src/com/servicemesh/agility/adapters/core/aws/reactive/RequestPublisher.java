@@ -0,0 +1,158 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.reactive;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.impl.QueryStringUtil;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Publishes the decoded responses of a list of Query API requests in request order. A request is sent only when the
+ * subscriber's demand exceeds the responses received or outstanding, with at most a fixed number outstanding.
+ */
+class RequestPublisher<T> implements Publisher<T>
+{
+    private final AWSConnection _connection;
+    private final List<Map<String, String>> _requests;
+    private final Class<T> _responseClass;
+    private final int _concurrency;
+
+    RequestPublisher(AWSConnection connection, List<QueryParams> requests, Class<T> responseClass, int concurrency)
+    {
+        _connection = connection;
+        // The parameters are copied since signing adds to a QueryParams
+        _requests = new ArrayList<Map<String, String>>();
+        for (QueryParams params : requests) {
+            _requests.add(QueryStringUtil.getParameters(params.asQueryString()));
+        }
+        _responseClass = responseClass;
+        _concurrency = Math.max(concurrency, 1);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber)
+    {
+        if (subscriber == null) {
+            // Reactive Streams rule 1.9
+            throw new NullPointerException("subscriber");
+        }
+        new RequestSubscription(subscriber).start();
+    }
+
+    // A request and its response once received
+    private class Slot
+    {
+        private Promise<T> promise;
+        private T response;
+        private boolean received;
+    }
+
+    private class RequestSubscription extends DemandSubscription<T>
+    {
+        private final Deque<Slot> _outstanding = new ArrayDeque<Slot>();
+        private int _next;
+
+        private RequestSubscription(Subscriber<? super T> subscriber)
+        {
+            super(subscriber);
+        }
+
+        @Override
+        protected void fetch(long shortfall)
+        {
+            while (true) {
+                final Slot slot = new Slot();
+                int index;
+                synchronized (this) {
+                    if ((_next == _requests.size()) && _outstanding.isEmpty()) {
+                        // There were no requests
+                        complete();
+                        return;
+                    }
+                    if ((_next == _requests.size()) || (_outstanding.size() >= Math.min(_concurrency, shortfall))) {
+                        return;
+                    }
+                    index = _next++;
+                    _outstanding.add(slot);
+                }
+                Promise<T> promise = _connection.execute(QueryStringUtil.getQueryParams(_requests.get(index)),
+                        _responseClass);
+                synchronized (this) {
+                    slot.promise = promise;
+                }
+                if (isCancelled()) {
+                    PromiseUtil.cancel(promise);
+                    return;
+                }
+                promise.onComplete(new Callback<T>() {
+                    @Override
+                    public void invoke(T response)
+                    {
+                        received(slot, response);
+                    }
+                });
+                promise.onFailure(new Callback<Throwable>() {
+                    @Override
+                    public void invoke(Throwable t)
+                    {
+                        fail(t);
+                    }
+                });
+            }
+        }
+
+        @Override
+        protected void cancelled()
+        {
+            List<Promise<T>> outstanding = new ArrayList<Promise<T>>();
+            synchronized (this) {
+                for (Slot slot : _outstanding) {
+                    outstanding.add(slot.promise);
+                }
+                _outstanding.clear();
+                _next = _requests.size();
+            }
+            for (Promise<T> promise : outstanding) {
+                PromiseUtil.cancel(promise);
+            }
+        }
+
+        // Emits the responses at the head of the request order
+        private void received(Slot slot, T response)
+        {
+            List<T> responses = new ArrayList<T>();
+            boolean finished;
+            synchronized (this) {
+                slot.response = response;
+                slot.received = true;
+                while (!_outstanding.isEmpty() && _outstanding.peek().received) {
+                    responses.add(_outstanding.poll().response);
+                }
+                finished = _outstanding.isEmpty() && (_next == _requests.size());
+                // Buffered under the lock so that responses completing concurrently keep their order
+                offer(responses);
+            }
+            if (finished) {
+                complete();
+            }
+            else {
+                drain();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.record;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+
+/**
+ * An ordered list of recorded exchanges. Fixtures are stored as a gzip-compressed binary stream: a header of the magic
+ * number 0x41575346 ("AWSF"), a format version and the exchange count, followed by each exchange's request key fields,
+ * timing, status, headers and length-prefixed response content.
+ */
+public class AWSFixture
+{
+    private static final int MAGIC = 0x41575346;
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final List<AWSRecordedExchange> _exchanges = new ArrayList<AWSRecordedExchange>();
+
+    public AWSFixture()
+    {
+    }
+
+    public AWSFixture(List<AWSRecordedExchange> exchanges)
+    {
+        _exchanges.addAll(exchanges);
+    }
+
+    /** Returns the exchanges in the order they were recorded. */
+    public List<AWSRecordedExchange> getExchanges()
+    {
+        return Collections.unmodifiableList(_exchanges);
+    }
+
+    public void add(AWSRecordedExchange exchange)
+    {
+        _exchanges.add(exchange);
+    }
+
+    public int size()
+    {
+        return _exchanges.size();
+    }
+
+    /**
+     * Reads a fixture file.
+     */
+    public static AWSFixture load(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try {
+            return read(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a fixture. The stream is not closed.
+     */
+    public static AWSFixture read(InputStream in) throws IOException
+    {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+        if ((data.readInt() != MAGIC) || (data.readInt() != VERSION)) {
+            throw new IOException(Resources.getString("invalidFixture"));
+        }
+        int count = data.readInt();
+        AWSFixture fixture = new AWSFixture();
+        for (int i = 0; i < count; i++) {
+            String method = readString(data);
+            String path = readString(data);
+            String contentHash = readString(data);
+            long offsetMillis = data.readLong();
+            long durationMillis = data.readLong();
+            int statusCode = data.readInt();
+            String reason = readString(data);
+            int headerCount = data.readInt();
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            for (int h = 0; h < headerCount; h++) {
+                headers.put(readString(data), readString(data));
+            }
+            byte[] content = new byte[data.readInt()];
+            data.readFully(content);
+            fixture.add(new AWSRecordedExchange(method, path, contentHash, offsetMillis, durationMillis, statusCode, reason,
+                    headers, content));
+        }
+        return fixture;
+    }
+
+    /**
+     * Writes the fixture to a file, replacing any existing content.
+     */
+    public void save(File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            write(out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the fixture. The stream is not closed.
+     */
+    public void write(OutputStream out) throws IOException
+    {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(_exchanges.size());
+        for (AWSRecordedExchange exchange : _exchanges) {
+            writeString(data, exchange.getMethod());
+            writeString(data, exchange.getPath());
+            writeString(data, exchange.getContentHash());
+            data.writeLong(exchange.getOffsetMillis());
+            data.writeLong(exchange.getDurationMillis());
+            data.writeInt(exchange.getStatusCode());
+            writeString(data, exchange.getReason());
+            data.writeInt(exchange.getHeaders().size());
+            for (Map.Entry<String, String> header : exchange.getHeaders().entrySet()) {
+                writeString(data, header.getKey());
+                writeString(data, header.getValue());
+            }
+            data.writeInt(exchange.getContent().length);
+            data.write(exchange.getContent());
+        }
+        data.flush();
+        gzip.finish();
+    }
+
+    // Strings are written as their UTF-8 length, or -1 for null, followed by the bytes
+    private static void writeString(DataOutputStream data, String value) throws IOException
+    {
+        if (value == null) {
+            data.writeInt(-1);
+        }
+        else {
+            byte[] bytes = value.getBytes(UTF8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException
+    {
+        int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.record;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A recorded request and its response. The request is identified by its method, path, query string and content hash;
+ * signing parameters are not part of the query string and the values of secret parameters are masked.
+ */
+public class AWSRecordedExchange
+{
+    /** Replaces secret values in recorded requests and responses. */
+    public static final String SCRUBBED = "SCRUBBED";
+
+    private final String _method;
+    private final String _path;
+    private final String _contentHash;
+    private final long _offsetMillis;
+    private final long _durationMillis;
+    private final int _statusCode;
+    private final String _reason;
+    private final Map<String, String> _headers;
+    private final byte[] _content;
+
+    /**
+     * Creates a recorded exchange.
+     *
+     * @param method
+     *            The HTTP method name.
+     * @param path
+     *            The request path and query string, as returned by getRequestPath().
+     * @param contentHash
+     *            The hex SHA-256 hash of the request content, or null if there was none.
+     * @param offsetMillis
+     *            The time the request was sent, relative to the start of the recording.
+     * @param durationMillis
+     *            The time until the response was received.
+     * @param statusCode
+     *            The HTTP status code of the response.
+     * @param reason
+     *            The HTTP reason phrase of the response. Optional, may be null.
+     * @param headers
+     *            The response headers. Optional, may be null.
+     * @param content
+     *            The response content. Optional, may be null.
+     */
+    public AWSRecordedExchange(String method, String path, String contentHash, long offsetMillis, long durationMillis,
+            int statusCode, String reason, Map<String, String> headers, byte[] content)
+    {
+        _method = method;
+        _path = path;
+        _contentHash = contentHash;
+        _offsetMillis = offsetMillis;
+        _durationMillis = durationMillis;
+        _statusCode = statusCode;
+        _reason = reason;
+        _headers = (headers != null) ? new LinkedHashMap<String, String>(headers) : new LinkedHashMap<String, String>();
+        _content = (content != null) ? content : new byte[0];
+    }
+
+    public String getMethod()
+    {
+        return _method;
+    }
+
+    public String getPath()
+    {
+        return _path;
+    }
+
+    public String getContentHash()
+    {
+        return _contentHash;
+    }
+
+    public long getOffsetMillis()
+    {
+        return _offsetMillis;
+    }
+
+    public long getDurationMillis()
+    {
+        return _durationMillis;
+    }
+
+    public int getStatusCode()
+    {
+        return _statusCode;
+    }
+
+    public String getReason()
+    {
+        return _reason;
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return Collections.unmodifiableMap(_headers);
+    }
+
+    public byte[] getContent()
+    {
+        return _content;
+    }
+
+    /**
+     * Returns the key that identifies the request of this exchange.
+     */
+    public String getRequestKey()
+    {
+        return getRequestKey(_method, _path, _contentHash);
+    }
+
+    /**
+     * Returns the key that identifies a request.
+     *
+     * @param method
+     *            The HTTP method name.
+     * @param path
+     *            The request path and query string, as returned by getRequestPath().
+     * @param contentHash
+     *            The hex SHA-256 hash of the request content, or null if there was none.
+     */
+    public static String getRequestKey(String method, String path, String contentHash)
+    {
+        StringBuilder key = new StringBuilder(method).append(' ').append(path);
+        if (contentHash != null) {
+            key.append(' ').append(contentHash);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the raw path and query string of a request URI with the signing parameters removed, the values of secret
+     * parameters masked and the remaining parameters sorted. The host is omitted so that a recording may be replayed
+     * against another endpoint.
+     */
+    public static String getRequestPath(URI uri)
+    {
+        String path = uri.getRawPath();
+        StringBuilder sb = new StringBuilder(((path == null) || path.isEmpty()) ? "/" : path);
+        String query = uri.getRawQuery();
+        if ((query != null) && !query.isEmpty()) {
+            List<String> pairs = new ArrayList<String>();
+            for (String pair : query.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = (eq < 0) ? pair : pair.substring(0, eq);
+                if (pair.isEmpty() || isSigningParameter(name)) {
+                    continue;
+                }
+                pairs.add(isSecretParameter(name) ? name + "=" + SCRUBBED : pair);
+            }
+            Collections.sort(pairs);
+            char separator = '?';
+            for (String pair : pairs) {
+                sb.append(separator).append(pair);
+                separator = '&';
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isSigningParameter(String name)
+    {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.startsWith("x-amz-") || lower.equals("awsaccesskeyid") || lower.equals("signature")
+                || lower.equals("signaturemethod") || lower.equals("signatureversion") || lower.equals("securitytoken");
+    }
+
+    private static boolean isSecretParameter(String name)
+    {
+        String lower = name.toLowerCase(Locale.US);
+        return lower.contains("password") || lower.contains("secret");
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSRequestContext;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestInterceptorAdapter;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Records the requests of the connections it is registered with, via AWSConnection.addInterceptor() or
+ * AWSConnectionFactory.addInterceptor(), for replay without network access. Credentials and signatures are not
+ * recorded: requests are identified by their path, query string without signing parameters and content hash, and
+ * access key ids and secret elements in responses are replaced by AWSRecordedExchange.SCRUBBED. Responses satisfied by
+ * the response cache or a coalesced request are not recorded.
+ */
+public class AWSRecorder extends AWSRequestInterceptorAdapter
+{
+    private static final Logger _logger = Logger.getLogger(AWSRecorder.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SENT_ATTRIBUTE = AWSRecorder.class.getName() + ".sent";
+    private static final String CONTENT_HASH_HEADER = "x-amz-content-sha256";
+    private static final Pattern ACCESS_KEY = Pattern.compile("\\b(AKIA|ASIA)[A-Z0-9]{16}\\b");
+    private static final Pattern SECRET_ELEMENT =
+            Pattern.compile("<(SecretAccessKey|SessionToken|MasterUserPassword|Password)>[^<]*</\\1>");
+
+    private final long _start = System.nanoTime();
+    private final List<AWSRecordedExchange> _exchanges = new ArrayList<AWSRecordedExchange>();
+
+    @Override
+    public void beforeSend(AWSRequestContext context)
+    {
+        context.setAttribute(SENT_ATTRIBUTE, System.nanoTime());
+    }
+
+    @Override
+    public void onResponseBytes(AWSRequestContext context, IHttpResponse response)
+    {
+        Long sent = (Long) context.getAttribute(SENT_ATTRIBUTE);
+        if ((sent == null) || (context.getSignedURI() == null)) {
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            String contentHash = null;
+            for (Map.Entry<String, String> header : context.getSignedHeaders().entrySet()) {
+                if (CONTENT_HASH_HEADER.equalsIgnoreCase(header.getKey())) {
+                    contentHash = header.getValue();
+                }
+            }
+            Map<String, String> headers = new LinkedHashMap<String, String>();
+            String contentType = null;
+            List<IHttpHeader> responseHeaders = response.getHeaders();
+            if (responseHeaders != null) {
+                for (IHttpHeader header : responseHeaders) {
+                    String name = header.getName().toLowerCase(Locale.US);
+                    if (name.equals("content-type")) {
+                        contentType = header.getValue();
+                    }
+                    if (!name.equals("set-cookie")) {
+                        headers.put(header.getName(), scrub(header.getValue()));
+                    }
+                }
+            }
+            HttpStatus status = response.getStatus();
+            AWSRecordedExchange exchange = new AWSRecordedExchange(context.getSignedMethod().getName(),
+                    AWSRecordedExchange.getRequestPath(context.getSignedURI()), contentHash, (sent - _start) / 1000000,
+                    (now - sent) / 1000000, response.getStatusCode(), (status != null) ? status.getReason() : null,
+                    headers, scrub(response.getContentAsByteArray(), contentType));
+            synchronized (_exchanges) {
+                _exchanges.add(exchange);
+            }
+        }
+        catch (Exception e) {
+            // Recording never fails a request
+            _logger.warn(Resources.getString("recordException", context.getSignedMethod().getName(),
+                    context.getSignedURI()), e);
+        }
+    }
+
+    /** Returns the number of recorded exchanges. */
+    public int size()
+    {
+        synchronized (_exchanges) {
+            return _exchanges.size();
+        }
+    }
+
+    /** Returns the exchanges recorded so far, in the order their responses were received. */
+    public AWSFixture getFixture()
+    {
+        synchronized (_exchanges) {
+            return new AWSFixture(_exchanges);
+        }
+    }
+
+    /** Writes the exchanges recorded so far to a fixture file. */
+    public void save(File file) throws IOException
+    {
+        getFixture().save(file);
+    }
+
+    /** Discards the recorded exchanges. */
+    public void clear()
+    {
+        synchronized (_exchanges) {
+            _exchanges.clear();
+        }
+    }
+
+    private static String scrub(String value)
+    {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = ACCESS_KEY.matcher(value);
+        return matcher.find() ? matcher.replaceAll(AWSRecordedExchange.SCRUBBED) : value;
+    }
+
+    // Only textual content is scrubbed, so that binary content such as S3 objects is recorded unchanged
+    private static byte[] scrub(byte[] content, String contentType)
+    {
+        if ((content == null) || (content.length == 0) || ((contentType != null) && !isText(contentType))) {
+            return content;
+        }
+        String text = new String(content, UTF8);
+        String scrubbed = scrub(text);
+        Matcher matcher = SECRET_ELEMENT.matcher(scrubbed);
+        if (matcher.find()) {
+            scrubbed = matcher.replaceAll("<$1>" + AWSRecordedExchange.SCRUBBED + "</$1>");
+        }
+        return scrubbed.equals(text) ? content : scrubbed.getBytes(UTF8);
+    }
+
+    private static boolean isText(String contentType)
+    {
+        String lower = contentType.toLowerCase(Locale.US);
+        return lower.startsWith("text/") || lower.contains("xml") || lower.contains("json");
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.record;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.servicemesh.agility.adapters.core.aws.AWSTransport;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.BaseHttpHeader;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+/**
+ * Serves the responses of a recorded fixture, for use with AWSConnection.setTransport(). Responses to identical
+ * requests are served in recorded order, e.g. the successive states seen by a StatusPoller, and the last one is
+ * repeated once the others are used up. Each response is delayed by its recorded duration multiplied by the time scale.
+ * A request that was not recorded fails.
+ */
+public class AWSReplayTransport implements AWSTransport
+{
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "aws-replay");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Map<String, Deque<AWSRecordedExchange>> _exchanges =
+            new HashMap<String, Deque<AWSRecordedExchange>>();
+    private final double _timeScale;
+    private final AtomicLong _served = new AtomicLong();
+    private final AtomicLong _missed = new AtomicLong();
+
+    /**
+     * Creates a transport that serves responses without delay.
+     */
+    public AWSReplayTransport(AWSFixture fixture)
+    {
+        this(fixture, 0.0);
+    }
+
+    /**
+     * Creates a transport.
+     *
+     * @param fixture
+     *            The recorded exchanges.
+     * @param timeScale
+     *            The factor applied to the recorded durations: 1.0 replays with the recorded timing and 0.0 without
+     *            delay.
+     */
+    public AWSReplayTransport(AWSFixture fixture, double timeScale)
+    {
+        _timeScale = timeScale;
+        for (AWSRecordedExchange exchange : fixture.getExchanges()) {
+            Deque<AWSRecordedExchange> exchanges = _exchanges.get(exchange.getRequestKey());
+            if (exchanges == null) {
+                exchanges = new ArrayDeque<AWSRecordedExchange>();
+                _exchanges.put(exchange.getRequestKey(), exchanges);
+            }
+            exchanges.add(exchange);
+        }
+    }
+
+    /** Returns the number of requests answered with a recorded response. */
+    public long getServedCount()
+    {
+        return _served.get();
+    }
+
+    /** Returns the number of requests for which there was no recorded response. */
+    public long getMissedCount()
+    {
+        return _missed.get();
+    }
+
+    @Override
+    public Promise<IHttpResponse> send(HttpMethod method, URI uri, Map<String, String> headers, Object content)
+    {
+        String contentHash = null;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if ("x-amz-content-sha256".equalsIgnoreCase(header.getKey())) {
+                contentHash = header.getValue();
+            }
+        }
+        String key = AWSRecordedExchange.getRequestKey(method.getName(), AWSRecordedExchange.getRequestPath(uri),
+                contentHash);
+        AWSRecordedExchange exchange = null;
+        synchronized (_exchanges) {
+            Deque<AWSRecordedExchange> exchanges = _exchanges.get(key);
+            if (exchanges != null) {
+                exchange = (exchanges.size() > 1) ? exchanges.poll() : exchanges.peek();
+            }
+        }
+        if (exchange == null) {
+            _missed.incrementAndGet();
+            return Promise.pure(new AWSAdapterException(Resources.getString("noRecordedResponse", key)));
+        }
+        _served.incrementAndGet();
+
+        final IHttpResponse response = createResponse(exchange);
+        long delay = Math.round(exchange.getDurationMillis() * _timeScale);
+        if (delay <= 0) {
+            return Promise.pure(response);
+        }
+        final CompletablePromise<IHttpResponse> promise = PromiseFactory.create();
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                promise.complete(response);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return promise;
+    }
+
+    private static IHttpResponse createResponse(AWSRecordedExchange exchange)
+    {
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, exchange.getStatusCode(),
+                (exchange.getReason() != null) ? exchange.getReason() : ""));
+        for (Map.Entry<String, String> header : exchange.getHeaders().entrySet()) {
+            response.setHeader(new BaseHttpHeader(header.getKey(), header.getValue()));
+        }
+        response.setContent(exchange.getContent());
+        return response;
+    }
+}
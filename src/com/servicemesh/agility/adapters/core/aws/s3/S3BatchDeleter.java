@@ -0,0 +1,281 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.DeleteError;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.DeleteResult;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.AWSError;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Deletes S3 objects with DeleteObjects requests of up to 1000 keys each, rather than a request per object. The
+ * requests are sent concurrently up to the configured limit. Their XML bodies are written with a streaming writer that
+ * computes the Content-MD5 checksum S3 requires as the body is written. Each key gets its own result: a request that
+ * fails outright marks each of its keys as failed but does not stop the other requests.
+ */
+public class S3BatchDeleter
+{
+    private static final Logger _logger = Logger.getLogger(S3BatchDeleter.class);
+
+    /** The maximum number of keys of a DeleteObjects request, as allowed by S3. */
+    public static final int MAX_KEYS = 1000;
+
+    private final AWSConnection _connection;
+    private final int _concurrency;
+
+    /**
+     * Creates a batch deleter.
+     *
+     * @param connection
+     *            An AWS connection for S3.
+     * @param settings
+     *            Configuration data, see AWSConfig.getS3DeleteConcurrency(). Optional, may be null.
+     */
+    public S3BatchDeleter(AWSConnection connection, List<Property> settings)
+    {
+        _connection = connection;
+        _concurrency = Math.max(AWSConfig.getS3DeleteConcurrency(settings), 1);
+    }
+
+    /**
+     * Deletes objects. Keys of objects that do not exist are reported as deleted, as S3 does.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param keys
+     *            The object keys.
+     * @return A Promise for the results in the order of the keys. Cancelling the Promise cancels the outstanding
+     *         requests; objects of requests already sent may still be deleted.
+     */
+    public Promise<List<S3DeleteResult>> delete(String bucket, List<String> keys)
+    {
+        BatchDelete batch = new BatchDelete(bucket, keys);
+        batch.start();
+        return batch._result;
+    }
+
+    /**
+     * Writes the DeleteObjects body for a range of keys in quiet mode, so that the response only lists the keys that
+     * could not be deleted.
+     *
+     * @param keys
+     *            The object keys.
+     * @param from
+     *            The index of the first key.
+     * @param to
+     *            The index after the last key.
+     * @param md5
+     *            Receives the body as it is written.
+     * @return The UTF-8 encoded body.
+     */
+    static byte[] createBody(List<String> keys, int from, int to, MessageDigest md5) throws Exception
+    {
+        // Keys are typically short paths, so the estimate avoids growing the buffer
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + ((to - from) * 64));
+        DigestOutputStream out = new DigestOutputStream(bytes, md5);
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, AWSEndpoint.CHAR_SET);
+        writer.writeStartDocument(AWSEndpoint.CHAR_SET, "1.0");
+        writer.writeStartElement("Delete");
+        writer.writeDefaultNamespace(S3Support.NAMESPACE);
+        writer.writeStartElement("Quiet");
+        writer.writeCharacters("true");
+        writer.writeEndElement();
+        for (int i = from; i < to; i++) {
+            writer.writeStartElement("Object");
+            writer.writeStartElement("Key");
+            writer.writeCharacters(keys.get(i));
+            writer.writeEndElement();
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    // The state of a batch delete. Requests complete on HTTP client threads, so the bookkeeping is synchronized.
+    private class BatchDelete
+    {
+        private final String _bucket;
+        private final List<String> _keys;
+        private final int _chunkCount;
+        private final S3DeleteResult[] _results;
+        private final CompletablePromise<List<S3DeleteResult>> _result = PromiseFactory.create();
+        private final Set<Promise<IHttpResponse>> _outstanding =
+                Collections.newSetFromMap(new ConcurrentHashMap<Promise<IHttpResponse>, Boolean>());
+        private int _nextChunk;
+        private int _completedChunks;
+        private boolean _finished;
+
+        private BatchDelete(String bucket, List<String> keys)
+        {
+            _bucket = bucket;
+            _keys = keys;
+            _chunkCount = (keys.size() + MAX_KEYS - 1) / MAX_KEYS;
+            _results = new S3DeleteResult[keys.size()];
+        }
+
+        private void start()
+        {
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    synchronized (BatchDelete.this) {
+                        _finished = true;
+                    }
+                    for (Promise<IHttpResponse> promise : _outstanding) {
+                        PromiseUtil.cancel(promise);
+                    }
+                }
+            });
+            if (_chunkCount == 0) {
+                _result.complete(Collections.<S3DeleteResult> emptyList());
+                return;
+            }
+            for (int i = 0; i < _concurrency; i++) {
+                startNextChunk();
+            }
+        }
+
+        private void startNextChunk()
+        {
+            int chunk;
+            synchronized (this) {
+                if (_finished || (_nextChunk == _chunkCount)) {
+                    return;
+                }
+                chunk = _nextChunk++;
+            }
+            final int from = chunk * MAX_KEYS;
+            final int to = Math.min(from + MAX_KEYS, _keys.size());
+            byte[] body;
+            Map<String, String> headers = new HashMap<String, String>();
+            try {
+                MessageDigest md5 = MessageDigest.getInstance("MD5");
+                body = createBody(_keys, from, to, md5);
+                // encodeBase64String() of commons-codec 1.4 appends a line separator
+                headers.put("Content-MD5", new String(Base64.encodeBase64(md5.digest()), "US-ASCII"));
+                headers.put("Content-Type", "application/xml");
+            }
+            catch (Exception e) {
+                chunkFailed(from, to, new AWSAdapterException(Resources.getString("deleteBodyFailed", e), e));
+                return;
+            }
+            Promise<IHttpResponse> promise = _connection.execute(HttpMethod.POST, S3Support.getPath(_bucket, null),
+                    headers, S3Support.getParams("delete", ""), body, IHttpResponse.class);
+            _outstanding.add(promise);
+            final Promise<IHttpResponse> sent = promise;
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    _outstanding.remove(sent);
+                    DeleteResult result;
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        result = _connection.getEndpoint().decode(response, S3Support.RESOURCES_CONTEXT,
+                                DeleteResult.class);
+                    }
+                    catch (Exception e) {
+                        chunkFailed(from, to, e);
+                        return;
+                    }
+                    chunkDeleted(from, to, result);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _outstanding.remove(sent);
+                    chunkFailed(from, to, t);
+                }
+            });
+        }
+
+        private void chunkDeleted(int from, int to, DeleteResult result)
+        {
+            Map<String, DeleteError> errors = new HashMap<String, DeleteError>();
+            for (DeleteError error : result.getError()) {
+                errors.put(error.getKey(), error);
+            }
+            for (int i = from; i < to; i++) {
+                String key = _keys.get(i);
+                DeleteError error = errors.get(key);
+                _results[i] = (error == null) ? new S3DeleteResult(key, null, null)
+                        : new S3DeleteResult(key, error.getCode(), error.getMessage());
+            }
+            if (!errors.isEmpty()) {
+                _logger.warn(Resources.getString("deleteKeysFailed", errors.size(), to - from, _bucket));
+            }
+            chunkDone();
+        }
+
+        private void chunkFailed(int from, int to, Throwable t)
+        {
+            String code = null;
+            if (t instanceof AWSErrorException) {
+                List<AWSError> errors = ((AWSErrorException) t).getErrors();
+                code = errors.isEmpty() ? null : errors.get(0).getCode();
+            }
+            String message = (t.getMessage() != null) ? t.getMessage() : t.toString();
+            _logger.warn(Resources.getString("deleteRequestFailed", to - from, _bucket, message));
+            for (int i = from; i < to; i++) {
+                _results[i] = new S3DeleteResult(_keys.get(i), code, message);
+            }
+            chunkDone();
+        }
+
+        private void chunkDone()
+        {
+            boolean complete;
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                complete = (++_completedChunks == _chunkCount);
+                _finished = complete;
+            }
+            if (complete) {
+                _result.complete(Arrays.asList(_results));
+            }
+            else {
+                startNextChunk();
+            }
+        }
+    }
+}
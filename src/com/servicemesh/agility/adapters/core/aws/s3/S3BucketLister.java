@@ -0,0 +1,416 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSStreamingResponse;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Lists the objects of a bucket with ListObjectsV2. The pages of a prefix must be requested one after the other, so the
+ * key space is partitioned by prefix and up to the configured number of partitions are listed concurrently. The
+ * partitions are either supplied by the caller or discovered as the common prefixes of a delimited listing.
+ * <p>
+ * Each page is read from the connection and parsed by a streaming parser that hands each object to the consumer as soon
+ * as its entry is parsed, so memory use does not depend on the size of the bucket and a slow consumer slows down the
+ * listing rather than buffering pages.
+ */
+public class S3BucketLister
+{
+    private static final Logger _logger = Logger.getLogger(S3BucketLister.class);
+
+    /** The number of keys requested per page, the maximum S3 returns. */
+    public static final int MAX_KEYS = 1000;
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final AWSConnection _connection;
+    private final int _concurrency;
+
+    /**
+     * Creates a lister.
+     *
+     * @param connection
+     *            An AWS connection for S3.
+     * @param settings
+     *            Configuration data, see AWSConfig.getS3ListConcurrency(). Optional, may be null.
+     */
+    public S3BucketLister(AWSConnection connection, List<Property> settings)
+    {
+        _connection = connection;
+        _concurrency = Math.max(AWSConfig.getS3ListConcurrency(settings), 1);
+    }
+
+    /**
+     * Lists all objects under a prefix, partitioned by the common prefixes of the keys up to the first delimiter after
+     * the prefix, e.g. the top-level "directories" for the delimiter "/". Each common prefix is listed without a
+     * delimiter as soon as it is discovered.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param prefix
+     *            The prefix of the keys to list. Optional, may be null to list the whole bucket.
+     * @param delimiter
+     *            The delimiter that partitions the key space.
+     * @param consumer
+     *            Receives each object, from several threads at once when partitions are listed concurrently.
+     * @return A Promise for the number of objects listed. The Promise fails if a page can't be listed or the consumer
+     *         throws an exception; cancelling it stops the listing.
+     */
+    public Promise<Long> list(String bucket, String prefix, String delimiter, Callback<S3ObjectSummary> consumer)
+    {
+        Listing listing = new Listing(bucket, consumer);
+        listing.start(Collections.singletonList(new Partition(prefix, delimiter)));
+        return listing._result;
+    }
+
+    /**
+     * Lists all objects under a set of prefixes, each listed as a partition. Prefixes should not overlap, or objects
+     * are listed more than once.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param prefixes
+     *            The prefixes of the keys to list.
+     * @param consumer
+     *            Receives each object, from several threads at once when partitions are listed concurrently.
+     * @return A Promise for the number of objects listed. The Promise fails if a page can't be listed or the consumer
+     *         throws an exception; cancelling it stops the listing.
+     */
+    public Promise<Long> list(String bucket, List<String> prefixes, Callback<S3ObjectSummary> consumer)
+    {
+        List<Partition> partitions = new ArrayList<Partition>();
+        for (String prefix : prefixes) {
+            partitions.add(new Partition(prefix, null));
+        }
+        Listing listing = new Listing(bucket, consumer);
+        listing.start(partitions);
+        return listing._result;
+    }
+
+    /**
+     * Parses a ListObjectsV2 page, handing each object to a consumer as its entry is parsed.
+     *
+     * @param in
+     *            The page.
+     * @param consumer
+     *            Receives each object.
+     * @return The continuation and common prefixes of the page.
+     */
+    static Page parse(InputStream in, Callback<S3ObjectSummary> consumer) throws XMLStreamException
+    {
+        Page page = new Page();
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            boolean inContents = false;
+            boolean inCommonPrefixes = false;
+            String key = null;
+            long size = 0;
+            String eTag = null;
+            String lastModified = null;
+            String storageClass = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (inContents) {
+                        if (name.equals("Key")) {
+                            key = reader.getElementText();
+                        }
+                        else if (name.equals("Size")) {
+                            size = Long.parseLong(reader.getElementText().trim());
+                        }
+                        else if (name.equals("ETag")) {
+                            eTag = reader.getElementText();
+                        }
+                        else if (name.equals("LastModified")) {
+                            lastModified = reader.getElementText();
+                        }
+                        else if (name.equals("StorageClass")) {
+                            storageClass = reader.getElementText();
+                        }
+                    }
+                    else if (inCommonPrefixes) {
+                        if (name.equals("Prefix")) {
+                            page._commonPrefixes.add(reader.getElementText());
+                        }
+                    }
+                    else if (name.equals("Contents")) {
+                        inContents = true;
+                        key = eTag = lastModified = storageClass = null;
+                        size = 0;
+                    }
+                    else if (name.equals("CommonPrefixes")) {
+                        inCommonPrefixes = true;
+                    }
+                    else if (name.equals("IsTruncated")) {
+                        page._truncated = Boolean.parseBoolean(reader.getElementText().trim());
+                    }
+                    else if (name.equals("NextContinuationToken")) {
+                        page._nextToken = reader.getElementText();
+                    }
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("Contents")) {
+                        inContents = false;
+                        consumer.invoke(new S3ObjectSummary(key, size, eTag, lastModified, storageClass));
+                    }
+                    else if (name.equals("CommonPrefixes")) {
+                        inCommonPrefixes = false;
+                    }
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return page;
+    }
+
+    private static XMLInputFactory createInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    /** The continuation and common prefixes of a page. */
+    static class Page
+    {
+        private final List<String> _commonPrefixes = new ArrayList<String>();
+        private boolean _truncated;
+        private String _nextToken;
+
+        List<String> getCommonPrefixes()
+        {
+            return _commonPrefixes;
+        }
+
+        boolean isTruncated()
+        {
+            return _truncated;
+        }
+
+        String getNextToken()
+        {
+            return _nextToken;
+        }
+    }
+
+    private static class Partition
+    {
+        private final String _prefix;
+        private final String _delimiter;
+
+        private Partition(String prefix, String delimiter)
+        {
+            _prefix = prefix;
+            _delimiter = delimiter;
+        }
+    }
+
+    // The state of a listing. Pages complete on HTTP client threads, so the partition bookkeeping is synchronized.
+    private class Listing
+    {
+        private final String _bucket;
+        private final Callback<S3ObjectSummary> _consumer;
+        private final CompletablePromise<Long> _result = PromiseFactory.create();
+        private final AtomicLong _count = new AtomicLong();
+        private final Deque<Partition> _pending = new ArrayDeque<Partition>();
+        private final Set<Promise<AWSStreamingResponse>> _outstanding =
+                Collections.newSetFromMap(new ConcurrentHashMap<Promise<AWSStreamingResponse>, Boolean>());
+        private final Callback<S3ObjectSummary> _counter;
+        private int _active;
+        private volatile boolean _finished;
+
+        private Listing(String bucket, Callback<S3ObjectSummary> consumer)
+        {
+            _bucket = bucket;
+            _consumer = consumer;
+            _counter = new Callback<S3ObjectSummary>() {
+                @Override
+                public void invoke(S3ObjectSummary summary)
+                {
+                    if (_finished) {
+                        // Stops parsing the page
+                        throw new AWSAdapterException(Resources.getString("promiseCancelled"));
+                    }
+                    _consumer.invoke(summary);
+                    _count.incrementAndGet();
+                }
+            };
+        }
+
+        private void start(List<Partition> partitions)
+        {
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    fail(new AWSAdapterException(Resources.getString("promiseCancelled")));
+                }
+            });
+            synchronized (this) {
+                _pending.addAll(partitions);
+            }
+            startPartitions();
+        }
+
+        // Starts pending partitions while fewer than the concurrency are active, and completes the listing when none
+        // are left
+        private void startPartitions()
+        {
+            while (true) {
+                Partition partition;
+                synchronized (this) {
+                    if (_finished) {
+                        return;
+                    }
+                    if (_pending.isEmpty()) {
+                        if (_active > 0) {
+                            return;
+                        }
+                        _finished = true;
+                        break;
+                    }
+                    if (_active == _concurrency) {
+                        return;
+                    }
+                    partition = _pending.poll();
+                    _active++;
+                }
+                listPage(partition, null);
+            }
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Listed " + _count.get() + " objects of " + _bucket);
+            }
+            _result.complete(_count.get());
+        }
+
+        private void listPage(final Partition partition, String token)
+        {
+            QueryParams params = S3Support.getParams("list-type", "2", "max-keys", Integer.toString(MAX_KEYS));
+            if (partition._prefix != null) {
+                params.add(new QueryParam("prefix", partition._prefix));
+            }
+            if (partition._delimiter != null) {
+                params.add(new QueryParam("delimiter", partition._delimiter));
+            }
+            if (token != null) {
+                params.add(new QueryParam("continuation-token", token));
+            }
+            final Promise<AWSStreamingResponse> promise =
+                    _connection.executeStream(HttpMethod.GET, S3Support.getPath(_bucket, null), null, params, null);
+            _outstanding.add(promise);
+            promise.onComplete(new Callback<AWSStreamingResponse>() {
+                @Override
+                public void invoke(AWSStreamingResponse response)
+                {
+                    _outstanding.remove(promise);
+                    Page page;
+                    try {
+                        page = readPage(response);
+                    }
+                    catch (Exception e) {
+                        fail(e);
+                        return;
+                    }
+                    finally {
+                        response.close();
+                    }
+                    pageListed(partition, page);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _outstanding.remove(promise);
+                    fail(t);
+                }
+            });
+        }
+
+        private Page readPage(AWSStreamingResponse response) throws Exception
+        {
+            int status = response.getStatusCode();
+            if ((status < 200) || (status >= 300)) {
+                // The endpoint reports the status and AWS error of a response it can't decode
+                _connection.getEndpoint().decode(response.readFully(), Void.class);
+            }
+            return parse(response.getInputStream(), _counter);
+        }
+
+        private void pageListed(Partition partition, Page page)
+        {
+            synchronized (this) {
+                for (String prefix : page.getCommonPrefixes()) {
+                    _pending.add(new Partition(prefix, null));
+                }
+            }
+            if (page.isTruncated() && (page.getNextToken() != null)) {
+                if (!_finished) {
+                    listPage(partition, page.getNextToken());
+                }
+                // The partition keeps its slot, but new common prefixes may fill free slots
+            }
+            else {
+                synchronized (this) {
+                    _active--;
+                }
+            }
+            startPartitions();
+        }
+
+        // Fails the listing once, after which the outcome of outstanding pages is ignored
+        private void fail(Throwable t)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _finished = true;
+                _pending.clear();
+            }
+            for (Promise<AWSStreamingResponse> promise : _outstanding) {
+                PromiseUtil.cancel(promise);
+            }
+            if (!_result.isCancelled()) {
+                _result.failure(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+/**
+ * The outcome of deleting one key of a batch delete.
+ */
+public class S3DeleteResult
+{
+    private final String _key;
+    private final String _code;
+    private final String _message;
+
+    /**
+     * Creates a result.
+     *
+     * @param key
+     *            The object key.
+     * @param code
+     *            The AWS error code, or null if the object was deleted or the request failed without one.
+     * @param message
+     *            The error message, or null if the object was deleted.
+     */
+    public S3DeleteResult(String key, String code, String message)
+    {
+        _key = key;
+        _code = code;
+        _message = message;
+    }
+
+    /** Returns the object key. */
+    public String getKey()
+    {
+        return _key;
+    }
+
+    /** Returns true if the object was deleted or did not exist. */
+    public boolean isDeleted()
+    {
+        return (_code == null) && (_message == null);
+    }
+
+    /** Returns the AWS error code, e.g. AccessDenied, or null. */
+    public String getCode()
+    {
+        return _code;
+    }
+
+    /** Returns the error message, or null if the object was deleted. */
+    public String getMessage()
+    {
+        return _message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return isDeleted() ? (_key + ": deleted") : (_key + ": " + _code + " " + _message);
+    }
+}
@@ -0,0 +1,453 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSFileRegion;
+import com.servicemesh.agility.adapters.core.aws.impl.AWSScheduler;
+import com.servicemesh.agility.adapters.core.aws.impl.StreamingTransport;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.CompleteMultipartUpload;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.CompleteMultipartUploadResult;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.CompletedPart;
+import com.servicemesh.agility.adapters.core.aws.s3.resources.InitiateMultipartUploadResult;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Uploads files to S3 via multipart uploads. A file is split into parts that are hashed from mapped memory and streamed
+ * from the file's channel; up to the configured concurrency of parts are uploaded at once. A failed part is retried with
+ * exponential backoff, and if it still fails the upload is aborted so that S3 discards the uploaded parts. Files no
+ * larger than one part are uploaded with a single PUT.
+ */
+public class S3MultipartUploader
+{
+    private static final Logger _logger = Logger.getLogger(S3MultipartUploader.class);
+
+    /** The minimum size of all parts but the last, as required by S3. */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** The maximum number of parts of an upload, as allowed by S3. */
+    public static final int MAX_PARTS = 10000;
+
+    /** The delay before the first retry of a failed part, doubled for each further retry. */
+    public static final long RETRY_DELAY_MILLIS = 200;
+
+    private final AWSConnection _connection;
+    private final int _partSize;
+    private final int _concurrency;
+    private final int _partRetries;
+
+    /**
+     * Creates an uploader.
+     *
+     * @param connection
+     *            An AWS connection for S3.
+     * @param settings
+     *            Configuration data, see AWSConfig.getS3PartSize(), getS3UploadConcurrency() and getS3PartRetries().
+     *            Optional, may be null.
+     */
+    public S3MultipartUploader(AWSConnection connection, List<Property> settings)
+    {
+        _connection = connection;
+        _partSize = Math.max(AWSConfig.getS3PartSize(settings), MIN_PART_SIZE);
+        _concurrency = Math.max(AWSConfig.getS3UploadConcurrency(settings), 1);
+        _partRetries = Math.max(AWSConfig.getS3PartRetries(settings), 0);
+    }
+
+    /** Returns the size of the parts of an upload of a file. */
+    public long getPartSize(long fileSize)
+    {
+        // Larger files use larger parts to stay within the limit on the number of parts
+        return Math.max(_partSize, (fileSize + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    /**
+     * Uploads a file.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param key
+     *            The object key.
+     * @param file
+     *            The file, which must not change during the upload.
+     * @param headers
+     *            HTTP headers for the object, e.g. Content-Type or x-amz-meta-* headers. Optional, may be null.
+     * @param listener
+     *            Receives the progress of the upload. Optional, may be null.
+     * @return A Promise for the ETag of the object. Cancelling the Promise aborts the upload.
+     */
+    public Promise<String> upload(String bucket, String key, File file, Map<String, String> headers,
+            S3ProgressListener listener)
+    {
+        if (!file.isFile()) {
+            return Promise.pure(new AWSAdapterException(Resources.getString("missingUploadFile", file.getPath())));
+        }
+        Upload upload = new Upload(bucket, key, file, headers, listener);
+        upload.start();
+        return upload._result;
+    }
+
+    // The state of a multipart upload. Parts complete on HTTP client threads, so the part bookkeeping is synchronized.
+    private class Upload
+    {
+        private final String _bucket;
+        private final String _key;
+        private final String _path;
+        private final File _file;
+        private final long _size;
+        private final long _partSize;
+        private final int _partCount;
+        private final Map<String, String> _headers;
+        private final S3ProgressListener _listener;
+        private final CompletablePromise<String> _result = PromiseFactory.create();
+        private final AtomicLong _transferred = new AtomicLong();
+        private final Set<Promise<IHttpResponse>> _outstanding =
+                Collections.newSetFromMap(new ConcurrentHashMap<Promise<IHttpResponse>, Boolean>());
+        private final String[] _etags;
+        private volatile String _uploadId;
+        private int _nextPart = 1;
+        private int _completedParts;
+        private boolean _finished;
+
+        private Upload(String bucket, String key, File file, Map<String, String> headers, S3ProgressListener listener)
+        {
+            _bucket = bucket;
+            _key = key;
+            _path = S3Support.getPath(bucket, key);
+            _file = file;
+            _size = file.length();
+            _partSize = getPartSize(_size);
+            _partCount = (int) Math.max((_size + _partSize - 1) / _partSize, 1);
+            _headers = headers;
+            _listener = listener;
+            _etags = new String[_partCount];
+        }
+
+        private void start()
+        {
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    fail(new AWSAdapterException(Resources.getString("promiseCancelled")));
+                }
+            });
+            if (_size <= _partSize) {
+                putObject();
+            }
+            else {
+                initiate();
+            }
+        }
+
+        private void putObject()
+        {
+            Promise<IHttpResponse> promise = _connection.execute(HttpMethod.PUT, _path, _headers, S3Support.getParams(),
+                    new AWSFileRegion(_file, 0, _size), IHttpResponse.class);
+            track(promise);
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        progress(_size);
+                        _result.complete(S3Support.getHeader(response, "ETag"));
+                    }
+                    catch (Exception e) {
+                        _result.failure(e);
+                    }
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    _result.failure(t);
+                }
+            });
+        }
+
+        private void initiate()
+        {
+            QueryParams params = S3Support.getParams("uploads", "");
+            Promise<IHttpResponse> promise =
+                    _connection.execute(HttpMethod.POST, _path, _headers, params, null, IHttpResponse.class);
+            track(promise);
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        _uploadId = _connection.getEndpoint().decode(response, S3Support.RESOURCES_CONTEXT,
+                                InitiateMultipartUploadResult.class).getUploadId();
+                    }
+                    catch (Exception e) {
+                        fail(e);
+                        return;
+                    }
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug("Uploading " + _path + " as " + _partCount + " parts of " + _partSize
+                                + " bytes, uploadId=" + _uploadId);
+                    }
+                    for (int i = 0; i < _concurrency; i++) {
+                        startNextPart();
+                    }
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    fail(t);
+                }
+            });
+        }
+
+        private void startNextPart()
+        {
+            int partNumber;
+            synchronized (this) {
+                if (_finished || (_nextPart > _partCount)) {
+                    return;
+                }
+                partNumber = _nextPart++;
+            }
+            uploadPart(partNumber, 0);
+        }
+
+        private void uploadPart(final int partNumber, final int attempt)
+        {
+            // A retry may have been scheduled before the upload was aborted
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+            }
+            long position = (partNumber - 1) * _partSize;
+            final long length = Math.min(_partSize, _size - position);
+            QueryParams params = S3Support.getParams("partNumber", Integer.toString(partNumber), "uploadId", _uploadId);
+            Promise<IHttpResponse> promise = _connection.execute(HttpMethod.PUT, _path, null, params,
+                    new AWSFileRegion(_file, position, length), IHttpResponse.class);
+            track(promise);
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    String etag;
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        etag = S3Support.getHeader(response, "ETag");
+                    }
+                    catch (Exception e) {
+                        retryPart(partNumber, attempt, e);
+                        return;
+                    }
+                    partUploaded(partNumber, etag, length);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    retryPart(partNumber, attempt, t);
+                }
+            });
+        }
+
+        private void retryPart(final int partNumber, final int attempt, Throwable t)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+            }
+            if (attempt >= _partRetries) {
+                fail(new AWSAdapterException(
+                        Resources.getString("partFailed", partNumber, _partCount, _path, t.getMessage()), t));
+                return;
+            }
+            long delay = RETRY_DELAY_MILLIS << attempt;
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Retrying part " + partNumber + " of " + _path + " in " + delay + "ms: " + t.getMessage());
+            }
+            // The part is hashed when it is sent, which would block the scheduler's thread
+            final Runnable retry = new Runnable() {
+                @Override
+                public void run()
+                {
+                    uploadPart(partNumber, attempt + 1);
+                }
+            };
+            AWSScheduler.getInstance().schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    StreamingTransport.getExecutor().execute(retry);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void partUploaded(int partNumber, String etag, long length)
+        {
+            boolean complete;
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _etags[partNumber - 1] = etag;
+                complete = (++_completedParts == _partCount);
+            }
+            progress(_transferred.addAndGet(length));
+            if (complete) {
+                complete();
+            }
+            else {
+                startNextPart();
+            }
+        }
+
+        private void complete()
+        {
+            CompleteMultipartUpload parts = new CompleteMultipartUpload();
+            for (int i = 0; i < _partCount; i++) {
+                CompletedPart part = new CompletedPart();
+                part.setPartNumber(i + 1);
+                part.setETag(_etags[i]);
+                parts.getPart().add(part);
+            }
+            QueryParams params = S3Support.getParams("uploadId", _uploadId);
+            String content = _connection.getEndpoint().encode(S3Support.RESOURCES_CONTEXT, parts);
+            Promise<IHttpResponse> promise =
+                    _connection.execute(HttpMethod.POST, _path, null, params, content, IHttpResponse.class);
+            track(promise);
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    String etag;
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        etag = _connection.getEndpoint().decode(response, S3Support.RESOURCES_CONTEXT,
+                                CompleteMultipartUploadResult.class).getETag();
+                    }
+                    catch (Exception e) {
+                        fail(e);
+                        return;
+                    }
+                    synchronized (Upload.this) {
+                        _finished = true;
+                    }
+                    _result.complete(etag);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    fail(t);
+                }
+            });
+        }
+
+        // Aborts the upload once, after which the outcome of outstanding parts is ignored
+        private void fail(Throwable t)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _finished = true;
+            }
+            for (Promise<IHttpResponse> promise : _outstanding) {
+                PromiseUtil.cancel(promise);
+            }
+            if (_uploadId != null) {
+                _logger.warn(Resources.getString("uploadAborted", _uploadId, _path, t.getMessage()));
+                QueryParams params = S3Support.getParams("uploadId", _uploadId);
+                Promise<IHttpResponse> abort =
+                        _connection.execute(HttpMethod.DELETE, _path, null, params, null, IHttpResponse.class);
+                abort.onComplete(new Callback<IHttpResponse>() {
+                    @Override
+                    public void invoke(IHttpResponse response)
+                    {
+                        // S3 reports a failed abort, e.g. AccessDenied, as a completed error response
+                        try {
+                            S3Support.checkResponse(_connection.getEndpoint(), response);
+                        }
+                        catch (Exception e) {
+                            _logger.error(Resources.getString("abortFailed", _uploadId, _path, e.getMessage()));
+                        }
+                    }
+                });
+                abort.onFailure(new Callback<Throwable>() {
+                    @Override
+                    public void invoke(Throwable e)
+                    {
+                        _logger.error(Resources.getString("abortFailed", _uploadId, _path, e.getMessage()));
+                    }
+                });
+            }
+            if (!_result.isCancelled()) {
+                _result.failure(t);
+            }
+        }
+
+        private void track(final Promise<IHttpResponse> promise)
+        {
+            _outstanding.add(promise);
+            boolean finished;
+            synchronized (this) {
+                finished = _finished;
+            }
+            if (finished) {
+                // Aborted after the request was sent but before fail() could cancel it
+                PromiseUtil.cancel(promise);
+            }
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse arg)
+                {
+                    _outstanding.remove(promise);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable arg)
+                {
+                    _outstanding.remove(promise);
+                }
+            });
+        }
+
+        private void progress(long transferred)
+        {
+            S3Support.progress(_listener, _bucket, _key, transferred, _size);
+        }
+    }
+}
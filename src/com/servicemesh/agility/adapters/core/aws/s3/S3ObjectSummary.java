@@ -0,0 +1,73 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+/**
+ * An object of a bucket listing.
+ */
+public class S3ObjectSummary
+{
+    private final String _key;
+    private final long _size;
+    private final String _eTag;
+    private final String _lastModified;
+    private final String _storageClass;
+
+    /**
+     * Creates a summary.
+     *
+     * @param key
+     *            The object key.
+     * @param size
+     *            The object size in bytes.
+     * @param eTag
+     *            The ETag, including its quotes.
+     * @param lastModified
+     *            The ISO 8601 time of the last modification.
+     * @param storageClass
+     *            The storage class, e.g. STANDARD.
+     */
+    public S3ObjectSummary(String key, long size, String eTag, String lastModified, String storageClass)
+    {
+        _key = key;
+        _size = size;
+        _eTag = eTag;
+        _lastModified = lastModified;
+        _storageClass = storageClass;
+    }
+
+    public String getKey()
+    {
+        return _key;
+    }
+
+    public long getSize()
+    {
+        return _size;
+    }
+
+    public String getETag()
+    {
+        return _eTag;
+    }
+
+    /** Returns the ISO 8601 time of the last modification, as listed. */
+    public String getLastModified()
+    {
+        return _lastModified;
+    }
+
+    public String getStorageClass()
+    {
+        return _storageClass;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _key + " (" + _size + " bytes)";
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSStreamingResponse;
+import com.servicemesh.agility.adapters.core.aws.impl.AWSScheduler;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.agility.adapters.core.aws.util.AWSError;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.adapters.core.aws.util.PromiseUtil;
+import com.servicemesh.agility.adapters.core.aws.util.Resources;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Function;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+
+/**
+ * Downloads S3 objects to files by fetching byte ranges in parallel, since the throughput of a single stream from S3
+ * is limited. The size and ETag of the object are read with a HEAD request and the file is allocated at its full size;
+ * each range is then streamed to its offset in the file with positional writes, once its response is known to be a
+ * 206 for that range. Every range request is conditional on the ETag, so a download fails rather than mixing the
+ * content of two versions if the object is replaced. A failed range is retried with exponential backoff without
+ * affecting the other ranges.
+ */
+public class S3ParallelDownloader
+{
+    private static final Logger _logger = Logger.getLogger(S3ParallelDownloader.class);
+
+    /** The delay before the first retry of a failed range, doubled for each further retry. */
+    public static final long RETRY_DELAY_MILLIS = 200;
+
+    private final AWSConnection _connection;
+    private final long _rangeSize;
+    private final int _concurrency;
+    private final int _rangeRetries;
+
+    /**
+     * Creates a downloader.
+     *
+     * @param connection
+     *            An AWS connection for S3.
+     * @param settings
+     *            Configuration data, see AWSConfig.getS3PartSize(), getS3DownloadConcurrency() and getS3PartRetries().
+     *            Optional, may be null.
+     */
+    public S3ParallelDownloader(AWSConnection connection, List<Property> settings)
+    {
+        _connection = connection;
+        _rangeSize = Math.max(AWSConfig.getS3PartSize(settings), 1);
+        _concurrency = Math.max(AWSConfig.getS3DownloadConcurrency(settings), 1);
+        _rangeRetries = Math.max(AWSConfig.getS3PartRetries(settings), 0);
+    }
+
+    /**
+     * Downloads an object to a file.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param key
+     *            The object key.
+     * @param file
+     *            The file, which is created or replaced. It is deleted if the download fails.
+     * @param listener
+     *            Receives the progress of the download. Optional, may be null.
+     * @return A Promise for the size of the object. Cancelling the Promise stops the download.
+     */
+    public Promise<Long> download(String bucket, String key, File file, S3ProgressListener listener)
+    {
+        Download download = new Download(bucket, key, file, listener);
+        download.start();
+        return download._result;
+    }
+
+    // The state of a download. Ranges complete on HTTP client threads, so the range bookkeeping is synchronized.
+    private class Download
+    {
+        private final String _bucket;
+        private final String _key;
+        private final String _path;
+        private final File _file;
+        private final S3ProgressListener _listener;
+        private final CompletablePromise<Long> _result = PromiseFactory.create();
+        private final AtomicLong _transferred = new AtomicLong();
+        private final Set<Promise<?>> _outstanding =
+                Collections.newSetFromMap(new ConcurrentHashMap<Promise<?>, Boolean>());
+        private volatile String _etag;
+        private volatile RandomAccessFile _raf;
+        private long _size;
+        private int _rangeCount;
+        private int _nextRange;
+        private int _completedRanges;
+        private boolean _finished;
+
+        private Download(String bucket, String key, File file, S3ProgressListener listener)
+        {
+            _bucket = bucket;
+            _key = key;
+            _path = S3Support.getPath(bucket, key);
+            _file = file;
+            _listener = listener;
+        }
+
+        private void start()
+        {
+            _result.onCancel(new Callback<Void>() {
+                @Override
+                public void invoke(Void arg)
+                {
+                    fail(new AWSAdapterException(Resources.getString("promiseCancelled")));
+                }
+            });
+            Promise<IHttpResponse> promise =
+                    _connection.execute(HttpMethod.HEAD, _path, null, S3Support.getParams(), null, IHttpResponse.class);
+            track(promise);
+            promise.onComplete(new Callback<IHttpResponse>() {
+                @Override
+                public void invoke(IHttpResponse response)
+                {
+                    try {
+                        S3Support.checkResponse(_connection.getEndpoint(), response);
+                        allocate(response);
+                    }
+                    catch (Exception e) {
+                        fail(e);
+                        return;
+                    }
+                    if (_rangeCount == 0) {
+                        finish();
+                        return;
+                    }
+                    if (_logger.isDebugEnabled()) {
+                        _logger.debug("Downloading " + _path + " as " + _rangeCount + " ranges of " + _rangeSize
+                                + " bytes, ETag=" + _etag);
+                    }
+                    for (int i = 0; i < _concurrency; i++) {
+                        startNextRange();
+                    }
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    fail(t);
+                }
+            });
+        }
+
+        // Creates the file at the size of the object so that ranges can be written at their offsets in any order
+        private void allocate(IHttpResponse response) throws Exception
+        {
+            String length = S3Support.getHeader(response, "Content-Length");
+            _etag = S3Support.getHeader(response, "ETag");
+            if ((length == null) || (_etag == null)) {
+                throw new AWSAdapterException(Resources.getString("missingObjectHeaders", _path));
+            }
+            _size = Long.parseLong(length.trim());
+            _rangeCount = (int) ((_size + _rangeSize - 1) / _rangeSize);
+            RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+            try {
+                raf.setLength(_size);
+            }
+            catch (Exception e) {
+                raf.close();
+                throw e;
+            }
+            _raf = raf;
+        }
+
+        private void startNextRange()
+        {
+            int range;
+            synchronized (this) {
+                if (_finished || (_nextRange == _rangeCount)) {
+                    return;
+                }
+                range = _nextRange++;
+            }
+            downloadRange(range, 0);
+        }
+
+        private void downloadRange(final int range, final int attempt)
+        {
+            // A retry may have been scheduled before the download failed and closed the file
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+            }
+            final long first = range * _rangeSize;
+            final long length = Math.min(_rangeSize, _size - first);
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Range", "bytes=" + first + "-" + (first + length - 1));
+            headers.put("If-Match", _etag);
+            final String contentRange = "bytes " + first + "-" + (first + length - 1) + "/" + _size;
+            Promise<AWSStreamingResponse> opened =
+                    _connection.executeStream(HttpMethod.GET, _path, headers, S3Support.getParams(), null);
+            Promise<Long> promise = opened.map(new Function<AWSStreamingResponse, Long>() {
+                @Override
+                public Long invoke(AWSStreamingResponse response)
+                {
+                    return writeRange(response, first, contentRange);
+                }
+            });
+            track(promise);
+            promise.onComplete(new Callback<Long>() {
+                @Override
+                public void invoke(Long count)
+                {
+                    if (count.longValue() != length) {
+                        // The connection closed before the whole range was received
+                        retryRange(range, attempt, new AWSAdapterException(
+                                Resources.getString("rangeLength", first, length, count)));
+                        return;
+                    }
+                    rangeDownloaded(length);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable t)
+                {
+                    if (isPreconditionFailed(t)) {
+                        fail(new AWSAdapterException(Resources.getString("objectChanged", _path, _etag), t));
+                    }
+                    else {
+                        retryRange(range, attempt, t);
+                    }
+                }
+            });
+        }
+
+        // Writes the body of a range response at its offset in the file, failing before anything is written unless the
+        // response is the requested range
+        private long writeRange(AWSStreamingResponse response, long first, String contentRange)
+        {
+            try {
+                int status = response.getStatusCode();
+                if ((status < 200) || (status >= 300)) {
+                    // The endpoint reports the status and AWS error of a response it can't decode
+                    _connection.getEndpoint().decode(response.readFully(), Void.class);
+                }
+                // e.g. a 200 response with the whole object from a server that ignores Range
+                String received = response.getHeader("Content-Range");
+                if ((status != 206) || !contentRange.equals(received)) {
+                    throw new AWSAdapterException(
+                            Resources.getString("rangeNotReturned", contentRange, status, received));
+                }
+                return response.transferTo(_raf.getChannel(), first);
+            }
+            catch (IOException e) {
+                throw new AWSAdapterException(Resources.getString("transferFailed", e.toString()), e);
+            }
+            finally {
+                response.close();
+            }
+        }
+
+        private void retryRange(final int range, final int attempt, Throwable t)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+            }
+            if (attempt >= _rangeRetries) {
+                fail(new AWSAdapterException(
+                        Resources.getString("rangeFailed", range + 1, _rangeCount, _path, t.getMessage()), t));
+                return;
+            }
+            long delay = RETRY_DELAY_MILLIS << attempt;
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("Retrying range " + (range + 1) + " of " + _path + " in " + delay + "ms: "
+                        + t.getMessage());
+            }
+            AWSScheduler.getInstance().schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    downloadRange(range, attempt + 1);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void rangeDownloaded(long length)
+        {
+            boolean complete;
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                complete = (++_completedRanges == _rangeCount);
+            }
+            S3Support.progress(_listener, _bucket, _key, _transferred.addAndGet(length), _size);
+            if (complete) {
+                finish();
+            }
+            else {
+                startNextRange();
+            }
+        }
+
+        private void finish()
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _finished = true;
+            }
+            try {
+                _raf.close();
+            }
+            catch (Exception e) {
+                _result.failure(new AWSAdapterException(Resources.getString("downloadCloseFailed", _file, e), e));
+                return;
+            }
+            _result.complete(_size);
+        }
+
+        // Fails the download once, after which the outcome of outstanding ranges is ignored
+        private void fail(Throwable t)
+        {
+            synchronized (this) {
+                if (_finished) {
+                    return;
+                }
+                _finished = true;
+            }
+            for (Promise<?> promise : _outstanding) {
+                PromiseUtil.cancel(promise);
+            }
+            if (_raf != null) {
+                try {
+                    _raf.close();
+                }
+                catch (Exception e) {
+                    _logger.warn("Unable to close " + _file + ": " + e);
+                }
+                if (!_file.delete()) {
+                    _logger.warn("Unable to delete " + _file);
+                }
+            }
+            if (!_result.isCancelled()) {
+                _result.failure(t);
+            }
+        }
+
+        private <T> void track(final Promise<T> promise)
+        {
+            _outstanding.add(promise);
+            boolean finished;
+            synchronized (this) {
+                finished = _finished;
+            }
+            if (finished) {
+                // Failed after the request was sent but before fail() could cancel it
+                PromiseUtil.cancel(promise);
+            }
+            promise.onComplete(new Callback<T>() {
+                @Override
+                public void invoke(T arg)
+                {
+                    _outstanding.remove(promise);
+                }
+            });
+            promise.onFailure(new Callback<Throwable>() {
+                @Override
+                public void invoke(Throwable arg)
+                {
+                    _outstanding.remove(promise);
+                }
+            });
+        }
+    }
+
+    private static boolean isPreconditionFailed(Throwable t)
+    {
+        if (t instanceof AWSErrorException) {
+            for (AWSError error : ((AWSErrorException) t).getErrors()) {
+                if ("PreconditionFailed".equals(error.getCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+/**
+ * Receives the progress of an S3 transfer. Progress is reported as each part of the transfer completes, from the thread
+ * that completed it, so implementations must be thread-safe and should return quickly.
+ */
+public interface S3ProgressListener
+{
+    /**
+     * Reports the progress of a transfer.
+     *
+     * @param bucket
+     *            The bucket name.
+     * @param key
+     *            The object key.
+     * @param bytesTransferred
+     *            The number of bytes transferred so far.
+     * @param totalBytes
+     *            The size of the object.
+     */
+    public void progress(String bucket, String key, long bytesTransferred, long totalBytes);
+}
@@ -0,0 +1,133 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.net.URLEncoder;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Helpers shared by the S3 operations.
+ */
+class S3Support
+{
+    private static final Logger _logger = Logger.getLogger(S3Support.class);
+
+    /** The XML namespace of S3 requests and responses. */
+    static final String NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    /** The JAXB context path of the S3 elements used by this package. */
+    static final String RESOURCES_CONTEXT = "com.servicemesh.agility.adapters.core.aws.s3.resources";
+
+    private S3Support()
+    {
+    }
+
+    /**
+     * Returns the path-style request URI of an object, with each segment of the key URI-encoded as required by AWS
+     * Signature Version 4.
+     */
+    static String getPath(String bucket, String key)
+    {
+        StringBuilder path = new StringBuilder("/").append(bucket);
+        if (key != null) {
+            path.append("/");
+            int start = 0;
+            int slash;
+            while ((slash = key.indexOf('/', start)) >= 0) {
+                path.append(encode(key.substring(start, slash))).append("/");
+                start = slash + 1;
+            }
+            path.append(encode(key.substring(start)));
+        }
+        return path.toString();
+    }
+
+    /**
+     * Returns query parameters holding name and value pairs. As with AWSConnection.initQueryParams(), the parameters
+     * are sorted by name as AWS Signature Version 4 requires.
+     */
+    static QueryParams getParams(String... pairs)
+    {
+        QueryParams params = new QueryParams();
+        params.setCaseSensitive(true);
+        params.setMaintainOrder(false);
+        for (int i = 0; i < pairs.length; i += 2) {
+            params.add(new QueryParam(pairs[i], pairs[i + 1]));
+        }
+        return params;
+    }
+
+    /** Returns the value of the first header with a name, ignoring case, or null if there is none. */
+    static String getHeader(IHttpResponse response, String name)
+    {
+        for (IHttpHeader header : response.getHeaders()) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Throws the decoded AWS error of a response whose status is not 2xx, or whose root element is Error as S3 may
+     * return with a 200 status for a request that completes an upload.
+     */
+    static void checkResponse(AWSEndpoint endpoint, IHttpResponse response)
+    {
+        int status = response.getStatusCode();
+        if ((status < 200) || (status >= 300)) {
+            // The endpoint reports the status and AWS error of a response it can't decode
+            endpoint.decode(response, Void.class);
+        }
+        String content = response.getContent();
+        if ((content != null) && content.startsWith("<Error>", getRootStart(content))) {
+            endpoint.decode(response, RESOURCES_CONTEXT, Void.class);
+        }
+    }
+
+    /** Reports progress to a listener, if there is one. A failure of the listener does not affect the transfer. */
+    static void progress(S3ProgressListener listener, String bucket, String key, long transferred, long total)
+    {
+        if (listener != null) {
+            try {
+                listener.progress(bucket, key, transferred, total);
+            }
+            catch (Exception e) {
+                _logger.error("S3 progress listener failed: " + e, e);
+            }
+        }
+    }
+
+    // Returns the index of the root element, skipping the XML declaration, or -1 if there is none
+    private static int getRootStart(String content)
+    {
+        int start = content.indexOf('<');
+        if (content.startsWith("<?", start)) {
+            int end = content.indexOf("?>", start);
+            start = (end < 0) ? -1 : content.indexOf('<', end);
+        }
+        return start;
+    }
+
+    private static String encode(String segment)
+    {
+        try {
+            return URLEncoder.encode(segment, AWSEndpoint.CHAR_SET).replace("+", "%20").replace("*", "%2A")
+                    .replace("%7E", "~");
+        }
+        catch (Exception e) {
+            throw new AWSAdapterException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the CompleteMultipartUpload element.
+ *
+ * <pre>
+ * &lt;element name="CompleteMultipartUpload">
+ *   &lt;complexType>
+ *     &lt;sequence>
+ *       &lt;element name="Part" type="{http://s3.amazonaws.com/doc/2006-03-01/}CompletedPart" maxOccurs="unbounded"/>
+ *     &lt;/sequence>
+ *   &lt;/complexType>
+ * &lt;/element>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "", propOrder = {
+    "part"
+})
+@XmlRootElement(name = "CompleteMultipartUpload")
+public class CompleteMultipartUpload {
+
+    @XmlElement(name = "Part", required = true)
+    protected List<CompletedPart> part;
+
+    /**
+     * Gets the value of the part property. This accessor method returns a reference to the live list, not a snapshot.
+     */
+    public List<CompletedPart> getPart() {
+        if (part == null) {
+            part = new ArrayList<CompletedPart>();
+        }
+        return this.part;
+    }
+
+}
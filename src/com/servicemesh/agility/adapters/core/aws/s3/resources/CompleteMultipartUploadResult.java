@@ -0,0 +1,81 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the CompleteMultipartUploadResult element.
+ *
+ * <pre>
+ * &lt;element name="CompleteMultipartUploadResult">
+ *   &lt;complexType>
+ *     &lt;sequence>
+ *       &lt;element name="Location" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *       &lt;element name="Bucket" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *       &lt;element name="Key" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *       &lt;element name="ETag" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *     &lt;/sequence>
+ *   &lt;/complexType>
+ * &lt;/element>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "", propOrder = {
+    "location",
+    "bucket",
+    "key",
+    "eTag"
+})
+@XmlRootElement(name = "CompleteMultipartUploadResult")
+public class CompleteMultipartUploadResult {
+
+    @XmlElement(name = "Location")
+    protected String location;
+    @XmlElement(name = "Bucket", required = true)
+    protected String bucket;
+    @XmlElement(name = "Key", required = true)
+    protected String key;
+    @XmlElement(name = "ETag", required = true)
+    protected String eTag;
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String value) {
+        this.location = value;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String value) {
+        this.bucket = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String value) {
+        this.key = value;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String value) {
+        this.eTag = value;
+    }
+
+}
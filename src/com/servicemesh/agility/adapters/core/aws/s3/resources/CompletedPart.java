@@ -0,0 +1,53 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the Part elements of CompleteMultipartUpload.
+ *
+ * <pre>
+ * &lt;complexType name="CompletedPart">
+ *   &lt;sequence>
+ *     &lt;element name="PartNumber" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *     &lt;element name="ETag" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *   &lt;/sequence>
+ * &lt;/complexType>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "CompletedPart", propOrder = {
+    "partNumber",
+    "eTag"
+})
+public class CompletedPart {
+
+    @XmlElement(name = "PartNumber")
+    protected int partNumber;
+    @XmlElement(name = "ETag", required = true)
+    protected String eTag;
+
+    public int getPartNumber() {
+        return partNumber;
+    }
+
+    public void setPartNumber(int value) {
+        this.partNumber = value;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String value) {
+        this.eTag = value;
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the Error elements of DeleteResult.
+ *
+ * <pre>
+ * &lt;complexType name="DeleteError">
+ *   &lt;sequence>
+ *     &lt;element name="Key" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *     &lt;element name="VersionId" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *     &lt;element name="Code" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *     &lt;element name="Message" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *   &lt;/sequence>
+ * &lt;/complexType>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "DeleteError", propOrder = {
+    "key",
+    "versionId",
+    "code",
+    "message"
+})
+public class DeleteError {
+
+    @XmlElement(name = "Key", required = true)
+    protected String key;
+    @XmlElement(name = "VersionId")
+    protected String versionId;
+    @XmlElement(name = "Code", required = true)
+    protected String code;
+    @XmlElement(name = "Message")
+    protected String message;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String value) {
+        this.key = value;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public void setVersionId(String value) {
+        this.versionId = value;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String value) {
+        this.code = value;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String value) {
+        this.message = value;
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the DeleteResult element.
+ *
+ * <pre>
+ * &lt;element name="DeleteResult">
+ *   &lt;complexType>
+ *     &lt;sequence>
+ *       &lt;element name="Deleted" type="{http://s3.amazonaws.com/doc/2006-03-01/}DeletedObject" maxOccurs="unbounded" minOccurs="0"/>
+ *       &lt;element name="Error" type="{http://s3.amazonaws.com/doc/2006-03-01/}DeleteError" maxOccurs="unbounded" minOccurs="0"/>
+ *     &lt;/sequence>
+ *   &lt;/complexType>
+ * &lt;/element>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "", propOrder = {
+    "deleted",
+    "error"
+})
+@XmlRootElement(name = "DeleteResult")
+public class DeleteResult {
+
+    @XmlElement(name = "Deleted")
+    protected List<DeletedObject> deleted;
+    @XmlElement(name = "Error")
+    protected List<DeleteError> error;
+
+    /**
+     * Gets the value of the deleted property. This accessor method returns a reference to the live list, not a snapshot.
+     */
+    public List<DeletedObject> getDeleted() {
+        if (deleted == null) {
+            deleted = new ArrayList<DeletedObject>();
+        }
+        return this.deleted;
+    }
+
+    /**
+     * Gets the value of the error property. This accessor method returns a reference to the live list, not a snapshot.
+     */
+    public List<DeleteError> getError() {
+        if (error == null) {
+            error = new ArrayList<DeleteError>();
+        }
+        return this.error;
+    }
+
+}
@@ -0,0 +1,53 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the Deleted elements of DeleteResult.
+ *
+ * <pre>
+ * &lt;complexType name="DeletedObject">
+ *   &lt;sequence>
+ *     &lt;element name="Key" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *     &lt;element name="VersionId" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *   &lt;/sequence>
+ * &lt;/complexType>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "DeletedObject", propOrder = {
+    "key",
+    "versionId"
+})
+public class DeletedObject {
+
+    @XmlElement(name = "Key", required = true)
+    protected String key;
+    @XmlElement(name = "VersionId")
+    protected String versionId;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String value) {
+        this.key = value;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    public void setVersionId(String value) {
+        this.versionId = value;
+    }
+
+}
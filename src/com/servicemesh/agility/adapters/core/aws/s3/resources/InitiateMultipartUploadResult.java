@@ -0,0 +1,69 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * <p>Java class for the InitiateMultipartUploadResult element.
+ *
+ * <pre>
+ * &lt;element name="InitiateMultipartUploadResult">
+ *   &lt;complexType>
+ *     &lt;sequence>
+ *       &lt;element name="Bucket" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *       &lt;element name="Key" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *       &lt;element name="UploadId" type="{http://www.w3.org/2001/XMLSchema}string"/>
+ *     &lt;/sequence>
+ *   &lt;/complexType>
+ * &lt;/element>
+ * </pre>
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "", propOrder = {
+    "bucket",
+    "key",
+    "uploadId"
+})
+@XmlRootElement(name = "InitiateMultipartUploadResult")
+public class InitiateMultipartUploadResult {
+
+    @XmlElement(name = "Bucket", required = true)
+    protected String bucket;
+    @XmlElement(name = "Key", required = true)
+    protected String key;
+    @XmlElement(name = "UploadId", required = true)
+    protected String uploadId;
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(String value) {
+        this.bucket = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String value) {
+        this.key = value;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String value) {
+        this.uploadId = value;
+    }
+
+}
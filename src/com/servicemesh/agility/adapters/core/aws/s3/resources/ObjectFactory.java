@@ -0,0 +1,48 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
+
+import javax.xml.bind.annotation.XmlRegistry;
+
+/**
+ * This object contains factory methods for each Java content interface and Java element interface in the
+ * com.servicemesh.agility.adapters.core.aws.s3.resources package.
+ */
+@XmlRegistry
+public class ObjectFactory {
+
+    public ObjectFactory() {
+    }
+
+    public InitiateMultipartUploadResult createInitiateMultipartUploadResult() {
+        return new InitiateMultipartUploadResult();
+    }
+
+    public CompleteMultipartUpload createCompleteMultipartUpload() {
+        return new CompleteMultipartUpload();
+    }
+
+    public CompletedPart createCompletedPart() {
+        return new CompletedPart();
+    }
+
+    public CompleteMultipartUploadResult createCompleteMultipartUploadResult() {
+        return new CompleteMultipartUploadResult();
+    }
+
+    public DeleteResult createDeleteResult() {
+        return new DeleteResult();
+    }
+
+    public DeletedObject createDeletedObject() {
+        return new DeletedObject();
+    }
+
+    public DeleteError createDeleteError() {
+        return new DeleteError();
+    }
+
+}
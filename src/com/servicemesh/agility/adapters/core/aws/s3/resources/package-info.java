@@ -0,0 +1,5 @@
+/**
+ * JAXB classes for the S3 multipart upload elements of the 2006-03-01 API.
+ */
+@javax.xml.bind.annotation.XmlSchema(namespace = "http://s3.amazonaws.com/doc/2006-03-01/", elementFormDefault = javax.xml.bind.annotation.XmlNsForm.QUALIFIED)
+package com.servicemesh.agility.adapters.core.aws.s3.resources;
@@ -0,0 +1,78 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.util;
+
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+
+/**
+ * Utility methods for composing Promises.
+ */
+public class PromiseUtil
+{
+    /**
+     * Completes a target promise with the outcome of a source promise. A cancelled source fails the target.
+     *
+     * @param source
+     *            The promise whose outcome is forwarded.
+     * @param target
+     *            The promise to be completed.
+     */
+    public static <T> void forward(Promise<T> source, final CompletablePromise<T> target)
+    {
+        source.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T arg)
+            {
+                target.complete(arg);
+            }
+        });
+        source.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable arg)
+            {
+                target.failure(arg);
+            }
+        });
+        source.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                target.failure(new AWSAdapterException(Resources.getString("promiseCancelled")));
+            }
+        });
+    }
+
+    /**
+     * Returns a new promise that receives the outcome of a source promise. Cancelling the returned promise does not cancel
+     * the source, so a single source may be safely shared by several callers.
+     *
+     * @param source
+     *            The promise whose outcome is forwarded.
+     * @return A promise completed with the outcome of the source.
+     */
+    public static <T> Promise<T> attach(Promise<T> source)
+    {
+        CompletablePromise<T> target = PromiseFactory.create();
+        forward(source, target);
+        return target;
+    }
+
+    /**
+     * Cancels a promise that is still pending. Does nothing for a null, completed, failed or cancelled promise.
+     *
+     * @param promise
+     *            The promise to be cancelled. Optional, may be null.
+     */
+    public static void cancel(Promise<?> promise)
+    {
+        if ((promise != null) && (!promise.isCompleted()) && (!promise.isFailed()) && (!promise.isCancelled())) {
+            promise.cancel();
+        }
+    }
+}
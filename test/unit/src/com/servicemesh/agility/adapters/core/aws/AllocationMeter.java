@@ -0,0 +1,107 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import org.junit.Assert;
+
+/**
+ * Measures the bytes allocated by the current thread per invocation of an operation, via
+ * com.sun.management.ThreadMXBean.getThreadAllocatedBytes(), and checks them against budgets checked in as a properties
+ * file. Operations must complete on the calling thread for their allocation to be measured, e.g. AWSConnection requests
+ * sent via a replay transport.
+ */
+public class AllocationMeter
+{
+    private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Properties _budgets = new Properties();
+    private final String _budgetsName;
+
+    /**
+     * Creates a meter.
+     *
+     * @param budgetsClass
+     *            The class the budgets resource is loaded relative to.
+     * @param budgetsName
+     *            The name of the budgets resource, whose properties map operation names to the maximum bytes allocated
+     *            per invocation.
+     */
+    public AllocationMeter(Class<?> budgetsClass, String budgetsName) throws Exception
+    {
+        _budgetsName = budgetsName;
+        InputStream in = budgetsClass.getResourceAsStream(budgetsName);
+        Assert.assertNotNull(budgetsName, in);
+        try {
+            _budgets.load(in);
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns true if the JVM measures the bytes allocated by each thread.
+     */
+    public static boolean isSupported()
+    {
+        if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        if (!threads.isThreadAllocatedMemoryEnabled()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the average bytes allocated by the current thread per invocation of an operation. The operation is first
+     * invoked without measurement so that class loading, JAXB initialization and JIT compilation are excluded.
+     */
+    public static long measure(int warmup, int iterations, Callable<?> operation) throws Exception
+    {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < warmup; i++) {
+            operation.call();
+        }
+        // The measurement itself allocates, so it is taken once around all of the iterations
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            operation.call();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - start) / iterations;
+    }
+
+    /**
+     * Returns the budget of an operation.
+     */
+    public long getBudget(String name)
+    {
+        String budget = _budgets.getProperty(name);
+        Assert.assertNotNull("No allocation budget for " + name + " in " + _budgetsName, budget);
+        return Long.parseLong(budget.trim());
+    }
+
+    /**
+     * Fails if the bytes allocated per invocation of an operation exceed its budget.
+     */
+    public void assertWithinBudget(String name, long allocated)
+    {
+        long budget = getBudget(name);
+        if (allocated > budget) {
+            Assert.fail(name + " allocated " + allocated + " bytes per call, exceeding its budget of " + budget
+                    + " bytes. If the increase is intended, update " + _budgetsName + ".");
+        }
+    }
+}
@@ -6,6 +6,8 @@ package com.servicemesh.agility.adapters.core.aws;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -101,4 +103,214 @@ public class TestAWSConfig
         Assert.assertEquals(ap1.getStringValue(), cred.getPublicKey());
         Assert.assertEquals(ap2.getStringValue(), cred.getPrivateKey());
     }
+
+    @Test
+    public void testPropertySets() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertTrue(AWSConfig.getCoalesceActions(null).isEmpty());
+        Assert.assertTrue(AWSConfig.getCoalesceActions(properties).isEmpty());
+        Assert.assertEquals("dflt", AWSConfig.getPropertyAsString("p1", properties, "dflt"));
+
+        Property p1 = new Property();
+        p1.setName(AWSConfig.COALESCE_ACTIONS);
+        p1.setValue(" ");
+        properties.add(p1);
+        Assert.assertTrue(AWSConfig.getCoalesceActions(properties).isEmpty());
+
+        p1.setValue("DescribeSecurityGroups, DescribeDBInstances,,");
+        Set<String> actions = AWSConfig.getCoalesceActions(properties);
+        Assert.assertEquals(2, actions.size());
+        Assert.assertTrue(actions.contains("DescribeSecurityGroups"));
+        Assert.assertTrue(actions.contains("DescribeDBInstances"));
+        Assert.assertEquals(p1.getValue(), AWSConfig.getPropertyAsString(AWSConfig.COALESCE_ACTIONS, properties, null));
+    }
+
+    @Test
+    public void testCacheSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertTrue(AWSConfig.getCacheActions(null).isEmpty());
+        Assert.assertEquals(AWSConfig.CACHE_MAX_ENTRIES_DEFAULT, AWSConfig.getCacheMaxEntries(properties));
+
+        Property actions = new Property();
+        actions.setName(AWSConfig.CACHE_ACTIONS);
+        actions.setValue("DescribeSecurityGroups:2000, DescribeDBInstances");
+        properties.add(actions);
+        Map<String, Long> ttls = AWSConfig.getCacheActions(properties);
+        Assert.assertEquals(2, ttls.size());
+        Assert.assertEquals(Long.valueOf(2000), ttls.get("DescribeSecurityGroups"));
+        Assert.assertEquals(Long.valueOf(AWSConfig.CACHE_TTL_DEFAULT_MILLIS), ttls.get("DescribeDBInstances"));
+
+        Property ttl = new Property();
+        ttl.setName(AWSConfig.CACHE_TTL);
+        ttl.setValue("750");
+        properties.add(ttl);
+        Assert.assertEquals(Long.valueOf(750), AWSConfig.getCacheActions(properties).get("DescribeDBInstances"));
+
+        Assert.assertEquals(AWSConfig.VALIDATOR_CACHE_MAX_BYTES_DEFAULT, AWSConfig.getValidatorCacheMaxBytes(null));
+        Property maxBytes = new Property();
+        maxBytes.setName(AWSConfig.VALIDATOR_CACHE_MAX_BYTES);
+        maxBytes.setValue("-1");
+        properties.add(maxBytes);
+        Assert.assertEquals(0, AWSConfig.getValidatorCacheMaxBytes(properties));
+        maxBytes.setValue("1048576");
+        Assert.assertEquals(1048576, AWSConfig.getValidatorCacheMaxBytes(properties));
+    }
+
+    @Test
+    public void testPaginatorSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(AWSConfig.PAGINATOR_BUFFER_PAGES_DEFAULT, AWSConfig.getPaginatorBufferPages(null));
+
+        Property pages = new Property();
+        pages.setName(AWSConfig.PAGINATOR_BUFFER_PAGES);
+        pages.setValue("-1");
+        properties.add(pages);
+        Assert.assertEquals(0, AWSConfig.getPaginatorBufferPages(properties));
+        pages.setValue("4");
+        Assert.assertEquals(4, AWSConfig.getPaginatorBufferPages(properties));
+    }
+
+    @Test
+    public void testQueryPostSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(AWSConfig.QUERY_POST_THRESHOLD_DEFAULT_BYTES, AWSConfig.getQueryPostThreshold(null));
+
+        Property threshold = new Property();
+        threshold.setName(AWSConfig.QUERY_POST_THRESHOLD);
+        threshold.setValue("-1");
+        properties.add(threshold);
+        Assert.assertEquals(0, AWSConfig.getQueryPostThreshold(properties));
+        threshold.setValue("8192");
+        Assert.assertEquals(8192, AWSConfig.getQueryPostThreshold(properties));
+    }
+
+    @Test
+    public void testRegionSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(AWSConfig.REGION_CONCURRENCY_DEFAULT, AWSConfig.getRegionConcurrency(null));
+        Assert.assertEquals(AWSConfig.REGION_REQUEST_CONCURRENCY_DEFAULT,
+                AWSConfig.getRegionRequestConcurrency(properties));
+
+        Property concurrency = new Property();
+        concurrency.setName(AWSConfig.REGION_CONCURRENCY);
+        concurrency.setValue("32");
+        properties.add(concurrency);
+        Property regionConcurrency = new Property();
+        regionConcurrency.setName(AWSConfig.REGION_REQUEST_CONCURRENCY);
+        regionConcurrency.setValue("0");
+        properties.add(regionConcurrency);
+        Assert.assertEquals(32, AWSConfig.getRegionConcurrency(properties));
+        Assert.assertEquals(1, AWSConfig.getRegionRequestConcurrency(properties));
+    }
+
+    @Test
+    public void testHedgeSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertTrue(AWSConfig.getHedgeActions(null).isEmpty());
+        Assert.assertEquals(AWSConfig.HEDGE_PERCENTILE_DEFAULT, AWSConfig.getHedgePercentile(properties));
+        Assert.assertEquals(AWSConfig.HEDGE_MIN_DELAY_DEFAULT_MILLIS, AWSConfig.getHedgeMinDelay(properties));
+        Assert.assertEquals(AWSConfig.HEDGE_BUDGET_DEFAULT_PERCENT, AWSConfig.getHedgeBudget(properties));
+
+        Property percentile = new Property();
+        percentile.setName(AWSConfig.HEDGE_PERCENTILE);
+        percentile.setValue("100");
+        properties.add(percentile);
+        Property budget = new Property();
+        budget.setName(AWSConfig.HEDGE_BUDGET);
+        budget.setValue("-1");
+        properties.add(budget);
+        Assert.assertEquals(99, AWSConfig.getHedgePercentile(properties));
+        Assert.assertEquals(0, AWSConfig.getHedgeBudget(properties));
+    }
+
+    @Test
+    public void testCircuitSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(AWSConfig.CIRCUIT_FAILURE_THRESHOLD_DEFAULT, AWSConfig.getCircuitFailureThreshold(null));
+        Assert.assertEquals(0, AWSConfig.getCircuitFailureThreshold(null));
+        Assert.assertEquals(AWSConfig.CIRCUIT_ERROR_RATE_DEFAULT_PERCENT, AWSConfig.getCircuitErrorRate(properties));
+        Assert.assertEquals(AWSConfig.CIRCUIT_WINDOW_DEFAULT, AWSConfig.getCircuitWindow(properties));
+        Assert.assertEquals(AWSConfig.CIRCUIT_OPEN_DEFAULT_MILLIS, AWSConfig.getCircuitOpen(properties));
+
+        Property window = new Property();
+        window.setName(AWSConfig.CIRCUIT_WINDOW);
+        window.setValue("0");
+        properties.add(window);
+        Property rate = new Property();
+        rate.setName(AWSConfig.CIRCUIT_ERROR_RATE);
+        rate.setValue("150");
+        properties.add(rate);
+        Assert.assertEquals(1, AWSConfig.getCircuitWindow(properties));
+        Assert.assertEquals(100, AWSConfig.getCircuitErrorRate(properties));
+    }
+
+    @Test
+    public void testSlowRequestSettings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(0, AWSConfig.SLOW_REQUEST_THRESHOLD_DEFAULT_MILLIS);
+        Assert.assertEquals(AWSConfig.SLOW_REQUEST_THRESHOLD_DEFAULT_MILLIS, AWSConfig.getSlowRequestThreshold(null));
+        Assert.assertEquals(AWSConfig.SLOW_REQUEST_CANCEL_DEFAULT_MILLIS, AWSConfig.getSlowRequestCancel(properties));
+
+        Property threshold = new Property();
+        threshold.setName(AWSConfig.SLOW_REQUEST_THRESHOLD);
+        threshold.setValue("30000");
+        properties.add(threshold);
+        Property cancel = new Property();
+        cancel.setName(AWSConfig.SLOW_REQUEST_CANCEL);
+        cancel.setValue("600000");
+        properties.add(cancel);
+        Assert.assertEquals(30000, AWSConfig.getSlowRequestThreshold(properties));
+        Assert.assertEquals(600000, AWSConfig.getSlowRequestCancel(properties));
+    }
+
+    @Test
+    public void testS3Settings() throws Exception
+    {
+        List<Property> properties = new ArrayList<Property>();
+        Assert.assertEquals(AWSConfig.S3_PART_SIZE_DEFAULT_BYTES, AWSConfig.getS3PartSize(null));
+        Assert.assertEquals(AWSConfig.S3_UPLOAD_CONCURRENCY_DEFAULT, AWSConfig.getS3UploadConcurrency(properties));
+        Assert.assertEquals(AWSConfig.S3_PART_RETRIES_DEFAULT, AWSConfig.getS3PartRetries(properties));
+        Assert.assertEquals(AWSConfig.S3_DOWNLOAD_CONCURRENCY_DEFAULT, AWSConfig.getS3DownloadConcurrency(properties));
+        Assert.assertEquals(AWSConfig.S3_DELETE_CONCURRENCY_DEFAULT, AWSConfig.getS3DeleteConcurrency(properties));
+        Assert.assertEquals(AWSConfig.S3_LIST_CONCURRENCY_DEFAULT, AWSConfig.getS3ListConcurrency(properties));
+
+        Property partSize = new Property();
+        partSize.setName(AWSConfig.S3_PART_SIZE);
+        partSize.setValue("16777216");
+        properties.add(partSize);
+        Property concurrency = new Property();
+        concurrency.setName(AWSConfig.S3_UPLOAD_CONCURRENCY);
+        concurrency.setValue("8");
+        properties.add(concurrency);
+        Property retries = new Property();
+        retries.setName(AWSConfig.S3_PART_RETRIES);
+        retries.setValue("0");
+        properties.add(retries);
+        Property downloadConcurrency = new Property();
+        downloadConcurrency.setName(AWSConfig.S3_DOWNLOAD_CONCURRENCY);
+        downloadConcurrency.setValue("16");
+        properties.add(downloadConcurrency);
+        Property deleteConcurrency = new Property();
+        deleteConcurrency.setName(AWSConfig.S3_DELETE_CONCURRENCY);
+        deleteConcurrency.setValue("2");
+        properties.add(deleteConcurrency);
+        Property listConcurrency = new Property();
+        listConcurrency.setName(AWSConfig.S3_LIST_CONCURRENCY);
+        listConcurrency.setValue("32");
+        properties.add(listConcurrency);
+        Assert.assertEquals(16777216, AWSConfig.getS3PartSize(properties));
+        Assert.assertEquals(8, AWSConfig.getS3UploadConcurrency(properties));
+        Assert.assertEquals(0, AWSConfig.getS3PartRetries(properties));
+        Assert.assertEquals(16, AWSConfig.getS3DownloadConcurrency(properties));
+        Assert.assertEquals(2, AWSConfig.getS3DeleteConcurrency(properties));
+        Assert.assertEquals(32, AWSConfig.getS3ListConcurrency(properties));
+    }
 }
@@ -6,10 +6,14 @@ package com.servicemesh.agility.adapters.core.aws;
 
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +24,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.powermock.api.mockito.PowerMockito;
@@ -30,6 +35,13 @@ import org.powermock.reflect.Whitebox;
 
 import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
 import com.servicemesh.agility.adapters.core.aws.impl.AWSConnectionImpl;
+import com.servicemesh.agility.adapters.core.aws.impl.CircuitBreaker;
+import com.servicemesh.agility.adapters.core.aws.impl.RequestHedger;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSMetrics;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestHistory;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestMetrics;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestSummary;
+import com.servicemesh.agility.adapters.core.aws.metrics.RequestPhase;
 
 import com.servicemesh.agility.api.AssetProperty;
 import com.servicemesh.agility.api.Cloud;
@@ -37,7 +49,9 @@ import com.servicemesh.agility.api.Credential;
 import com.servicemesh.agility.api.Link;
 import com.servicemesh.agility.api.Property;
 import com.servicemesh.agility.api.ServiceProvider;
+import com.servicemesh.core.async.CompletablePromise;
 import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
 import com.servicemesh.io.http.HttpClientFactory;
 import com.servicemesh.io.http.HttpMethod;
 import com.servicemesh.io.http.HttpStatus;
@@ -48,6 +62,7 @@ import com.servicemesh.io.http.IHttpClientConfigBuilder;
 import com.servicemesh.io.http.IHttpHeader;
 import com.servicemesh.io.http.IHttpRequest;
 import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParam;
 import com.servicemesh.io.http.QueryParams;
 import com.servicemesh.io.http.impl.BaseHttpHeader;
 import com.servicemesh.io.http.impl.DefaultHttpRequest;
@@ -65,6 +80,7 @@ public class TestAWSConnection
     public void before()
     {
         TestHelpers.setLogLevel(AWSConnectionImpl.class.getName(), Level.WARN);
+        CircuitBreaker.clearInstances();
     }
 
     @After
@@ -234,6 +250,511 @@ public class TestAWSConnection
         doMethods(conn, ep);
     }
 
+    @Test
+    public void testCoalescing() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+
+        List<Property> settings = new ArrayList<Property>();
+        Property coalesce = new Property();
+        coalesce.setName(AWSConfig.COALESCE_ACTIONS);
+        coalesce.setValue("DescribeSecurityGroups");
+        settings.add(coalesce);
+        AWSConnection conn = construct("Coalescing conn", settings, cred, null, ep, true);
+
+        CompletablePromise<IHttpResponse> pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending);
+
+        Promise<IHttpResponse> p1 = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        Promise<IHttpResponse> p2 = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        verify(mockClient, times(1)).promise(any(IHttpRequest.class));
+        Assert.assertEquals(1, conn.getCoalescedRequestCount());
+
+        // Different parameters, a mutating action, or a non-GET method are sent separately
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", "sg-1"));
+        conn.execute(params, IHttpResponse.class);
+        conn.execute(conn.initQueryParams("CreateSecurityGroup"), IHttpResponse.class);
+        conn.execute(conn.initQueryParams("CreateSecurityGroup"), IHttpResponse.class);
+        conn.execute(HttpMethod.POST, conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        verify(mockClient, times(5)).promise(any(IHttpRequest.class));
+        Assert.assertEquals(1, conn.getCoalescedRequestCount());
+
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        pending.complete(response);
+        Assert.assertSame(response, p1.get());
+        Assert.assertSame(response, p2.get());
+
+        // Once completed, the next identical request is sent again
+        conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        verify(mockClient, times(6)).promise(any(IHttpRequest.class));
+    }
+
+    @Test
+    public void testCaching() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+
+        List<Property> settings = new ArrayList<Property>();
+        Property cache = new Property();
+        cache.setName(AWSConfig.CACHE_ACTIONS);
+        cache.setValue("DescribeSecurityGroups:60000");
+        settings.add(cache);
+        AWSConnection conn = construct("Caching conn", settings, cred, null, ep, true);
+
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.pure((IHttpResponse) response));
+
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", "sg-1"));
+        Assert.assertSame(response, conn.execute(params, IHttpResponse.class).get());
+        params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", "sg-1"));
+        Assert.assertSame(response, conn.execute(params, IHttpResponse.class).get());
+        verify(mockClient, times(1)).promise(any(IHttpRequest.class));
+        Assert.assertEquals(1, conn.getCacheStatistics().getHits());
+        Assert.assertEquals(1, conn.getCacheStatistics().getMisses());
+
+        // A mutation of the same group invalidates the cached response
+        params = conn.initQueryParams("AuthorizeSecurityGroupIngress");
+        params.add(new QueryParam("GroupId", "sg-1"));
+        conn.execute(params, IHttpResponse.class).get();
+        params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", "sg-1"));
+        conn.execute(params, IHttpResponse.class).get();
+        verify(mockClient, times(3)).promise(any(IHttpRequest.class));
+        Assert.assertEquals(2, conn.getCacheStatistics().getMisses());
+    }
+
+    @Test
+    public void testHedging() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+
+        List<Property> settings = new ArrayList<Property>();
+        Property hedge = new Property();
+        hedge.setName(AWSConfig.HEDGE_ACTIONS);
+        hedge.setValue("DescribeSecurityGroups");
+        settings.add(hedge);
+        Property budget = new Property();
+        budget.setName(AWSConfig.HEDGE_BUDGET);
+        budget.setValue("100");
+        settings.add(budget);
+        AWSConnection conn = construct("Hedging conn", settings, cred, null, ep, true);
+
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.pure((IHttpResponse) response));
+        for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+            conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class).get();
+        }
+
+        // A slow request is sent again with the same signed URI
+        CompletablePromise<IHttpResponse> pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending, Promise.pure((IHttpResponse) response));
+        Promise<IHttpResponse> promise = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        Assert.assertSame(response, promise.get());
+        Assert.assertTrue(pending.isCancelled());
+
+        ArgumentCaptor<URI> uris = ArgumentCaptor.forClass(URI.class);
+        verify(HttpClientFactory.getInstance(), times(RequestHedger.MIN_SAMPLES + 2)).createRequest(any(HttpMethod.class),
+                uris.capture());
+        List<URI> sent = uris.getAllValues();
+        Assert.assertEquals(sent.get(sent.size() - 2), sent.get(sent.size() - 1));
+
+        AWSHedgeStatistics stats = conn.getHedgeStatistics();
+        Assert.assertEquals(RequestHedger.MIN_SAMPLES + 1, stats.getRequests());
+        Assert.assertEquals(1, stats.getHedges());
+        Assert.assertEquals(1, stats.getWins());
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+
+        List<Property> settings = new ArrayList<Property>();
+        Property threshold = new Property();
+        threshold.setName(AWSConfig.CIRCUIT_FAILURE_THRESHOLD);
+        threshold.setValue("2");
+        settings.add(threshold);
+        AWSConnection conn = construct("Circuit conn", settings, cred, null, ep, true);
+        final List<AWSCircuitState> states = new ArrayList<AWSCircuitState>();
+        conn.addCircuitListener(new AWSCircuitListener() {
+            @Override
+            public void stateChanged(String name, AWSCircuitState previous, AWSCircuitState current)
+            {
+                Assert.assertEquals("test.com/ec2", name);
+                states.add(current);
+            }
+        });
+
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.<IHttpResponse> pure(new Exception("timeout")));
+        conn.execute(conn.initQueryParams("CreateSecurityGroup"), IHttpResponse.class);
+        Assert.assertEquals(AWSCircuitState.CLOSED, conn.getCircuitState());
+        conn.execute(conn.initQueryParams("CreateSecurityGroup"), IHttpResponse.class);
+        Assert.assertEquals(AWSCircuitState.OPEN, conn.getCircuitState());
+
+        // Connections to the same host and service share the open circuit and fail without sending
+        AWSConnection other = construct("Other conn", settings, cred, null, ep, true);
+        Promise<IHttpResponse> promise = other.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        Assert.assertTrue(promise.isFailed());
+        verify(mockClient, times(2)).promise(any(IHttpRequest.class));
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals(AWSCircuitState.OPEN, states.get(0));
+
+        // The circuit breaker is disabled by default
+        AWSConnection unprotected = construct("Unprotected conn", null, cred, null, ep, true);
+        Assert.assertEquals(AWSCircuitState.CLOSED, unprotected.getCircuitState());
+        unprotected.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        verify(mockClient, times(3)).promise(any(IHttpRequest.class));
+    }
+
+    @Test
+    public void testDeadline() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+        AWSConnection conn = construct("Deadline conn", null, cred, null, ep, true);
+
+        AWSRequestOptions options = new AWSRequestOptions();
+        Assert.assertFalse(options.hasDeadline());
+        Assert.assertEquals(-1, options.getRemainingMillis());
+
+        // An expired deadline fails without sending
+        options.setDeadline(System.currentTimeMillis() - 1);
+        Assert.assertEquals(0, options.getRemainingMillis());
+        Promise<IHttpResponse> promise =
+                conn.execute(conn.initQueryParams("DescribeSecurityGroups"), options, IHttpResponse.class);
+        Assert.assertTrue(promise.isFailed());
+        verify(mockClient, times(0)).promise(any(IHttpRequest.class));
+
+        // The HTTP request is cancelled when the deadline expires
+        CompletablePromise<IHttpResponse> pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending);
+        promise = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), AWSRequestOptions.withTimeout(50),
+                IHttpResponse.class);
+        Assert.assertFalse(promise.isFailed());
+        try {
+            promise.get();
+            Assert.fail("Deadline did not expire");
+        }
+        catch (AWSAdapterException e) {
+            Assert.assertTrue(e.getMessage().contains("DescribeSecurityGroups"));
+        }
+        Assert.assertTrue(pending.isCancelled());
+
+        // Cancelling the caller's promise cancels the HTTP request
+        pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending);
+        promise = conn.execute(HttpMethod.GET, null, null, conn.initQueryParams("DescribeSecurityGroups"), null,
+                AWSRequestOptions.withTimeout(60000), IHttpResponse.class);
+        promise.cancel();
+        Assert.assertTrue(pending.isCancelled());
+
+        // Also without a deadline, when an interceptor maps the response
+        AWSRequestInterceptor interceptor = new AWSRequestInterceptorAdapter();
+        conn.addInterceptor(interceptor);
+        pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending);
+        promise = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), new AWSRequestOptions(),
+                IHttpResponse.class);
+        promise.cancel();
+        Assert.assertTrue(pending.isCancelled());
+        conn.removeInterceptor(interceptor);
+
+        // A response before the deadline completes normally
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        pending = PromiseFactory.create();
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(pending);
+        promise = conn.execute(conn.initQueryParams("DescribeSecurityGroups"), AWSRequestOptions.withTimeout(60000),
+                IHttpResponse.class);
+        pending.complete(response);
+        Assert.assertSame(response, promise.get());
+    }
+
+    @Test
+    public void testMetrics() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+        AWSConnection conn = construct("Metrics conn", null, cred, null, ep, true);
+        AWSMetrics metrics = AWSMetrics.getInstance();
+        metrics.reset();
+        metrics.setEnabled(true);
+
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        // Without a Content-Length header the bytes of the body are counted, not its characters
+        byte[] content = "<response>\u00e9</response>".getBytes("UTF-8");
+        response.setContent(content);
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.pure((IHttpResponse) response));
+        when(ep.decode(any(IHttpResponse.class), eq(String.class))).thenReturn("decoded");
+        Assert.assertEquals("decoded", conn.execute(conn.initQueryParams("DescribeSecurityGroups"), String.class).get());
+
+        AWSRequestMetrics request = metrics.getRequestMetrics("ec2/DescribeSecurityGroups/200");
+        Assert.assertNotNull(request);
+        Assert.assertEquals(1, request.getCount());
+        for (RequestPhase phase : new RequestPhase[] { RequestPhase.TOTAL, RequestPhase.SIGNING, RequestPhase.QUEUEING,
+                RequestPhase.HTTP, RequestPhase.DECODING }) {
+            Assert.assertEquals(phase.name(), 1, request.getHistogram(phase).getCount());
+        }
+        // Nothing was encoded
+        Assert.assertNull(request.getHistogram(RequestPhase.ENCODING));
+        Assert.assertTrue(request.getBytesOut() > 0);
+        Assert.assertEquals(content.length, request.getBytesIn());
+
+        // Transport failures are recorded without a status and disabled metrics record nothing
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.<IHttpResponse> pure(new Exception("timeout")));
+        conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+        Assert.assertEquals(1, metrics.getCount("ec2/DescribeSecurityGroups/" + AWSRequestMetrics.NO_RESPONSE));
+        metrics.setEnabled(false);
+        try {
+            conn.execute(conn.initQueryParams("DescribeSecurityGroups"), IHttpResponse.class);
+            Assert.assertEquals(1, metrics.getCount("ec2/DescribeSecurityGroups/" + AWSRequestMetrics.NO_RESPONSE));
+        }
+        finally {
+            metrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testRequestHistory() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+        AWSConnection conn = construct("History conn", null, cred, null, ep, true);
+        AWSRequestHistory history = AWSRequestHistory.getInstance();
+        history.reset();
+
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        response.setHeader(new BaseHttpHeader("x-amzn-RequestId", "c5e1ba4b-2b7c-4d83-a6c5-0123456789ab"));
+        response.setContent("<response/>".getBytes());
+        when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.pure((IHttpResponse) response));
+        when(ep.decode(any(IHttpResponse.class), eq(String.class))).thenReturn("decoded");
+        conn.execute(conn.initQueryParams("DescribeSecurityGroups"), String.class).get();
+
+        // Requests are recorded while metrics are disabled
+        Assert.assertFalse(AWSMetrics.getInstance().isEnabled());
+        when(mockClient.promise(any(IHttpRequest.class)))
+                .thenReturn(Promise.<IHttpResponse> pure(new Exception("timeout")));
+        conn.execute(conn.initQueryParams("RunInstances"), IHttpResponse.class);
+
+        List<AWSRequestSummary> recent = history.getRecent();
+        Assert.assertEquals(2, recent.size());
+        AWSRequestSummary summary = recent.get(0);
+        Assert.assertEquals("ec2", summary.getService());
+        Assert.assertEquals("test.com", summary.getHost());
+        Assert.assertEquals("DescribeSecurityGroups", summary.getAction());
+        Assert.assertEquals(200, summary.getStatus());
+        Assert.assertEquals("c5e1ba4b-2b7c-4d83-a6c5-0123456789ab", summary.getRequestId());
+        Assert.assertEquals(1, summary.getAttempts());
+        Assert.assertTrue(summary.getBytesOut() > 0);
+        Assert.assertEquals("<response/>".length(), summary.getBytesIn());
+        Assert.assertTrue(summary.getMicros(RequestPhase.TOTAL) >= 0);
+        Assert.assertTrue(summary.getMicros(RequestPhase.DECODING) >= 0);
+        Assert.assertEquals(AWSRequestSummary.NOT_MEASURED, summary.getMicros(RequestPhase.ENCODING));
+
+        summary = recent.get(1);
+        Assert.assertEquals("RunInstances", summary.getAction());
+        Assert.assertEquals(AWSRequestMetrics.NO_RESPONSE, summary.getStatus());
+        Assert.assertNull(summary.getRequestId());
+        Assert.assertEquals(AWSRequestSummary.NOT_MEASURED, summary.getMicros(RequestPhase.HTTP));
+        Assert.assertEquals(2, history.dump().length);
+    }
+
+    private class RecordingInterceptor implements AWSRequestInterceptor
+    {
+        private final String _name;
+        private final List<String> _calls;
+
+        private RecordingInterceptor(String name, List<String> calls)
+        {
+            _name = name;
+            _calls = calls;
+        }
+
+        @Override
+        public void beforeSign(AWSRequestContext context)
+        {
+            _calls.add(_name + ".beforeSign");
+        }
+
+        @Override
+        public void afterSign(AWSRequestContext context)
+        {
+            _calls.add(_name + ".afterSign");
+        }
+
+        @Override
+        public void beforeSend(AWSRequestContext context)
+        {
+            _calls.add(_name + ".beforeSend");
+        }
+
+        @Override
+        public void onResponseBytes(AWSRequestContext context, IHttpResponse response)
+        {
+            _calls.add(_name + ".onResponseBytes");
+        }
+
+        @Override
+        public void afterDecode(AWSRequestContext context, Object result)
+        {
+            _calls.add(_name + ".afterDecode");
+        }
+
+        @Override
+        public void onError(AWSRequestContext context, Throwable error)
+        {
+            _calls.add(_name + ".onError");
+        }
+    }
+
+    @Test
+    public void testInterceptors() throws Throwable
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey("foo");
+        cred.setPrivateKey("bar");
+        AWSEndpoint ep = mockEndpoint();
+        IHttpClient mockClient = mockHttpClient();
+        AWSConnection conn = AWSConnectionFactory.getInstance().getConnection(null, cred, null, ep);
+
+        final List<String> calls = new ArrayList<String>();
+        RecordingInterceptor global = new RecordingInterceptor("global", calls);
+        AWSConnectionFactory.getInstance().addInterceptor(global);
+        try {
+            conn.addInterceptor(new RecordingInterceptor("local", calls));
+            conn.addInterceptor(new AWSRequestInterceptorAdapter() {
+                @Override
+                public void beforeSign(AWSRequestContext context)
+                {
+                    Assert.assertEquals("DescribeSecurityGroups", context.getAction());
+                    context.getParams().add(new QueryParam("Filter.1.Name", "vpc-id"));
+                    context.setHeader("x-amz-meta-trace", "1");
+                    context.setAttribute("start", Long.valueOf(1));
+                }
+
+                @Override
+                public void afterSign(AWSRequestContext context)
+                {
+                    Assert.assertTrue(context.getSignedURI().toString().contains("Filter.1.Name=vpc-id"));
+                    Assert.assertTrue(context.getSignedHeaders().containsKey("Authorization"));
+                    Assert.assertEquals("1", context.getSignedHeaders().get("x-amz-meta-trace"));
+                    Assert.assertEquals(Long.valueOf(1), context.getAttribute("start"));
+                }
+            });
+
+            DefaultHttpResponse response = new DefaultHttpResponse();
+            response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+            when(mockClient.promise(any(IHttpRequest.class))).thenReturn(Promise.pure((IHttpResponse) response));
+            when(ep.decode(any(IHttpResponse.class), eq(String.class))).thenReturn("decoded");
+            Assert.assertEquals("decoded", conn.execute(conn.initQueryParams("DescribeSecurityGroups"), String.class).get());
+            Assert.assertEquals(Arrays.asList("global.beforeSign", "local.beforeSign", "global.afterSign", "local.afterSign",
+                    "global.beforeSend", "local.beforeSend", "global.onResponseBytes", "local.onResponseBytes",
+                    "global.afterDecode", "local.afterDecode"), calls);
+
+            // Headers set by an interceptor do not modify the caller's headers, which may be immutable
+            Map<String, String> headers = Collections.singletonMap("x-amz-meta-caller", "1");
+            Assert.assertEquals("decoded", conn.execute(HttpMethod.GET, null, headers,
+                    conn.initQueryParams("DescribeSecurityGroups"), null, String.class).get());
+            Assert.assertEquals(1, headers.size());
+
+            // A request whose deadline has expired is reported to the interceptors that saw it
+            calls.clear();
+            AWSRequestOptions expired = new AWSRequestOptions();
+            expired.setDeadline(System.currentTimeMillis() - 1);
+            Assert.assertTrue(conn.execute(conn.initQueryParams("DescribeSecurityGroups"), expired, String.class).isFailed());
+            Assert.assertEquals(Arrays.asList("global.beforeSign", "local.beforeSign", "global.onError", "local.onError"),
+                    calls);
+
+            // An interceptor may reject a request before it is sent
+            calls.clear();
+            conn.addInterceptor(new AWSRequestInterceptorAdapter() {
+                @Override
+                public void beforeSend(AWSRequestContext context)
+                {
+                    throw new AWSAdapterException("rejected");
+                }
+            });
+            Promise<IHttpResponse> promise = conn.execute(HttpMethod.GET, conn.initQueryParams("DescribeSecurityGroups"));
+            Assert.assertTrue(promise.isFailed());
+            verify(mockClient, times(2)).promise(any(IHttpRequest.class));
+            Assert.assertEquals("local.onError", calls.get(calls.size() - 1));
+        }
+        finally {
+            AWSConnectionFactory.getInstance().removeInterceptor(global);
+        }
+    }
+
+    private AWSEndpoint mockEndpoint()
+    {
+        AWSEndpoint ep = mock(AWSEndpoint.class);
+        when(ep.getAddress()).thenReturn("address");
+        when(ep.getVersion()).thenReturn("2013-10-15");
+        when(ep.getHostName()).thenReturn("test.com");
+        when(ep.getRegionName()).thenReturn("us-east-1");
+        when(ep.getServiceName()).thenReturn("ec2");
+        return ep;
+    }
+
+    private IHttpClient mockHttpClient()
+    {
+        PowerMockito.mockStatic(HttpClientFactory.class);
+        HttpClientFactory mockFactory = mock(HttpClientFactory.class);
+        when(HttpClientFactory.getInstance()).thenReturn(mockFactory);
+        IHttpClientConfigBuilder mockCB = mock(IHttpClientConfigBuilder.class);
+        when(mockFactory.getConfigBuilder()).thenReturn(mockCB);
+        IHttpClient mockClient = mock(IHttpClient.class);
+        when(mockFactory.getClient(any(IHttpClientConfig.class))).thenReturn(mockClient);
+        when(mockFactory.createHeader(anyString(), anyString())).thenAnswer(new Answer<IHttpHeader>() {
+            @Override
+            public IHttpHeader answer(InvocationOnMock invocation)
+            {
+                Object[] args = invocation.getArguments();
+                return new BaseHttpHeader((String) args[0], (String) args[1]);
+            }
+        });
+        when(mockFactory.createRequest(any(HttpMethod.class), any(URI.class))).thenAnswer(new Answer<IHttpRequest>() {
+            @Override
+            public IHttpRequest answer(InvocationOnMock invocation)
+            {
+                return new DefaultHttpRequest((HttpMethod) invocation.getArguments()[0]);
+            }
+        });
+        return mockClient;
+    }
+
     private AWSConnection construct(String scenario, List<Property> settings,
                                     Credential cred, Proxy proxy,
                                     AWSEndpoint endpoint, boolean succeed)
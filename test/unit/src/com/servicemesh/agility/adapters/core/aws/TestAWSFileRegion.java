@@ -0,0 +1,149 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.impl.RequestBody;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestAWSFileRegion
+{
+    private AWSStubServer _server;
+    private AWSConnection _conn;
+    private File _file;
+    private byte[] _data;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/region-bucket", null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        _data = new byte[300000];
+        new Random(42).nextBytes(_data);
+        _file = File.createTempFile("TestAWSFileRegion", ".bin");
+        FileOutputStream out = new FileOutputStream(_file);
+        try {
+            out.write(_data);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+        _file.delete();
+    }
+
+    @Test
+    public void testByteBuffers() throws Throwable
+    {
+        // A heap buffer whose content starts part way into its array
+        ByteBuffer heap = ByteBuffer.wrap(_data, 100, 5000).slice();
+        put("heap", heap);
+        Assert.assertArrayEquals(Arrays.copyOfRange(_data, 100, 5100), getObject("heap"));
+        Assert.assertEquals(0, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(_data.length);
+        direct.put(_data).flip();
+        direct.position(7);
+        put("direct", direct);
+        Assert.assertArrayEquals(Arrays.copyOfRange(_data, 7, _data.length), getObject("direct"));
+        Assert.assertEquals(7, direct.position());
+
+        put("empty", ByteBuffer.allocateDirect(0));
+        Assert.assertEquals(0, getObject("empty").length);
+    }
+
+    @Test
+    public void testFileRegions() throws Throwable
+    {
+        put("whole", new AWSFileRegion(_file));
+        Assert.assertArrayEquals(_data, getObject("whole"));
+
+        AWSFileRegion region = new AWSFileRegion(_file, 1234, 100000);
+        put("part", region);
+        Assert.assertArrayEquals(Arrays.copyOfRange(_data, 1234, 101234), getObject("part"));
+        Assert.assertEquals(0, _server.getRejectedCount());
+
+        try {
+            put("beyond", new AWSFileRegion(_file, _data.length - 10, 11));
+            Assert.fail("Expected a failure for a region beyond the end of the file");
+        }
+        catch (Exception ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("extends beyond the end of the file"));
+        }
+    }
+
+    @Test
+    public void testRequestBody() throws Exception
+    {
+        AWSFileRegion region = new AWSFileRegion(_file, 10, 20000);
+        ByteBuffer buffer = ByteBuffer.wrap(_data, 10, 20000);
+        byte[] expected = Arrays.copyOfRange(_data, 10, 20010);
+
+        Assert.assertTrue(RequestBody.isStreamed(region));
+        Assert.assertTrue(RequestBody.isStreamed(buffer));
+        Assert.assertFalse(RequestBody.isStreamed(expected));
+        Assert.assertTrue(RequestBody.isRaw(expected));
+        Assert.assertFalse(RequestBody.isRaw(new CreateBucketConfiguration()));
+        Assert.assertEquals(20000, RequestBody.getLength(region));
+        Assert.assertEquals(20000, RequestBody.getLength(buffer));
+        // Strings are measured as UTF-8, including a surrogate pair and a lone surrogate
+        String text = "a\u00e9\u4e16\ud83d\ude00\ud83d";
+        Assert.assertEquals(text.getBytes("UTF-8").length, RequestBody.getLength(text));
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] hash = md.digest(expected);
+        RequestBody.digest(md, region);
+        Assert.assertArrayEquals(hash, md.digest());
+        RequestBody.digest(md, buffer);
+        Assert.assertArrayEquals(hash, md.digest());
+        Assert.assertEquals(10, buffer.position());
+
+        Assert.assertArrayEquals(expected, RequestBody.toByteArray(region));
+        Assert.assertArrayEquals(expected, RequestBody.toByteArray(buffer));
+        // A buffer covering its whole array is not copied
+        Assert.assertSame(_data, RequestBody.toByteArray(ByteBuffer.wrap(_data)));
+    }
+
+    private void put(String key, Object content) throws Throwable
+    {
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/region-bucket/" + key, null, new QueryParams(), content,
+                IHttpResponse.class).get();
+        Assert.assertEquals(response.getContent(), 200, response.getStatusCode());
+    }
+
+    private byte[] getObject(String key)
+    {
+        return ((S3Stub) _server.getService("s3")).getObject("region-bucket", key);
+    }
+}
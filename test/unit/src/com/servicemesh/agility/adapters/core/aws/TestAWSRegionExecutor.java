@@ -0,0 +1,216 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ec2.doc._2013_10_15.DescribeVpcsResponseType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubRequest;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubService;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestAWSRegionExecutor
+{
+    private static final String FAILED_REGION = "eu-west-1";
+    private static final long DELAY_MILLIS = 300;
+
+    private AWSStubServer _server;
+    private RegionalEC2 _ec2;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer(16);
+        _ec2 = new RegionalEC2();
+        _server.setService("ec2", _ec2);
+        _server.start();
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testFanOut() throws Throwable
+    {
+        AWSRegionExecutor executor = getExecutor(16, 2);
+        List<String> regions = Arrays.asList("us-east-1", "us-west-2", FAILED_REGION, "ap-southeast-2", "us-east-1");
+        final List<String> arrived = Collections.synchronizedList(new ArrayList<String>());
+        QueryParams params = new QueryParams();
+        params.add(new QueryParam("VpcId.1", EC2Stub.VPC_ID));
+
+        long start = System.currentTimeMillis();
+        List<AWSRegionResult<DescribeVpcsResponseType>> results =
+                executor.execute("ec2", EC2Stub.VERSION, "DescribeVpcs", params, regions,
+                        DescribeVpcsResponseType.class, new Callback<AWSRegionResult<DescribeVpcsResponseType>>() {
+                            @Override
+                            public void invoke(AWSRegionResult<DescribeVpcsResponseType> result)
+                            {
+                                arrived.add(result.getRegion());
+                            }
+                        }).get();
+        long elapsed = System.currentTimeMillis() - start;
+
+        // The regions are requested at once, so the fan-out takes about as long as one region
+        Assert.assertTrue("elapsed " + elapsed, elapsed < (3 * DELAY_MILLIS));
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(4, arrived.size());
+        Assert.assertEquals(4, _ec2._requests);
+        Assert.assertEquals(EC2Stub.VPC_ID, _ec2._vpcIds.get(0));
+        for (int i = 0; i < 4; i++) {
+            AWSRegionResult<DescribeVpcsResponseType> result = results.get(i);
+            Assert.assertEquals(regions.get(i), result.getRegion());
+            if (result.getRegion().equals(FAILED_REGION)) {
+                Assert.assertFalse(result.isSucceeded());
+                Assert.assertNull(result.getResponse());
+                Assert.assertEquals("UnauthorizedOperation",
+                        ((AWSErrorException) result.getFailure()).getErrors().get(0).getCode());
+            }
+            else {
+                Assert.assertTrue(result.isSucceeded());
+                Assert.assertEquals(EC2Stub.VPC_ID, result.getResponse().getVpcSet().getItem().get(0).getVpcId());
+            }
+        }
+
+        // Connections are reused per region
+        AWSConnection conn = executor.getConnection("ec2", EC2Stub.VERSION, "us-west-2", DescribeVpcsResponseType.class);
+        Assert.assertSame(conn,
+                executor.getConnection("ec2", EC2Stub.VERSION, "us-west-2", DescribeVpcsResponseType.class));
+        Assert.assertEquals("us-west-2", conn.getEndpoint().getRegionName());
+        Assert.assertNotSame(conn,
+                executor.getConnection("ec2", EC2Stub.VERSION, "us-east-1", DescribeVpcsResponseType.class));
+    }
+
+    @Test
+    public void testConcurrencyLimits() throws Throwable
+    {
+        AWSRegionExecutor executor = getExecutor(3, 1);
+        List<String> regions = Arrays.asList("us-east-1", "us-west-2", "eu-central-1", "ap-northeast-1");
+        List<Promise<List<AWSRegionResult<DescribeVpcsResponseType>>>> fanOuts =
+                new ArrayList<Promise<List<AWSRegionResult<DescribeVpcsResponseType>>>>();
+        for (int i = 0; i < 2; i++) {
+            fanOuts.add(executor.execute("ec2", EC2Stub.VERSION, "DescribeVpcs", null, regions,
+                    DescribeVpcsResponseType.class, null));
+        }
+        for (Promise<List<AWSRegionResult<DescribeVpcsResponseType>>> fanOut : fanOuts) {
+            for (AWSRegionResult<DescribeVpcsResponseType> result : fanOut.get()) {
+                Assert.assertTrue(result.isSucceeded());
+            }
+        }
+        Assert.assertEquals(8, _ec2._requests);
+        Assert.assertEquals(3, _ec2._maxActive);
+        for (String region : regions) {
+            Assert.assertEquals(Integer.valueOf(1), _ec2._maxRegionActive.get(region));
+        }
+
+        // Cancelling a fan-out drops its queued requests
+        Promise<List<AWSRegionResult<DescribeVpcsResponseType>>> cancelled = executor.execute("ec2",
+                EC2Stub.VERSION, "DescribeVpcs", null, regions, DescribeVpcsResponseType.class, null);
+        cancelled.cancel();
+        Thread.sleep(DELAY_MILLIS * 2);
+        Assert.assertTrue(_ec2._requests <= 11);
+        Assert.assertTrue(executor.execute("ec2", EC2Stub.VERSION, "DescribeVpcs", null, regions,
+                DescribeVpcsResponseType.class, null).get().get(0).isSucceeded());
+
+        Assert.assertTrue(executor.execute("ec2", EC2Stub.VERSION, "DescribeVpcs", null,
+                Collections.<String> emptyList(), DescribeVpcsResponseType.class, null).get().isEmpty());
+    }
+
+    private AWSRegionExecutor getExecutor(int concurrency, int regionConcurrency)
+    {
+        List<Property> settings = new ArrayList<Property>();
+        Property property = new Property();
+        property.setName(AWSConfig.REGION_CONCURRENCY);
+        property.setValue(Integer.toString(concurrency));
+        settings.add(property);
+        property = new Property();
+        property.setName(AWSConfig.REGION_REQUEST_CONCURRENCY);
+        property.setValue(Integer.toString(regionConcurrency));
+        settings.add(property);
+        return new AWSRegionExecutor(settings, _server.getCredential(), null, "http", _server.getHostName());
+    }
+
+    // Answers DescribeVpcs after a delay, except in FAILED_REGION, and records the requests in progress
+    private static class RegionalEC2 extends AWSStubService
+    {
+        private final EC2Stub _delegate = new EC2Stub();
+        private final Map<String, Integer> _regionActive = new HashMap<String, Integer>();
+        private final Map<String, Integer> _maxRegionActive = new ConcurrentHashMap<String, Integer>();
+        private final List<String> _vpcIds = Collections.synchronizedList(new ArrayList<String>());
+        private int _active;
+        private volatile int _maxActive;
+        private volatile int _requests;
+
+        private RegionalEC2()
+        {
+            super(new EC2Stub().getNamespace());
+        }
+
+        @Override
+        public AWSStubResponse handle(AWSStubRequest request)
+        {
+            String region = request.getRegion();
+            synchronized (this) {
+                _requests++;
+                _active++;
+                _maxActive = Math.max(_maxActive, _active);
+                Integer active = _regionActive.get(region);
+                int count = (active != null) ? active + 1 : 1;
+                _regionActive.put(region, count);
+                Integer max = _maxRegionActive.get(region);
+                _maxRegionActive.put(region, (max != null) ? Math.max(max, count) : count);
+            }
+            try {
+                Thread.sleep(DELAY_MILLIS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                synchronized (this) {
+                    _active--;
+                    _regionActive.put(region, _regionActive.get(region) - 1);
+                }
+            }
+            if (request.getParameter("VpcId.1") != null) {
+                _vpcIds.add(request.getParameter("VpcId.1"));
+            }
+            if (FAILED_REGION.equals(region)) {
+                return error(403, "UnauthorizedOperation", "You are not authorized to perform this operation.",
+                        request);
+            }
+            return _delegate.handle(request);
+        }
+
+        @Override
+        public AWSStubResponse error(int status, String code, String message, AWSStubRequest request)
+        {
+            return _delegate.error(status, code, message, request);
+        }
+    }
+}
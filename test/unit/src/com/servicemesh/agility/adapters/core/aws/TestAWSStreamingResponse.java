@@ -0,0 +1,197 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+public class TestAWSStreamingResponse
+{
+    private AWSStubServer _server;
+    private AWSConnection _conn;
+    private byte[] _data;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/stream-bucket", null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        _data = new byte[1000000];
+        new Random(7).nextBytes(_data);
+        response = _conn.execute(HttpMethod.PUT, "/stream-bucket/object", null, new QueryParams(), _data,
+                IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testExecuteStream() throws Throwable
+    {
+        AWSStreamingResponse response =
+                _conn.executeStream(HttpMethod.GET, "/stream-bucket/object", null, new QueryParams(), null).get();
+        try {
+            Assert.assertEquals(200, response.getStatusCode());
+            Assert.assertEquals(_data.length, response.getContentLength());
+            Assert.assertNotNull(response.getHeader("etag"));
+
+            // Read in small steps, as a consumer applying backpressure would
+            InputStream in = response.getInputStream();
+            byte[] body = new byte[_data.length];
+            int offset = 0;
+            int count;
+            while ((count = in.read(body, offset, Math.min(4096, body.length - offset))) > 0) {
+                offset += count;
+            }
+            Assert.assertEquals(_data.length, offset);
+            Assert.assertArrayEquals(_data, body);
+            Assert.assertEquals(-1, in.read());
+        }
+        finally {
+            response.close();
+        }
+
+        response = _conn.executeStream(HttpMethod.GET, "/stream-bucket/missing", null, new QueryParams(), null).get();
+        Assert.assertEquals(404, response.getStatusCode());
+        Assert.assertTrue(response.readFully().getContent().contains("<Code>NoSuchKey</Code>"));
+        response.close();
+    }
+
+    @Test
+    public void testExecuteStreamContent() throws Throwable
+    {
+        // A String is sent as UTF-8 and a byte array as is
+        String text = "Gr\u00fc\u00dfe, \u4e16\u754c \ud83d\ude00";
+        byte[] bytes = text.getBytes("UTF-8");
+        assertPut("/stream-bucket/text", text);
+        Assert.assertArrayEquals(bytes, get("/stream-bucket/text").getContentAsByteArray());
+        assertPut("/stream-bucket/bytes", bytes);
+        Assert.assertArrayEquals(bytes, get("/stream-bucket/bytes").getContentAsByteArray());
+
+        // Other content is encoded and sent with the endpoint's content type
+        assertPut("/stream-bucket/config", new CreateBucketConfiguration());
+        AWSStreamingResponse response =
+                _conn.executeStream(HttpMethod.GET, "/stream-bucket/config", null, new QueryParams(), null).get();
+        try {
+            Assert.assertEquals(_conn.getEndpoint().getContentType(), response.getHeader("Content-Type"));
+            Assert.assertTrue(response.readFully().getContent().contains("CreateBucketConfiguration"));
+        }
+        finally {
+            response.close();
+        }
+        Assert.assertEquals(0, _server.getRejectedCount());
+    }
+
+    private void assertPut(String requestURI, Object resource) throws Throwable
+    {
+        AWSStreamingResponse response =
+                _conn.executeStream(HttpMethod.PUT, requestURI, null, new QueryParams(), resource).get();
+        try {
+            Assert.assertEquals(200, response.getStatusCode());
+        }
+        finally {
+            response.close();
+        }
+    }
+
+    private IHttpResponse get(String requestURI) throws Throwable
+    {
+        IHttpResponse response =
+                _conn.execute(HttpMethod.GET, requestURI, null, new QueryParams(), null, IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+        return response;
+    }
+
+    @Test
+    public void testExecuteToChannel() throws Throwable
+    {
+        File file = File.createTempFile("TestAWSStreamingResponse", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long written = _conn.executeToChannel(HttpMethod.GET, "/stream-bucket/object", null, new QueryParams(),
+                    channel, 100).get();
+            Assert.assertEquals(_data.length, written);
+            Assert.assertEquals(100 + _data.length, channel.size());
+            Assert.assertEquals(0, channel.position());
+
+            byte[] content = new byte[(int) channel.size()];
+            raf.readFully(content);
+            Assert.assertArrayEquals(new byte[100], Arrays.copyOfRange(content, 0, 100));
+            Assert.assertArrayEquals(_data, Arrays.copyOfRange(content, 100, content.length));
+
+            try {
+                _conn.executeToChannel(HttpMethod.GET, "/stream-bucket/missing", null, new QueryParams(), channel, 0)
+                        .get();
+                Assert.fail("Expected NoSuchKey");
+            }
+            catch (AWSErrorException ex) {
+                Assert.assertEquals("NoSuchKey", ex.getErrors().get(0).getCode());
+            }
+            Assert.assertEquals(100 + _data.length, channel.size());
+        }
+        finally {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testBufferedTransport() throws Throwable
+    {
+        final byte[] content = "buffered".getBytes("UTF-8");
+        _conn.setTransport(new AWSTransport() {
+            @Override
+            public Promise<IHttpResponse> send(HttpMethod method, URI uri, Map<String, String> headers, Object body)
+            {
+                DefaultHttpResponse response = new DefaultHttpResponse();
+                response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, "OK"));
+                response.setContent(content);
+                return Promise.pure((IHttpResponse) response);
+            }
+        });
+        AWSStreamingResponse response =
+                _conn.executeStream(HttpMethod.GET, "/stream-bucket/object", null, new QueryParams(), null).get();
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(content.length, response.getContentLength());
+        Assert.assertEquals("buffered", new String(response.readFully().getContentAsByteArray(), "UTF-8"));
+        response.close();
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.concurrent.Callable;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.rds.doc._2010_07_28.CreateDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.DescribeDBParametersResponse;
+import com.amazonaws.rds.doc._2010_07_28.ModifyDBParameterGroupResponse;
+import com.servicemesh.agility.adapters.core.aws.record.AWSFixture;
+import com.servicemesh.agility.adapters.core.aws.record.AWSRecorder;
+import com.servicemesh.agility.adapters.core.aws.record.AWSReplayTransport;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.AuthorizeSecurityGroupIngressResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.CreateSecurityGroupResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.agility.adapters.core.aws.stub.RDSStub;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Checks the bytes allocated per AWSConnection.execute() call - signing, URI and request construction, and decoding -
+ * against the budgets in allocation-budgets.properties. Responses are recorded from the stub server and replayed
+ * without delay, so that each request completes on the calling thread and no network I/O is measured.
+ */
+public class TestAllocationBudgets
+{
+    private static final Logger _logger = Logger.getLogger(TestAllocationBudgets.class);
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 500;
+    private static final int RULES = 5;
+    private static final int PARAMETERS = 10;
+
+    private static AWSStubServer _server;
+    private static AllocationMeter _meter;
+    private static AWSConnection _ec2;
+    private static AWSConnection _rds;
+    private static String _groupId;
+
+    @BeforeClass
+    public static void before() throws Throwable
+    {
+        Assume.assumeTrue(AllocationMeter.isSupported());
+        TestHelpers.initLogger(Level.WARN);
+        // Request tracing allocates, so measure at the level used in production
+        TestHelpers.setLogLevel("com.servicemesh.agility.adapters.core.aws", Level.INFO);
+        _meter = new AllocationMeter(TestAllocationBudgets.class, "allocation-budgets.properties");
+        _server = new AWSStubServer();
+        _server.start();
+        _ec2 = getConnection("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        _ec2.setTransport(new AWSReplayTransport(recordEC2()));
+        _rds = getConnection("rds", RDSStub.VERSION, DescribeDBParametersResponse.class);
+        _rds.setTransport(new AWSReplayTransport(recordRDS()));
+    }
+
+    @AfterClass
+    public static void after()
+    {
+        if (_server != null) {
+            _server.stop();
+        }
+        TestHelpers.setLogLevel("com.servicemesh.agility.adapters.core.aws", Level.TRACE);
+    }
+
+    @Test
+    public void testCreateSecurityGroup() throws Exception
+    {
+        check("ec2.CreateSecurityGroup", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception
+            {
+                return complete(_ec2.execute(createGroupParams(_ec2), CreateSecurityGroupResponseType.class));
+            }
+        });
+    }
+
+    @Test
+    public void testDescribeSecurityGroups() throws Exception
+    {
+        check("ec2.DescribeSecurityGroups", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception
+            {
+                return complete(_ec2.execute(describeGroupParams(_ec2), DescribeSecurityGroupsResponseType.class));
+            }
+        });
+    }
+
+    @Test
+    public void testDescribeSecurityGroupsRaw() throws Exception
+    {
+        // Without decoding, which leaves signing and URI and request construction
+        check("ec2.DescribeSecurityGroups.raw", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception
+            {
+                return complete(_ec2.execute(HttpMethod.GET, describeGroupParams(_ec2)));
+            }
+        });
+    }
+
+    @Test
+    public void testDescribeDBParameters() throws Exception
+    {
+        check("rds.DescribeDBParameters", new Callable<Object>() {
+            @Override
+            public Object call() throws Exception
+            {
+                return complete(_rds.execute(describeParametersParams(_rds), DescribeDBParametersResponse.class));
+            }
+        });
+    }
+
+    private static void check(String name, Callable<?> operation) throws Exception
+    {
+        long allocated = AllocationMeter.measure(WARMUP, ITERATIONS, operation);
+        _logger.info(name + " allocated " + allocated + " bytes per call, budget " + _meter.getBudget(name));
+        _meter.assertWithinBudget(name, allocated);
+    }
+
+    // The replay transport completes each request before execute() returns
+    private static <T> T complete(Promise<T> promise) throws Exception
+    {
+        Assert.assertTrue(promise.isCompleted());
+        try {
+            return promise.get();
+        }
+        catch (Throwable t) {
+            throw new Exception(t);
+        }
+    }
+
+    private static AWSFixture recordEC2() throws Throwable
+    {
+        AWSConnection conn = getConnection("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        AWSRecorder recorder = new AWSRecorder();
+        conn.addInterceptor(recorder);
+        _groupId = conn.execute(createGroupParams(conn), CreateSecurityGroupResponseType.class).get().getGroupId();
+
+        QueryParams params = conn.initQueryParams("AuthorizeSecurityGroupIngress");
+        params.add(new QueryParam("GroupId", _groupId));
+        for (int i = 1; i <= RULES; i++) {
+            String prefix = "IpPermissions." + i + ".";
+            params.add(new QueryParam(prefix + "IpProtocol", "tcp"));
+            params.add(new QueryParam(prefix + "FromPort", Integer.toString(8000 + i)));
+            params.add(new QueryParam(prefix + "ToPort", Integer.toString(8000 + i)));
+            params.add(new QueryParam(prefix + "IpRanges.1.CidrIp", "10.0." + i + ".0/24"));
+        }
+        conn.execute(params, AuthorizeSecurityGroupIngressResponseType.class).get();
+
+        int rules = conn.execute(describeGroupParams(conn), DescribeSecurityGroupsResponseType.class).get()
+                .getSecurityGroupInfo().getItem().get(0).getIpPermissions().getItem().size();
+        Assert.assertEquals(RULES, rules);
+        return recorder.getFixture();
+    }
+
+    private static AWSFixture recordRDS() throws Throwable
+    {
+        AWSConnection conn = getConnection("rds", RDSStub.VERSION, DescribeDBParametersResponse.class);
+        AWSRecorder recorder = new AWSRecorder();
+        conn.addInterceptor(recorder);
+
+        QueryParams params = conn.initQueryParams("CreateDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", "budget"));
+        params.add(new QueryParam("DBParameterGroupFamily", "mysql5.6"));
+        params.add(new QueryParam("Description", "Allocation budget"));
+        conn.execute(params, CreateDBParameterGroupResponse.class).get();
+
+        params = conn.initQueryParams("ModifyDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", "budget"));
+        for (int i = 1; i <= PARAMETERS; i++) {
+            String prefix = "Parameters.member." + i + ".";
+            params.add(new QueryParam(prefix + "ParameterName", "parameter_" + i));
+            params.add(new QueryParam(prefix + "ParameterValue", Integer.toString(i * 100)));
+            params.add(new QueryParam(prefix + "ApplyMethod", "immediate"));
+        }
+        conn.execute(params, ModifyDBParameterGroupResponse.class).get();
+
+        int parameters = conn.execute(describeParametersParams(conn), DescribeDBParametersResponse.class).get()
+                .getDescribeDBParametersResult().getParameters().getParameter().size();
+        Assert.assertEquals(PARAMETERS, parameters);
+        return recorder.getFixture();
+    }
+
+    private static AWSConnection getConnection(String serviceName, String version, Class<?> contextClass)
+            throws Exception
+    {
+        AWSEndpoint endpoint = _server.getEndpoint(serviceName, version, contextClass);
+        return AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+    }
+
+    private static QueryParams createGroupParams(AWSConnection conn)
+    {
+        QueryParams params = conn.initQueryParams("CreateSecurityGroup");
+        params.add(new QueryParam("GroupName", "budget"));
+        params.add(new QueryParam("GroupDescription", "Allocation budget"));
+        params.add(new QueryParam("VpcId", EC2Stub.VPC_ID));
+        return params;
+    }
+
+    private static QueryParams describeGroupParams(AWSConnection conn)
+    {
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", _groupId));
+        return params;
+    }
+
+    private static QueryParams describeParametersParams(AWSConnection conn)
+    {
+        QueryParams params = conn.initQueryParams("DescribeDBParameters");
+        params.add(new QueryParam("DBParameterGroupName", "budget"));
+        params.add(new QueryParam("Source", "user"));
+        return params;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.CreateSecurityGroupResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.SecurityGroupItemType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestBatchCoalescer
+{
+    private static final int GROUP_COUNT = 25;
+
+    private AWSStubServer _server;
+    private AWSConnection _conn;
+    private AWSBatchDescriptor<DescribeSecurityGroupsResponseType, SecurityGroupItemType> _descriptor;
+    private final List<String> _groupIds = new ArrayList<String>();
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        AWSEndpoint endpoint =
+                _server.getEndpoint("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            QueryParams params = _conn.initQueryParams("CreateSecurityGroup");
+            params.add(new QueryParam("GroupName", "group-" + i));
+            params.add(new QueryParam("GroupDescription", "Group " + i));
+            params.add(new QueryParam("VpcId", EC2Stub.VPC_ID));
+            _groupIds.add(_conn.execute(params, CreateSecurityGroupResponseType.class).get().getGroupId());
+        }
+
+        _descriptor = new AWSBatchDescriptor<DescribeSecurityGroupsResponseType, SecurityGroupItemType>(
+                "DescribeSecurityGroups", "GroupId.", DescribeSecurityGroupsResponseType.class, 10) {
+            @Override
+            public List<SecurityGroupItemType> getItems(DescribeSecurityGroupsResponseType response)
+            {
+                return response.getSecurityGroupInfo().getItem();
+            }
+
+            @Override
+            public String getId(SecurityGroupItemType item)
+            {
+                return item.getGroupId();
+            }
+        };
+        _descriptor.setWindowMillis(200);
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testBatching() throws Throwable
+    {
+        long start = _server.getRequestCount();
+        List<Promise<SecurityGroupItemType>> lookups = new ArrayList<Promise<SecurityGroupItemType>>();
+        for (String groupId : _groupIds) {
+            lookups.add(_conn.lookup(_descriptor, groupId));
+        }
+        Promise<SecurityGroupItemType> duplicate = _conn.lookup(_descriptor, _groupIds.get(24));
+
+        // Two full batches are sent at once, the last five ids when the window has passed
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            Assert.assertEquals("group-" + i, lookups.get(i).get().getGroupName());
+        }
+        Assert.assertEquals("group-24", duplicate.get().getGroupName());
+        Assert.assertEquals(3, _server.getRequestCount() - start);
+
+        // A lookup waits for the window when nothing else is submitted
+        start = _server.getRequestCount();
+        long begin = System.currentTimeMillis();
+        Assert.assertEquals(_groupIds.get(3), _conn.lookup(_descriptor, _groupIds.get(3)).get().getGroupId());
+        Assert.assertTrue(System.currentTimeMillis() - begin >= 150);
+        Assert.assertEquals(1, _server.getRequestCount() - start);
+    }
+
+    @Test
+    public void testUnknownId() throws Throwable
+    {
+        // The batch fails as a whole, so its ids are sent again one at a time
+        long start = _server.getRequestCount();
+        Promise<SecurityGroupItemType> first = _conn.lookup(_descriptor, _groupIds.get(0));
+        Promise<SecurityGroupItemType> missing = _conn.lookup(_descriptor, "sg-00000000");
+        Promise<SecurityGroupItemType> second = _conn.lookup(_descriptor, _groupIds.get(1));
+        Assert.assertEquals("group-0", first.get().getGroupName());
+        Assert.assertEquals("group-1", second.get().getGroupName());
+        try {
+            missing.get();
+            Assert.fail("Expected the unknown group to fail");
+        }
+        catch (AWSErrorException ex) {
+            Assert.assertEquals("InvalidGroup.NotFound", ex.getErrors().get(0).getCode());
+        }
+        Assert.assertEquals(4, _server.getRequestCount() - start);
+
+        // Other errors fail the whole batch
+        _server.injectResponse("DescribeSecurityGroups", AWSStubResponse.xml(400,
+                "<Response><Errors><Error><Code>RequestLimitExceeded</Code><Message>Request limit exceeded.</Message>"
+                        + "</Error></Errors></Response>"), 1);
+        start = _server.getRequestCount();
+        first = _conn.lookup(_descriptor, _groupIds.get(0));
+        second = _conn.lookup(_descriptor, _groupIds.get(1));
+        Assert.assertTrue(waitForFailure(first));
+        Assert.assertTrue(waitForFailure(second));
+        Assert.assertEquals(1, _server.getRequestCount() - start);
+
+        // An invalid parameter is not caused by an id
+        _server.injectResponse("DescribeSecurityGroups", AWSStubResponse.xml(400,
+                "<Response><Errors><Error><Code>InvalidParameterValue</Code><Message>Invalid value.</Message>"
+                        + "</Error></Errors></Response>"), 1);
+        start = _server.getRequestCount();
+        first = _conn.lookup(_descriptor, _groupIds.get(0));
+        second = _conn.lookup(_descriptor, _groupIds.get(1));
+        Assert.assertTrue(waitForFailure(first));
+        Assert.assertTrue(waitForFailure(second));
+        Assert.assertEquals(1, _server.getRequestCount() - start);
+    }
+
+    @Test
+    public void testIdErrors()
+    {
+        Assert.assertTrue(_descriptor.isIdError("InvalidGroup.NotFound"));
+        Assert.assertTrue(_descriptor.isIdError("InvalidGroupId.Malformed"));
+        Assert.assertTrue(_descriptor.isIdError("LoadBalancerNotFound"));
+        Assert.assertTrue(_descriptor.isIdError("DBInstanceNotFound"));
+        Assert.assertFalse(_descriptor.isIdError("InvalidParameterValue"));
+        Assert.assertFalse(_descriptor.isIdError("InvalidParameterCombination"));
+        Assert.assertFalse(_descriptor.isIdError("UnauthorizedOperation"));
+        Assert.assertFalse(_descriptor.isIdError(null));
+    }
+
+    private boolean waitForFailure(Promise<?> promise) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!promise.isFailed() && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+        return promise.isFailed();
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.impl.CircuitBreaker;
+
+public class TestCircuitBreaker
+{
+    private class Listener implements AWSCircuitListener
+    {
+        private final List<AWSCircuitState> _states = new ArrayList<AWSCircuitState>();
+
+        @Override
+        public void stateChanged(String name, AWSCircuitState previous, AWSCircuitState current)
+        {
+            _states.add(current);
+        }
+    }
+
+    @Test
+    public void testConsecutiveFailures() throws Exception
+    {
+        CircuitBreaker breaker = new CircuitBreaker("host/ec2", 3, 100, 10, 50);
+        Listener listener = new Listener();
+        breaker.addListener(listener);
+
+        // A success resets the consecutive failure count
+        CircuitBreaker.Permit permit = breaker.allowRequest();
+        breaker.onFailure(permit, true);
+        breaker.onFailure(permit, true);
+        breaker.onSuccess(permit);
+        breaker.onFailure(permit, true);
+        breaker.onFailure(permit, true);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+        Assert.assertNotNull(breaker.allowRequest());
+        breaker.onFailure(permit, true);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+        Assert.assertNull(breaker.allowRequest());
+
+        // After the open period a single probe is allowed; a failed probe re-opens the circuit
+        Thread.sleep(60);
+        CircuitBreaker.Permit probe = breaker.allowRequest();
+        Assert.assertNotNull(probe);
+        Assert.assertEquals(AWSCircuitState.HALF_OPEN, breaker.getState());
+        Assert.assertNull(breaker.allowRequest());
+        breaker.onFailure(probe, false);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+
+        // A cancelled probe allows another probe and a successful probe closes the circuit
+        Thread.sleep(60);
+        probe = breaker.allowRequest();
+        Assert.assertNotNull(probe);
+        breaker.onCancel(probe);
+        probe = breaker.allowRequest();
+        Assert.assertNotNull(probe);
+        breaker.onSuccess(probe);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+        Assert.assertNotNull(breaker.allowRequest());
+
+        Assert.assertEquals(5, listener._states.size());
+        Assert.assertEquals(AWSCircuitState.OPEN, listener._states.get(0));
+        Assert.assertEquals(AWSCircuitState.HALF_OPEN, listener._states.get(1));
+        Assert.assertEquals(AWSCircuitState.OPEN, listener._states.get(2));
+        Assert.assertEquals(AWSCircuitState.HALF_OPEN, listener._states.get(3));
+        Assert.assertEquals(AWSCircuitState.CLOSED, listener._states.get(4));
+
+        breaker.removeListener(listener);
+        permit = breaker.allowRequest();
+        breaker.onFailure(permit, true);
+        breaker.onFailure(permit, true);
+        breaker.onFailure(permit, true);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+        Assert.assertEquals(5, listener._states.size());
+    }
+
+    @Test
+    public void testStaleOutcomes() throws Exception
+    {
+        CircuitBreaker breaker = new CircuitBreaker("host/elb", 1, 100, 10, 50);
+        CircuitBreaker.Permit stale = breaker.allowRequest();
+        CircuitBreaker.Permit failed = breaker.allowRequest();
+        breaker.onFailure(failed, true);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+
+        // While half-open, only the probe's outcome applies
+        Thread.sleep(60);
+        CircuitBreaker.Permit probe = breaker.allowRequest();
+        breaker.onSuccess(stale);
+        Assert.assertEquals(AWSCircuitState.HALF_OPEN, breaker.getState());
+        breaker.onFailure(stale, true);
+        Assert.assertEquals(AWSCircuitState.HALF_OPEN, breaker.getState());
+        breaker.onCancel(stale);
+        Assert.assertNull(breaker.allowRequest());
+        breaker.onSuccess(probe);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+
+        // Once closed again, requests sent before the circuit opened are not counted
+        breaker.onFailure(stale, true);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+        breaker.onFailure(breaker.allowRequest(), true);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testErrorRate() throws Exception
+    {
+        CircuitBreaker breaker = new CircuitBreaker("host/rds", 100, 50, 4, 1000);
+        CircuitBreaker.Permit permit = breaker.allowRequest();
+
+        // The error rate applies once the window is full
+        breaker.onFailure(permit, false);
+        breaker.onFailure(permit, false);
+        breaker.onSuccess(permit);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+        breaker.onSuccess(permit);
+        breaker.onSuccess(permit);
+        breaker.onSuccess(permit);
+        // The earlier errors have left the window
+        breaker.onFailure(permit, false);
+        Assert.assertEquals(AWSCircuitState.CLOSED, breaker.getState());
+        breaker.onFailure(permit, false);
+        Assert.assertEquals(AWSCircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testInstances() throws Exception
+    {
+        CircuitBreaker.clearInstances();
+        CircuitBreaker breaker = CircuitBreaker.getInstance("host/ec2", 5, 50, 20, 1000);
+        Assert.assertSame(breaker, CircuitBreaker.getInstance("host/ec2", 1, 1, 1, 1));
+        Assert.assertNotSame(breaker, CircuitBreaker.getInstance("host/rds", 5, 50, 20, 1000));
+        CircuitBreaker.clearInstances();
+        Assert.assertNotSame(breaker, CircuitBreaker.getInstance("host/ec2", 5, 50, 20, 1000));
+    }
+}
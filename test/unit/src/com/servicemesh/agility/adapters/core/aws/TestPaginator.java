@@ -0,0 +1,189 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.rds.doc._2010_07_28.CreateDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.DescribeDBParametersResponse;
+import com.amazonaws.rds.doc._2010_07_28.ModifyDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.Parameter;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.RDSStub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestPaginator
+{
+    private static final String GROUP = "paged-group";
+    private static final int PARAMETER_COUNT = 45;
+
+    private static final AWSPageExtractor<DescribeDBParametersResponse, Parameter> EXTRACTOR =
+            new AWSPageExtractor<DescribeDBParametersResponse, Parameter>() {
+                @Override
+                public String getNextToken(DescribeDBParametersResponse page)
+                {
+                    return page.getDescribeDBParametersResult().getMarker();
+                }
+
+                @Override
+                public List<Parameter> getItems(DescribeDBParametersResponse page)
+                {
+                    return page.getDescribeDBParametersResult().getParameters().getParameter();
+                }
+            };
+
+    private AWSStubServer _server;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+
+        AWSConnection conn = getConnection(PARAMETER_COUNT);
+        QueryParams params = conn.initQueryParams("CreateDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupFamily", "mysql5.6"));
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        params.add(new QueryParam("Description", "Paged group"));
+        conn.execute(params, CreateDBParameterGroupResponse.class).get();
+
+        params = conn.initQueryParams("ModifyDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        for (int i = 1; i <= PARAMETER_COUNT; i++) {
+            String prefix = "Parameters.member." + i + ".";
+            params.add(new QueryParam(prefix + "ParameterName", String.format("param_%02d", i)));
+            params.add(new QueryParam(prefix + "ParameterValue", Integer.toString(i)));
+            params.add(new QueryParam(prefix + "ApplyMethod", "immediate"));
+        }
+        conn.execute(params, ModifyDBParameterGroupResponse.class).get();
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testForEach() throws Throwable
+    {
+        final List<String> names = Collections.synchronizedList(new ArrayList<String>());
+        long start = _server.getRequestCount();
+        long count = paginate(getConnection(2)).forEach(new Callback<Parameter>() {
+            @Override
+            public void invoke(Parameter parameter)
+            {
+                names.add(parameter.getParameterName());
+            }
+        }).get();
+        Assert.assertEquals(PARAMETER_COUNT, count);
+        for (int i = 0; i < PARAMETER_COUNT; i++) {
+            Assert.assertEquals(String.format("param_%02d", i + 1), names.get(i));
+        }
+        // Pages of 20, 20 and 5 parameters
+        Assert.assertEquals(3, _server.getRequestCount() - start);
+    }
+
+    @Test
+    public void testPrefetch() throws Throwable
+    {
+        long start = _server.getRequestCount();
+        AWSPaginator<Parameter> paginator = paginate(getConnection(1));
+        Assert.assertEquals(0, _server.getRequestCount() - start);
+
+        // The second page is requested once the first is received, but no further
+        Assert.assertEquals(20, paginator.next().get().size());
+        waitForRequests(start + 2);
+        Thread.sleep(200);
+        Assert.assertEquals(2, _server.getRequestCount() - start);
+
+        Assert.assertEquals(20, paginator.next().get().size());
+        Assert.assertEquals(5, paginator.next().get().size());
+        Assert.assertNull(paginator.next().get());
+        Assert.assertNull(paginator.next().get());
+        Assert.assertEquals(3, _server.getRequestCount() - start);
+
+        // Closing stops the stream
+        paginator = paginate(getConnection(1));
+        Assert.assertEquals(20, paginator.next().get().size());
+        paginator.close();
+        Assert.assertNull(paginator.next().get());
+    }
+
+    @Test
+    public void testFailure() throws Throwable
+    {
+        _server.injectResponse("DescribeDBParameters", AWSStubResponse.xml(400,
+                "<ErrorResponse><Error><Code>Throttling</Code><Message>Rate exceeded</Message></Error></ErrorResponse>"),
+                1);
+        AWSPaginator<Parameter> paginator = paginate(getConnection(2));
+        try {
+            paginator.next().get();
+            Assert.fail("Expected the page request to fail");
+        }
+        catch (AWSErrorException ex) {
+            Assert.assertEquals("Throttling", ex.getErrors().get(0).getCode());
+        }
+        Assert.assertTrue(paginator.next().isFailed());
+
+        try {
+            paginate(getConnection(2)).forEach(new Callback<Parameter>() {
+                @Override
+                public void invoke(Parameter parameter)
+                {
+                    if (parameter.getParameterName().equals("param_25")) {
+                        throw new IllegalStateException("Consumer failed");
+                    }
+                }
+            }).get();
+            Assert.fail("Expected the consumer to fail");
+        }
+        catch (IllegalStateException ex) {
+            Assert.assertEquals("Consumer failed", ex.getMessage());
+        }
+    }
+
+    private AWSPaginator<Parameter> paginate(AWSConnection conn)
+    {
+        QueryParams params = conn.initQueryParams("DescribeDBParameters");
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        params.add(new QueryParam("MaxRecords", "20"));
+        return conn.paginate(params, "Marker", DescribeDBParametersResponse.class, EXTRACTOR);
+    }
+
+    private void waitForRequests(long count) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((_server.getRequestCount() < count) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(10);
+        }
+    }
+
+    private AWSConnection getConnection(int bufferPages) throws Exception
+    {
+        List<Property> settings = new ArrayList<Property>();
+        Property property = new Property();
+        property.setName(AWSConfig.PAGINATOR_BUFFER_PAGES);
+        property.setValue(Integer.toString(bufferPages));
+        settings.add(property);
+        AWSEndpoint endpoint =
+                _server.getEndpoint("rds", RDSStub.VERSION, CreateDBParameterGroupResponse.class);
+        return AWSConnectionFactory.getInstance().getConnection(settings, _server.getCredential(), null, endpoint);
+    }
+}
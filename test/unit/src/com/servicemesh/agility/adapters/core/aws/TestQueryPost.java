@@ -0,0 +1,147 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.CreateSecurityGroupResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.SecurityGroupItemType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubRequest;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubService;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestQueryPost
+{
+    private static final int GROUP_COUNT = 20;
+
+    private AWSStubServer _server;
+    private RecordingEC2 _ec2;
+    private final List<String> _groupIds = new ArrayList<String>();
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _ec2 = new RecordingEC2();
+        _server.setService("ec2", _ec2);
+        _server.start();
+        AWSConnection conn = getConnection(null);
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            QueryParams params = conn.initQueryParams("CreateSecurityGroup");
+            params.add(new QueryParam("GroupName", "group-" + i));
+            params.add(new QueryParam("GroupDescription", "Group " + i));
+            params.add(new QueryParam("VpcId", EC2Stub.VPC_ID));
+            _groupIds.add(conn.execute(params, CreateSecurityGroupResponseType.class).get().getGroupId());
+        }
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testLargeRequest() throws Throwable
+    {
+        // Twenty group ids exceed the threshold, so they are sent as a signed form body
+        AWSConnection conn = getConnection("200");
+        DescribeSecurityGroupsResponseType response = describe(conn, _groupIds);
+        Assert.assertEquals("POST", _ec2._method);
+        Assert.assertFalse(_ec2._query.contains("GroupId"));
+        Assert.assertTrue(_ec2._contentType.startsWith("application/x-www-form-urlencoded"));
+        Assert.assertEquals(0, _server.getRejectedCount());
+        List<SecurityGroupItemType> groups = response.getSecurityGroupInfo().getItem();
+        Assert.assertEquals(GROUP_COUNT, groups.size());
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            Assert.assertEquals(_groupIds.get(i), groups.get(i).getGroupId());
+        }
+
+        // A request within the threshold stays in the URL
+        response = describe(conn, _groupIds.subList(0, 1));
+        Assert.assertEquals("GET", _ec2._method);
+        Assert.assertTrue(_ec2._query.contains("GroupId.1="));
+        Assert.assertEquals(0, _server.getRejectedCount());
+        Assert.assertEquals("group-0", response.getSecurityGroupInfo().getItem().get(0).getGroupName());
+    }
+
+    @Test
+    public void testDisabled() throws Throwable
+    {
+        AWSConnection conn = getConnection("0");
+        DescribeSecurityGroupsResponseType response = describe(conn, _groupIds);
+        Assert.assertEquals("GET", _ec2._method);
+        Assert.assertTrue(_ec2._query.contains("GroupId.20="));
+        Assert.assertEquals(0, _server.getRejectedCount());
+        Assert.assertEquals(GROUP_COUNT, response.getSecurityGroupInfo().getItem().size());
+    }
+
+    private DescribeSecurityGroupsResponseType describe(AWSConnection conn, List<String> groupIds) throws Throwable
+    {
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+        int n = 0;
+        for (String groupId : groupIds) {
+            params.add(new QueryParam("GroupId." + (++n), groupId));
+        }
+        return conn.execute(params, DescribeSecurityGroupsResponseType.class).get();
+    }
+
+    private AWSConnection getConnection(String threshold) throws Exception
+    {
+        List<Property> settings = new ArrayList<Property>();
+        if (threshold != null) {
+            Property property = new Property();
+            property.setName(AWSConfig.QUERY_POST_THRESHOLD);
+            property.setValue(threshold);
+            settings.add(property);
+        }
+        AWSEndpoint endpoint =
+                _server.getEndpoint("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        return AWSConnectionFactory.getInstance().getConnection(settings, _server.getCredential(), null, endpoint);
+    }
+
+    // Records how the last request was sent
+    private static class RecordingEC2 extends AWSStubService
+    {
+        private final EC2Stub _delegate = new EC2Stub();
+        private volatile String _method;
+        private volatile String _query;
+        private volatile String _contentType;
+
+        private RecordingEC2()
+        {
+            super(new EC2Stub().getNamespace());
+        }
+
+        @Override
+        public AWSStubResponse handle(AWSStubRequest request)
+        {
+            _method = request.getMethod();
+            _query = request.getRawQuery();
+            _contentType = request.getHeader("Content-Type");
+            return _delegate.handle(request);
+        }
+
+        @Override
+        public AWSStubResponse error(int status, String code, String message, AWSStubRequest request)
+        {
+            return _delegate.error(status, code, message, request);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.impl.RequestCoalescer;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+public class TestRequestCoalescer
+{
+    private class Sender implements Callable<Promise<IHttpResponse>>
+    {
+        private final AtomicInteger _calls = new AtomicInteger();
+        private CompletablePromise<IHttpResponse> _promise;
+
+        @Override
+        public Promise<IHttpResponse> call()
+        {
+            _calls.incrementAndGet();
+            _promise = PromiseFactory.create();
+            return _promise;
+        }
+    }
+
+    @Test
+    public void testCoalesce() throws Throwable
+    {
+        RequestCoalescer coalescer = new RequestCoalescer(Collections.singleton("DescribeSecurityGroups"));
+        Assert.assertTrue(coalescer.isCoalesced("DescribeSecurityGroups"));
+        Assert.assertFalse(coalescer.isCoalesced("CreateSecurityGroup"));
+        Assert.assertFalse(coalescer.isCoalesced(null));
+
+        Sender sender = new Sender();
+        Promise<IHttpResponse> p1 = coalescer.submit("?Action=DescribeSecurityGroups", sender);
+        Promise<IHttpResponse> p2 = coalescer.submit("?Action=DescribeSecurityGroups", sender);
+        Promise<IHttpResponse> p3 = coalescer.submit("?Action=DescribeSecurityGroups&GroupId.1=sg-1", sender);
+        Assert.assertEquals(2, sender._calls.get());
+        Assert.assertEquals(1, coalescer.getHitCount());
+        Assert.assertEquals(2, coalescer.getInFlightCount());
+
+        // A cancelled caller does not affect the other callers
+        p1.cancel();
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        sender._promise.complete(response);
+        Assert.assertSame(response, p3.get());
+        Assert.assertEquals(1, coalescer.getInFlightCount());
+        Assert.assertFalse(p2.isCompleted());
+    }
+
+    @Test
+    public void testCompletionReleasesKey() throws Throwable
+    {
+        RequestCoalescer coalescer = new RequestCoalescer(Collections.singleton("DescribeDBInstances"));
+        Sender sender = new Sender();
+        Promise<IHttpResponse> p1 = coalescer.submit("key", sender);
+        sender._promise.failure(new Exception("failed"));
+        Assert.assertTrue(p1.isFailed());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+        coalescer.submit("key", sender);
+        Assert.assertEquals(2, sender._calls.get());
+        Assert.assertEquals(0, coalescer.getHitCount());
+
+        Promise<IHttpResponse> p3 = coalescer.submit("other", new Callable<Promise<IHttpResponse>>() {
+            @Override
+            public Promise<IHttpResponse> call() throws Exception
+            {
+                throw new Exception("send failed");
+            }
+        });
+        Assert.assertTrue(p3.isFailed());
+        Assert.assertEquals(1, coalescer.getInFlightCount());
+    }
+}
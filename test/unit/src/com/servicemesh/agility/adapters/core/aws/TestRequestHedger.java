@@ -0,0 +1,239 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.impl.LatencyTracker;
+import com.servicemesh.agility.adapters.core.aws.impl.RequestHedger;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+public class TestRequestHedger
+{
+    private static final String ACTION = "DescribeSecurityGroups";
+
+    private ScheduledExecutorService _scheduler;
+
+    private class Sender implements Callable<Promise<IHttpResponse>>
+    {
+        final List<CompletablePromise<IHttpResponse>> _promises =
+                Collections.synchronizedList(new ArrayList<CompletablePromise<IHttpResponse>>());
+
+        @Override
+        public Promise<IHttpResponse> call()
+        {
+            CompletablePromise<IHttpResponse> promise = PromiseFactory.create();
+            _promises.add(promise);
+            return promise;
+        }
+
+        private CompletablePromise<IHttpResponse> awaitRequest(int index) throws Exception
+        {
+            for (int i = 0; (i < 200) && (_promises.size() <= index); i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(_promises.size() > index);
+            return _promises.get(index);
+        }
+    }
+
+    @Before
+    public void before()
+    {
+        _scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void after()
+    {
+        _scheduler.shutdownNow();
+    }
+
+    private IHttpResponse createResponse()
+    {
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, 200, ""));
+        return response;
+    }
+
+    // Records enough fast responses for the action to be hedged
+    private void warmUp(RequestHedger hedger) throws Throwable
+    {
+        final IHttpResponse response = createResponse();
+        for (int i = 0; i < RequestHedger.MIN_SAMPLES; i++) {
+            hedger.submit(ACTION, new Callable<Promise<IHttpResponse>>() {
+                @Override
+                public Promise<IHttpResponse> call()
+                {
+                    return Promise.pure(response);
+                }
+            }).get();
+        }
+    }
+
+    @Test
+    public void testLatencyTracker() throws Exception
+    {
+        LatencyTracker tracker = new LatencyTracker(10);
+        Assert.assertEquals(-1, tracker.getPercentile(50));
+        for (int i = 1; i <= 20; i++) {
+            tracker.record(i);
+        }
+        // Only the 10 most recent samples, 11 through 20, are retained
+        Assert.assertEquals(10, tracker.size());
+        Assert.assertEquals(15, tracker.getPercentile(50));
+        Assert.assertEquals(20, tracker.getPercentile(99));
+        Assert.assertEquals(11, tracker.getPercentile(1));
+    }
+
+    @Test
+    public void testHedgeWins() throws Throwable
+    {
+        RequestHedger hedger = new RequestHedger(Collections.singleton(ACTION), 95, 20, 100, _scheduler);
+        Assert.assertTrue(hedger.isHedged(ACTION));
+        Assert.assertFalse(hedger.isHedged("CreateSecurityGroup"));
+        Assert.assertEquals(-1, hedger.getDelay(ACTION));
+        warmUp(hedger);
+        Assert.assertEquals(20, hedger.getDelay(ACTION));
+
+        Sender sender = new Sender();
+        Promise<IHttpResponse> promise = hedger.submit(ACTION, sender);
+        CompletablePromise<IHttpResponse> original = sender.awaitRequest(0);
+        CompletablePromise<IHttpResponse> hedged = sender.awaitRequest(1);
+        Assert.assertFalse(promise.isCompleted());
+
+        IHttpResponse response = createResponse();
+        hedged.complete(response);
+        Assert.assertSame(response, promise.get());
+        Assert.assertTrue(original.isCancelled());
+
+        AWSHedgeStatistics stats = hedger.getStatistics();
+        Assert.assertEquals(RequestHedger.MIN_SAMPLES + 1, stats.getRequests());
+        Assert.assertEquals(1, stats.getHedges());
+        Assert.assertEquals(1, stats.getWins());
+        Assert.assertEquals(1.0, stats.getWinRate(), 0.0);
+    }
+
+    @Test
+    public void testOriginalWins() throws Throwable
+    {
+        RequestHedger hedger = new RequestHedger(Collections.singleton(ACTION), 95, 20, 100, _scheduler);
+        warmUp(hedger);
+
+        // The original completes before the hedge delay
+        Sender sender = new Sender();
+        Promise<IHttpResponse> promise = hedger.submit(ACTION, sender);
+        IHttpResponse response = createResponse();
+        sender.awaitRequest(0).complete(response);
+        Assert.assertSame(response, promise.get());
+        Thread.sleep(100);
+        Assert.assertEquals(1, sender._promises.size());
+
+        // The original completes after the hedged request is sent
+        sender = new Sender();
+        promise = hedger.submit(ACTION, sender);
+        CompletablePromise<IHttpResponse> hedged = sender.awaitRequest(1);
+        sender.awaitRequest(0).complete(response);
+        Assert.assertSame(response, promise.get());
+        Assert.assertTrue(hedged.isCancelled());
+        Assert.assertEquals(1, hedger.getStatistics().getHedges());
+        Assert.assertEquals(0, hedger.getStatistics().getWins());
+
+        // The original completes while the hedged request is being sent
+        final IHttpResponse original = createResponse();
+        final Sender racing = new Sender() {
+            @Override
+            public Promise<IHttpResponse> call()
+            {
+                Promise<IHttpResponse> promise = super.call();
+                if (_promises.size() == 2) {
+                    _promises.get(0).complete(original);
+                }
+                return promise;
+            }
+        };
+        promise = hedger.submit(ACTION, racing);
+        Assert.assertSame(original, promise.get());
+        hedged = racing.awaitRequest(1);
+        for (int i = 0; (i < 200) && !hedged.isCancelled(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(hedged.isCancelled());
+    }
+
+    @Test
+    public void testFailure() throws Throwable
+    {
+        RequestHedger hedger = new RequestHedger(Collections.singleton(ACTION), 95, 20, 100, _scheduler);
+        warmUp(hedger);
+
+        // The result only fails once both requests fail
+        Sender sender = new Sender();
+        Promise<IHttpResponse> promise = hedger.submit(ACTION, sender);
+        CompletablePromise<IHttpResponse> hedged = sender.awaitRequest(1);
+        sender.awaitRequest(0).failure(new Exception("original"));
+        Assert.assertFalse(promise.isFailed());
+        hedged.failure(new Exception("hedged"));
+        Assert.assertTrue(promise.isFailed());
+
+        // A failure before the hedge delay is not hedged
+        sender = new Sender();
+        promise = hedger.submit(ACTION, sender);
+        sender.awaitRequest(0).failure(new Exception("original"));
+        Assert.assertTrue(promise.isFailed());
+        Thread.sleep(100);
+        Assert.assertEquals(1, sender._promises.size());
+    }
+
+    @Test
+    public void testBudget() throws Throwable
+    {
+        RequestHedger hedger = new RequestHedger(Collections.singleton(ACTION), 95, 20, 0, _scheduler);
+        warmUp(hedger);
+
+        Sender sender = new Sender();
+        Promise<IHttpResponse> promise = hedger.submit(ACTION, sender);
+        Thread.sleep(100);
+        Assert.assertEquals(1, sender._promises.size());
+        Assert.assertEquals(0, hedger.getStatistics().getHedges());
+
+        // Cancelling the result cancels the outstanding request
+        promise.cancel();
+        Assert.assertTrue(sender._promises.get(0).isCancelled());
+    }
+
+    @Test
+    public void testDeadline() throws Throwable
+    {
+        RequestHedger hedger = new RequestHedger(Collections.singleton(ACTION), 95, 20, 100, _scheduler);
+        warmUp(hedger);
+
+        // No hedge is sent if it cannot be sent before the deadline
+        Sender sender = new Sender();
+        hedger.submit(ACTION, System.currentTimeMillis() + 10, sender);
+        Thread.sleep(100);
+        Assert.assertEquals(1, sender._promises.size());
+
+        sender = new Sender();
+        hedger.submit(ACTION, System.currentTimeMillis() + 60000, sender);
+        sender.awaitRequest(1);
+    }
+}
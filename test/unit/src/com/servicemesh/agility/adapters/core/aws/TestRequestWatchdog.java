@@ -0,0 +1,180 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.impl.RequestTimer;
+import com.servicemesh.agility.adapters.core.aws.impl.RequestWatchdog;
+import com.servicemesh.agility.adapters.core.aws.metrics.AWSRequestSummary;
+import com.servicemesh.agility.adapters.core.aws.metrics.RequestPhase;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubLatency;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+
+public class TestRequestWatchdog
+{
+    private class Listener implements AWSSlowRequestListener
+    {
+        private final List<AWSSlowRequest> _requests = new ArrayList<AWSSlowRequest>();
+
+        @Override
+        public synchronized void slowRequest(AWSSlowRequest request)
+        {
+            _requests.add(request);
+        }
+
+        private synchronized List<AWSSlowRequest> getRequests()
+        {
+            return new ArrayList<AWSSlowRequest>(_requests);
+        }
+    }
+
+    private AWSEndpoint _endpoint;
+
+    @Before
+    public void before()
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _endpoint = mock(AWSEndpoint.class);
+        when(_endpoint.getServiceName()).thenReturn("ec2");
+        when(_endpoint.getHostName()).thenReturn("ec2.us-east-1.amazonaws.com");
+    }
+
+    @Test
+    public void testSlowRequest() throws Exception
+    {
+        RequestWatchdog watchdog = new RequestWatchdog(null, 0);
+        RequestWatchdog.Policy policy = new RequestWatchdog.Policy(_endpoint, 50, 0);
+        Listener listener = new Listener();
+        policy.addListener(listener);
+
+        RequestTimer timer = new RequestTimer();
+        timer.signed(RequestTimer.now());
+        timer.dispatched(100);
+        CompletablePromise<String> result = PromiseFactory.create();
+        watchdog.track(result, null, timer, policy, HttpMethod.GET, "DescribeInstances", null);
+        watchdog.scan();
+        Assert.assertEquals(1, watchdog.getOutstandingCount());
+        Assert.assertTrue(listener.getRequests().isEmpty());
+
+        // A slow request is reported once, with the phase it is waiting in
+        Thread.sleep(80);
+        watchdog.scan();
+        watchdog.scan();
+        Assert.assertEquals(1, watchdog.getSlowCount());
+        Assert.assertEquals(1, listener.getRequests().size());
+        AWSSlowRequest slow = listener.getRequests().get(0);
+        Assert.assertEquals("ec2", slow.getService());
+        Assert.assertEquals("ec2.us-east-1.amazonaws.com", slow.getHost());
+        Assert.assertEquals("GET", slow.getMethod());
+        Assert.assertEquals("DescribeInstances", slow.getAction());
+        Assert.assertEquals(RequestPhase.HTTP, slow.getPhase());
+        Assert.assertTrue(slow.getElapsedMillis() >= 50);
+        Assert.assertTrue(slow.getMicros(RequestPhase.HTTP) >= 50000);
+        Assert.assertEquals(AWSRequestSummary.NOT_MEASURED, slow.getMicros(RequestPhase.DECODING));
+        Assert.assertEquals(1, slow.getAttempts());
+        Assert.assertEquals(100, slow.getBytesOut());
+        Assert.assertFalse(slow.isCancelled());
+        Assert.assertFalse(result.isCancelled());
+
+        // Completed requests are removed by the next scan
+        result.complete("done");
+        Assert.assertEquals(0, watchdog.getOutstandingCount());
+        watchdog.scan();
+        Assert.assertEquals(1, listener.getRequests().size());
+
+        // Requests that complete before they are tracked are ignored
+        watchdog.track(Promise.pure("done"), null, new RequestTimer(), policy, HttpMethod.GET, null, null);
+        Assert.assertEquals(0, watchdog.getOutstandingCount());
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        RequestWatchdog watchdog = new RequestWatchdog(null, 0);
+        RequestWatchdog.Policy policy = new RequestWatchdog.Policy(_endpoint, 0, 50);
+        Listener listener = new Listener();
+        policy.addListener(listener);
+
+        CompletablePromise<IHttpResponse> request = PromiseFactory.create();
+        CompletablePromise<String> result = PromiseFactory.create();
+        watchdog.track(result, request, new RequestTimer(), policy, HttpMethod.POST, null, "/bucket/key");
+        Thread.sleep(80);
+        watchdog.scan();
+        Assert.assertTrue(request.isCancelled());
+        Assert.assertTrue(result.isCancelled());
+        Assert.assertEquals(1, watchdog.getCancelledCount());
+        Assert.assertEquals(0, watchdog.getSlowCount());
+        Assert.assertEquals(0, watchdog.getOutstandingCount());
+
+        Assert.assertEquals(1, listener.getRequests().size());
+        AWSSlowRequest slow = listener.getRequests().get(0);
+        Assert.assertTrue(slow.isCancelled());
+        Assert.assertEquals("/bucket/key", slow.getPath());
+        Assert.assertEquals(RequestPhase.QUEUEING, slow.getPhase());
+        Assert.assertTrue(slow.toString(), slow.toString().startsWith("POST ec2/- host=ec2.us-east-1.amazonaws.com"));
+
+        policy.removeListener(listener);
+        watchdog.track(PromiseFactory.<String> create(), null, new RequestTimer(), policy, HttpMethod.GET, null, null);
+        Thread.sleep(80);
+        watchdog.scan();
+        Assert.assertEquals(2, watchdog.getCancelledCount());
+        Assert.assertEquals(1, listener.getRequests().size());
+    }
+
+    @Test
+    public void testConnection() throws Throwable
+    {
+        AWSStubServer server = new AWSStubServer();
+        server.start();
+        try {
+            server.setLatency("DescribeSecurityGroups", AWSStubLatency.fixed(500));
+            List<Property> settings = new ArrayList<Property>();
+            Property threshold = new Property();
+            threshold.setName(AWSConfig.SLOW_REQUEST_THRESHOLD);
+            threshold.setValue("100");
+            settings.add(threshold);
+            AWSEndpoint endpoint = server.getEndpoint("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+            AWSConnection conn =
+                    AWSConnectionFactory.getInstance().getConnection(settings, server.getCredential(), null, endpoint);
+            Listener listener = new Listener();
+            conn.addSlowRequestListener(listener);
+
+            Promise<DescribeSecurityGroupsResponseType> promise =
+                    conn.execute(conn.initQueryParams("DescribeSecurityGroups"), DescribeSecurityGroupsResponseType.class);
+            Thread.sleep(200);
+            RequestWatchdog.getInstance().scan();
+            Assert.assertEquals(1, listener.getRequests().size());
+            AWSSlowRequest slow = listener.getRequests().get(0);
+            Assert.assertEquals("DescribeSecurityGroups", slow.getAction());
+            Assert.assertEquals(RequestPhase.HTTP, slow.getPhase());
+            Assert.assertEquals(1, slow.getAttempts());
+
+            // The request is not affected
+            Assert.assertNotNull(promise.get());
+            conn.removeSlowRequestListener(listener);
+        }
+        finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.servicemesh.agility.adapters.core.aws.impl.QueryStringUtil;
+import com.servicemesh.agility.adapters.core.aws.impl.ResponseCache;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+public class TestResponseCache
+{
+    private static final String DESCRIBE = "DescribeSecurityGroups";
+
+    private IHttpResponse response(int status)
+    {
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, status, ""));
+        return response;
+    }
+
+    private ResponseCache cache(long ttl, int maxEntries)
+    {
+        Map<String, Long> ttls = new HashMap<String, Long>();
+        ttls.put(DESCRIBE, ttl);
+        return new ResponseCache(ttls, maxEntries);
+    }
+
+    private void put(ResponseCache cache, String queryString, IHttpResponse response)
+    {
+        cache.put(queryString, DESCRIBE, QueryStringUtil.getParameters(queryString), response, cache.getGeneration());
+    }
+
+    @Test
+    public void testQueryStringUtil() throws Exception
+    {
+        String qs = "?Action=DescribeSecurityGroups&GroupId.1=sg%2F1&Version=2013-10-15&Flag";
+        Assert.assertEquals(DESCRIBE, QueryStringUtil.getValue(qs, "Action"));
+        Assert.assertEquals("sg/1", QueryStringUtil.getValue(qs, "GroupId.1"));
+        Assert.assertNull(QueryStringUtil.getValue(qs, "Id.1"));
+        Assert.assertNull(QueryStringUtil.getValue(null, "Action"));
+
+        Map<String, String> params = QueryStringUtil.getParameters(qs);
+        Assert.assertEquals(4, params.size());
+        Assert.assertEquals("", params.get("Flag"));
+        Assert.assertTrue(QueryStringUtil.getParameters(null).isEmpty());
+    }
+
+    @Test
+    public void testHitMissExpire() throws Exception
+    {
+        ResponseCache cache = cache(60000, 10);
+        Assert.assertTrue(cache.isCached(DESCRIBE));
+        Assert.assertFalse(cache.isCached("DescribeVpcs"));
+        Assert.assertFalse(cache.isMutating(DESCRIBE));
+        Assert.assertFalse(cache.isMutating("ListBuckets"));
+        Assert.assertTrue(cache.isMutating("AuthorizeSecurityGroupIngress"));
+        Assert.assertFalse(cache.isMutating(null));
+
+        String key = "?Action=DescribeSecurityGroups";
+        Assert.assertNull(cache.get(key));
+        IHttpResponse ok = response(200);
+        put(cache, key, ok);
+        Assert.assertSame(ok, cache.get(key));
+
+        // Error responses are not cached
+        put(cache, "?Action=DescribeSecurityGroups&GroupId.1=bad", response(400));
+        Assert.assertNull(cache.get("?Action=DescribeSecurityGroups&GroupId.1=bad"));
+
+        AWSCacheStatistics stats = cache.getStatistics();
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(2, stats.getMisses());
+        Assert.assertEquals(1, stats.getSize());
+        Assert.assertNotNull(stats.toString());
+
+        ResponseCache expiring = cache(0, 10);
+        put(expiring, key, ok);
+        Assert.assertNull(expiring.get(key));
+        Assert.assertEquals(0, expiring.getStatistics().getSize());
+
+        // Nothing is mutating when no actions are cached
+        Assert.assertFalse(new ResponseCache(new HashMap<String, Long>(), 1).isMutating("DeleteSecurityGroup"));
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        ResponseCache cache = cache(60000, 2);
+        put(cache, "a", response(200));
+        put(cache, "b", response(200));
+        cache.get("a");
+        put(cache, "c", response(200));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        ResponseCache cache = cache(60000, 10);
+        String all = "?Action=DescribeSecurityGroups";
+        String sg1 = "?Action=DescribeSecurityGroups&GroupId.1=sg-1";
+        String sg2 = "?Action=DescribeSecurityGroups&Filter.1.Name=group-id&Filter.1.Value.1=sg-2";
+        put(cache, all, response(200));
+        put(cache, sg1, response(200));
+        put(cache, sg2, response(200));
+
+        Map<String, String> mutation = new LinkedHashMap<String, String>();
+        mutation.put("Action", "AuthorizeSecurityGroupIngress");
+        mutation.put("GroupId", "sg-1");
+        mutation.put("IpPermissions.1.IpProtocol", "tcp");
+        cache.invalidate(mutation);
+        Assert.assertNull(cache.get(all));
+        Assert.assertNull(cache.get(sg1));
+        Assert.assertNotNull(cache.get(sg2));
+
+        // A read that was sent before the invalidation is not retained
+        long generation = cache.getGeneration();
+        cache.invalidate(mutation);
+        cache.put(sg1, DESCRIBE, QueryStringUtil.getParameters(sg1), response(200), generation);
+        Assert.assertNull(cache.get(sg1));
+
+        // A mutation without resource identifiers removes everything
+        mutation.remove("GroupId");
+        cache.invalidate(mutation);
+        Assert.assertEquals(0, cache.getStatistics().getSize());
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.impl.ValidatorCache;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.HttpStatus;
+import com.servicemesh.io.http.HttpVersion;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+import com.servicemesh.io.http.impl.BaseHttpHeader;
+import com.servicemesh.io.http.impl.DefaultHttpResponse;
+
+public class TestValidatorCache
+{
+    private IHttpResponse response(int status, String etag, int size)
+    {
+        DefaultHttpResponse response = new DefaultHttpResponse();
+        response.setStatus(new HttpStatus(HttpVersion.HTTP_1_1, status, ""));
+        if (etag != null) {
+            response.setHeader(new BaseHttpHeader("ETag", etag));
+        }
+        response.setContent(new byte[size]);
+        return response;
+    }
+
+    @Test
+    public void testRevalidation() throws Exception
+    {
+        ValidatorCache cache = new ValidatorCache(1000);
+        Assert.assertTrue(cache.isEnabled());
+        Assert.assertFalse(new ValidatorCache(0).isEnabled());
+        Assert.assertNull(cache.get("a"));
+
+        IHttpResponse ok = response(200, "\"e1\"", 100);
+        Assert.assertSame(ok, cache.update("a", null, ok));
+        ValidatorCache.Entry entry = cache.get("a");
+        Assert.assertSame(ok, entry.getResponse());
+        Assert.assertEquals("\"e1\"", entry.getConditionalHeaders().get("If-None-Match"));
+        Assert.assertEquals(100, cache.getSize());
+
+        // Not modified serves the cached response
+        Assert.assertSame(ok, cache.update("a", entry, response(304, "\"e1\"", 0)));
+
+        // A changed resource replaces the entry, an error removes it
+        IHttpResponse changed = response(200, "\"e2\"", 50);
+        Assert.assertSame(changed, cache.update("a", entry, changed));
+        Assert.assertEquals("\"e2\"", cache.get("a").getConditionalHeaders().get("If-None-Match"));
+        Assert.assertEquals(50, cache.getSize());
+        cache.update("a", cache.get("a"), response(404, null, 10));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(0, cache.getSize());
+
+        // Responses without validators are not cached
+        cache.update("b", null, response(200, null, 10));
+        Assert.assertNull(cache.get("b"));
+
+        AWSCacheStatistics stats = cache.getStatistics();
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(4, stats.getMisses());
+        Assert.assertEquals(0, stats.getSize());
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        ValidatorCache cache = new ValidatorCache(250);
+        cache.update("a", null, response(200, "a", 100));
+        cache.update("b", null, response(200, "b", 100));
+        cache.get("a");
+        cache.update("c", null, response(200, "c", 100));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertEquals(200, cache.getSize());
+
+        // A response larger than the bound is not cached
+        cache.update("d", null, response(200, "d", 251));
+        Assert.assertNull(cache.get("d"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictions());
+        Assert.assertEquals(2, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void testConditionalGet() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        AWSStubServer server = new AWSStubServer();
+        server.start();
+        try {
+            S3Stub s3 = (S3Stub) server.getService("s3");
+            AWSEndpoint endpoint = server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+            List<Property> settings = new ArrayList<Property>();
+            Property maxBytes = new Property();
+            maxBytes.setName(AWSConfig.VALIDATOR_CACHE_MAX_BYTES);
+            maxBytes.setValue("65536");
+            settings.add(maxBytes);
+            AWSConnection conn =
+                    AWSConnectionFactory.getInstance().getConnection(settings, server.getCredential(), null, endpoint);
+            IHttpResponse response = conn.execute(HttpMethod.PUT, "/config-bucket", null, new QueryParams(),
+                    new CreateBucketConfiguration(), IHttpResponse.class).get();
+            Assert.assertEquals(200, response.getStatusCode());
+            s3.putObject("config-bucket", "settings.xml", "<settings/>".getBytes("UTF-8"));
+
+            IHttpResponse first = get(conn);
+            Assert.assertEquals("<settings/>", first.getContent());
+            IHttpResponse second = get(conn);
+            Assert.assertSame(first, second);
+            Assert.assertEquals(1, conn.getValidatorCacheStatistics().getHits());
+
+            // A changed object is fetched again
+            s3.putObject("config-bucket", "settings.xml", "<settings changed=\"true\"/>".getBytes("UTF-8"));
+            IHttpResponse third = get(conn);
+            Assert.assertEquals("<settings changed=\"true\"/>", third.getContent());
+            Assert.assertSame(third, get(conn));
+
+            AWSCacheStatistics stats = conn.getValidatorCacheStatistics();
+            Assert.assertEquals(2, stats.getHits());
+            Assert.assertEquals(2, stats.getMisses());
+            Assert.assertEquals(1, stats.getSize());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    private IHttpResponse get(AWSConnection conn) throws Throwable
+    {
+        return conn.execute(HttpMethod.GET, "/config-bucket/settings.xml", null, new QueryParams(), null,
+                IHttpResponse.class).get();
+    }
+}
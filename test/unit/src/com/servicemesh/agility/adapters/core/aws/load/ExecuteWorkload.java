@@ -0,0 +1,78 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.CreateSecurityGroupResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.EC2Stub;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Each operation is a DescribeSecurityGroups of one of the groups created during setup, which measures the request
+ * path - signing, HTTP and decoding - without any orchestration.
+ */
+public class ExecuteWorkload extends LoadWorkload
+{
+    protected final List<String> _groupIds = new ArrayList<String>();
+
+    public ExecuteWorkload(LoadScenario scenario, AWSStubServer server)
+    {
+        super(scenario, server);
+    }
+
+    @Override
+    public void setup() throws Throwable
+    {
+        super.setup();
+        for (int i = 0; i < _scenario.getGroups(); i++) {
+            QueryParams params = _connection.initQueryParams("CreateSecurityGroup");
+            params.add(new QueryParam("GroupName", "load-" + i));
+            params.add(new QueryParam("GroupDescription", "Load test group " + i));
+            params.add(new QueryParam("VpcId", EC2Stub.VPC_ID));
+            String groupId = _connection.execute(params, CreateSecurityGroupResponseType.class).get().getGroupId();
+            _groupIds.add(groupId);
+            createRules(groupId);
+        }
+    }
+
+    /**
+     * Adds the initial rules of a group created during setup.
+     */
+    protected void createRules(String groupId) throws Throwable
+    {
+    }
+
+    @Override
+    public Promise<?> operation(int index)
+    {
+        QueryParams params = _connection.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", _groupIds.get(index % _groupIds.size())));
+        return _connection.execute(params, DescribeSecurityGroupsResponseType.class);
+    }
+
+    @Override
+    protected String getServiceName()
+    {
+        return "ec2";
+    }
+
+    @Override
+    protected String getVersion()
+    {
+        return EC2Stub.VERSION;
+    }
+
+    @Override
+    protected Class<?> getContextClass()
+    {
+        return DescribeSecurityGroupsResponseType.class;
+    }
+}
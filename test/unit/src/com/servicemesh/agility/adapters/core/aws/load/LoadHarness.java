@@ -0,0 +1,250 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.core.async.Promise;
+
+/**
+ * Runs load scenarios through AWSConnection against an AWSStubServer and prints a report for each. The arguments are
+ * scenario files or directories of them; see {@link LoadScenario} for their content. The bundle's log level is
+ * FATAL unless set by the "load.logLevel" system property.
+ *
+ * <pre>
+ * ant load_test -Dload.scenario=test/load/sg-reconcile-500.properties
+ * </pre>
+ *
+ * The exit status is 1 if a scenario's operations failed more often than its maxErrorPercent.
+ */
+public class LoadHarness
+{
+    private static final long DRAIN_TIMEOUT_MINUTES = 5;
+    private static final long SAMPLE_MILLIS = 100;
+
+    public static void main(String[] args) throws Throwable
+    {
+        List<File> files = new ArrayList<File>();
+        for (String arg : args) {
+            File file = new File(arg);
+            if (file.isDirectory()) {
+                File[] scenarios = file.listFiles(new FileFilter() {
+                    @Override
+                    public boolean accept(File f)
+                    {
+                        return f.isFile() && f.getName().endsWith(".properties");
+                    }
+                });
+                Arrays.sort(scenarios);
+                files.addAll(Arrays.asList(scenarios));
+            }
+            else {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: LoadHarness <scenario file or directory>...");
+            System.exit(2);
+        }
+
+        TestHelpers.initLogger(Level.toLevel(System.getProperty("load.logLevel"), Level.FATAL));
+        boolean passed = true;
+        for (File file : files) {
+            LoadScenario scenario = LoadScenario.load(file);
+            LoadReport report = run(scenario);
+            report.print(System.out);
+            if (report.getErrorPercent() > scenario.getMaxErrorPercent()) {
+                System.out.println("   FAILED: more than " + scenario.getMaxErrorPercent() + "% of the operations failed");
+                passed = false;
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs a scenario on a new stub server.
+     */
+    public static LoadReport run(LoadScenario scenario) throws Throwable
+    {
+        AWSStubServer server = new AWSStubServer(scenario.getStubThreads());
+        server.setSeed(scenario.getSeed());
+        server.start();
+        LoadWorkload workload = LoadWorkload.create(scenario, server);
+        try {
+            workload.setup();
+            server.setLatency(scenario.getStubLatency());
+            server.setThrottleRate(scenario.getThrottleRate());
+            server.setErrorRate(scenario.getErrorRate());
+            if (scenario.getWarmup() > 0) {
+                runOperations(workload, 0, scenario.getWarmup(), scenario.getConcurrency(), new LoadReport(scenario));
+            }
+            server.reset();
+
+            LoadReport report = new LoadReport(scenario);
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+            int startThreads = threads.getThreadCount();
+            AllocationSampler sampler = new AllocationSampler(threads);
+            long start = System.nanoTime();
+            runOperations(workload, scenario.getWarmup(), scenario.getOperations(), scenario.getConcurrency(), report);
+            report.setElapsedNanos(System.nanoTime() - start);
+            report.setAllocatedBytes(sampler.stop());
+            report.setThreadCounts(startThreads, threads.getPeakThreadCount(), threads.getThreadCount());
+            report.setServerCounts(server.getRequestCount(), server.getThrottledCount(), server.getFailedCount(),
+                    server.getRejectedCount());
+            return report;
+        }
+        finally {
+            workload.teardown();
+            server.stop();
+        }
+    }
+
+    /**
+     * Starts operations as long as fewer than the concurrency are in flight, then waits for all of them to finish.
+     */
+    private static void runOperations(LoadWorkload workload, int first, int count, int concurrency, LoadReport report)
+            throws InterruptedException
+    {
+        Semaphore inFlight = new Semaphore(concurrency);
+        for (int i = first; i < first + count; i++) {
+            inFlight.acquire();
+            long start = System.nanoTime();
+            Promise<?> promise;
+            try {
+                promise = workload.operation(i);
+            }
+            catch (Throwable t) {
+                report.failed(t);
+                inFlight.release();
+                continue;
+            }
+            track(promise, start, inFlight, report);
+        }
+        if (!inFlight.tryAcquire(concurrency, DRAIN_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            for (int i = inFlight.availablePermits(); i < concurrency; i++) {
+                report.failed(new IllegalStateException("Operation did not finish within " + DRAIN_TIMEOUT_MINUTES
+                        + " minutes"));
+            }
+        }
+    }
+
+    private static <T> void track(Promise<T> promise, final long start, final Semaphore inFlight, final LoadReport report)
+    {
+        promise.onComplete(new Callback<T>() {
+            @Override
+            public void invoke(T result)
+            {
+                report.succeeded(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                inFlight.release();
+            }
+        });
+        promise.onFailure(new Callback<Throwable>() {
+            @Override
+            public void invoke(Throwable t)
+            {
+                report.failed(t);
+                inFlight.release();
+            }
+        });
+        promise.onCancel(new Callback<Void>() {
+            @Override
+            public void invoke(Void arg)
+            {
+                report.failed(null);
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Sums the bytes allocated by each thread while sampling. Threads are sampled periodically so that the allocations
+     * of short-lived threads are mostly included.
+     */
+    private static class AllocationSampler implements Runnable
+    {
+        private final com.sun.management.ThreadMXBean _threads;
+        private final Map<Long, Long> _start = new HashMap<Long, Long>();
+        private final Map<Long, Long> _last = new HashMap<Long, Long>();
+        private final Thread _thread;
+        private volatile boolean _stopped;
+
+        AllocationSampler(ThreadMXBean threads)
+        {
+            if ((threads instanceof com.sun.management.ThreadMXBean)
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                _threads = (com.sun.management.ThreadMXBean) threads;
+                _threads.setThreadAllocatedMemoryEnabled(true);
+                sample(_start);
+                _thread = new Thread(this, "load-allocation-sampler");
+                _thread.setDaemon(true);
+                _thread.start();
+            }
+            else {
+                _threads = null;
+                _thread = null;
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (!_stopped) {
+                sample(_last);
+                try {
+                    Thread.sleep(SAMPLE_MILLIS);
+                }
+                catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Stops sampling and returns the bytes allocated since the sampler was created, or -1 if unavailable.
+         */
+        long stop() throws InterruptedException
+        {
+            if (_thread == null) {
+                return -1;
+            }
+            _stopped = true;
+            _thread.join();
+            sample(_last);
+            long allocated = 0;
+            for (Map.Entry<Long, Long> entry : _last.entrySet()) {
+                Long start = _start.get(entry.getKey());
+                allocated += entry.getValue() - ((start != null) ? start : 0);
+            }
+            return allocated;
+        }
+
+        private synchronized void sample(Map<Long, Long> values)
+        {
+            long[] ids = _threads.getAllThreadIds();
+            long[] bytes = _threads.getThreadAllocatedBytes(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (bytes[i] >= 0) {
+                    values.put(ids[i], bytes[i]);
+                }
+            }
+        }
+    }
+}
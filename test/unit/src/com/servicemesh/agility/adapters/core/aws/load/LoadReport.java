@@ -0,0 +1,154 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.servicemesh.agility.adapters.core.aws.metrics.LatencyHistogram;
+
+/**
+ * The measurements of a load scenario run.
+ */
+public class LoadReport
+{
+    private static final int MAX_ERROR_MESSAGES = 5;
+
+    private final LoadScenario _scenario;
+    private final LatencyHistogram _latency = new LatencyHistogram();
+    private final AtomicLong _succeeded = new AtomicLong();
+    private final AtomicLong _failed = new AtomicLong();
+    private final Map<String, Integer> _errors = new TreeMap<String, Integer>();
+
+    private long _elapsedNanos;
+    private long _requests;
+    private long _throttled;
+    private long _injectedErrors;
+    private long _rejected;
+    private long _allocatedBytes = -1;
+    private int _peakThreads;
+    private int _endThreads;
+    private int _startThreads;
+
+    public LoadReport(LoadScenario scenario)
+    {
+        _scenario = scenario;
+    }
+
+    /**
+     * Records a completed operation.
+     */
+    public void succeeded(long micros)
+    {
+        _latency.record(micros);
+        _succeeded.incrementAndGet();
+    }
+
+    /**
+     * Records a failed operation.
+     */
+    public void failed(Throwable t)
+    {
+        _failed.incrementAndGet();
+        String key = (t != null) ? t.getClass().getSimpleName() + ": " + t.getMessage() : "cancelled";
+        synchronized (_errors) {
+            Integer count = _errors.get(key);
+            if ((count != null) || (_errors.size() < MAX_ERROR_MESSAGES)) {
+                _errors.put(key, (count != null) ? count + 1 : 1);
+            }
+        }
+    }
+
+    public long getSucceeded()
+    {
+        return _succeeded.get();
+    }
+
+    public long getFailed()
+    {
+        return _failed.get();
+    }
+
+    /**
+     * Returns the percentage of the operations that failed.
+     */
+    public double getErrorPercent()
+    {
+        long total = _succeeded.get() + _failed.get();
+        return (total == 0) ? 0.0 : 100.0 * _failed.get() / total;
+    }
+
+    public LatencyHistogram getLatency()
+    {
+        return _latency;
+    }
+
+    public void setElapsedNanos(long elapsedNanos)
+    {
+        _elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Sets the stub server's counters for the measured operations.
+     */
+    public void setServerCounts(long requests, long throttled, long injectedErrors, long rejected)
+    {
+        _requests = requests;
+        _throttled = throttled;
+        _injectedErrors = injectedErrors;
+        _rejected = rejected;
+    }
+
+    /**
+     * Sets the bytes allocated by all threads during the measured operations, or -1 if unavailable.
+     */
+    public void setAllocatedBytes(long allocatedBytes)
+    {
+        _allocatedBytes = allocatedBytes;
+    }
+
+    public void setThreadCounts(int startThreads, int peakThreads, int endThreads)
+    {
+        _startThreads = startThreads;
+        _peakThreads = peakThreads;
+        _endThreads = endThreads;
+    }
+
+    /**
+     * Prints the report.
+     */
+    public void print(PrintStream out)
+    {
+        long operations = _succeeded.get() + _failed.get();
+        double seconds = _elapsedNanos / 1e9;
+        out.println("== " + _scenario.getName() + " (" + _scenario.getWorkload().name().toLowerCase(Locale.US) + ")");
+        if (!_scenario.getDescription().isEmpty()) {
+            out.println("   " + _scenario.getDescription());
+        }
+        out.println(String.format(Locale.US, "   operations   %d in %.2f s, concurrency %d, %d failed (%.2f%%)",
+                operations, seconds, _scenario.getConcurrency(), _failed.get(), getErrorPercent()));
+        out.println(String.format(Locale.US, "   throughput   %.1f ops/s, %.1f requests/s (%d requests)",
+                operations / seconds, _requests / seconds, _requests));
+        out.println(String.format(Locale.US, "   latency ms   p50 %.2f, p99 %.2f, p999 %.2f, max %.2f, mean %.2f",
+                _latency.getValueAtPercentile(50) / 1e3, _latency.getValueAtPercentile(99) / 1e3,
+                _latency.getValueAtPercentile(99.9) / 1e3, _latency.getMax() / 1e3, _latency.getMean() / 1e3));
+        if (_allocatedBytes >= 0) {
+            out.println(String.format(Locale.US, "   allocation   %.1f MB/s, %.1f KB/operation", _allocatedBytes / seconds / 1e6,
+                    (operations == 0) ? 0.0 : _allocatedBytes / 1e3 / operations));
+        }
+        out.println(String.format(Locale.US, "   threads      %d at start, %d peak, %d at end", _startThreads, _peakThreads,
+                _endThreads));
+        out.println(String.format(Locale.US, "   stub         %d throttled, %d injected errors, %d rejected", _throttled,
+                _injectedErrors, _rejected));
+        synchronized (_errors) {
+            for (Map.Entry<String, Integer> error : _errors.entrySet()) {
+                out.println("   error        " + error.getValue() + " x " + error.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubLatency;
+import com.servicemesh.agility.api.Property;
+
+/**
+ * A load scenario read from a properties file. Besides the keys below, keys starting with "AgilityManager." are passed
+ * to the connection as settings, e.g. AgilityManager.aws.CacheActions.
+ * <ul>
+ * <li>name, description: identify the scenario in the report</li>
+ * <li>workload: execute, reconcile or poll</li>
+ * <li>operations: the number of measured operations</li>
+ * <li>concurrency: the maximum number of operations in flight</li>
+ * <li>warmup: the number of unmeasured operations run first</li>
+ * <li>groups, rules: the security groups created before the run and the ingress rules of each</li>
+ * <li>poll.interval, poll.retries, rds.transitionMillis: StatusPoller timing and the time a DB instance is creating</li>
+ * <li>stub.threads, stub.latency, stub.throttleRate, stub.errorRate, stub.seed: the stub server configuration</li>
+ * <li>maxErrorPercent: the run fails if more operations fail</li>
+ * </ul>
+ */
+public class LoadScenario
+{
+    /** The kinds of operations a scenario drives. */
+    public enum Workload
+    {
+        /** DescribeSecurityGroups of existing groups. */
+        EXECUTE,
+        /** Describe a security group, then authorize and revoke ingress rules to match a desired state. */
+        RECONCILE,
+        /** CreateDBInstance, then a StatusPoller until the instance is available. */
+        POLL
+    }
+
+    private static final String SETTING_PREFIX = "AgilityManager.";
+
+    private final String _name;
+    private final Properties _properties;
+
+    public LoadScenario(String name, Properties properties)
+    {
+        _name = properties.getProperty("name", name);
+        _properties = properties;
+    }
+
+    /**
+     * Reads a scenario file. The file name without its extension is the default scenario name.
+     */
+    public static LoadScenario load(File file) throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        }
+        finally {
+            in.close();
+        }
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return new LoadScenario((dot > 0) ? name.substring(0, dot) : name, properties);
+    }
+
+    public String getName()
+    {
+        return _name;
+    }
+
+    public String getDescription()
+    {
+        return _properties.getProperty("description", "");
+    }
+
+    public Workload getWorkload()
+    {
+        return Workload.valueOf(_properties.getProperty("workload", "execute").trim().toUpperCase(Locale.US));
+    }
+
+    public int getOperations()
+    {
+        return getInt("operations", 1000);
+    }
+
+    public int getConcurrency()
+    {
+        return getInt("concurrency", 100);
+    }
+
+    public int getWarmup()
+    {
+        return getInt("warmup", 0);
+    }
+
+    public int getGroups()
+    {
+        return getInt("groups", 100);
+    }
+
+    public int getRules()
+    {
+        return getInt("rules", 5);
+    }
+
+    public long getPollInterval()
+    {
+        return getInt("poll.interval", 100);
+    }
+
+    public long getPollRetries()
+    {
+        return getInt("poll.retries", 100);
+    }
+
+    public long getTransitionMillis()
+    {
+        return getInt("rds.transitionMillis", 500);
+    }
+
+    public int getStubThreads()
+    {
+        return getInt("stub.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public AWSStubLatency getStubLatency()
+    {
+        return AWSStubLatency.parse(_properties.getProperty("stub.latency", "none"));
+    }
+
+    public double getThrottleRate()
+    {
+        return getDouble("stub.throttleRate", 0.0);
+    }
+
+    public double getErrorRate()
+    {
+        return getDouble("stub.errorRate", 0.0);
+    }
+
+    public long getSeed()
+    {
+        return getInt("stub.seed", 1);
+    }
+
+    public double getMaxErrorPercent()
+    {
+        return getDouble("maxErrorPercent", 100.0);
+    }
+
+    /**
+     * Returns the connection settings of the scenario.
+     */
+    public List<Property> getSettings()
+    {
+        List<Property> settings = new ArrayList<Property>();
+        for (String key : _properties.stringPropertyNames()) {
+            if (key.startsWith(SETTING_PREFIX)) {
+                Property setting = new Property();
+                setting.setName(key);
+                setting.setValue(_properties.getProperty(key).trim());
+                settings.add(setting);
+            }
+        }
+        return settings;
+    }
+
+    private int getInt(String key, int defaultValue)
+    {
+        String value = _properties.getProperty(key);
+        return (value != null) ? Integer.parseInt(value.trim()) : defaultValue;
+    }
+
+    private double getDouble(String key, double defaultValue)
+    {
+        String value = _properties.getProperty(key);
+        return (value != null) ? Double.parseDouble(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.core.async.Promise;
+
+/**
+ * The operations of a load scenario. An operation is one unit of work as seen by an adapter, which may issue several
+ * AWS requests.
+ */
+public abstract class LoadWorkload
+{
+    protected final LoadScenario _scenario;
+    protected final AWSStubServer _server;
+    protected AWSConnection _connection;
+
+    protected LoadWorkload(LoadScenario scenario, AWSStubServer server)
+    {
+        _scenario = scenario;
+        _server = server;
+    }
+
+    /**
+     * Returns the workload of a scenario.
+     */
+    public static LoadWorkload create(LoadScenario scenario, AWSStubServer server)
+    {
+        switch (scenario.getWorkload()) {
+            case RECONCILE:
+                return new ReconcileWorkload(scenario, server);
+            case POLL:
+                return new PollWorkload(scenario, server);
+            default:
+                return new ExecuteWorkload(scenario, server);
+        }
+    }
+
+    /**
+     * Returns the connection used by the operations.
+     */
+    public AWSConnection getConnection()
+    {
+        return _connection;
+    }
+
+    /**
+     * Creates the connection and any resources the operations expect to exist. Called before faults are injected.
+     */
+    public void setup() throws Throwable
+    {
+        AWSEndpoint endpoint = _server.getEndpoint(getServiceName(), getVersion(), getContextClass());
+        _connection = AWSConnectionFactory.getInstance().getConnection(_scenario.getSettings(), _server.getCredential(),
+                null, endpoint);
+    }
+
+    /**
+     * Releases resources held by the workload.
+     */
+    public void teardown()
+    {
+    }
+
+    /**
+     * Starts an operation.
+     *
+     * @param index
+     *            The index of the operation within the run, starting at 0.
+     * @return Completes when the operation has finished, or fails.
+     */
+    public abstract Promise<?> operation(int index);
+
+    protected abstract String getServiceName();
+
+    protected abstract String getVersion();
+
+    protected abstract Class<?> getContextClass();
+}
@@ -0,0 +1,221 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.amazonaws.rds.doc._2010_07_28.CreateDBInstanceResponse;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.action.StatusPoller;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.RDSStub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSAdapterException;
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Function;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+import com.servicemesh.core.messaging.Request;
+import com.servicemesh.core.messaging.Response;
+import com.servicemesh.core.messaging.Status;
+import com.servicemesh.core.reactor.TimerHandler;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Each operation creates a DB instance and then polls DescribeDBInstances with a StatusPoller until the instance is
+ * available. The platform reactor that fires StatusPoller timers is stood in for by a single scheduler thread, so the
+ * number of pollers in flight is bounded only by the scenario's concurrency.
+ */
+public class PollWorkload extends LoadWorkload
+{
+    private static final String AVAILABLE = "available";
+
+    private ScheduledExecutorService _timer;
+
+    public PollWorkload(LoadScenario scenario, AWSStubServer server)
+    {
+        super(scenario, server);
+    }
+
+    @Override
+    public void setup() throws Throwable
+    {
+        super.setup();
+        ((RDSStub) _server.getService("rds")).setTransitionMillis(_scenario.getTransitionMillis());
+        _timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "load-reactor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void teardown()
+    {
+        if (_timer != null) {
+            _timer.shutdownNow();
+        }
+    }
+
+    @Override
+    public Promise<?> operation(int index)
+    {
+        final String instanceId = "load-" + index;
+        QueryParams params = _connection.initQueryParams("CreateDBInstance");
+        params.add(new QueryParam("DBInstanceIdentifier", instanceId));
+        params.add(new QueryParam("DBInstanceClass", "db.t2.micro"));
+        params.add(new QueryParam("Engine", "mysql"));
+        params.add(new QueryParam("MasterUsername", "load"));
+        params.add(new QueryParam("AllocatedStorage", "5"));
+        Promise<CreateDBInstanceResponse> create = _connection.execute(params, CreateDBInstanceResponse.class);
+        return create.flatMap(new Function<CreateDBInstanceResponse, Promise<PollResponse>>() {
+            @Override
+            public Promise<PollResponse> invoke(CreateDBInstanceResponse response)
+            {
+                return poll(instanceId);
+            }
+        });
+    }
+
+    private Promise<PollResponse> poll(String instanceId)
+    {
+        CompletablePromise<PollResponse> promise = PromiseFactory.create();
+        schedule(new InstancePoller(new InstanceRequest(instanceId), promise, _scenario.getPollInterval(),
+                _scenario.getPollRetries(), _connection), System.currentTimeMillis() + _scenario.getPollInterval());
+        return promise.flatMap(new Function<PollResponse, Promise<PollResponse>>() {
+            @Override
+            public Promise<PollResponse> invoke(PollResponse response)
+            {
+                if (response.getStatus() != Status.COMPLETE) {
+                    return Promise.pure(new AWSAdapterException(response.getMessage()));
+                }
+                return Promise.pure(response);
+            }
+        });
+    }
+
+    /**
+     * Fires a timer at an absolute time and re-arms it at the time it returns, as the platform reactor does.
+     */
+    private void schedule(final TimerHandler handler, final long fireTime)
+    {
+        _timer.schedule(new Runnable() {
+            @Override
+            public void run()
+            {
+                long next = handler.timerFire(fireTime, System.currentTimeMillis());
+                if (next > 0) {
+                    schedule(handler, next);
+                }
+            }
+        }, Math.max(0, fireTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected String getServiceName()
+    {
+        return "rds";
+    }
+
+    @Override
+    protected String getVersion()
+    {
+        return RDSStub.VERSION;
+    }
+
+    @Override
+    protected Class<?> getContextClass()
+    {
+        return CreateDBInstanceResponse.class;
+    }
+
+    private static class PollResponse extends Response
+    {
+        private static final long serialVersionUID = 20161019;
+    }
+
+    private static class InstanceRequest extends Request
+    {
+        private static final long serialVersionUID = 20161019;
+
+        final String instanceId;
+
+        InstanceRequest(String instanceId)
+        {
+            this.instanceId = instanceId;
+        }
+    }
+
+    private static class InstancePoller extends StatusPoller<PollResponse>
+    {
+        private static final long serialVersionUID = 20161019;
+        private static final Logger _logger = Logger.getLogger(InstancePoller.class);
+
+        InstancePoller(InstanceRequest request, CompletablePromise<PollResponse> promise, long interval, long retries,
+                AWSConnection conn)
+        {
+            super(request, promise, interval, retries, AVAILABLE, conn, true);
+        }
+
+        @Override
+        protected Promise<IHttpResponse> run()
+        {
+            // Called from the StatusPoller constructor, so the instance is identified by the request
+            QueryParams params = conn.initQueryParams("DescribeDBInstances");
+            params.add(new QueryParam("DBInstanceIdentifier", ((InstanceRequest) request).instanceId));
+            return conn.execute(HttpMethod.GET, params);
+        }
+
+        @Override
+        protected Object decode(IHttpResponse httpResponse)
+        {
+            return httpResponse.getContent();
+        }
+
+        @Override
+        protected String getStatus(IHttpResponse httpResponse)
+        {
+            String content = httpResponse.getContent();
+            int start = content.indexOf("<DBInstanceStatus>");
+            int end = content.indexOf("</DBInstanceStatus>");
+            return ((start >= 0) && (end > start)) ? content.substring(start + "<DBInstanceStatus>".length(), end) : null;
+        }
+
+        @Override
+        protected PollResponse getResponseObject()
+        {
+            return new PollResponse();
+        }
+
+        @Override
+        protected PollResponse updateResponseObject(Request request, PollResponse response, Object cloudObject)
+        {
+            return response;
+        }
+
+        @Override
+        protected Logger getLogger()
+        {
+            return _logger;
+        }
+
+        @Override
+        protected boolean isFailedState(String statusValue)
+        {
+            return "failed".equalsIgnoreCase(statusValue);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.AuthorizeSecurityGroupIngressResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.IpPermissionType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.IpRangeItemType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.RevokeSecurityGroupIngressResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.SecurityGroupItemType;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.core.async.Function;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+/**
+ * Each operation reconciles one of the groups created during setup: the group is described, then the ingress rules
+ * missing from the desired state are authorized and the extra ones revoked. Successive passes over a group shift its
+ * desired port range by one, so every pass after the first authorizes and revokes a rule. EC2SecurityGroupOperations
+ * is not used since it requires the platform's distributed locks.
+ */
+public class ReconcileWorkload extends ExecuteWorkload
+{
+    private static final int BASE_PORT = 1000;
+    private static final String CIDR = "10.0.0.0/8";
+
+    public ReconcileWorkload(LoadScenario scenario, AWSStubServer server)
+    {
+        super(scenario, server);
+    }
+
+    @Override
+    protected void createRules(String groupId) throws Throwable
+    {
+        Set<Integer> ports = getDesiredPorts(0);
+        if (!ports.isEmpty()) {
+            _connection.execute(getRuleParams("AuthorizeSecurityGroupIngress", groupId, ports),
+                    AuthorizeSecurityGroupIngressResponseType.class).get();
+        }
+    }
+
+    @Override
+    public Promise<?> operation(int index)
+    {
+        final String groupId = _groupIds.get(index % _groupIds.size());
+        final Set<Integer> desired = getDesiredPorts(index / _groupIds.size());
+        QueryParams params = _connection.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", groupId));
+        Promise<DescribeSecurityGroupsResponseType> describe =
+                _connection.execute(params, DescribeSecurityGroupsResponseType.class);
+        return describe.flatMap(new Function<DescribeSecurityGroupsResponseType, Promise<List<Object>>>() {
+            @Override
+            public Promise<List<Object>> invoke(DescribeSecurityGroupsResponseType response)
+            {
+                Set<Integer> missing = new TreeSet<Integer>(desired);
+                Set<Integer> extra = new TreeSet<Integer>();
+                SecurityGroupItemType group = response.getSecurityGroupInfo().getItem().get(0);
+                if (group.getIpPermissions() != null) {
+                    for (IpPermissionType perm : group.getIpPermissions().getItem()) {
+                        for (IpRangeItemType range : perm.getIpRanges().getItem()) {
+                            if (CIDR.equals(range.getCidrIp()) && !missing.remove(perm.getFromPort())) {
+                                extra.add(perm.getFromPort());
+                            }
+                        }
+                    }
+                }
+                List<Promise<?>> promises = new ArrayList<Promise<?>>();
+                if (!missing.isEmpty()) {
+                    promises.add(_connection.execute(getRuleParams("AuthorizeSecurityGroupIngress", groupId, missing),
+                            AuthorizeSecurityGroupIngressResponseType.class));
+                }
+                if (!extra.isEmpty()) {
+                    promises.add(_connection.execute(getRuleParams("RevokeSecurityGroupIngress", groupId, extra),
+                            RevokeSecurityGroupIngressResponseType.class));
+                }
+                return Promise.sequenceAny(promises);
+            }
+        });
+    }
+
+    private Set<Integer> getDesiredPorts(int pass)
+    {
+        Set<Integer> ports = new TreeSet<Integer>();
+        for (int i = 0; i < _scenario.getRules(); i++) {
+            ports.add(BASE_PORT + pass + i);
+        }
+        return ports;
+    }
+
+    private QueryParams getRuleParams(String action, String groupId, Set<Integer> ports)
+    {
+        QueryParams params = _connection.initQueryParams(action);
+        params.add(new QueryParam("GroupId", groupId));
+        int n = 1;
+        for (Integer port : ports) {
+            String prefix = "IpPermissions." + n++ + ".";
+            params.add(new QueryParam(prefix + "IpProtocol", "tcp"));
+            params.add(new QueryParam(prefix + "FromPort", port.toString()));
+            params.add(new QueryParam(prefix + "ToPort", port.toString()));
+            params.add(new QueryParam(prefix + "IpRanges.1.CidrIp", CIDR));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAWSMetrics
+{
+    @Test
+    public void testHistogram() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(0.0, histogram.getMean(), 0.0);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(1000000, histogram.getMax());
+        Assert.assertEquals(500500.0, histogram.getMean(), 0.0);
+        assertWithin(500000, histogram.getValueAtPercentile(50));
+        assertWithin(990000, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+
+        // Small values are exact and out of range values are clamped
+        histogram.reset();
+        histogram.record(-5);
+        histogram.record(7);
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(0, histogram.getValueAtPercentile(1));
+        Assert.assertEquals(7, histogram.getValueAtPercentile(50));
+        Assert.assertEquals(histogram.getMax(), histogram.getValueAtPercentile(100));
+    }
+
+    // The reported value must be within the bucket precision of about 6%
+    private void assertWithin(long expected, long actual)
+    {
+        Assert.assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+
+    @Test
+    public void testRequestMetrics() throws Exception
+    {
+        AWSMetrics metrics = new AWSMetrics();
+        AWSRequestMetrics request = metrics.getRequestMetrics("ec2", "DescribeInstances", 200);
+        Assert.assertSame(request, metrics.getRequestMetrics("ec2", "DescribeInstances", 200));
+        Assert.assertSame(request, metrics.getRequestMetrics("ec2/DescribeInstances/200"));
+        Assert.assertNotSame(request, metrics.getRequestMetrics("ec2", "DescribeInstances", 503));
+        Assert.assertEquals(2, metrics.getAllRequestMetrics().size());
+
+        Assert.assertNull(request.getHistogram(RequestPhase.HTTP));
+        request.record(RequestPhase.TOTAL, 2000);
+        request.record(RequestPhase.HTTP, 1500);
+        request.recordBytes(100, 2048);
+        Assert.assertEquals(1, request.getCount());
+        Assert.assertEquals(100, metrics.getBytesOut("ec2/DescribeInstances/200"));
+        Assert.assertEquals(2048, metrics.getBytesIn("ec2/DescribeInstances/200"));
+        Assert.assertEquals(1, metrics.getCount("ec2/DescribeInstances/200"));
+        Assert.assertEquals(0, metrics.getCount("ec2/RunInstances/200"));
+        Assert.assertEquals(1.5, metrics.getLatencyMillis("ec2/DescribeInstances/200", "http", 50), 0.1);
+        Assert.assertEquals(0.0, metrics.getLatencyMillis("ec2/DescribeInstances/200", "DECODING", 50), 0.0);
+        Assert.assertTrue(request.toString().startsWith("ec2/DescribeInstances/200: count=1"));
+        Assert.assertEquals(2, metrics.getSummary().length);
+
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getKeys().length);
+    }
+
+    @Test
+    public void testJMX() throws Exception
+    {
+        AWSMetrics metrics = AWSMetrics.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AWSMetrics.OBJECT_NAME);
+        Assert.assertTrue(server.isRegistered(name));
+
+        // Recording is disabled by default
+        Assert.assertEquals(Boolean.FALSE, server.getAttribute(name, "Enabled"));
+        metrics.setEnabled(true);
+        Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+        metrics.setEnabled(false);
+    }
+
+    @Test
+    public void testRequestHistory() throws Exception
+    {
+        AWSRequestHistory history = new AWSRequestHistory(3);
+        Assert.assertEquals(4, history.getCapacity());
+        Assert.assertTrue(history.getRecent().isEmpty());
+
+        for (int i = 0; i < 6; i++) {
+            history.record(summary("Action" + i, 200));
+        }
+        Assert.assertEquals(6, history.getRecordedCount());
+        List<AWSRequestSummary> recent = history.getRecent();
+        Assert.assertEquals(4, recent.size());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals("Action" + (i + 2), recent.get(i).getAction());
+        }
+
+        String[] lines = history.dump();
+        Assert.assertEquals(4, lines.length);
+        Assert.assertTrue(lines[0], lines[0].matches(".*Z ec2/Action2/200 host=ec2.us-east-1.amazonaws.com "
+                + "requestId=req-1 total=1500us http=1200us attempts=1 bytesOut=100 bytesIn=2048"));
+
+        history.reset();
+        Assert.assertEquals(0, history.getRecordedCount());
+        Assert.assertTrue(history.getRecent().isEmpty());
+        history.record(summary("Action6", 503));
+        Assert.assertEquals(1, history.getRecent().size());
+        Assert.assertEquals(503, history.getRecent().get(0).getStatus());
+    }
+
+    @Test
+    public void testRequestHistoryConcurrency() throws Exception
+    {
+        final AWSRequestHistory history = new AWSRequestHistory(64);
+        final int perThread = 10000;
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String action = "Action" + t;
+            threads[t] = new Thread() {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < perThread; i++) {
+                        history.record(summary(action, 200));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        // Readers never see a summary out of place while writers wrap the ring
+        while (history.getRecordedCount() < threads.length * perThread) {
+            Assert.assertTrue(history.getRecent().size() <= history.getCapacity());
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(threads.length * perThread, history.getRecordedCount());
+        Assert.assertEquals(64, history.getRecent().size());
+    }
+
+    @Test
+    public void testRequestHistoryJMX() throws Exception
+    {
+        AWSRequestHistory history = AWSRequestHistory.getInstance();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AWSRequestHistory.OBJECT_NAME);
+        Assert.assertTrue(server.isRegistered(name));
+        Assert.assertEquals(AWSRequestHistory.DEFAULT_CAPACITY, server.getAttribute(name, "Capacity"));
+
+        history.reset();
+        history.record(summary("DescribeInstances", 200));
+        String[] lines = (String[]) server.invoke(name, "dump", null, null);
+        Assert.assertEquals(1, lines.length);
+        Assert.assertTrue(lines[0].contains("ec2/DescribeInstances/200"));
+        history.reset();
+    }
+
+    private static AWSRequestSummary summary(String action, int status)
+    {
+        long[] micros = new long[RequestPhase.values().length];
+        Arrays.fill(micros, AWSRequestSummary.NOT_MEASURED);
+        micros[RequestPhase.TOTAL.ordinal()] = 1500;
+        micros[RequestPhase.HTTP.ordinal()] = 1200;
+        return new AWSRequestSummary(System.currentTimeMillis(), "ec2", "ec2.us-east-1.amazonaws.com", action, status,
+                "req-1", micros, 1, 100, 2048);
+    }
+}
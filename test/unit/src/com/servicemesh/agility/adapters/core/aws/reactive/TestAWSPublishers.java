@@ -0,0 +1,259 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.reactive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.amazonaws.rds.doc._2010_07_28.CreateDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.DescribeDBParametersResponse;
+import com.amazonaws.rds.doc._2010_07_28.ModifyDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.Parameter;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSPageExtractor;
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.RDSStub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestAWSPublishers
+{
+    private static final String GROUP = "published-group";
+    private static final int PARAMETER_COUNT = 45;
+
+    private static final AWSPageExtractor<DescribeDBParametersResponse, Parameter> EXTRACTOR =
+            new AWSPageExtractor<DescribeDBParametersResponse, Parameter>() {
+                @Override
+                public String getNextToken(DescribeDBParametersResponse page)
+                {
+                    return page.getDescribeDBParametersResult().getMarker();
+                }
+
+                @Override
+                public List<Parameter> getItems(DescribeDBParametersResponse page)
+                {
+                    return page.getDescribeDBParametersResult().getParameters().getParameter();
+                }
+            };
+
+    private AWSStubServer _server;
+    private AWSConnection _conn;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        AWSEndpoint endpoint = _server.getEndpoint("rds", RDSStub.VERSION, CreateDBParameterGroupResponse.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+
+        QueryParams params = _conn.initQueryParams("CreateDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupFamily", "mysql5.6"));
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        params.add(new QueryParam("Description", "Published group"));
+        _conn.execute(params, CreateDBParameterGroupResponse.class).get();
+
+        params = _conn.initQueryParams("ModifyDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        for (int i = 1; i <= PARAMETER_COUNT; i++) {
+            String prefix = "Parameters.member." + i + ".";
+            params.add(new QueryParam(prefix + "ParameterName", String.format("param_%02d", i)));
+            params.add(new QueryParam(prefix + "ParameterValue", Integer.toString(i)));
+            params.add(new QueryParam(prefix + "ApplyMethod", "immediate"));
+        }
+        _conn.execute(params, ModifyDBParameterGroupResponse.class).get();
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testPaginateOnDemand() throws Throwable
+    {
+        Publisher<Parameter> publisher = AWSPublishers.paginate(_conn, describeParameters(20), "Marker",
+                DescribeDBParametersResponse.class, EXTRACTOR);
+        long start = _server.getRequestCount();
+        RecordingSubscriber<Parameter> subscriber = new RecordingSubscriber<Parameter>();
+        publisher.subscribe(subscriber);
+        Thread.sleep(100);
+        Assert.assertEquals(0, _server.getRequestCount() - start);
+
+        // The first page satisfies up to 20 items, the next item needs the second page
+        subscriber.request(1);
+        subscriber.awaitItems(1);
+        subscriber.request(19);
+        subscriber.awaitItems(20);
+        Assert.assertEquals(1, _server.getRequestCount() - start);
+        subscriber.request(1);
+        subscriber.awaitItems(21);
+        Assert.assertEquals(2, _server.getRequestCount() - start);
+
+        subscriber.request(Long.MAX_VALUE);
+        Assert.assertTrue(subscriber.awaitTermination());
+        Assert.assertNull(subscriber._failure);
+        Assert.assertEquals(PARAMETER_COUNT, subscriber._items.size());
+        for (int i = 0; i < PARAMETER_COUNT; i++) {
+            Assert.assertEquals(String.format("param_%02d", i + 1), subscriber._items.get(i).getParameterName());
+        }
+        Assert.assertEquals(3, _server.getRequestCount() - start);
+
+        // Each subscriber pages on its own; cancelling stops further pages
+        start = _server.getRequestCount();
+        RecordingSubscriber<Parameter> cancelling = new RecordingSubscriber<Parameter>();
+        publisher.subscribe(cancelling);
+        cancelling.request(5);
+        cancelling.awaitItems(5);
+        cancelling.cancel();
+        cancelling.request(100);
+        Thread.sleep(100);
+        Assert.assertEquals(5, cancelling._items.size());
+        Assert.assertEquals(1, _server.getRequestCount() - start);
+        Assert.assertFalse(cancelling._terminated.getCount() == 0);
+    }
+
+    @Test
+    public void testExecute() throws Throwable
+    {
+        List<QueryParams> requests = new ArrayList<QueryParams>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(describeParameters(20 + i));
+        }
+        Publisher<DescribeDBParametersResponse> publisher =
+                AWSPublishers.execute(_conn, requests, DescribeDBParametersResponse.class, 4);
+        long start = _server.getRequestCount();
+        RecordingSubscriber<DescribeDBParametersResponse> subscriber =
+                new RecordingSubscriber<DescribeDBParametersResponse>();
+        publisher.subscribe(subscriber);
+        subscriber.request(2);
+        subscriber.awaitItems(2);
+        Thread.sleep(100);
+        Assert.assertEquals(2, _server.getRequestCount() - start);
+
+        subscriber.request(10);
+        Assert.assertTrue(subscriber.awaitTermination());
+        Assert.assertNull(subscriber._failure);
+        Assert.assertEquals(5, _server.getRequestCount() - start);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(20 + i, EXTRACTOR.getItems(subscriber._items.get(i)).size());
+        }
+
+        // Without requests the subscription completes once demand is signalled
+        RecordingSubscriber<DescribeDBParametersResponse> empty = new RecordingSubscriber<DescribeDBParametersResponse>();
+        AWSPublishers.execute(_conn, new ArrayList<QueryParams>(), DescribeDBParametersResponse.class, 4)
+                .subscribe(empty);
+        empty.request(1);
+        Assert.assertTrue(empty.awaitTermination());
+        Assert.assertTrue(empty._items.isEmpty());
+    }
+
+    @Test
+    public void testFailure() throws Throwable
+    {
+        _server.injectResponse("DescribeDBParameters", AWSStubResponse.xml(400,
+                "<ErrorResponse><Error><Code>Throttling</Code><Message>Rate exceeded</Message></Error></ErrorResponse>"),
+                1);
+        RecordingSubscriber<Parameter> subscriber = new RecordingSubscriber<Parameter>();
+        AWSPublishers.paginate(_conn, describeParameters(20), "Marker", DescribeDBParametersResponse.class, EXTRACTOR)
+                .subscribe(subscriber);
+        subscriber.request(1);
+        Assert.assertTrue(subscriber.awaitTermination());
+        Assert.assertEquals("Throttling", ((AWSErrorException) subscriber._failure).getErrors().get(0).getCode());
+
+        // Non-positive demand is an error (rule 3.9)
+        RecordingSubscriber<DescribeDBParametersResponse> invalid =
+                new RecordingSubscriber<DescribeDBParametersResponse>();
+        AWSPublishers.execute(_conn, Collections.singletonList(describeParameters(20)),
+                DescribeDBParametersResponse.class, 1).subscribe(invalid);
+        invalid.request(0);
+        Assert.assertTrue(invalid.awaitTermination());
+        Assert.assertTrue(invalid._failure instanceof IllegalArgumentException);
+    }
+
+    private QueryParams describeParameters(int maxRecords)
+    {
+        QueryParams params = _conn.initQueryParams("DescribeDBParameters");
+        params.add(new QueryParam("DBParameterGroupName", GROUP));
+        params.add(new QueryParam("MaxRecords", Integer.toString(maxRecords)));
+        return params;
+    }
+
+    private static class RecordingSubscriber<T> implements Subscriber<T>
+    {
+        private final List<T> _items = Collections.synchronizedList(new ArrayList<T>());
+        private final CountDownLatch _terminated = new CountDownLatch(1);
+        private volatile Subscription _subscription;
+        private volatile Throwable _failure;
+
+        @Override
+        public void onSubscribe(Subscription subscription)
+        {
+            _subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item)
+        {
+            _items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable t)
+        {
+            _failure = t;
+            _terminated.countDown();
+        }
+
+        @Override
+        public void onComplete()
+        {
+            _terminated.countDown();
+        }
+
+        private void request(long n)
+        {
+            _subscription.request(n);
+        }
+
+        private void cancel()
+        {
+            _subscription.cancel();
+        }
+
+        private void awaitItems(int count) throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((_items.size() < count) && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(count, _items.size());
+        }
+
+        private boolean awaitTermination() throws InterruptedException
+        {
+            return _terminated.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
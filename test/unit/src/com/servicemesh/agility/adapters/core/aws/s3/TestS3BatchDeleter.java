@@ -0,0 +1,142 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestS3BatchDeleter
+{
+    private static final String BUCKET = "delete-bucket";
+
+    private AWSStubServer _server;
+    private S3Stub _s3;
+    private AWSConnection _conn;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        _s3 = (S3Stub) _server.getService("s3");
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/" + BUCKET, null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testCreateBody() throws Exception
+    {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] body = S3BatchDeleter.createBody(Arrays.asList("skipped", "a&b <c>", "d/e"), 1, 3, md5);
+        String xml = new String(body, "UTF-8");
+        Assert.assertTrue(xml, xml.contains("<Delete xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"));
+        Assert.assertTrue(xml, xml.contains("<Quiet>true</Quiet><Object><Key>a&amp;b &lt;c&gt;</Key></Object>"
+                + "<Object><Key>d/e</Key></Object></Delete>"));
+        Assert.assertFalse(xml, xml.contains("skipped"));
+        Assert.assertArrayEquals(MessageDigest.getInstance("MD5").digest(body), md5.digest());
+    }
+
+    @Test
+    public void testDelete() throws Throwable
+    {
+        List<String> keys = createObjects(2500);
+        keys.add("never existed");
+        _s3.protectObject(BUCKET, keys.get(1234));
+
+        List<S3DeleteResult> results = createDeleter(2).delete(BUCKET, keys).get();
+        Assert.assertEquals(3, _s3.getDeleteRequestCount());
+        Assert.assertEquals(keys.size(), results.size());
+        for (int i = 0; i < keys.size(); i++) {
+            S3DeleteResult result = results.get(i);
+            Assert.assertEquals(keys.get(i), result.getKey());
+            if (i == 1234) {
+                Assert.assertFalse(result.isDeleted());
+                Assert.assertEquals("AccessDenied", result.getCode());
+                Assert.assertNotNull(_s3.getObject(BUCKET, keys.get(i)));
+            }
+            else {
+                Assert.assertTrue(result.toString(), result.isDeleted());
+                Assert.assertNull(_s3.getObject(BUCKET, keys.get(i)));
+            }
+        }
+        Assert.assertTrue(createDeleter(2).delete(BUCKET, new ArrayList<String>()).get().isEmpty());
+    }
+
+    @Test
+    public void testRequestFailure() throws Throwable
+    {
+        List<String> keys = createObjects(1500);
+        _server.injectResponse("POST",
+                AWSStubResponse.xml(403, "<Error><Code>AccessDenied</Code><Message>Denied</Message></Error>"), 1);
+
+        List<S3DeleteResult> results = createDeleter(1).delete(BUCKET, keys).get();
+        Assert.assertEquals(keys.size(), results.size());
+        for (int i = 0; i < keys.size(); i++) {
+            S3DeleteResult result = results.get(i);
+            if (i < S3BatchDeleter.MAX_KEYS) {
+                Assert.assertFalse(result.isDeleted());
+                Assert.assertEquals("AccessDenied", result.getCode());
+                Assert.assertNotNull(_s3.getObject(BUCKET, keys.get(i)));
+            }
+            else {
+                Assert.assertTrue(result.isDeleted());
+                Assert.assertNull(_s3.getObject(BUCKET, keys.get(i)));
+            }
+        }
+    }
+
+    private List<String> createObjects(int count)
+    {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            String key = String.format("dir/object & %05d", i);
+            _s3.putObject(BUCKET, key, new byte[] { (byte) i });
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    private S3BatchDeleter createDeleter(int concurrency)
+    {
+        List<Property> settings = new ArrayList<Property>();
+        Property property = new Property();
+        property.setName(AWSConfig.S3_DELETE_CONCURRENCY);
+        property.setValue(Integer.toString(concurrency));
+        settings.add(property);
+        return new S3BatchDeleter(_conn, settings);
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Callback;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestS3BucketLister
+{
+    private static final String BUCKET = "list-bucket";
+
+    private AWSStubServer _server;
+    private S3Stub _s3;
+    private AWSConnection _conn;
+    private Set<String> _keys;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        _s3 = (S3Stub) _server.getService("s3");
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/" + BUCKET, null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        // Partitions of three pages, two pages and one page, and objects at the top level
+        _keys = new TreeSet<String>();
+        createObjects("a/", 2500);
+        createObjects("b & c/", 1200);
+        createObjects("d/e/", 10);
+        createObjects("", 5);
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testParse() throws Exception
+    {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>b</Name><Prefix>p/</Prefix>"
+                + "<KeyCount>3</KeyCount><MaxKeys>3</MaxKeys><IsTruncated>true</IsTruncated>"
+                + "<NextContinuationToken>next&amp;token</NextContinuationToken>"
+                + "<Contents><Key>p/a &amp; b</Key><LastModified>2016-01-02T03:04:05.000Z</LastModified>"
+                + "<ETag>&quot;abc&quot;</ETag><Size>12</Size><StorageClass>STANDARD</StorageClass></Contents>"
+                + "<Contents><Key>p/c</Key><Size>0</Size></Contents>"
+                + "<CommonPrefixes><Prefix>p/d/</Prefix></CommonPrefixes></ListBucketResult>";
+        final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+        S3BucketLister.Page page = S3BucketLister.parse(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+                new Callback<S3ObjectSummary>() {
+                    @Override
+                    public void invoke(S3ObjectSummary summary)
+                    {
+                        summaries.add(summary);
+                    }
+                });
+        Assert.assertTrue(page.isTruncated());
+        Assert.assertEquals("next&token", page.getNextToken());
+        Assert.assertEquals(Arrays.asList("p/d/"), page.getCommonPrefixes());
+        Assert.assertEquals(2, summaries.size());
+        S3ObjectSummary summary = summaries.get(0);
+        Assert.assertEquals("p/a & b", summary.getKey());
+        Assert.assertEquals(12, summary.getSize());
+        Assert.assertEquals("\"abc\"", summary.getETag());
+        Assert.assertEquals("2016-01-02T03:04:05.000Z", summary.getLastModified());
+        Assert.assertEquals("STANDARD", summary.getStorageClass());
+        Assert.assertEquals("p/c", summaries.get(1).getKey());
+        Assert.assertNull(summaries.get(1).getETag());
+    }
+
+    @Test
+    public void testListByDelimiter() throws Throwable
+    {
+        final Set<String> listed = new ConcurrentSkipListSet<String>();
+        long count = createLister(3).list(BUCKET, null, "/", new Callback<S3ObjectSummary>() {
+            @Override
+            public void invoke(S3ObjectSummary summary)
+            {
+                Assert.assertEquals(1, summary.getSize());
+                Assert.assertTrue(summary.getKey(), listed.add(summary.getKey()));
+            }
+        }).get();
+        Assert.assertEquals(_keys.size(), count);
+        Assert.assertEquals(_keys, listed);
+        // The top level, then 3 + 2 + 1 pages for the partitions
+        Assert.assertEquals(7, _s3.getListRequestCount());
+    }
+
+    @Test
+    public void testListPrefixes() throws Throwable
+    {
+        final Set<String> listed = Collections.synchronizedSet(new TreeSet<String>());
+        long count = createLister(2).list(BUCKET, Arrays.asList("a/", "d/"), new Callback<S3ObjectSummary>() {
+            @Override
+            public void invoke(S3ObjectSummary summary)
+            {
+                listed.add(summary.getKey());
+            }
+        }).get();
+        Assert.assertEquals(2510, count);
+        Assert.assertEquals(2510, listed.size());
+        for (String key : listed) {
+            Assert.assertTrue(key, key.startsWith("a/") || key.startsWith("d/e/"));
+        }
+    }
+
+    @Test
+    public void testFailure() throws Throwable
+    {
+        final AtomicInteger consumed = new AtomicInteger();
+        try {
+            createLister(2).list(BUCKET, null, "/", new Callback<S3ObjectSummary>() {
+                @Override
+                public void invoke(S3ObjectSummary summary)
+                {
+                    if (consumed.incrementAndGet() == 1500) {
+                        throw new IllegalStateException("Consumer failed");
+                    }
+                }
+            }).get();
+            Assert.fail("Expected the listing to fail");
+        }
+        catch (IllegalStateException ex) {
+            Assert.assertEquals("Consumer failed", ex.getMessage());
+        }
+
+        try {
+            createLister(2).list("missing-bucket", null, "/", new Callback<S3ObjectSummary>() {
+                @Override
+                public void invoke(S3ObjectSummary summary)
+                {
+                }
+            }).get();
+            Assert.fail("Expected NoSuchBucket");
+        }
+        catch (AWSErrorException ex) {
+            Assert.assertEquals("NoSuchBucket", ex.getErrors().get(0).getCode());
+        }
+    }
+
+    private void createObjects(String prefix, int count)
+    {
+        for (int i = 0; i < count; i++) {
+            String key = String.format("%sobject-%05d", prefix, i);
+            _s3.putObject(BUCKET, key, new byte[1]);
+            _keys.add(key);
+        }
+    }
+
+    private S3BucketLister createLister(int concurrency)
+    {
+        List<Property> settings = new ArrayList<Property>();
+        Property property = new Property();
+        property.setName(AWSConfig.S3_LIST_CONCURRENCY);
+        property.setValue(Integer.toString(concurrency));
+        settings.add(property);
+        return new S3BucketLister(_conn, settings);
+    }
+}
@@ -0,0 +1,312 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestContext;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestInterceptor;
+import com.servicemesh.agility.adapters.core.aws.AWSRequestInterceptorAdapter;
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.impl.AWSScheduler;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestS3MultipartUploader
+{
+    private static final String BUCKET = "upload-bucket";
+
+    private AWSStubServer _server;
+    private S3Stub _s3;
+    private AWSConnection _conn;
+    private File _file;
+    private byte[] _data;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        _s3 = (S3Stub) _server.getService("s3");
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/" + BUCKET, null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        // Two full parts and a partial part
+        _data = new byte[(2 * S3MultipartUploader.MIN_PART_SIZE) + 12345];
+        new Random(41).nextBytes(_data);
+        _file = File.createTempFile("TestS3MultipartUploader", ".bin");
+        FileOutputStream out = new FileOutputStream(_file);
+        try {
+            out.write(_data);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+        _file.delete();
+    }
+
+    @Test
+    public void testUpload() throws Throwable
+    {
+        final List<Long> progress = Collections.synchronizedList(new ArrayList<Long>());
+        S3ProgressListener listener = new S3ProgressListener() {
+            @Override
+            public void progress(String bucket, String key, long bytesTransferred, long totalBytes)
+            {
+                Assert.assertEquals(BUCKET, bucket);
+                Assert.assertEquals("dir/my object", key);
+                Assert.assertEquals(_data.length, totalBytes);
+                progress.add(bytesTransferred);
+            }
+        };
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Content-Type", "application/x-test");
+        String etag = createUploader(2, 0).upload(BUCKET, "dir/my object", _file, headers, listener).get();
+
+        Assert.assertNotNull(etag);
+        Assert.assertArrayEquals(_data, _s3.getObject(BUCKET, "dir/my object"));
+        Assert.assertEquals(0, _s3.getUploadCount());
+        Assert.assertEquals(3, progress.size());
+        Assert.assertEquals(Long.valueOf(_data.length), Collections.max(progress));
+
+        IHttpResponse response = _conn.execute(HttpMethod.HEAD, S3Support.getPath(BUCKET, "dir/my object"), null,
+                new QueryParams(), null, IHttpResponse.class).get();
+        Assert.assertEquals("application/x-test", S3Support.getHeader(response, "Content-Type"));
+    }
+
+    @Test
+    public void testSinglePut() throws Throwable
+    {
+        S3MultipartUploader uploader = createUploader(2, 0);
+        Assert.assertEquals(S3MultipartUploader.MIN_PART_SIZE, uploader.getPartSize(_data.length));
+        Assert.assertEquals(S3MultipartUploader.MIN_PART_SIZE + 1,
+                uploader.getPartSize(((long) S3MultipartUploader.MAX_PARTS * S3MultipartUploader.MIN_PART_SIZE) + 1));
+
+        File small = File.createTempFile("TestS3MultipartUploader", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(small);
+            try {
+                out.write(_data, 0, 1000);
+            }
+            finally {
+                out.close();
+            }
+            Assert.assertNotNull(uploader.upload(BUCKET, "small", small, null, null).get());
+            byte[] content = _s3.getObject(BUCKET, "small");
+            Assert.assertEquals(1000, content.length);
+            Assert.assertEquals(_data[999], content[999]);
+        }
+        finally {
+            small.delete();
+        }
+    }
+
+    @Test
+    public void testPartRetry() throws Throwable
+    {
+        _server.injectResponse("PUT", AWSStubResponse.empty(500), 2);
+        createUploader(3, 2).upload(BUCKET, "retried", _file, null, null).get();
+        Assert.assertArrayEquals(_data, _s3.getObject(BUCKET, "retried"));
+        Assert.assertEquals(0, _s3.getUploadCount());
+    }
+
+    @Test
+    public void testAbort() throws Throwable
+    {
+        _server.injectResponse("PUT", AWSStubResponse.empty(500), 100);
+        try {
+            createUploader(1, 1).upload(BUCKET, "aborted", _file, null, null).get();
+            Assert.fail("Expected the upload to fail");
+        }
+        catch (Exception ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("Part 1 of 3"));
+        }
+        // The abort request completes asynchronously
+        for (int i = 0; (i < 100) && (_s3.getUploadCount() > 0); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(0, _s3.getUploadCount());
+        Assert.assertNull(_s3.getObject(BUCKET, "aborted"));
+    }
+
+    @Test
+    public void testAbortFailed() throws Throwable
+    {
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        AppenderSkeleton appender = new AppenderSkeleton() {
+            @Override
+            protected void append(LoggingEvent event)
+            {
+                if (event.getLevel() == Level.ERROR) {
+                    errors.add(event.getRenderedMessage());
+                }
+            }
+
+            @Override
+            public boolean requiresLayout()
+            {
+                return false;
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        Logger logger = Logger.getLogger(S3MultipartUploader.class);
+        logger.addAppender(appender);
+        try {
+            _server.injectResponse("PUT", AWSStubResponse.empty(500), 100);
+            _server.injectResponse("DELETE", AWSStubResponse.xml(403,
+                    "<Error><Code>AccessDenied</Code><Message>Access Denied</Message></Error>"), 1);
+            try {
+                createUploader(1, 1).upload(BUCKET, "abort-denied", _file, null, null).get();
+                Assert.fail("Expected the upload to fail");
+            }
+            catch (Exception ex) {
+                Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("Part 1 of 3"));
+            }
+
+            // The abort is answered with an error response, which is logged rather than ignored
+            for (int i = 0; (i < 100) && errors.isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            Assert.assertEquals(1, errors.size());
+            Assert.assertTrue(errors.get(0), errors.get(0).startsWith("Unable to abort multipart upload"));
+            Assert.assertEquals(1, _s3.getUploadCount());
+        }
+        finally {
+            logger.removeAppender(appender);
+        }
+    }
+
+    @Test
+    public void testRetryAfterCancel() throws Throwable
+    {
+        _server.injectResponse("PUT", AWSStubResponse.empty(500), 1);
+        Promise<String> promise = createUploader(1, 3).upload(BUCKET, "cancelled", _file, null, null);
+        for (int i = 0; (i < 100) && (_server.getFailedCount() == 0); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, _server.getFailedCount());
+
+        // The retry of the failed part is scheduled but must not be sent once the upload is aborted
+        Thread.sleep(S3MultipartUploader.RETRY_DELAY_MILLIS / 2);
+        promise.cancel();
+        for (int i = 0; (i < 100) && (_s3.getUploadCount() > 0); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(0, _s3.getUploadCount());
+        long requests = _server.getRequestCount();
+        Thread.sleep(2 * S3MultipartUploader.RETRY_DELAY_MILLIS);
+        Assert.assertEquals(requests, _server.getRequestCount());
+    }
+
+    @Test
+    public void testRetryOffScheduler() throws Throwable
+    {
+        // Stands in for hashing a large part: the retry of the failed part blocks while it is prepared
+        final CountDownLatch retrying = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger parts = new AtomicInteger();
+        AWSRequestInterceptor interceptor = new AWSRequestInterceptorAdapter() {
+            @Override
+            public void beforeSign(AWSRequestContext context)
+            {
+                if ((context.getMethod() == HttpMethod.PUT) && (parts.incrementAndGet() == 2)) {
+                    retrying.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        _conn.addInterceptor(interceptor);
+        try {
+            _server.injectResponse("PUT", AWSStubResponse.empty(500), 1);
+            Promise<String> promise = createUploader(1, 1).upload(BUCKET, "off-scheduler", _file, null, null);
+            Assert.assertTrue(retrying.await(5, TimeUnit.SECONDS));
+
+            // The shared scheduler still runs its tasks on time
+            final CountDownLatch ran = new CountDownLatch(1);
+            AWSScheduler.getInstance().schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    ran.countDown();
+                }
+            }, 10, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(ran.await(1, TimeUnit.SECONDS));
+
+            release.countDown();
+            promise.get();
+            Assert.assertArrayEquals(_data, _s3.getObject(BUCKET, "off-scheduler"));
+        }
+        finally {
+            release.countDown();
+            _conn.removeInterceptor(interceptor);
+        }
+    }
+
+    private S3MultipartUploader createUploader(int concurrency, int retries)
+    {
+        List<Property> settings = new ArrayList<Property>();
+        settings.add(createProperty(AWSConfig.S3_PART_SIZE, "1"));
+        settings.add(createProperty(AWSConfig.S3_UPLOAD_CONCURRENCY, Integer.toString(concurrency)));
+        settings.add(createProperty(AWSConfig.S3_PART_RETRIES, Integer.toString(retries)));
+        return new S3MultipartUploader(_conn, settings);
+    }
+
+    private static Property createProperty(String name, String value)
+    {
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.s3;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.AWSConfig;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.TestHelpers;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubResponse;
+import com.servicemesh.agility.adapters.core.aws.stub.AWSStubServer;
+import com.servicemesh.agility.adapters.core.aws.stub.S3Stub;
+import com.servicemesh.agility.api.Property;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestS3ParallelDownloader
+{
+    private static final String BUCKET = "download-bucket";
+    private static final int RANGE_SIZE = 1024 * 1024;
+
+    private AWSStubServer _server;
+    private S3Stub _s3;
+    private AWSConnection _conn;
+    private File _file;
+    private byte[] _data;
+
+    @Before
+    public void before() throws Throwable
+    {
+        TestHelpers.initLogger(Level.ERROR);
+        _server = new AWSStubServer();
+        _server.start();
+        _s3 = (S3Stub) _server.getService("s3");
+        AWSEndpoint endpoint = _server.getEndpoint("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+        _conn = AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+        IHttpResponse response = _conn.execute(HttpMethod.PUT, "/" + BUCKET, null, new QueryParams(),
+                new CreateBucketConfiguration(), IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        // Two full ranges and a partial range
+        _data = new byte[(2 * RANGE_SIZE) + 4321];
+        new Random(42).nextBytes(_data);
+        _s3.putObject(BUCKET, "dir/my object", _data);
+        _file = new File(System.getProperty("java.io.tmpdir"), "TestS3ParallelDownloader-" + System.nanoTime());
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+        _file.delete();
+    }
+
+    @Test
+    public void testDownload() throws Throwable
+    {
+        final List<Long> progress = Collections.synchronizedList(new ArrayList<Long>());
+        S3ProgressListener listener = new S3ProgressListener() {
+            @Override
+            public void progress(String bucket, String key, long bytesTransferred, long totalBytes)
+            {
+                Assert.assertEquals(_data.length, totalBytes);
+                progress.add(bytesTransferred);
+            }
+        };
+        long size = createDownloader(2, 0).download(BUCKET, "dir/my object", _file, listener).get();
+        Assert.assertEquals(_data.length, size);
+        Assert.assertArrayEquals(_data, Files.readAllBytes(_file.toPath()));
+        Assert.assertEquals(3, progress.size());
+        Assert.assertEquals(Long.valueOf(_data.length), Collections.max(progress));
+
+        _s3.putObject(BUCKET, "empty", new byte[0]);
+        Assert.assertEquals(0, createDownloader(2, 0).download(BUCKET, "empty", _file, null).get().longValue());
+        Assert.assertEquals(0, _file.length());
+    }
+
+    @Test
+    public void testRangeRetry() throws Throwable
+    {
+        _server.injectResponse("GET", AWSStubResponse.empty(500), 2);
+        createDownloader(3, 2).download(BUCKET, "dir/my object", _file, null).get();
+        Assert.assertArrayEquals(_data, Files.readAllBytes(_file.toPath()));
+    }
+
+    @Test
+    public void testRangeIgnored() throws Throwable
+    {
+        // A server that ignores Range returns the whole object, here longer than the file, which must not be written
+        byte[] other = new byte[_data.length + 1000];
+        Arrays.fill(other, (byte) 1);
+        _server.injectResponse("GET", new AWSStubResponse(200, "binary/octet-stream", other), 1);
+        AWSStubResponse wrongRange = new AWSStubResponse(206, "binary/octet-stream", new byte[RANGE_SIZE]);
+        wrongRange.setHeader("Content-Range", "bytes 1-" + RANGE_SIZE + "/" + _data.length);
+        _server.injectResponse("GET", wrongRange, 1);
+        createDownloader(1, 2).download(BUCKET, "dir/my object", _file, null).get();
+        Assert.assertArrayEquals(_data, Files.readAllBytes(_file.toPath()));
+        Assert.assertEquals(2, _server.getFailedCount());
+    }
+
+    @Test
+    public void testFailure() throws Throwable
+    {
+        _server.injectResponse("GET", AWSStubResponse.empty(500), 100);
+        try {
+            createDownloader(1, 1).download(BUCKET, "dir/my object", _file, null).get();
+            Assert.fail("Expected the download to fail");
+        }
+        catch (Exception ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().startsWith("Range 1 of 3"));
+        }
+        Assert.assertFalse(_file.exists());
+
+        try {
+            createDownloader(1, 1).download(BUCKET, "missing", _file, null).get();
+            Assert.fail("Expected the download to fail");
+        }
+        catch (Exception ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("404"));
+        }
+        Assert.assertFalse(_file.exists());
+    }
+
+    @Test
+    public void testObjectChanged() throws Throwable
+    {
+        // Replace the object once the first range has been written
+        S3ProgressListener listener = new S3ProgressListener() {
+            @Override
+            public void progress(String bucket, String key, long bytesTransferred, long totalBytes)
+            {
+                _s3.putObject(BUCKET, key, new byte[_data.length]);
+            }
+        };
+        try {
+            createDownloader(1, 3).download(BUCKET, "dir/my object", _file, listener).get();
+            Assert.fail("Expected the download to fail");
+        }
+        catch (Exception ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("was replaced during the download"));
+        }
+        Assert.assertFalse(_file.exists());
+    }
+
+    @Test
+    public void testRetryAfterCancel() throws Throwable
+    {
+        _server.injectResponse("GET", AWSStubResponse.empty(500), 1);
+        Promise<Long> promise = createDownloader(1, 3).download(BUCKET, "dir/my object", _file, null);
+        for (int i = 0; (i < 100) && (_server.getFailedCount() == 0); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, _server.getFailedCount());
+
+        // The retry of the failed range is scheduled but must not be sent once the download has failed
+        Thread.sleep(S3ParallelDownloader.RETRY_DELAY_MILLIS / 2);
+        promise.cancel();
+        long requests = _server.getRequestCount();
+        Thread.sleep(2 * S3ParallelDownloader.RETRY_DELAY_MILLIS);
+        Assert.assertEquals(requests, _server.getRequestCount());
+        Assert.assertFalse(_file.exists());
+    }
+
+    private S3ParallelDownloader createDownloader(int concurrency, int retries)
+    {
+        List<Property> settings = new ArrayList<Property>();
+        settings.add(createProperty(AWSConfig.S3_PART_SIZE, Integer.toString(RANGE_SIZE)));
+        settings.add(createProperty(AWSConfig.S3_DOWNLOAD_CONCURRENCY, Integer.toString(concurrency)));
+        settings.add(createProperty(AWSConfig.S3_PART_RETRIES, Integer.toString(retries)));
+        return new S3ParallelDownloader(_conn, settings);
+    }
+
+    private static Property createProperty(String name, String value)
+    {
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.Random;
+
+/**
+ * A distribution of simulated service latencies for the AWS stub server.
+ */
+public abstract class AWSStubLatency
+{
+    // z-score of the 99th percentile of a standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    /**
+     * Returns the next latency sample.
+     *
+     * @param random
+     *            The random number source.
+     * @return The latency in milliseconds, never negative.
+     */
+    public abstract long nextMillis(Random random);
+
+    /**
+     * Returns a distribution that adds no latency.
+     */
+    public static AWSStubLatency none()
+    {
+        return fixed(0);
+    }
+
+    /**
+     * Returns a distribution that always yields the same latency.
+     *
+     * @param millis
+     *            The latency in milliseconds.
+     */
+    public static AWSStubLatency fixed(final long millis)
+    {
+        return new AWSStubLatency() {
+            @Override
+            public long nextMillis(Random random)
+            {
+                return Math.max(millis, 0);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "fixed(" + millis + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns a distribution that is uniform between two bounds.
+     *
+     * @param minMillis
+     *            The smallest latency in milliseconds.
+     * @param maxMillis
+     *            The largest latency in milliseconds.
+     */
+    public static AWSStubLatency uniform(final long minMillis, final long maxMillis)
+    {
+        if (maxMillis < minMillis) {
+            throw new IllegalArgumentException("maxMillis < minMillis");
+        }
+        return new AWSStubLatency() {
+            @Override
+            public long nextMillis(Random random)
+            {
+                long range = maxMillis - minMillis;
+                long offset = (range > 0) ? (long) (random.nextDouble() * (range + 1)) : 0;
+                return Math.max(minMillis + offset, 0);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "uniform(" + minMillis + "," + maxMillis + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns a log-normal distribution, which has the long right tail seen in real service latencies.
+     *
+     * @param medianMillis
+     *            The median latency in milliseconds.
+     * @param p99Millis
+     *            The 99th percentile latency in milliseconds.
+     */
+    public static AWSStubLatency logNormal(final long medianMillis, final long p99Millis)
+    {
+        if ((medianMillis <= 0) || (p99Millis < medianMillis)) {
+            throw new IllegalArgumentException("Expected 0 < medianMillis <= p99Millis");
+        }
+        final double mu = Math.log(medianMillis);
+        final double sigma = Math.log((double) p99Millis / medianMillis) / Z_99;
+        return new AWSStubLatency() {
+            @Override
+            public long nextMillis(Random random)
+            {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString()
+            {
+                return "logNormal(" + medianMillis + "," + p99Millis + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns a distribution that usually draws from one distribution and occasionally from a slower one, e.g. to model
+     * a degraded host.
+     *
+     * @param fast
+     *            The usual distribution.
+     * @param slow
+     *            The occasional distribution.
+     * @param slowFraction
+     *            The fraction of samples, between 0 and 1, drawn from the slow
+     *            distribution.
+     */
+    public static AWSStubLatency bimodal(final AWSStubLatency fast, final AWSStubLatency slow,
+            final double slowFraction)
+    {
+        return new AWSStubLatency() {
+            @Override
+            public long nextMillis(Random random)
+            {
+                return (random.nextDouble() < slowFraction) ? slow.nextMillis(random) : fast.nextMillis(random);
+            }
+
+            @Override
+            public String toString()
+            {
+                return "bimodal(" + fast + "," + slow + "," + slowFraction + ")";
+            }
+        };
+    }
+
+    /**
+     * Parses a distribution description of the form produced by toString(), e.g. "fixed(20)", "uniform(5,50)" or
+     * "logNormal(20,400)".
+     *
+     * @param spec
+     *            The distribution description.
+     * @return The distribution.
+     */
+    public static AWSStubLatency parse(String spec)
+    {
+        String s = spec.replace(" ", "");
+        int open = s.indexOf('(');
+        if ((open <= 0) || !s.endsWith(")")) {
+            throw new IllegalArgumentException("Invalid latency: " + spec);
+        }
+        String name = s.substring(0, open);
+        String[] args = s.substring(open + 1, s.length() - 1).split(",");
+        if (name.equals("none")) {
+            return none();
+        }
+        if (name.equals("fixed") && (args.length == 1)) {
+            return fixed(Long.parseLong(args[0]));
+        }
+        if (name.equals("uniform") && (args.length == 2)) {
+            return uniform(Long.parseLong(args[0]), Long.parseLong(args[1]));
+        }
+        if (name.equals("logNormal") && (args.length == 2)) {
+            return logNormal(Long.parseLong(args[0]), Long.parseLong(args[1]));
+        }
+        throw new IllegalArgumentException("Invalid latency: " + spec);
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A request received by the AWS stub server.
+ */
+public class AWSStubRequest
+{
+    private final String _method;
+    private final String _rawPath;
+    private final String _rawQuery;
+    private final Map<String, String> _headers;
+    private final byte[] _body;
+    private final List<String[]> _queryPairs;
+    private final Map<String, String> _params;
+    private final String _requestId;
+    private String _service;
+    private String _region;
+    private String _accessKey;
+
+    /**
+     * Creates a request.
+     *
+     * @param method
+     *            The HTTP method name.
+     * @param rawPath
+     *            The URL-encoded request path.
+     * @param rawQuery
+     *            The URL-encoded query string without the leading '?', or null.
+     * @param headers
+     *            The request headers. Multiple values of a header are comma
+     *            separated.
+     * @param body
+     *            The request content, never null.
+     * @param requestId
+     *            The identifier assigned by the stub server.
+     */
+    public AWSStubRequest(String method, String rawPath, String rawQuery, Map<String, String> headers, byte[] body,
+            String requestId)
+    {
+        _method = method;
+        _rawPath = ((rawPath == null) || rawPath.isEmpty()) ? "/" : rawPath;
+        _rawQuery = rawQuery;
+        _headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        _headers.putAll(headers);
+        _body = body;
+        _requestId = requestId;
+        _queryPairs = parsePairs(rawQuery);
+
+        _params = new LinkedHashMap<String, String>();
+        for (String[] pair : _queryPairs) {
+            _params.put(pair[0], pair[1]);
+        }
+        // The Query APIs accept the parameters as a form-encoded body
+        String contentType = getHeader("Content-Type");
+        if ((contentType != null) && contentType.startsWith("application/x-www-form-urlencoded")) {
+            for (String[] pair : parsePairs(getBodyAsString())) {
+                _params.put(pair[0], pair[1]);
+            }
+        }
+    }
+
+    public String getMethod()
+    {
+        return _method;
+    }
+
+    /**
+     * Returns the URL-encoded request path, as used for signing.
+     */
+    public String getRawPath()
+    {
+        return _rawPath;
+    }
+
+    /**
+     * Returns the decoded request path.
+     */
+    public String getPath()
+    {
+        return decode(_rawPath.replace("+", "%2B"));
+    }
+
+    public String getRawQuery()
+    {
+        return _rawQuery;
+    }
+
+    /**
+     * Returns the decoded query string parameters in the order received. Each entry is a two element array of name and
+     * value.
+     */
+    public List<String[]> getQueryPairs()
+    {
+        return Collections.unmodifiableList(_queryPairs);
+    }
+
+    /**
+     * Returns the decoded query string and form parameters.
+     */
+    public Map<String, String> getParameters()
+    {
+        return Collections.unmodifiableMap(_params);
+    }
+
+    public String getParameter(String name)
+    {
+        return _params.get(name);
+    }
+
+    /**
+     * Returns the values of a numbered list parameter, e.g. "GroupId.1", "GroupId.2", ... for the prefix "GroupId".
+     */
+    public List<String> getParameterList(String prefix)
+    {
+        List<String> values = new ArrayList<String>();
+        for (int i = 1; _params.containsKey(prefix + "." + i); i++) {
+            values.add(_params.get(prefix + "." + i));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value of the "Action" parameter for the Query APIs, or the HTTP method name for the REST APIs.
+     */
+    public String getAction()
+    {
+        String action = _params.get("Action");
+        return (action != null) ? action : _method;
+    }
+
+    public String getHeader(String name)
+    {
+        return _headers.get(name);
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return Collections.unmodifiableMap(_headers);
+    }
+
+    public byte[] getBody()
+    {
+        return _body;
+    }
+
+    public String getBodyAsString()
+    {
+        try {
+            return new String(_body, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public String getRequestId()
+    {
+        return _requestId;
+    }
+
+    /**
+     * Returns the service name from the request's credential scope, or null if the request was not signed.
+     */
+    public String getService()
+    {
+        return _service;
+    }
+
+    public String getRegion()
+    {
+        return _region;
+    }
+
+    public String getAccessKey()
+    {
+        return _accessKey;
+    }
+
+    void setScope(String accessKey, String region, String service)
+    {
+        _accessKey = accessKey;
+        _region = region;
+        _service = service;
+    }
+
+    private static List<String[]> parsePairs(String encoded)
+    {
+        List<String[]> pairs = new ArrayList<String[]>();
+        if ((encoded != null) && !encoded.isEmpty()) {
+            for (String pair : encoded.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int eq = pair.indexOf('=');
+                String name = (eq >= 0) ? pair.substring(0, eq) : pair;
+                String value = (eq >= 0) ? pair.substring(eq + 1) : "";
+                pairs.add(new String[] { decode(name), decode(value) });
+            }
+        }
+        return pairs;
+    }
+
+    private static String decode(String value)
+    {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A response returned by the AWS stub server.
+ */
+public class AWSStubResponse
+{
+    private static final byte[] NO_CONTENT = new byte[0];
+
+    private final int _status;
+    private final byte[] _body;
+    private final Map<String, String> _headers = new LinkedHashMap<String, String>();
+
+    /**
+     * Creates a response.
+     *
+     * @param status
+     *            The HTTP status code.
+     * @param contentType
+     *            The content type, or null if there is no content.
+     * @param body
+     *            The content, or null.
+     */
+    public AWSStubResponse(int status, String contentType, byte[] body)
+    {
+        _status = status;
+        _body = (body != null) ? body : NO_CONTENT;
+        if (contentType != null) {
+            _headers.put("Content-Type", contentType);
+        }
+    }
+
+    /**
+     * Returns a 200 response with XML content.
+     */
+    public static AWSStubResponse xml(String body)
+    {
+        return xml(200, body);
+    }
+
+    /**
+     * Returns a response with XML content.
+     */
+    public static AWSStubResponse xml(int status, String body)
+    {
+        return new AWSStubResponse(status, "text/xml", toBytes(body));
+    }
+
+    /**
+     * Returns a response without content.
+     */
+    public static AWSStubResponse empty(int status)
+    {
+        return new AWSStubResponse(status, null, null);
+    }
+
+    public int getStatus()
+    {
+        return _status;
+    }
+
+    public byte[] getBody()
+    {
+        return _body;
+    }
+
+    public String getBodyAsString()
+    {
+        try {
+            return new String(_body, "UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public Map<String, String> getHeaders()
+    {
+        return Collections.unmodifiableMap(_headers);
+    }
+
+    /**
+     * Sets a response header.
+     *
+     * @return This response.
+     */
+    public AWSStubResponse setHeader(String name, String value)
+    {
+        _headers.put(name, value);
+        return this;
+    }
+
+    private static byte[] toBytes(String value)
+    {
+        try {
+            return value.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
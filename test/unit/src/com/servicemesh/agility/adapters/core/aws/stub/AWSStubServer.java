@@ -0,0 +1,513 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpointFactory;
+import com.servicemesh.agility.api.Credential;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that stands in for the AWS services used by the integration tests, so that throughput and
+ * tail-latency tests can run offline against the real AWSConnection stack.
+ * <p>
+ * Requests are routed by the service name of their signature's credential scope, so a single server answers for every
+ * emulated service:
+ * <ul>
+ * <li>"ec2": security groups and DescribeVpcs (EC2Stub)</li>
+ * <li>"rds": DB parameter groups and DB instances (RDSStub)</li>
+ * <li>"elasticloadbalancing": DescribeLoadBalancerPolicyTypes (ELBStub)</li>
+ * <li>"s3": path-style buckets and objects (S3Stub)</li>
+ * <li>"cloudfront": distributions (CloudFrontStub)</li>
+ * </ul>
+ * Every request must carry a valid AWS signature version 4 for one of the server's credentials. Latency, throttling and
+ * errors can be injected per server or per action; the action of a REST request is its HTTP method. Responses are
+ * delayed on a scheduler rather than a sleeping thread, so thousands of requests may be outstanding at once.
+ */
+public class AWSStubServer
+{
+    private static final Logger _logger = Logger.getLogger(AWSStubServer.class);
+
+    /** The access key accepted by default. */
+    public static final String ACCESS_KEY = "AKIDSTUBSERVER";
+    /** The secret key of ACCESS_KEY. */
+    public static final String SECRET_KEY = "stub/secret/key/for/offline/tests";
+    /** The region of the endpoints returned by getEndpoint(). */
+    public static final String REGION = "us-east-1";
+    /** The response header that carries the request id, as returned by the query APIs. */
+    public static final String REQUEST_ID_HEADER = "x-amzn-RequestId";
+
+    // Answers requests for a service that is not emulated
+    private static final AWSStubService UNKNOWN_SERVICE = new AWSStubService("http://localhost/doc/stub/") {
+        @Override
+        public AWSStubResponse handle(AWSStubRequest request)
+        {
+            return error(400, "InvalidAction", "Service " + request.getService() + " is not emulated", request);
+        }
+    };
+
+    private final Map<String, String> _credentials = new ConcurrentHashMap<String, String>();
+    private final Map<String, AWSStubService> _services = new ConcurrentHashMap<String, AWSStubService>();
+    private final Map<String, AWSStubLatency> _actionLatency = new ConcurrentHashMap<String, AWSStubLatency>();
+    private final Map<String, Queue<AWSStubResponse>> _injected =
+            new ConcurrentHashMap<String, Queue<AWSStubResponse>>();
+    private final SignatureVerifier _verifier = new SignatureVerifier(_credentials);
+    private final AtomicLong _requests = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+    private final AtomicLong _throttled = new AtomicLong();
+    private final AtomicLong _failed = new AtomicLong();
+    private final AtomicInteger _outstanding = new AtomicInteger();
+    private final int _threads;
+    private volatile Random _random = new Random();
+    private volatile AWSStubLatency _latency = AWSStubLatency.none();
+    private volatile double _throttleRate;
+    private volatile double _errorRate;
+    private volatile boolean _verifySignatures = true;
+    private HttpServer _server;
+    private ExecutorService _executor;
+    private ScheduledExecutorService _scheduler;
+
+    /**
+     * Creates a server that accepts ACCESS_KEY and emulates the default services, using a handler thread per processor.
+     */
+    public AWSStubServer()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a server that accepts ACCESS_KEY and emulates the default services.
+     *
+     * @param threads
+     *            The number of threads that handle requests.
+     */
+    public AWSStubServer(int threads)
+    {
+        _threads = Math.max(threads, 1);
+        _credentials.put(ACCESS_KEY, SECRET_KEY);
+        _services.put("ec2", new EC2Stub());
+        _services.put("rds", new RDSStub());
+        _services.put("elasticloadbalancing", new ELBStub());
+        _services.put("s3", new S3Stub());
+        _services.put("cloudfront", new CloudFrontStub());
+    }
+
+    /**
+     * Starts the server on an ephemeral loopback port.
+     */
+    public synchronized void start() throws IOException
+    {
+        if (_server != null) {
+            return;
+        }
+        _executor = Executors.newFixedThreadPool(_threads, new StubThreadFactory("AWSStubServer-handler"));
+        _scheduler = Executors.newSingleThreadScheduledExecutor(new StubThreadFactory("AWSStubServer-responder"));
+        _server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 1024);
+        _server.setExecutor(_executor);
+        _server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                AWSStubServer.this.handle(exchange);
+            }
+        });
+        _server.start();
+        if (_logger.isDebugEnabled()) {
+            _logger.debug("AWSStubServer listening on " + getAddress());
+        }
+    }
+
+    /**
+     * Stops the server, abandoning any delayed responses.
+     */
+    public synchronized void stop()
+    {
+        if (_server != null) {
+            _server.stop(0);
+            _scheduler.shutdownNow();
+            _executor.shutdownNow();
+            _server = null;
+        }
+    }
+
+    public synchronized int getPort()
+    {
+        if (_server == null) {
+            throw new IllegalStateException("AWSStubServer is not started");
+        }
+        return _server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the host name and port to pass to AWSEndpointFactory.getEndpoint(), e.g. "127.0.0.1:53211".
+     */
+    public String getHostName()
+    {
+        return "127.0.0.1:" + getPort();
+    }
+
+    /**
+     * Returns the base URL of the server.
+     */
+    public String getAddress()
+    {
+        return "http://" + getHostName();
+    }
+
+    /**
+     * Returns an endpoint for an emulated service on this server.
+     *
+     * @param serviceName
+     *            The service name, e.g. "ec2".
+     * @param version
+     *            The API version.
+     * @param contextClass
+     *            One of the JAXB classes for the API.
+     */
+    public <T> AWSEndpoint getEndpoint(String serviceName, String version, Class<T> contextClass) throws Exception
+    {
+        return AWSEndpointFactory.getInstance().getEndpoint("http", getHostName(), serviceName, REGION, version, 0,
+                contextClass);
+    }
+
+    /**
+     * Returns a credential accepted by this server.
+     */
+    public Credential getCredential()
+    {
+        Credential cred = new Credential();
+        cred.setPublicKey(ACCESS_KEY);
+        cred.setPrivateKey(SECRET_KEY);
+        return cred;
+    }
+
+    /**
+     * Adds an accepted credential.
+     */
+    public void addCredential(String accessKey, String secretKey)
+    {
+        _credentials.put(accessKey, secretKey);
+    }
+
+    /**
+     * Replaces or adds an emulated service.
+     *
+     * @param serviceName
+     *            The service name of the credential scope, e.g. "ec2".
+     * @param service
+     *            The emulation.
+     */
+    public void setService(String serviceName, AWSStubService service)
+    {
+        _services.put(serviceName, service);
+    }
+
+    public AWSStubService getService(String serviceName)
+    {
+        return _services.get(serviceName);
+    }
+
+    /**
+     * Seeds the source of the latency samples and fault injection, for repeatable runs.
+     */
+    public void setSeed(long seed)
+    {
+        _random = new Random(seed);
+    }
+
+    /**
+     * Sets the latency added to every response without an action specific latency.
+     */
+    public void setLatency(AWSStubLatency latency)
+    {
+        _latency = (latency != null) ? latency : AWSStubLatency.none();
+    }
+
+    /**
+     * Sets the latency added to the responses of an action.
+     *
+     * @param action
+     *            The Query API action, or the HTTP method for REST APIs.
+     * @param latency
+     *            The latency, or null to use the server latency.
+     */
+    public void setLatency(String action, AWSStubLatency latency)
+    {
+        if (latency != null) {
+            _actionLatency.put(action, latency);
+        }
+        else {
+            _actionLatency.remove(action);
+        }
+    }
+
+    /**
+     * Sets the fraction of requests, between 0 and 1, that are answered with the service's throttling error.
+     */
+    public void setThrottleRate(double rate)
+    {
+        _throttleRate = rate;
+    }
+
+    /**
+     * Sets the fraction of requests, between 0 and 1, that fail with a 500 InternalError.
+     */
+    public void setErrorRate(double rate)
+    {
+        _errorRate = rate;
+    }
+
+    /**
+     * Answers the next requests for an action with a given response, ahead of any random fault.
+     *
+     * @param action
+     *            The Query API action, or the HTTP method for REST APIs.
+     * @param response
+     *            The response to return.
+     * @param count
+     *            The number of requests to answer.
+     */
+    public void injectResponse(String action, AWSStubResponse response, int count)
+    {
+        Queue<AWSStubResponse> queue = _injected.get(action);
+        if (queue == null) {
+            synchronized (_injected) {
+                queue = _injected.get(action);
+                if (queue == null) {
+                    queue = new ConcurrentLinkedQueue<AWSStubResponse>();
+                    _injected.put(action, queue);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            queue.add(response);
+        }
+    }
+
+    /**
+     * Enables or disables signature verification. Enabled by default.
+     */
+    public void setVerifySignatures(boolean verify)
+    {
+        _verifySignatures = verify;
+    }
+
+    /** Returns the number of requests received. */
+    public long getRequestCount()
+    {
+        return _requests.get();
+    }
+
+    /** Returns the number of requests rejected for their signature. */
+    public long getRejectedCount()
+    {
+        return _rejected.get();
+    }
+
+    /** Returns the number of requests answered with a throttling error. */
+    public long getThrottledCount()
+    {
+        return _throttled.get();
+    }
+
+    /** Returns the number of requests answered with an injected failure. */
+    public long getFailedCount()
+    {
+        return _failed.get();
+    }
+
+    /** Returns the number of requests not yet answered. */
+    public int getOutstandingCount()
+    {
+        return _outstanding.get();
+    }
+
+    /**
+     * Clears the counters and any injected responses.
+     */
+    public void reset()
+    {
+        _requests.set(0);
+        _rejected.set(0);
+        _throttled.set(0);
+        _failed.set(0);
+        _injected.clear();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException
+    {
+        _outstanding.incrementAndGet();
+        AWSStubResponse response;
+        long delay = 0;
+        try {
+            AWSStubRequest request = readRequest(exchange);
+            response = dispatch(request);
+            if (!response.getHeaders().containsKey(REQUEST_ID_HEADER)) {
+                response.setHeader(REQUEST_ID_HEADER, request.getRequestId());
+            }
+            AWSStubLatency latency = _actionLatency.get(request.getAction());
+            delay = ((latency != null) ? latency : _latency).nextMillis(_random);
+        }
+        catch (Exception ex) {
+            _logger.error("AWSStubServer failed to handle " + exchange.getRequestURI(), ex);
+            response = AWSStubResponse.empty(500);
+        }
+
+        final AWSStubResponse result = response;
+        if (delay <= 0) {
+            writeResponse(exchange, result);
+            return;
+        }
+        try {
+            _scheduler.schedule(new Runnable() {
+                @Override
+                public void run()
+                {
+                    try {
+                        writeResponse(exchange, result);
+                    }
+                    catch (IOException ex) {
+                        // The client has gone away
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        catch (RuntimeException ex) {
+            // The server is stopping
+            _outstanding.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private AWSStubResponse dispatch(AWSStubRequest request) throws Exception
+    {
+        _requests.incrementAndGet();
+        SignatureVerifier.Failure failure = _verifySignatures ? _verifier.verify(request) : null;
+        String serviceName = request.getService();
+        AWSStubService service = (serviceName != null) ? _services.get(serviceName) : null;
+        if (service == null) {
+            service = UNKNOWN_SERVICE;
+        }
+        if (failure != null) {
+            _rejected.incrementAndGet();
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("AWSStubServer rejected " + request.getMethod() + " " + request.getRawPath() + ": "
+                        + failure.message);
+            }
+            return service.error(failure.status, failure.code, failure.message, request);
+        }
+
+        Queue<AWSStubResponse> injected = _injected.get(request.getAction());
+        AWSStubResponse response = (injected != null) ? injected.poll() : null;
+        if (response != null) {
+            _failed.incrementAndGet();
+            return response;
+        }
+        if ((_throttleRate > 0) && (_random.nextDouble() < _throttleRate)) {
+            _throttled.incrementAndGet();
+            return service.throttled(request);
+        }
+        if ((_errorRate > 0) && (_random.nextDouble() < _errorRate)) {
+            _failed.incrementAndGet();
+            return service.error(500, "InternalError", "An internal error has occurred", request);
+        }
+        return service.handle(request);
+    }
+
+    private AWSStubRequest readRequest(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Map.Entry<String, List<String>> entry : exchange.getRequestHeaders().entrySet()) {
+            StringBuilder value = new StringBuilder();
+            for (String v : entry.getValue()) {
+                if (value.length() > 0) {
+                    value.append(",");
+                }
+                value.append(v);
+            }
+            headers.put(entry.getKey(), value.toString());
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            body.write(buffer, 0, n);
+        }
+        in.close();
+
+        return new AWSStubRequest(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(),
+                exchange.getRequestURI().getRawQuery(), headers, body.toByteArray(),
+                Long.toHexString(_random.nextLong()));
+    }
+
+    private void writeResponse(HttpExchange exchange, AWSStubResponse response) throws IOException
+    {
+        try {
+            Headers headers = exchange.getResponseHeaders();
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                headers.set(header.getKey(), header.getValue());
+            }
+            byte[] body = response.getBody();
+            boolean noBody = (body.length == 0) || exchange.getRequestMethod().equals("HEAD");
+            exchange.sendResponseHeaders(response.getStatus(), noBody ? -1 : body.length);
+            if (!noBody) {
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        }
+        finally {
+            _outstanding.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static class StubThreadFactory implements ThreadFactory
+    {
+        private final String _name;
+        private final AtomicInteger _count = new AtomicInteger();
+
+        StubThreadFactory(String name)
+        {
+            _name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, _name + "-" + _count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
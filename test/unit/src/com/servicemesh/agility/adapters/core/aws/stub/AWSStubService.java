@@ -0,0 +1,164 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * An AWS service emulated by the stub server. The base class produces the error document of the Query APIs (RDS, ELB,
+ * CloudFront); services with a different error document override error() and throttled().
+ */
+public abstract class AWSStubService
+{
+    private final String _namespace;
+
+    /**
+     * @param namespace
+     *            The XML namespace of the service's responses.
+     */
+    protected AWSStubService(String namespace)
+    {
+        _namespace = namespace;
+    }
+
+    public String getNamespace()
+    {
+        return _namespace;
+    }
+
+    /**
+     * Handles a request that passed signature verification and fault injection.
+     *
+     * @param request
+     *            The request.
+     * @return The response.
+     */
+    public abstract AWSStubResponse handle(AWSStubRequest request);
+
+    /**
+     * Returns an error response in the service's error document format.
+     *
+     * @param status
+     *            The HTTP status code.
+     * @param code
+     *            The AWS error code, e.g. "InvalidParameterValue".
+     * @param message
+     *            The error message.
+     * @param request
+     *            The failed request.
+     */
+    public AWSStubResponse error(int status, String code, String message, AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ErrorResponse xmlns=\"").append(_namespace).append("\"><Error><Type>")
+          .append((status >= 500) ? "Receiver" : "Sender").append("</Type>");
+        element(sb, "Code", code);
+        element(sb, "Message", message);
+        sb.append("</Error>");
+        element(sb, "RequestId", request.getRequestId());
+        sb.append("</ErrorResponse>");
+        return AWSStubResponse.xml(status, sb.toString());
+    }
+
+    /**
+     * Returns the response for a throttled request.
+     */
+    public AWSStubResponse throttled(AWSStubRequest request)
+    {
+        return error(400, "Throttling", "Rate exceeded", request);
+    }
+
+    /**
+     * Returns the response of the Query APIs, which wrap the result of "&lt;Action&gt;" in "&lt;Action&gt;Response" and
+     * "&lt;Action&gt;Result" elements.
+     *
+     * @param request
+     *            The request.
+     * @param result
+     *            The content of the result element, may be empty.
+     */
+    protected AWSStubResponse queryResponse(AWSStubRequest request, CharSequence result)
+    {
+        String action = request.getAction();
+        StringBuilder sb = new StringBuilder();
+        sb.append("<").append(action).append("Response xmlns=\"").append(_namespace).append("\">");
+        sb.append("<").append(action).append("Result>").append(result).append("</").append(action).append("Result>");
+        sb.append("<ResponseMetadata>");
+        element(sb, "RequestId", request.getRequestId());
+        sb.append("</ResponseMetadata></").append(action).append("Response>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    /**
+     * Appends an element with escaped text content. Null values are skipped.
+     */
+    protected static StringBuilder element(StringBuilder sb, String name, Object value)
+    {
+        if (value != null) {
+            sb.append("<").append(name).append(">").append(escape(value.toString()));
+            sb.append("</").append(name).append(">");
+        }
+        return sb;
+    }
+
+    /**
+     * Escapes XML text content.
+     */
+    protected static String escape(String value)
+    {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the unescaped text of the first element with the given name in an XML document, or null. Sufficient for
+     * the flat request documents the stub services accept.
+     */
+    protected static String getElement(String xml, String name)
+    {
+        int start = xml.indexOf("<" + name + ">");
+        if (start < 0) {
+            return null;
+        }
+        start += name.length() + 2;
+        int end = xml.indexOf("</" + name + ">", start);
+        if (end < 0) {
+            return null;
+        }
+        return xml.substring(start, end).replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&amp;", "&");
+    }
+
+    /**
+     * Formats a time as an ISO 8601 timestamp.
+     */
+    protected static String timestamp(long millis)
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return fmt.format(new Date(millis));
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emulates the CloudFront distribution list, create and get actions.
+ */
+public class CloudFrontStub extends AWSStubService
+{
+    /** The CloudFront API version of the emulated responses. */
+    public static final String VERSION = "2015-07-27";
+
+    private static final String PREFIX = "/" + VERSION + "/distribution";
+
+    private final Map<String, Distribution> _distributions = new ConcurrentSkipListMap<String, Distribution>();
+    private final AtomicLong _nextId = new AtomicLong(0x5AB1000000L);
+
+    public CloudFrontStub()
+    {
+        super("http://cloudfront.amazonaws.com/doc/" + VERSION + "/");
+    }
+
+    @Override
+    public AWSStubResponse handle(AWSStubRequest request)
+    {
+        String path = request.getPath();
+        String method = request.getMethod();
+        if (path.equals(PREFIX)) {
+            if (method.equals("GET")) {
+                return listDistributions(request);
+            }
+            if (method.equals("POST")) {
+                return createDistribution(request);
+            }
+        }
+        else if (path.startsWith(PREFIX + "/") && method.equals("GET")) {
+            Distribution distribution = _distributions.get(path.substring(PREFIX.length() + 1));
+            if (distribution == null) {
+                return error(404, "NoSuchDistribution", "The specified distribution does not exist.", request);
+            }
+            if (distribution.etag.equals(request.getHeader("If-None-Match"))) {
+                return AWSStubResponse.empty(304).setHeader("ETag", distribution.etag);
+            }
+            return AWSStubResponse.xml(appendDistribution(new StringBuilder(), distribution).toString())
+                    .setHeader("ETag", distribution.etag);
+        }
+        return error(400, "InvalidAction", "The action " + method + " " + path + " is not valid for this web service.",
+                request);
+    }
+
+    private AWSStubResponse listDistributions(AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<DistributionList xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Marker", "");
+        element(sb, "MaxItems", 100);
+        element(sb, "IsTruncated", false);
+        element(sb, "Quantity", _distributions.size());
+        sb.append("<Items>");
+        for (Distribution distribution : _distributions.values()) {
+            sb.append("<DistributionSummary>");
+            element(sb, "Id", distribution.id);
+            element(sb, "Status", "Deployed");
+            element(sb, "LastModifiedTime", timestamp(distribution.created));
+            element(sb, "DomainName", distribution.getDomainName());
+            element(sb, "Comment", getElement(distribution.config, "Comment"));
+            element(sb, "Enabled", getElement(distribution.config, "Enabled"));
+            sb.append("</DistributionSummary>");
+        }
+        sb.append("</Items></DistributionList>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse createDistribution(AWSStubRequest request)
+    {
+        String config = request.getBodyAsString();
+        if (!config.contains("<DistributionConfig")) {
+            return error(400, "MalformedInput", "A DistributionConfig document is required.", request);
+        }
+        if (getElement(config, "CallerReference") == null) {
+            return error(400, "InvalidArgument", "CallerReference is required.", request);
+        }
+        String origins = getElement(config, "Origins");
+        String quantity = (origins != null) ? getElement(origins, "Quantity") : null;
+        if ((quantity == null) || quantity.equals("0")) {
+            return error(400, "InvalidOrigin", "The distribution must have at least one origin.", request);
+        }
+        Distribution distribution = new Distribution("E" + Long.toHexString(_nextId.incrementAndGet()).toUpperCase(),
+                config.substring(config.indexOf("<DistributionConfig")));
+        _distributions.put(distribution.id, distribution);
+        return AWSStubResponse.xml(201, appendDistribution(new StringBuilder(), distribution).toString())
+                .setHeader("Location", "https://cloudfront.amazonaws.com" + PREFIX + "/" + distribution.id)
+                .setHeader("ETag", distribution.etag);
+    }
+
+    private StringBuilder appendDistribution(StringBuilder sb, Distribution distribution)
+    {
+        sb.append("<Distribution xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Id", distribution.id);
+        element(sb, "Status", "Deployed");
+        element(sb, "LastModifiedTime", timestamp(distribution.created));
+        element(sb, "InProgressInvalidationBatches", 0);
+        element(sb, "DomainName", distribution.getDomainName());
+        sb.append("<ActiveTrustedSigners><Enabled>false</Enabled><Quantity>0</Quantity></ActiveTrustedSigners>");
+        // The configuration inherits the namespace of the Distribution element
+        sb.append(distribution.config.replaceFirst(" xmlns=\"[^\"]*\"", ""));
+        sb.append("</Distribution>");
+        return sb;
+    }
+
+    private static class Distribution
+    {
+        final String id;
+        final String config;
+        final String etag;
+        final long created = System.currentTimeMillis();
+
+        Distribution(String id, String config)
+        {
+            this.id = id;
+            this.config = config;
+            this.etag = "E" + Long.toHexString(created).toUpperCase();
+        }
+
+        String getDomainName()
+        {
+            return id.toLowerCase() + ".cloudfront.net";
+        }
+    }
+}
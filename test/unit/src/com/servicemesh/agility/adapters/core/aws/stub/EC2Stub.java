@@ -0,0 +1,393 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emulates the EC2 security group actions used by EC2SecurityGroupOperations, plus DescribeVpcs.
+ */
+public class EC2Stub extends AWSStubService
+{
+    /** The EC2 API version of the emulated responses. */
+    public static final String VERSION = "2013-10-15";
+    /** The owner of the emulated security groups. */
+    public static final String OWNER_ID = "123456789012";
+    /** The identifier of the single emulated VPC. */
+    public static final String VPC_ID = "vpc-5ab10001";
+
+    private final Map<String, Group> _groups = new ConcurrentHashMap<String, Group>();
+    private final AtomicLong _nextId = new AtomicLong(0x10000000L);
+
+    public EC2Stub()
+    {
+        super("http://ec2.amazonaws.com/doc/" + VERSION + "/");
+    }
+
+    /**
+     * Returns the number of security groups.
+     */
+    public int getGroupCount()
+    {
+        return _groups.size();
+    }
+
+    @Override
+    public AWSStubResponse handle(AWSStubRequest request)
+    {
+        String action = request.getAction();
+        if (action.equals("CreateSecurityGroup")) {
+            return createSecurityGroup(request);
+        }
+        if (action.equals("DescribeSecurityGroups")) {
+            return describeSecurityGroups(request);
+        }
+        if (action.equals("AuthorizeSecurityGroupIngress")) {
+            return updateRules(request, true, true);
+        }
+        if (action.equals("AuthorizeSecurityGroupEgress")) {
+            return updateRules(request, false, true);
+        }
+        if (action.equals("RevokeSecurityGroupIngress")) {
+            return updateRules(request, true, false);
+        }
+        if (action.equals("RevokeSecurityGroupEgress")) {
+            return updateRules(request, false, false);
+        }
+        if (action.equals("DeleteSecurityGroup")) {
+            return deleteSecurityGroup(request);
+        }
+        if (action.equals("DescribeVpcs")) {
+            return describeVpcs(request);
+        }
+        return error(400, "InvalidAction", "The action " + action + " is not valid for this web service.", request);
+    }
+
+    @Override
+    public AWSStubResponse error(int status, String code, String message, AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder("<Response><Errors><Error>");
+        element(sb, "Code", code);
+        element(sb, "Message", message);
+        sb.append("</Error></Errors>");
+        element(sb, "RequestID", request.getRequestId());
+        sb.append("</Response>");
+        return AWSStubResponse.xml(status, sb.toString());
+    }
+
+    @Override
+    public AWSStubResponse throttled(AWSStubRequest request)
+    {
+        return error(503, "RequestLimitExceeded", "Request limit exceeded.", request);
+    }
+
+    private AWSStubResponse createSecurityGroup(AWSStubRequest request)
+    {
+        String name = request.getParameter("GroupName");
+        String description = request.getParameter("GroupDescription");
+        if ((name == null) || (description == null)) {
+            return error(400, "MissingParameter", "GroupName and GroupDescription are required", request);
+        }
+        Group group = new Group("sg-" + Long.toHexString(_nextId.incrementAndGet()), name, description,
+                request.getParameter("VpcId"));
+        synchronized (_groups) {
+            if (findByName(name, group.vpcId) != null) {
+                return error(400, "InvalidGroup.Duplicate", "The security group '" + name + "' already exists",
+                        request);
+            }
+            _groups.put(group.id, group);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("<CreateSecurityGroupResponse xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "requestId", request.getRequestId());
+        element(sb, "return", "true");
+        element(sb, "groupId", group.id);
+        sb.append("</CreateSecurityGroupResponse>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse describeSecurityGroups(AWSStubRequest request)
+    {
+        List<Group> groups = new ArrayList<Group>();
+        List<String> ids = request.getParameterList("GroupId");
+        List<String> names = request.getParameterList("GroupName");
+        if (ids.isEmpty() && names.isEmpty()) {
+            groups.addAll(_groups.values());
+        }
+        for (String id : ids) {
+            Group group = _groups.get(id);
+            if (group == null) {
+                return notFound(id, request);
+            }
+            groups.add(group);
+        }
+        for (String name : names) {
+            Group group = findByName(name, null);
+            if (group == null) {
+                return notFound(name, request);
+            }
+            groups.add(group);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("<DescribeSecurityGroupsResponse xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "requestId", request.getRequestId());
+        sb.append("<securityGroupInfo>");
+        for (Group group : groups) {
+            synchronized (group) {
+                sb.append("<item>");
+                element(sb, "ownerId", OWNER_ID);
+                element(sb, "groupId", group.id);
+                element(sb, "groupName", group.name);
+                element(sb, "groupDescription", group.description);
+                element(sb, "vpcId", group.vpcId);
+                appendPermissions(sb, "ipPermissions", group.ingress);
+                appendPermissions(sb, "ipPermissionsEgress", group.egress);
+                sb.append("</item>");
+            }
+        }
+        sb.append("</securityGroupInfo></DescribeSecurityGroupsResponse>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse updateRules(AWSStubRequest request, boolean ingress, boolean authorize)
+    {
+        Group group = getGroup(request);
+        if (group == null) {
+            String id = request.getParameter("GroupId");
+            return notFound((id != null) ? id : request.getParameter("GroupName"), request);
+        }
+        List<Rule> rules = parseRules(request);
+        if (rules.isEmpty()) {
+            return error(400, "MissingParameter", "No IP permissions were specified", request);
+        }
+        synchronized (group) {
+            List<Rule> current = ingress ? group.ingress : group.egress;
+            for (Rule rule : rules) {
+                boolean exists = current.contains(rule);
+                if (authorize && exists) {
+                    return error(400, "InvalidPermission.Duplicate",
+                            "The specified rule \"" + rule + "\" already exists", request);
+                }
+                if (!authorize && !exists) {
+                    return error(400, "InvalidPermission.NotFound",
+                            "The specified rule \"" + rule + "\" does not exist", request);
+                }
+            }
+            if (authorize) {
+                current.addAll(rules);
+            }
+            else {
+                current.removeAll(rules);
+            }
+        }
+        String element =
+                (authorize ? "Authorize" : "Revoke") + "SecurityGroup" + (ingress ? "Ingress" : "Egress") + "Response";
+        StringBuilder sb = new StringBuilder();
+        sb.append("<").append(element).append(" xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "requestId", request.getRequestId());
+        element(sb, "return", "true");
+        sb.append("</").append(element).append(">");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse deleteSecurityGroup(AWSStubRequest request)
+    {
+        Group group = getGroup(request);
+        if (group == null) {
+            String id = request.getParameter("GroupId");
+            return notFound((id != null) ? id : request.getParameter("GroupName"), request);
+        }
+        _groups.remove(group.id);
+        StringBuilder sb = new StringBuilder();
+        sb.append("<DeleteSecurityGroupResponse xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "requestId", request.getRequestId());
+        element(sb, "return", "true");
+        sb.append("</DeleteSecurityGroupResponse>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse describeVpcs(AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<DescribeVpcsResponse xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "requestId", request.getRequestId());
+        sb.append("<vpcSet><item>");
+        element(sb, "vpcId", VPC_ID);
+        element(sb, "state", "available");
+        element(sb, "cidrBlock", "10.0.0.0/16");
+        element(sb, "dhcpOptionsId", "dopt-5ab10001");
+        element(sb, "instanceTenancy", "default");
+        element(sb, "isDefault", "true");
+        sb.append("</item></vpcSet></DescribeVpcsResponse>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse notFound(String group, AWSStubRequest request)
+    {
+        return error(400, "InvalidGroup.NotFound", "The security group '" + group + "' does not exist", request);
+    }
+
+    private Group getGroup(AWSStubRequest request)
+    {
+        String id = request.getParameter("GroupId");
+        return (id != null) ? _groups.get(id) : findByName(request.getParameter("GroupName"), null);
+    }
+
+    private Group findByName(String name, String vpcId)
+    {
+        for (Group group : _groups.values()) {
+            if (group.name.equals(name) && ((vpcId == null) || vpcId.equals(group.vpcId))) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    // Flattens the IpPermissions.N and legacy SourceSecurityGroupName parameters to one rule per source.
+    private List<Rule> parseRules(AWSStubRequest request)
+    {
+        List<Rule> rules = new ArrayList<Rule>();
+        for (int n = 1; request.getParameter("IpPermissions." + n + ".IpProtocol") != null; n++) {
+            String prefix = "IpPermissions." + n + ".";
+            String protocol = request.getParameter(prefix + "IpProtocol");
+            String from = request.getParameter(prefix + "FromPort");
+            String to = request.getParameter(prefix + "ToPort");
+            for (int r = 1; request.getParameter(prefix + "IpRanges." + r + ".CidrIp") != null; r++) {
+                rules.add(new Rule(protocol, from, to, request.getParameter(prefix + "IpRanges." + r + ".CidrIp"), null,
+                        null, null));
+            }
+            for (int g = 1; ; g++) {
+                String groupPrefix = prefix + "Groups." + g + ".";
+                String groupId = request.getParameter(groupPrefix + "GroupId");
+                String groupName = request.getParameter(groupPrefix + "GroupName");
+                if ((groupId == null) && (groupName == null)) {
+                    break;
+                }
+                rules.add(new Rule(protocol, from, to, null, request.getParameter(groupPrefix + "UserId"), groupId,
+                        groupName));
+            }
+        }
+        String sourceGroup = request.getParameter("SourceSecurityGroupName");
+        if (sourceGroup != null) {
+            rules.add(new Rule("-1", null, null, null, request.getParameter("SourceSecurityGroupOwnerId"), null,
+                    sourceGroup));
+        }
+        return rules;
+    }
+
+    private static void appendPermissions(StringBuilder sb, String name, Collection<Rule> rules)
+    {
+        // Rules sharing a protocol and port range form one permission
+        Map<String, List<Rule>> permissions = new LinkedHashMap<String, List<Rule>>();
+        for (Rule rule : rules) {
+            String key = rule.protocol + "/" + rule.fromPort + "/" + rule.toPort;
+            List<Rule> list = permissions.get(key);
+            if (list == null) {
+                list = new ArrayList<Rule>();
+                permissions.put(key, list);
+            }
+            list.add(rule);
+        }
+        sb.append("<").append(name).append(">");
+        for (List<Rule> list : permissions.values()) {
+            Rule first = list.get(0);
+            sb.append("<item>");
+            element(sb, "ipProtocol", first.protocol);
+            element(sb, "fromPort", first.fromPort);
+            element(sb, "toPort", first.toPort);
+            sb.append("<groups>");
+            for (Rule rule : list) {
+                if (rule.cidr == null) {
+                    sb.append("<item>");
+                    element(sb, "userId", (rule.userId != null) ? rule.userId : OWNER_ID);
+                    element(sb, "groupId", rule.groupId);
+                    element(sb, "groupName", rule.groupName);
+                    sb.append("</item>");
+                }
+            }
+            sb.append("</groups><ipRanges>");
+            for (Rule rule : list) {
+                if (rule.cidr != null) {
+                    sb.append("<item>");
+                    element(sb, "cidrIp", rule.cidr);
+                    sb.append("</item>");
+                }
+            }
+            sb.append("</ipRanges></item>");
+        }
+        sb.append("</").append(name).append(">");
+    }
+
+    private static class Group
+    {
+        final String id;
+        final String name;
+        final String description;
+        final String vpcId;
+        final List<Rule> ingress = new ArrayList<Rule>();
+        final List<Rule> egress = new ArrayList<Rule>();
+
+        Group(String id, String name, String description, String vpcId)
+        {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.vpcId = vpcId;
+        }
+    }
+
+    // A permission for a single CIDR range or source group
+    private static class Rule
+    {
+        final String protocol;
+        final String fromPort;
+        final String toPort;
+        final String userId;
+        final String groupId;
+        final String groupName;
+        final String cidr;
+
+        Rule(String protocol, String fromPort, String toPort, String cidr, String userId, String groupId,
+             String groupName)
+        {
+            this.protocol = protocol;
+            this.fromPort = fromPort;
+            this.toPort = toPort;
+            this.cidr = cidr;
+            this.userId = userId;
+            this.groupId = groupId;
+            this.groupName = groupName;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Rule)) {
+                return false;
+            }
+            return toString().equals(obj.toString());
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString()
+        {
+            String source = (cidr != null) ? cidr : ((groupId != null) ? groupId : groupName);
+            return protocol + " " + fromPort + "-" + toPort + " " + source;
+        }
+    }
+}
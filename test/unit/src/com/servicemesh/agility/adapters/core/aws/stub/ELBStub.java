@@ -0,0 +1,68 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emulates the ELB DescribeLoadBalancerPolicyTypes action.
+ */
+public class ELBStub extends AWSStubService
+{
+    /** The ELB API version of the emulated responses. */
+    public static final String VERSION = "2012-06-01";
+
+    // policy type name to description
+    private static final Map<String, String> POLICY_TYPES = new LinkedHashMap<String, String>();
+    static {
+        POLICY_TYPES.put("ProxyProtocolPolicyType", "Policy that controls whether to include the IP address and port "
+                + "of the originating request for TCP messages.");
+        POLICY_TYPES.put("SSLNegotiationPolicyType", "Listener policy that defines the ciphers and protocols that will "
+                + "be accepted by the load balancer.");
+        POLICY_TYPES.put("LBCookieStickinessPolicyType", "Stickiness policy with session lifetimes controlled by the "
+                + "browser (user-agent) or a specified expiration period.");
+        POLICY_TYPES.put("AppCookieStickinessPolicyType", "Stickiness policy with session lifetimes controlled by the "
+                + "lifetime of the application-generated cookie.");
+    }
+
+    public ELBStub()
+    {
+        super("http://elasticloadbalancing.amazonaws.com/doc/" + VERSION + "/");
+    }
+
+    @Override
+    public AWSStubResponse handle(AWSStubRequest request)
+    {
+        String action = request.getAction();
+        if (action.equals("DescribeLoadBalancerPolicyTypes")) {
+            return describeLoadBalancerPolicyTypes(request);
+        }
+        return error(400, "InvalidAction", "The action " + action + " is not valid for this web service.", request);
+    }
+
+    private AWSStubResponse describeLoadBalancerPolicyTypes(AWSStubRequest request)
+    {
+        List<String> names = request.getParameterList("PolicyTypeNames.member");
+        if (names.isEmpty()) {
+            names.addAll(POLICY_TYPES.keySet());
+        }
+        StringBuilder sb = new StringBuilder("<PolicyTypeDescriptions>");
+        for (String name : names) {
+            String description = POLICY_TYPES.get(name);
+            if (description == null) {
+                return error(400, "PolicyTypeNotFound", "One or more of the specified policy types do not exist.",
+                        request);
+            }
+            sb.append("<member>");
+            element(sb, "PolicyTypeName", name);
+            element(sb, "Description", description);
+            sb.append("<PolicyAttributeTypeDescriptions/></member>");
+        }
+        sb.append("</PolicyTypeDescriptions>");
+        return queryResponse(request, sb);
+    }
+}
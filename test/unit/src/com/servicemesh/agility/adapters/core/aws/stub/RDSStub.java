@@ -0,0 +1,312 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Emulates the RDS DB parameter group and DB instance actions. A DB instance reports "creating" and then "available",
+ * and "deleting" before it disappears, so status pollers have transitions to wait for.
+ */
+public class RDSStub extends AWSStubService
+{
+    /** The RDS API version of the emulated responses. */
+    public static final String VERSION = "2010-07-28";
+
+    private final Map<String, ParameterGroup> _parameterGroups = new ConcurrentHashMap<String, ParameterGroup>();
+    private final Map<String, Instance> _instances = new ConcurrentHashMap<String, Instance>();
+    private volatile long _transitionMillis = 1000;
+
+    public RDSStub()
+    {
+        super("http://rds.amazonaws.com/doc/" + VERSION + "/");
+    }
+
+    /**
+     * Sets how long a DB instance stays in the "creating" and "deleting" states. Defaults to 1 second.
+     */
+    public void setTransitionMillis(long millis)
+    {
+        _transitionMillis = millis;
+    }
+
+    @Override
+    public AWSStubResponse handle(AWSStubRequest request)
+    {
+        String action = request.getAction();
+        if (action.equals("CreateDBParameterGroup")) {
+            return createDBParameterGroup(request);
+        }
+        if (action.equals("ModifyDBParameterGroup")) {
+            return modifyDBParameterGroup(request);
+        }
+        if (action.equals("DescribeDBParameters")) {
+            return describeDBParameters(request);
+        }
+        if (action.equals("DeleteDBParameterGroup")) {
+            return deleteDBParameterGroup(request);
+        }
+        if (action.equals("CreateDBInstance")) {
+            return createDBInstance(request);
+        }
+        if (action.equals("DescribeDBInstances")) {
+            return describeDBInstances(request);
+        }
+        if (action.equals("DeleteDBInstance")) {
+            return deleteDBInstance(request);
+        }
+        return error(400, "InvalidAction", "The action " + action + " is not valid for this web service.", request);
+    }
+
+    private AWSStubResponse createDBParameterGroup(AWSStubRequest request)
+    {
+        String name = request.getParameter("DBParameterGroupName");
+        String family = request.getParameter("DBParameterGroupFamily");
+        String description = request.getParameter("Description");
+        if ((name == null) || (family == null) || (description == null)) {
+            return error(400, "MissingParameter",
+                    "DBParameterGroupName, DBParameterGroupFamily and Description are required", request);
+        }
+        ParameterGroup group = new ParameterGroup(name, family, description);
+        synchronized (_parameterGroups) {
+            if (_parameterGroups.containsKey(name)) {
+                return error(400, "DBParameterGroupAlreadyExists", "Parameter group " + name + " already exists",
+                        request);
+            }
+            _parameterGroups.put(name, group);
+        }
+        StringBuilder sb = new StringBuilder("<DBParameterGroup>");
+        element(sb, "DBParameterGroupName", name);
+        element(sb, "DBParameterGroupFamily", family);
+        element(sb, "Description", description);
+        sb.append("</DBParameterGroup>");
+        return queryResponse(request, sb);
+    }
+
+    private AWSStubResponse modifyDBParameterGroup(AWSStubRequest request)
+    {
+        String name = request.getParameter("DBParameterGroupName");
+        ParameterGroup group = (name != null) ? _parameterGroups.get(name) : null;
+        if (group == null) {
+            return parameterGroupNotFound(name, request);
+        }
+        String prefix = "Parameters.member.";
+        if (request.getParameter(prefix + "1.ParameterName") == null) {
+            return error(400, "MissingParameter", "At least one parameter is required", request);
+        }
+        synchronized (group) {
+            for (int i = 1; request.getParameter(prefix + i + ".ParameterName") != null; i++) {
+                String[] parameter = new String[] { request.getParameter(prefix + i + ".ParameterValue"),
+                        request.getParameter(prefix + i + ".ApplyMethod") };
+                group.parameters.put(request.getParameter(prefix + i + ".ParameterName"), parameter);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        element(sb, "DBParameterGroupName", name);
+        return queryResponse(request, sb);
+    }
+
+    private AWSStubResponse describeDBParameters(AWSStubRequest request)
+    {
+        String name = request.getParameter("DBParameterGroupName");
+        ParameterGroup group = (name != null) ? _parameterGroups.get(name) : null;
+        if (group == null) {
+            return parameterGroupNotFound(name, request);
+        }
+        String source = request.getParameter("Source");
+        int maxRecords = 100;
+        if (request.getParameter("MaxRecords") != null) {
+            maxRecords = Integer.parseInt(request.getParameter("MaxRecords"));
+            if ((maxRecords < 20) || (maxRecords > 100)) {
+                return error(400, "InvalidParameterValue", "MaxRecords must be between 20 and 100", request);
+            }
+        }
+        // The marker is the name of the last parameter of the previous page
+        String marker = request.getParameter("Marker");
+        String nextMarker = null;
+        StringBuilder sb = new StringBuilder("<Parameters>");
+        synchronized (group) {
+            // Only user modified parameters are emulated
+            if ((source == null) || source.equals("user")) {
+                SortedMap<String, String[]> parameters =
+                        (marker != null) ? group.parameters.tailMap(marker + "\0") : group.parameters;
+                int count = 0;
+                for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+                    if (count++ == maxRecords) {
+                        // More parameters remain
+                        nextMarker = parameters.headMap(parameter.getKey()).lastKey();
+                        break;
+                    }
+                    sb.append("<Parameter>");
+                    element(sb, "ParameterName", parameter.getKey());
+                    element(sb, "ParameterValue", parameter.getValue()[0]);
+                    element(sb, "Source", "user");
+                    element(sb, "ApplyType", "dynamic");
+                    element(sb, "DataType", "string");
+                    element(sb, "IsModifiable", "true");
+                    element(sb, "ApplyMethod", parameter.getValue()[1]);
+                    sb.append("</Parameter>");
+                }
+            }
+        }
+        sb.append("</Parameters>");
+        if (nextMarker != null) {
+            element(sb, "Marker", nextMarker);
+        }
+        return queryResponse(request, sb);
+    }
+
+    private AWSStubResponse deleteDBParameterGroup(AWSStubRequest request)
+    {
+        String name = request.getParameter("DBParameterGroupName");
+        if ((name == null) || (_parameterGroups.remove(name) == null)) {
+            return parameterGroupNotFound(name, request);
+        }
+        return queryResponse(request, "");
+    }
+
+    private AWSStubResponse createDBInstance(AWSStubRequest request)
+    {
+        String id = request.getParameter("DBInstanceIdentifier");
+        String instanceClass = request.getParameter("DBInstanceClass");
+        String engine = request.getParameter("Engine");
+        if ((id == null) || (instanceClass == null) || (engine == null)) {
+            return error(400, "MissingParameter", "DBInstanceIdentifier, DBInstanceClass and Engine are required",
+                    request);
+        }
+        Instance instance = new Instance(id, instanceClass, engine, request.getParameter("MasterUsername"),
+                request.getParameter("AllocatedStorage"));
+        synchronized (_instances) {
+            if (_instances.containsKey(id)) {
+                return error(400, "DBInstanceAlreadyExists", "DB Instance already exists", request);
+            }
+            _instances.put(id, instance);
+        }
+        return queryResponse(request, appendInstance(new StringBuilder(), instance, System.currentTimeMillis()));
+    }
+
+    private AWSStubResponse describeDBInstances(AWSStubRequest request)
+    {
+        long now = System.currentTimeMillis();
+        String id = request.getParameter("DBInstanceIdentifier");
+        List<Instance> instances = new ArrayList<Instance>();
+        if (id != null) {
+            Instance instance = _instances.get(id);
+            if ((instance == null) || instance.isDeleted(now, _transitionMillis)) {
+                return instanceNotFound(id, request);
+            }
+            instances.add(instance);
+        }
+        else {
+            instances.addAll(_instances.values());
+        }
+        StringBuilder sb = new StringBuilder("<DBInstances>");
+        for (Instance instance : instances) {
+            if (instance.isDeleted(now, _transitionMillis)) {
+                _instances.remove(instance.id);
+            }
+            else {
+                appendInstance(sb, instance, now);
+            }
+        }
+        sb.append("</DBInstances>");
+        return queryResponse(request, sb);
+    }
+
+    private AWSStubResponse deleteDBInstance(AWSStubRequest request)
+    {
+        long now = System.currentTimeMillis();
+        String id = request.getParameter("DBInstanceIdentifier");
+        Instance instance = (id != null) ? _instances.get(id) : null;
+        if ((instance == null) || instance.isDeleted(now, _transitionMillis)) {
+            return instanceNotFound(id, request);
+        }
+        synchronized (instance) {
+            if (instance.deleted == 0) {
+                instance.deleted = now;
+            }
+        }
+        return queryResponse(request, appendInstance(new StringBuilder(), instance, now));
+    }
+
+    private StringBuilder appendInstance(StringBuilder sb, Instance instance, long now)
+    {
+        sb.append("<DBInstance>");
+        element(sb, "DBInstanceIdentifier", instance.id);
+        element(sb, "DBInstanceClass", instance.instanceClass);
+        element(sb, "Engine", instance.engine);
+        element(sb, "DBInstanceStatus", instance.getStatus(now, _transitionMillis));
+        element(sb, "MasterUsername", instance.masterUsername);
+        element(sb, "AllocatedStorage", instance.allocatedStorage);
+        element(sb, "InstanceCreateTime", timestamp(instance.created));
+        element(sb, "MultiAZ", "false");
+        sb.append("</DBInstance>");
+        return sb;
+    }
+
+    private AWSStubResponse parameterGroupNotFound(String name, AWSStubRequest request)
+    {
+        return error(404, "DBParameterGroupNotFound", "DBParameterGroup " + name + " not found.", request);
+    }
+
+    private AWSStubResponse instanceNotFound(String id, AWSStubRequest request)
+    {
+        return error(404, "DBInstanceNotFound", "DBInstance " + id + " not found.", request);
+    }
+
+    private static class ParameterGroup
+    {
+        final String name;
+        final String family;
+        final String description;
+        // parameter name to { value, apply method }
+        final SortedMap<String, String[]> parameters = new TreeMap<String, String[]>();
+
+        ParameterGroup(String name, String family, String description)
+        {
+            this.name = name;
+            this.family = family;
+            this.description = description;
+        }
+    }
+
+    private static class Instance
+    {
+        final String id;
+        final String instanceClass;
+        final String engine;
+        final String masterUsername;
+        final String allocatedStorage;
+        final long created = System.currentTimeMillis();
+        long deleted;
+
+        Instance(String id, String instanceClass, String engine, String masterUsername, String allocatedStorage)
+        {
+            this.id = id;
+            this.instanceClass = instanceClass;
+            this.engine = engine;
+            this.masterUsername = masterUsername;
+            this.allocatedStorage = allocatedStorage;
+        }
+
+        synchronized String getStatus(long now, long transitionMillis)
+        {
+            if (deleted != 0) {
+                return "deleting";
+            }
+            return (now - created < transitionMillis) ? "creating" : "available";
+        }
+
+        synchronized boolean isDeleted(long now, long transitionMillis)
+        {
+            return (deleted != 0) && (now - deleted >= transitionMillis);
+        }
+    }
+}
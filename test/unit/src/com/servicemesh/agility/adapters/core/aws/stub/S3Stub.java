@@ -0,0 +1,602 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Emulates S3 buckets and objects. The stub server is addressed by IP, so requests use path-style addressing:
+ * "/&lt;bucket&gt;/&lt;key&gt;".
+ */
+public class S3Stub extends AWSStubService
+{
+    /** The S3 API version of the emulated responses. */
+    public static final String VERSION = "2006-03-01";
+
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    private static final Pattern PART_PATTERN = Pattern
+            .compile("<(?:\\w+:)?PartNumber>(\\d+)</(?:\\w+:)?PartNumber>\\s*<(?:\\w+:)?ETag>([^<]*)</(?:\\w+:)?ETag>");
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final Map<String, Bucket> _buckets = new ConcurrentHashMap<String, Bucket>();
+    private final Map<String, Upload> _uploads = new ConcurrentHashMap<String, Upload>();
+    private final Set<String> _protected = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger _deleteRequests = new AtomicInteger();
+    private final AtomicInteger _listRequests = new AtomicInteger();
+
+    public S3Stub()
+    {
+        super("http://s3.amazonaws.com/doc/" + VERSION + "/");
+    }
+
+    /**
+     * Returns the content of an object, or null if it does not exist.
+     */
+    public byte[] getObject(String bucketName, String key)
+    {
+        Bucket bucket = _buckets.get(bucketName);
+        S3Object object = (bucket != null) ? bucket.objects.get(key) : null;
+        return (object != null) ? object.content : null;
+    }
+
+    /**
+     * Stores an object, replacing any existing object with the key.
+     */
+    public void putObject(String bucketName, String key, byte[] content)
+    {
+        _buckets.get(bucketName).objects.put(key,
+                new S3Object(content, "binary/octet-stream", new LinkedHashMap<String, String>()));
+    }
+
+    /**
+     * Makes DeleteObjects requests report AccessDenied for an object.
+     */
+    public void protectObject(String bucketName, String key)
+    {
+        _protected.add(bucketName + "/" + key);
+    }
+
+    /**
+     * Returns the number of DeleteObjects requests received.
+     */
+    public int getDeleteRequestCount()
+    {
+        return _deleteRequests.get();
+    }
+
+    /**
+     * Returns the number of ListObjectsV2 requests received.
+     */
+    public int getListRequestCount()
+    {
+        return _listRequests.get();
+    }
+
+    /**
+     * Returns the number of multipart uploads that have been initiated but neither completed nor aborted.
+     */
+    public int getUploadCount()
+    {
+        return _uploads.size();
+    }
+
+    @Override
+    public AWSStubResponse handle(AWSStubRequest request)
+    {
+        String path = request.getPath();
+        if (path.equals("/")) {
+            if (request.getMethod().equals("GET")) {
+                return listBuckets(request);
+            }
+            return error(405, "MethodNotAllowed", "The specified method is not allowed against this resource.",
+                    request);
+        }
+        int slash = path.indexOf('/', 1);
+        String bucketName = (slash > 0) ? path.substring(1, slash) : path.substring(1);
+        String key = (slash > 0) ? path.substring(slash + 1) : "";
+        String method = request.getMethod();
+
+        if (key.isEmpty()) {
+            if (method.equals("PUT")) {
+                return createBucket(bucketName, request);
+            }
+            Bucket bucket = _buckets.get(bucketName);
+            if (bucket == null) {
+                return error(404, "NoSuchBucket", "The specified bucket does not exist", request);
+            }
+            if (method.equals("HEAD")) {
+                return AWSStubResponse.empty(200);
+            }
+            if (method.equals("GET") && "2".equals(request.getParameter("list-type"))) {
+                return listObjectsV2(bucket, request);
+            }
+            if (method.equals("GET")) {
+                return listObjects(bucket, request);
+            }
+            if (method.equals("POST") && (request.getParameter("delete") != null)) {
+                return deleteObjects(bucket, request);
+            }
+            if (method.equals("DELETE")) {
+                return deleteBucket(bucket, request);
+            }
+        }
+        else {
+            Bucket bucket = _buckets.get(bucketName);
+            if (bucket == null) {
+                return error(404, "NoSuchBucket", "The specified bucket does not exist", request);
+            }
+            if (request.getParameter("uploads") != null && method.equals("POST")) {
+                return initiateUpload(bucket, key, request);
+            }
+            String uploadId = request.getParameter("uploadId");
+            if (uploadId != null) {
+                return handleUpload(bucket, key, uploadId, request);
+            }
+            if (method.equals("PUT")) {
+                return putObject(bucket, key, request);
+            }
+            if (method.equals("GET") || method.equals("HEAD")) {
+                return getObject(bucket, key, request);
+            }
+            if (method.equals("DELETE")) {
+                bucket.objects.remove(key);
+                return AWSStubResponse.empty(204);
+            }
+        }
+        return error(405, "MethodNotAllowed", "The specified method is not allowed against this resource.", request);
+    }
+
+    @Override
+    public AWSStubResponse error(int status, String code, String message, AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder("<Error>");
+        element(sb, "Code", code);
+        element(sb, "Message", message);
+        element(sb, "Resource", request.getPath());
+        element(sb, "RequestId", request.getRequestId());
+        sb.append("</Error>");
+        return AWSStubResponse.xml(status, sb.toString());
+    }
+
+    @Override
+    public AWSStubResponse throttled(AWSStubRequest request)
+    {
+        return error(503, "SlowDown", "Please reduce your request rate.", request);
+    }
+
+    private AWSStubResponse listBuckets(AWSStubRequest request)
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ListAllMyBucketsResult xmlns=\"").append(getNamespace()).append("\"><Owner>");
+        element(sb, "ID", "5ab1005ab1005ab1005ab1005ab1005ab1005ab1005ab1005ab1005ab1005ab1");
+        element(sb, "DisplayName", "stub");
+        sb.append("</Owner><Buckets>");
+        for (Bucket bucket : _buckets.values()) {
+            sb.append("<Bucket>");
+            element(sb, "Name", bucket.name);
+            element(sb, "CreationDate", timestamp(bucket.created));
+            sb.append("</Bucket>");
+        }
+        sb.append("</Buckets></ListAllMyBucketsResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse createBucket(String bucketName, AWSStubRequest request)
+    {
+        synchronized (_buckets) {
+            if (_buckets.containsKey(bucketName)) {
+                return error(409, "BucketAlreadyOwnedByYou",
+                        "Your previous request to create the named bucket succeeded and you already own it.", request);
+            }
+            _buckets.put(bucketName, new Bucket(bucketName));
+        }
+        return AWSStubResponse.empty(200).setHeader("Location", "/" + bucketName);
+    }
+
+    private AWSStubResponse deleteBucket(Bucket bucket, AWSStubRequest request)
+    {
+        synchronized (_buckets) {
+            if (!bucket.objects.isEmpty()) {
+                return error(409, "BucketNotEmpty", "The bucket you tried to delete is not empty", request);
+            }
+            _buckets.remove(bucket.name);
+        }
+        return AWSStubResponse.empty(204);
+    }
+
+    private AWSStubResponse listObjects(Bucket bucket, AWSStubRequest request)
+    {
+        String prefix = request.getParameter("prefix");
+        String marker = request.getParameter("marker");
+        String maxKeysParam = request.getParameter("max-keys");
+        int maxKeys = (maxKeysParam != null) ? Integer.parseInt(maxKeysParam) : DEFAULT_MAX_KEYS;
+
+        ConcurrentNavigableMap<String, S3Object> objects = bucket.objects;
+        if (marker != null) {
+            objects = objects.tailMap(marker, false);
+        }
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        boolean truncated = false;
+        for (Map.Entry<String, S3Object> entry : objects.entrySet()) {
+            if ((prefix != null) && !entry.getKey().startsWith(prefix)) {
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            S3Object object = entry.getValue();
+            contents.append("<Contents>");
+            element(contents, "Key", entry.getKey());
+            element(contents, "LastModified", timestamp(object.lastModified));
+            element(contents, "ETag", object.etag);
+            element(contents, "Size", object.content.length);
+            element(contents, "StorageClass", "STANDARD");
+            contents.append("</Contents>");
+            count++;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ListBucketResult xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Name", bucket.name);
+        element(sb, "Prefix", (prefix != null) ? prefix : "");
+        element(sb, "Marker", (marker != null) ? marker : "");
+        element(sb, "MaxKeys", maxKeys);
+        element(sb, "IsTruncated", truncated);
+        sb.append(contents).append("</ListBucketResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    // Continuation tokens are the last key of the previous page, which real S3 obfuscates
+    private AWSStubResponse listObjectsV2(Bucket bucket, AWSStubRequest request)
+    {
+        _listRequests.incrementAndGet();
+        String prefix = request.getParameter("prefix");
+        String delimiter = request.getParameter("delimiter");
+        String token = request.getParameter("continuation-token");
+        String startAfter = (token != null) ? token : request.getParameter("start-after");
+        String maxKeysParam = request.getParameter("max-keys");
+        int maxKeys = (maxKeysParam != null) ? Integer.parseInt(maxKeysParam) : DEFAULT_MAX_KEYS;
+
+        ConcurrentNavigableMap<String, S3Object> objects = bucket.objects;
+        if ((startAfter != null) && !startAfter.isEmpty()) {
+            objects = objects.tailMap(startAfter, false);
+        }
+        StringBuilder contents = new StringBuilder();
+        StringBuilder commonPrefixes = new StringBuilder();
+        String lastPrefix = null;
+        String lastKey = null;
+        int count = 0;
+        boolean truncated = false;
+        for (Map.Entry<String, S3Object> entry : objects.entrySet()) {
+            String key = entry.getKey();
+            if ((prefix != null) && !key.startsWith(prefix)) {
+                continue;
+            }
+            String commonPrefix = null;
+            if ((delimiter != null) && !delimiter.isEmpty()) {
+                int start = (prefix != null) ? prefix.length() : 0;
+                int index = key.indexOf(delimiter, start);
+                if (index >= 0) {
+                    commonPrefix = key.substring(0, index + delimiter.length());
+                    if (commonPrefix.equals(lastPrefix)) {
+                        lastKey = key;
+                        continue;
+                    }
+                }
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.append("<CommonPrefixes>");
+                element(commonPrefixes, "Prefix", commonPrefix);
+                commonPrefixes.append("</CommonPrefixes>");
+                lastPrefix = commonPrefix;
+            }
+            else {
+                S3Object object = entry.getValue();
+                contents.append("<Contents>");
+                element(contents, "Key", key);
+                element(contents, "LastModified", timestamp(object.lastModified));
+                element(contents, "ETag", object.etag);
+                element(contents, "Size", object.content.length);
+                element(contents, "StorageClass", "STANDARD");
+                contents.append("</Contents>");
+            }
+            lastKey = key;
+            count++;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("<ListBucketResult xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Name", bucket.name);
+        element(sb, "Prefix", (prefix != null) ? prefix : "");
+        element(sb, "Delimiter", delimiter);
+        element(sb, "MaxKeys", maxKeys);
+        element(sb, "KeyCount", count);
+        element(sb, "IsTruncated", truncated);
+        element(sb, "ContinuationToken", token);
+        if (truncated) {
+            element(sb, "NextContinuationToken", lastKey);
+        }
+        sb.append(contents).append(commonPrefixes).append("</ListBucketResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse deleteObjects(Bucket bucket, AWSStubRequest request)
+    {
+        _deleteRequests.incrementAndGet();
+        String md5 = request.getHeader("Content-MD5");
+        try {
+            if ((md5 == null) || !md5.equals(
+                    DatatypeConverter.printBase64Binary(MessageDigest.getInstance("MD5").digest(request.getBody())))) {
+                return error(400, "InvalidDigest", "The Content-MD5 you specified was invalid.", request);
+            }
+        }
+        catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        NodeList objects;
+        boolean quiet;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(request.getBody()));
+            objects = document.getElementsByTagNameNS("*", "Object");
+            NodeList quietElements = document.getElementsByTagNameNS("*", "Quiet");
+            quiet = (quietElements.getLength() > 0)
+                    && Boolean.parseBoolean(quietElements.item(0).getTextContent().trim());
+        }
+        catch (Exception ex) {
+            return error(400, "MalformedXML", "The XML you provided was not well-formed.", request);
+        }
+        if ((objects.getLength() == 0) || (objects.getLength() > 1000)) {
+            return error(400, "MalformedXML", "The XML you provided was not well-formed.", request);
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("<DeleteResult xmlns=\"").append(getNamespace()).append("\">");
+        for (int i = 0; i < objects.getLength(); i++) {
+            Element object = (Element) objects.item(i);
+            String key = object.getElementsByTagNameNS("*", "Key").item(0).getTextContent();
+            if (_protected.contains(bucket.name + "/" + key)) {
+                sb.append("<Error>");
+                element(sb, "Key", key);
+                element(sb, "Code", "AccessDenied");
+                element(sb, "Message", "Access Denied");
+                sb.append("</Error>");
+                continue;
+            }
+            bucket.objects.remove(key);
+            if (!quiet) {
+                sb.append("<Deleted>");
+                element(sb, "Key", key);
+                sb.append("</Deleted>");
+            }
+        }
+        sb.append("</DeleteResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse putObject(Bucket bucket, String key, AWSStubRequest request)
+    {
+        Map<String, String> metadata = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.US);
+            if (name.startsWith("x-amz-meta-")) {
+                metadata.put(name, header.getValue());
+            }
+        }
+        String contentType = request.getHeader("Content-Type");
+        S3Object object = new S3Object(request.getBody(), (contentType != null) ? contentType : "binary/octet-stream",
+                metadata);
+        bucket.objects.put(key, object);
+        return AWSStubResponse.empty(200).setHeader("ETag", object.etag);
+    }
+
+    private AWSStubResponse getObject(Bucket bucket, String key, AWSStubRequest request)
+    {
+        S3Object object = bucket.objects.get(key);
+        if (object == null) {
+            return error(404, "NoSuchKey", "The specified key does not exist.", request);
+        }
+        String ifMatch = request.getHeader("If-Match");
+        if ((ifMatch != null) && !ifMatch.equals(object.etag) && !ifMatch.equals("*")) {
+            return error(412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold",
+                    request);
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if ((ifNoneMatch != null) && (ifNoneMatch.equals(object.etag) || ifNoneMatch.equals("*"))) {
+            return AWSStubResponse.empty(304).setHeader("ETag", object.etag);
+        }
+        AWSStubResponse response;
+        Matcher range = RANGE_PATTERN.matcher(String.valueOf(request.getHeader("Range")));
+        if (range.matches() && request.getMethod().equals("GET")) {
+            int length = object.content.length;
+            int first = Integer.parseInt(range.group(1));
+            int last = range.group(2).isEmpty() ? (length - 1) : Math.min(Integer.parseInt(range.group(2)), length - 1);
+            if ((first >= length) || (first > last)) {
+                return error(416, "InvalidRange", "The requested range is not satisfiable", request);
+            }
+            byte[] content = Arrays.copyOfRange(object.content, first, last + 1);
+            response = new AWSStubResponse(206, object.contentType, content);
+            response.setHeader("Content-Range", "bytes " + first + "-" + last + "/" + length);
+        }
+        else {
+            response = new AWSStubResponse(200, object.contentType, object.content);
+        }
+        response.setHeader("ETag", object.etag);
+        response.setHeader("Last-Modified", httpDate(object.lastModified));
+        if (request.getMethod().equals("HEAD")) {
+            response.setHeader("Content-Length", Integer.toString(object.content.length));
+        }
+        for (Map.Entry<String, String> entry : object.metadata.entrySet()) {
+            response.setHeader(entry.getKey(), entry.getValue());
+        }
+        return response;
+    }
+
+    private AWSStubResponse initiateUpload(Bucket bucket, String key, AWSStubRequest request)
+    {
+        String uploadId = UUID.randomUUID().toString();
+        _uploads.put(uploadId, new Upload(bucket.name, key, request.getHeader("Content-Type")));
+        StringBuilder sb = new StringBuilder();
+        sb.append("<InitiateMultipartUploadResult xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Bucket", bucket.name);
+        element(sb, "Key", key);
+        element(sb, "UploadId", uploadId);
+        sb.append("</InitiateMultipartUploadResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private AWSStubResponse handleUpload(Bucket bucket, String key, String uploadId, AWSStubRequest request)
+    {
+        Upload upload = _uploads.get(uploadId);
+        if ((upload == null) || !upload.bucket.equals(bucket.name) || !upload.key.equals(key)) {
+            return error(404, "NoSuchUpload", "The specified upload does not exist.", request);
+        }
+        String method = request.getMethod();
+        if (method.equals("PUT") && (request.getParameter("partNumber") != null)) {
+            S3Object part = new S3Object(request.getBody(), null, null);
+            upload.parts.put(Integer.valueOf(request.getParameter("partNumber")), part);
+            return AWSStubResponse.empty(200).setHeader("ETag", part.etag);
+        }
+        if (method.equals("POST")) {
+            return completeUpload(bucket, uploadId, upload, request);
+        }
+        if (method.equals("DELETE")) {
+            _uploads.remove(uploadId);
+            return AWSStubResponse.empty(204);
+        }
+        return error(405, "MethodNotAllowed", "The specified method is not allowed against this resource.", request);
+    }
+
+    private AWSStubResponse completeUpload(Bucket bucket, String uploadId, Upload upload, AWSStubRequest request)
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Matcher matcher = PART_PATTERN.matcher(request.getBodyAsString());
+        int expected = 1;
+        while (matcher.find()) {
+            int partNumber = Integer.parseInt(matcher.group(1));
+            S3Object part = upload.parts.get(partNumber);
+            String etag = matcher.group(2).replace("&quot;", "\"");
+            if ((part == null) || !part.etag.equals(etag)) {
+                return error(400, "InvalidPart", "One or more of the specified parts could not be found.", request);
+            }
+            if (partNumber != expected++) {
+                return error(400, "InvalidPartOrder", "The list of parts was not in ascending order.", request);
+            }
+            content.write(part.content, 0, part.content.length);
+        }
+        if (expected == 1) {
+            return error(400, "MalformedXML", "The XML you provided was not well-formed.", request);
+        }
+        _uploads.remove(uploadId);
+        S3Object object = new S3Object(content.toByteArray(),
+                (upload.contentType != null) ? upload.contentType : "binary/octet-stream",
+                new LinkedHashMap<String, String>());
+        bucket.objects.put(upload.key, object);
+        StringBuilder sb = new StringBuilder();
+        sb.append("<CompleteMultipartUploadResult xmlns=\"").append(getNamespace()).append("\">");
+        element(sb, "Location", "/" + bucket.name + "/" + upload.key);
+        element(sb, "Bucket", bucket.name);
+        element(sb, "Key", upload.key);
+        element(sb, "ETag", object.etag);
+        sb.append("</CompleteMultipartUploadResult>");
+        return AWSStubResponse.xml(sb.toString());
+    }
+
+    private static String httpDate(long millis)
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        fmt.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return fmt.format(new Date(millis));
+    }
+
+    private static class Bucket
+    {
+        final String name;
+        final long created = System.currentTimeMillis();
+        final ConcurrentNavigableMap<String, S3Object> objects = new ConcurrentSkipListMap<String, S3Object>();
+
+        Bucket(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private static class Upload
+    {
+        final String bucket;
+        final String key;
+        final String contentType;
+        final Map<Integer, S3Object> parts = new ConcurrentHashMap<Integer, S3Object>();
+
+        Upload(String bucket, String key, String contentType)
+        {
+            this.bucket = bucket;
+            this.key = key;
+            this.contentType = contentType;
+        }
+    }
+
+    private static class S3Object
+    {
+        final byte[] content;
+        final String contentType;
+        final Map<String, String> metadata;
+        final String etag;
+        final long lastModified = System.currentTimeMillis();
+
+        S3Object(byte[] content, String contentType, Map<String, String> metadata)
+        {
+            this.content = content;
+            this.contentType = contentType;
+            this.metadata = metadata;
+            this.etag = "\"" + md5(content) + "\"";
+        }
+
+        private static String md5(byte[] content)
+        {
+            try {
+                StringBuilder sb = new StringBuilder();
+                for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                    sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+                return sb.toString();
+            }
+            catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
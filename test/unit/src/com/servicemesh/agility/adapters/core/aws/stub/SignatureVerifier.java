@@ -0,0 +1,202 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Independently recomputes the AWS signature version 4 of a stub request, as described at
+ * http://docs.aws.amazon.com/general/latest/gr/signature-version-4.html
+ */
+class SignatureVerifier
+{
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final long MAX_SKEW_MILLIS = 15 * 60 * 1000L;
+
+    /** A rejected signature. */
+    static class Failure
+    {
+        final int status;
+        final String code;
+        final String message;
+
+        Failure(int status, String code, String message)
+        {
+            this.status = status;
+            this.code = code;
+            this.message = message;
+        }
+    }
+
+    private final Map<String, String> _credentials;
+
+    /**
+     * @param credentials
+     *            The secret keys of the accepted access keys.
+     */
+    SignatureVerifier(Map<String, String> credentials)
+    {
+        _credentials = credentials;
+    }
+
+    /**
+     * Records the credential scope of a request on the request and verifies its signature.
+     *
+     * @return null if the signature is valid, otherwise the failure.
+     */
+    Failure verify(AWSStubRequest request) throws Exception
+    {
+        String authorization = request.getHeader("Authorization");
+        if ((authorization == null) || !authorization.startsWith(ALGORITHM + " ")) {
+            return new Failure(403, "MissingAuthenticationToken",
+                    "Request is missing a " + ALGORITHM + " Authorization header");
+        }
+        String credential = null, signedHeaders = null, signature = null;
+        for (String field : authorization.substring(ALGORITHM.length() + 1).split(",")) {
+            field = field.trim();
+            if (field.startsWith("Credential=")) {
+                credential = field.substring("Credential=".length());
+            }
+            else if (field.startsWith("SignedHeaders=")) {
+                signedHeaders = field.substring("SignedHeaders=".length());
+            }
+            else if (field.startsWith("Signature=")) {
+                signature = field.substring("Signature=".length());
+            }
+        }
+        String[] scope = (credential != null) ? credential.split("/") : new String[0];
+        if ((scope.length != 5) || !scope[4].equals("aws4_request") || (signedHeaders == null) || (signature == null)) {
+            return new Failure(400, "IncompleteSignature", "Malformed Authorization header: " + authorization);
+        }
+        request.setScope(scope[0], scope[2], scope[3]);
+
+        String secretKey = _credentials.get(scope[0]);
+        if (secretKey == null) {
+            return new Failure(403, "InvalidClientTokenId", "Unknown access key " + scope[0]);
+        }
+        String amzDate = request.getHeader("x-amz-date");
+        if ((amzDate == null) || !amzDate.startsWith(scope[1])) {
+            return new Failure(403, "IncompleteSignature", "x-amz-date does not match the credential scope date");
+        }
+        if (Math.abs(System.currentTimeMillis() - parseDate(amzDate)) > MAX_SKEW_MILLIS) {
+            return new Failure(403, "RequestTimeTooSkewed",
+                    "x-amz-date " + amzDate + " is too far from the current time");
+        }
+
+        String payloadHash = hex(MessageDigest.getInstance("SHA-256").digest(request.getBody()));
+        String declaredHash = request.getHeader("x-amz-content-sha256");
+        if ((declaredHash != null) && !declaredHash.equals(payloadHash)) {
+            return new Failure(400, "XAmzContentSHA256Mismatch", "x-amz-content-sha256 does not match the content");
+        }
+
+        StringBuilder canonical = new StringBuilder();
+        canonical.append(request.getMethod()).append("\n");
+        canonical.append(request.getRawPath()).append("\n");
+        canonical.append(getCanonicalQuery(request)).append("\n");
+        for (String name : signedHeaders.split(";")) {
+            String value = request.getHeader(name);
+            if (value == null) {
+                return new Failure(403, "SignatureDoesNotMatch", "Signed header " + name + " is missing");
+            }
+            value = value.trim();
+            if (name.equals("host")) {
+                // The bundle signs the bare host name while the Host header of an endpoint on a non-default port, like
+                // this server's, carries the port too.
+                int colon = value.lastIndexOf(':');
+                if ((colon > 0) && (value.indexOf(']') < colon)) {
+                    value = value.substring(0, colon);
+                }
+            }
+            canonical.append(name).append(":").append(value).append("\n");
+        }
+        canonical.append("\n").append(signedHeaders).append("\n").append(payloadHash);
+
+        String credScope = scope[1] + "/" + scope[2] + "/" + scope[3] + "/aws4_request";
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + credScope + "\n"
+                + hex(MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes("UTF-8")));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes("UTF-8"), scope[1]);
+        key = hmac(key, scope[2]);
+        key = hmac(key, scope[3]);
+        key = hmac(key, "aws4_request");
+        String expected = hex(hmac(key, stringToSign));
+
+        if (!expected.equals(signature)) {
+            return new Failure(403, "SignatureDoesNotMatch", "The request signature we calculated does not match the "
+                    + "signature you provided. The canonical request was:\n" + canonical);
+        }
+        return null;
+    }
+
+    // The canonical query string has each name and value encoded per RFC 3986 and is sorted by name, then by value.
+    private static String getCanonicalQuery(AWSStubRequest request) throws Exception
+    {
+        List<String[]> pairs = new ArrayList<String[]>();
+        for (String[] pair : request.getQueryPairs()) {
+            pairs.add(new String[] { encode(pair[0]), encode(pair[1]) });
+        }
+        Collections.sort(pairs, new Comparator<String[]>() {
+            @Override
+            public int compare(String[] a, String[] b)
+            {
+                int cmp = a[0].compareTo(b[0]);
+                return (cmp != 0) ? cmp : a[1].compareTo(b[1]);
+            }
+        });
+        StringBuilder sb = new StringBuilder();
+        for (String[] pair : pairs) {
+            if (sb.length() > 0) {
+                sb.append("&");
+            }
+            sb.append(pair[0]).append("=").append(pair[1]);
+        }
+        return sb.toString();
+    }
+
+    private static String encode(String value) throws Exception
+    {
+        return URLEncoder.encode(value, "UTF-8").replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+
+    private static long parseDate(String amzDate)
+    {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+        fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return fmt.parse(amzDate).getTime();
+        }
+        catch (ParseException ex) {
+            return 0;
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) throws Exception
+    {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data.getBytes("UTF-8"));
+    }
+
+    private static String hex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
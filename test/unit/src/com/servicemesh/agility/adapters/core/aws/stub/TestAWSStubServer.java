@@ -0,0 +1,342 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+package com.servicemesh.agility.adapters.core.aws.stub;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.cloudfront.doc._2015_07_27.DistributionList;
+import com.amazonaws.ec2.doc._2013_10_15.DescribeVpcsResponseType;
+import com.amazonaws.elasticloadbalancing.doc._2012_06_01.DescribeLoadBalancerPolicyTypesResponse;
+import com.amazonaws.rds.doc._2010_07_28.CreateDBInstanceResponse;
+import com.amazonaws.rds.doc._2010_07_28.CreateDBParameterGroupResponse;
+import com.amazonaws.rds.doc._2010_07_28.DescribeDBParametersResponse;
+import com.amazonaws.rds.doc._2010_07_28.ModifyDBParameterGroupResponse;
+import com.amazonaws.s3.doc._2006_03_01.CreateBucketConfiguration;
+import com.servicemesh.agility.adapters.core.aws.AWSConnection;
+import com.servicemesh.agility.adapters.core.aws.AWSConnectionFactory;
+import com.servicemesh.agility.adapters.core.aws.AWSEndpoint;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.AuthorizeSecurityGroupIngressResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.CreateSecurityGroupResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.DescribeSecurityGroupsResponseType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.IpPermissionType;
+import com.servicemesh.agility.adapters.core.aws.security.group.resources.SecurityGroupItemType;
+import com.servicemesh.agility.adapters.core.aws.util.AWSErrorException;
+import com.servicemesh.agility.api.Credential;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.io.http.HttpMethod;
+import com.servicemesh.io.http.IHttpHeader;
+import com.servicemesh.io.http.IHttpResponse;
+import com.servicemesh.io.http.QueryParam;
+import com.servicemesh.io.http.QueryParams;
+
+public class TestAWSStubServer
+{
+    private AWSStubServer _server;
+
+    @Before
+    public void before() throws Exception
+    {
+        _server = new AWSStubServer(2);
+        _server.setSeed(42);
+        _server.start();
+    }
+
+    @After
+    public void after()
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testSecurityGroups() throws Throwable
+    {
+        AWSConnection conn = getConnection("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+
+        QueryParams params = conn.initQueryParams("CreateSecurityGroup");
+        params.add(new QueryParam("GroupName", "web"));
+        params.add(new QueryParam("GroupDescription", "Web servers"));
+        params.add(new QueryParam("VpcId", EC2Stub.VPC_ID));
+        String groupId = conn.execute(params, CreateSecurityGroupResponseType.class).get().getGroupId();
+        Assert.assertTrue(groupId.startsWith("sg-"));
+
+        params = conn.initQueryParams("AuthorizeSecurityGroupIngress");
+        params.add(new QueryParam("GroupId", groupId));
+        params.add(new QueryParam("IpPermissions.1.IpProtocol", "tcp"));
+        params.add(new QueryParam("IpPermissions.1.FromPort", "22"));
+        params.add(new QueryParam("IpPermissions.1.ToPort", "22"));
+        params.add(new QueryParam("IpPermissions.1.IpRanges.1.CidrIp", "10.0.0.0/8"));
+        params.add(new QueryParam("IpPermissions.1.IpRanges.2.CidrIp", "192.168.0.0/16"));
+        Assert.assertTrue(conn.execute(params, AuthorizeSecurityGroupIngressResponseType.class).get().isReturn());
+
+        // Authorizing the same rule again is an error
+        assertError(conn.execute(params, AuthorizeSecurityGroupIngressResponseType.class),
+                "InvalidPermission.Duplicate");
+
+        params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", groupId));
+        List<SecurityGroupItemType> groups =
+                conn.execute(params, DescribeSecurityGroupsResponseType.class).get().getSecurityGroupInfo().getItem();
+        Assert.assertEquals(1, groups.size());
+        Assert.assertEquals("web", groups.get(0).getGroupName());
+        Assert.assertEquals(EC2Stub.VPC_ID, groups.get(0).getVpcId());
+        List<IpPermissionType> permissions = groups.get(0).getIpPermissions().getItem();
+        Assert.assertEquals(1, permissions.size());
+        Assert.assertEquals(Integer.valueOf(22), permissions.get(0).getFromPort());
+        Assert.assertEquals(2, permissions.get(0).getIpRanges().getItem().size());
+
+        params = conn.initQueryParams("DeleteSecurityGroup");
+        params.add(new QueryParam("GroupId", groupId));
+        IHttpResponse response = conn.execute(params, IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertEquals(0, ((EC2Stub) _server.getService("ec2")).getGroupCount());
+
+        params = conn.initQueryParams("DescribeSecurityGroups");
+        params.add(new QueryParam("GroupId.1", groupId));
+        assertError(conn.execute(params, DescribeSecurityGroupsResponseType.class), "InvalidGroup.NotFound");
+
+        AWSConnection vpcConn = getConnection("ec2", EC2Stub.VERSION, DescribeVpcsResponseType.class);
+        DescribeVpcsResponseType vpcs =
+                vpcConn.execute(vpcConn.initQueryParams("DescribeVpcs"), DescribeVpcsResponseType.class).get();
+        Assert.assertEquals(EC2Stub.VPC_ID, vpcs.getVpcSet().getItem().get(0).getVpcId());
+        Assert.assertEquals(0, _server.getRejectedCount());
+    }
+
+    @Test
+    public void testSignatureVerification() throws Throwable
+    {
+        AWSEndpoint endpoint = _server.getEndpoint("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        Credential cred = new Credential();
+        cred.setPublicKey(AWSStubServer.ACCESS_KEY);
+        cred.setPrivateKey("not-the-secret-key");
+        AWSConnection conn = AWSConnectionFactory.getInstance().getConnection(null, cred, null, endpoint);
+
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+        assertError(conn.execute(params, DescribeSecurityGroupsResponseType.class), "SignatureDoesNotMatch");
+
+        cred.setPublicKey("AKIDUNKNOWN");
+        conn = AWSConnectionFactory.getInstance().getConnection(null, cred, null, endpoint);
+        params = conn.initQueryParams("DescribeSecurityGroups");
+        assertError(conn.execute(params, DescribeSecurityGroupsResponseType.class), "InvalidClientTokenId");
+        Assert.assertEquals(2, _server.getRejectedCount());
+
+        // A second credential is accepted once added
+        _server.addCredential("AKIDUNKNOWN", "not-the-secret-key");
+        Assert.assertNotNull(conn.execute(conn.initQueryParams("DescribeSecurityGroups"),
+                DescribeSecurityGroupsResponseType.class).get());
+        Assert.assertEquals(2, _server.getRejectedCount());
+    }
+
+    @Test
+    public void testRDS() throws Throwable
+    {
+        ((RDSStub) _server.getService("rds")).setTransitionMillis(200);
+        AWSConnection conn = getConnection("rds", RDSStub.VERSION, CreateDBParameterGroupResponse.class);
+
+        QueryParams params = conn.initQueryParams("CreateDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupFamily", "mysql5.6"));
+        params.add(new QueryParam("DBParameterGroupName", "stub-group"));
+        params.add(new QueryParam("Description", "Stub group"));
+        CreateDBParameterGroupResponse created = conn.execute(params, CreateDBParameterGroupResponse.class).get();
+        Assert.assertEquals("stub-group",
+                created.getCreateDBParameterGroupResult().getDBParameterGroup().getDBParameterGroupName());
+
+        params = conn.initQueryParams("ModifyDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", "stub-group"));
+        params.add(new QueryParam("Parameters.member.1.ParameterName", "max_connections"));
+        params.add(new QueryParam("Parameters.member.1.ParameterValue", "250"));
+        params.add(new QueryParam("Parameters.member.1.ApplyMethod", "immediate"));
+        Assert.assertNotNull(conn.execute(params, ModifyDBParameterGroupResponse.class).get());
+
+        params = conn.initQueryParams("DescribeDBParameters");
+        params.add(new QueryParam("DBParameterGroupName", "stub-group"));
+        params.add(new QueryParam("Source", "user"));
+        DescribeDBParametersResponse described = conn.execute(params, DescribeDBParametersResponse.class).get();
+        Assert.assertEquals("250",
+                described.getDescribeDBParametersResult().getParameters().getParameter().get(0).getParameterValue());
+
+        params = conn.initQueryParams("CreateDBInstance");
+        params.add(new QueryParam("DBInstanceIdentifier", "stub-db"));
+        params.add(new QueryParam("DBInstanceClass", "db.m1.small"));
+        params.add(new QueryParam("Engine", "MySQL"));
+        params.add(new QueryParam("AllocatedStorage", "5"));
+        CreateDBInstanceResponse instance = conn.execute(params, CreateDBInstanceResponse.class).get();
+        Assert.assertEquals("creating", instance.getCreateDBInstanceResult().getDBInstance().getDBInstanceStatus());
+
+        params = conn.initQueryParams("DescribeDBInstances");
+        params.add(new QueryParam("DBInstanceIdentifier", "stub-db"));
+        Assert.assertTrue(conn.execute(params, IHttpResponse.class).get().getContent()
+                .contains("<DBInstanceStatus>creating</DBInstanceStatus>"));
+        Thread.sleep(250);
+        Assert.assertTrue(conn.execute(params, IHttpResponse.class).get().getContent()
+                .contains("<DBInstanceStatus>available</DBInstanceStatus>"));
+
+        params = conn.initQueryParams("DeleteDBParameterGroup");
+        params.add(new QueryParam("DBParameterGroupName", "missing-group"));
+        assertError(conn.execute(params, ModifyDBParameterGroupResponse.class), "DBParameterGroupNotFound");
+    }
+
+    @Test
+    public void testELB() throws Throwable
+    {
+        AWSConnection conn = getConnection("elasticloadbalancing", ELBStub.VERSION,
+                DescribeLoadBalancerPolicyTypesResponse.class);
+
+        DescribeLoadBalancerPolicyTypesResponse response =
+                conn.execute(conn.initQueryParams("DescribeLoadBalancerPolicyTypes"),
+                        DescribeLoadBalancerPolicyTypesResponse.class).get();
+        Assert.assertFalse(response.getDescribeLoadBalancerPolicyTypesResult().getPolicyTypeDescriptions().getMember()
+                .isEmpty());
+
+        assertError(conn.execute(conn.initQueryParams("BadZoot"), DescribeLoadBalancerPolicyTypesResponse.class),
+                "InvalidAction");
+    }
+
+    @Test
+    public void testS3() throws Throwable
+    {
+        AWSConnection conn = getConnection("s3", S3Stub.VERSION, CreateBucketConfiguration.class);
+
+        IHttpResponse response =
+                conn.execute(HttpMethod.PUT, "/stub-bucket", null, new QueryParams(), new CreateBucketConfiguration(),
+                        IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("x-amz-meta-author", "Shakespeare + *Blokes?");
+        byte[] content = new byte[] { (byte) 0x01, (byte) 0x09, (byte) 0xae };
+        response = conn.execute(HttpMethod.PUT, "/stub-bucket/my-array", headers, new QueryParams(), content,
+                IHttpResponse.class).get();
+        Assert.assertEquals(200, response.getStatusCode());
+        Assert.assertArrayEquals(content, ((S3Stub) _server.getService("s3")).getObject("stub-bucket", "my-array"));
+
+        response = conn.execute(HttpMethod.GET, "/stub-bucket/my-array", null, new QueryParams(), "",
+                IHttpResponse.class).get();
+        Assert.assertArrayEquals(content, response.getContentAsByteArray());
+        boolean foundHeader = false;
+        for (IHttpHeader header : response.getHeaders()) {
+            if (header.getName().equalsIgnoreCase("x-amz-meta-author")) {
+                foundHeader = true;
+                Assert.assertEquals("Shakespeare + *Blokes?", header.getValue());
+            }
+        }
+        Assert.assertTrue(foundHeader);
+
+        response =
+                conn.execute(HttpMethod.GET, "/stub-bucket", null, new QueryParams(), null, IHttpResponse.class).get();
+        Assert.assertTrue(response.getContent().contains("<Key>my-array</Key>"));
+
+        // The bucket is not empty
+        response =
+                conn.execute(HttpMethod.DELETE, "/stub-bucket", null, new QueryParams(), "", IHttpResponse.class).get();
+        Assert.assertEquals(409, response.getStatusCode());
+        Assert.assertTrue(response.getContent().contains("<Code>BucketNotEmpty</Code>"));
+
+        response = conn.execute(HttpMethod.DELETE, "/stub-bucket/my-array", null, new QueryParams(), "",
+                IHttpResponse.class).get();
+        Assert.assertEquals(204, response.getStatusCode());
+        response =
+                conn.execute(HttpMethod.DELETE, "/stub-bucket", null, new QueryParams(), "", IHttpResponse.class).get();
+        Assert.assertEquals(204, response.getStatusCode());
+        Assert.assertEquals(0, _server.getRejectedCount());
+    }
+
+    @Test
+    public void testCloudFront() throws Throwable
+    {
+        AWSConnection conn = getConnection("cloudfront", CloudFrontStub.VERSION, DistributionList.class);
+        String uri = "/" + CloudFrontStub.VERSION + "/distribution";
+
+        QueryParams params = new QueryParams();
+        params.add(new QueryParam("Version", CloudFrontStub.VERSION));
+        DistributionList list = conn.execute(HttpMethod.GET, uri, null, params, null, DistributionList.class).get();
+        Assert.assertEquals(0, list.getQuantity());
+
+        IHttpResponse response = conn.execute(HttpMethod.POST, uri, null, new QueryParams(),
+                "<DistributionConfig><CallerReference>test</CallerReference><Origins/></DistributionConfig>",
+                IHttpResponse.class).get();
+        Assert.assertEquals(400, response.getStatusCode());
+    }
+
+    @Test
+    public void testFaultInjection() throws Throwable
+    {
+        AWSConnection conn = getConnection("ec2", EC2Stub.VERSION, DescribeSecurityGroupsResponseType.class);
+        QueryParams params = conn.initQueryParams("DescribeSecurityGroups");
+
+        _server.setThrottleRate(1.0);
+        assertError(conn.execute(params, DescribeSecurityGroupsResponseType.class), "RequestLimitExceeded");
+        Assert.assertEquals(1, _server.getThrottledCount());
+        _server.setThrottleRate(0);
+
+        _server.setErrorRate(1.0);
+        IHttpResponse response = conn.execute(params, IHttpResponse.class).get();
+        Assert.assertEquals(500, response.getStatusCode());
+        Assert.assertEquals(1, _server.getFailedCount());
+        _server.setErrorRate(0);
+
+        // Injected responses are returned once each, ahead of the service
+        _server.injectResponse("DescribeSecurityGroups", AWSStubResponse.empty(502), 1);
+        Assert.assertEquals(502, conn.execute(params, IHttpResponse.class).get().getStatusCode());
+        Assert.assertEquals(200, conn.execute(params, IHttpResponse.class).get().getStatusCode());
+
+        _server.setLatency("DescribeSecurityGroups", AWSStubLatency.fixed(150));
+        long start = System.currentTimeMillis();
+        Assert.assertEquals(200, conn.execute(params, IHttpResponse.class).get().getStatusCode());
+        Assert.assertTrue(System.currentTimeMillis() - start >= 150);
+        Assert.assertEquals(0, _server.getOutstandingCount());
+        Assert.assertEquals(5, _server.getRequestCount());
+    }
+
+    @Test
+    public void testLatency()
+    {
+        Random random = new Random(7);
+        AWSStubLatency latency = AWSStubLatency.parse("logNormal(20,200)");
+        int samples = 20000;
+        long[] values = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            values[i] = latency.nextMillis(random);
+        }
+        Arrays.sort(values);
+        Assert.assertEquals(20, values[samples / 2], 2);
+        Assert.assertEquals(200, values[samples * 99 / 100], 30);
+
+        latency = AWSStubLatency.parse("uniform(5, 10)");
+        for (int i = 0; i < 1000; i++) {
+            long value = latency.nextMillis(random);
+            Assert.assertTrue((value >= 5) && (value <= 10));
+        }
+        Assert.assertEquals(7, AWSStubLatency.parse("fixed(7)").nextMillis(random));
+    }
+
+    private <T> AWSConnection getConnection(String serviceName, String version, Class<T> contextClass) throws Exception
+    {
+        AWSEndpoint endpoint = _server.getEndpoint(serviceName, version, contextClass);
+        return AWSConnectionFactory.getInstance().getConnection(null, _server.getCredential(), null, endpoint);
+    }
+
+    private void assertError(Promise<?> promise, String code)
+    {
+        try {
+            promise.get();
+            Assert.fail("Expected " + code);
+        }
+        catch (AWSErrorException ex) {
+            Assert.assertEquals(code, ex.getErrors().get(0).getCode());
+        }
+        catch (Throwable t) {
+            Assert.fail("Expected " + code + ", got " + t);
+        }
+    }
+}
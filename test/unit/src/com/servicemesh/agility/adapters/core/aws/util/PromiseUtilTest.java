@@ -0,0 +1,70 @@
+/**
+ *              Copyright (c) 2008-2013 ServiceMesh, Incorporated; All Rights Reserved
+ *              Copyright (c) 2013-Present Computer Sciences Corporation
+ */
+
+package com.servicemesh.agility.adapters.core.aws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.servicemesh.core.async.CompletablePromise;
+import com.servicemesh.core.async.Promise;
+import com.servicemesh.core.async.PromiseFactory;
+
+public class PromiseUtilTest {
+
+    @Test
+    public void testConstructor() {
+        assertTrue(new PromiseUtil() instanceof PromiseUtil);
+    }
+
+    @Test
+    public void testForwardComplete() throws Throwable {
+        CompletablePromise<String> source = PromiseFactory.create();
+        CompletablePromise<String> target = PromiseFactory.create();
+        PromiseUtil.forward(source, target);
+        assertFalse(target.isCompleted());
+        source.complete("done");
+        assertTrue(target.isCompleted());
+        assertEquals("done", target.get());
+    }
+
+    @Test
+    public void testForwardFailure() throws Throwable {
+        CompletablePromise<String> target = PromiseFactory.create();
+        PromiseUtil.forward(Promise.<String> pure(new AWSAdapterException("boom")), target);
+        assertTrue(target.isFailed());
+        try {
+            target.get();
+            fail("Expected failure");
+        }
+        catch (AWSAdapterException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testForwardCancel() throws Throwable {
+        CompletablePromise<String> source = PromiseFactory.create();
+        CompletablePromise<String> target = PromiseFactory.create();
+        PromiseUtil.forward(source, target);
+        source.cancel();
+        assertTrue(target.isFailed());
+    }
+
+    @Test
+    public void testAttach() throws Throwable {
+        CompletablePromise<String> source = PromiseFactory.create();
+        Promise<String> first = PromiseUtil.attach(source);
+        Promise<String> second = PromiseUtil.attach(source);
+        first.cancel();
+        assertFalse(source.isCancelled());
+        source.complete("shared");
+        assertEquals("shared", second.get());
+    }
+}